@@ -0,0 +1,56 @@
+package com.threatmodel.analyzer.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.threatmodel.analyzer.model.DataFlow;
+
+/**
+ * Measures detecting the data flows of a synthetic component graph of a given size.
+ * Detection only adds the data structures of a store once, so repeated runs on the same
+ * model do the same work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataFlowDetectionBenchmark {
+    
+    /**
+     * Number of processes in the graph
+     */
+    @Param({"100", "1000", "10000"})
+    public int processes;
+    
+    /**
+     * Number of threads detecting the flows
+     */
+    @Param({"1", "4"})
+    public int parallelism;
+    
+    private SyntheticModel model;
+    
+    @Setup
+    public void setUp() {
+        model = SyntheticModel.create(processes, 42);
+    }
+    
+    @Benchmark
+    public List<DataFlow> detectDataFlows() {
+        return model.createDetector(parallelism).detectDataFlows();
+    }
+}
@@ -0,0 +1,56 @@
+package com.threatmodel.analyzer.benchmark;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.threatmodel.analyzer.core.CompilationUnitExtractor;
+import com.threatmodel.analyzer.core.FileExtraction;
+
+/**
+ * Measures extracting the components of an already parsed compilation unit
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionBenchmark {
+    
+    /**
+     * Number of endpoints of the extracted controller
+     */
+    @Param({"10", "100", "1000"})
+    public int methods;
+    
+    private final Path javaFile = Paths.get("src/main/java/com/synthetic/order/m0/Order0Controller.java");
+    private CompilationUnit compilationUnit;
+    
+    @Setup
+    public void setUp() {
+        String source = SyntheticSources.controller(
+                SyntheticModule.create(0, 1, SyntheticProjectGenerator.DEFAULT_SEED), methods);
+        compilationUnit = new JavaParser().parse(source).getResult()
+                .orElseThrow(() -> new IllegalStateException("Synthetic source does not parse"));
+    }
+    
+    @Benchmark
+    public FileExtraction extract() {
+        return CompilationUnitExtractor.extract(compilationUnit, javaFile);
+    }
+}
@@ -0,0 +1,73 @@
+package com.threatmodel.analyzer.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.threatmodel.analyzer.model.AnalysisResult;
+import com.threatmodel.analyzer.output.OutputGenerator;
+
+/**
+ * Measures writing the reports of a synthetic analysis result in each format.
+ * Every invocation overwrites the files of the previous one in a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputBenchmark {
+    
+    /**
+     * Number of processes in the analysis result
+     */
+    @Param({"100", "1000", "10000"})
+    public int processes;
+    
+    /**
+     * Format of the report
+     */
+    @Param({"markdown", "json", "ndjson", "csv", "html"})
+    public String format;
+    
+    private AnalysisResult result;
+    private Path outputPath;
+    
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticModel model = SyntheticModel.create(processes, 42);
+        result = model.toResult(model.createDetector(1).detectDataFlows());
+        outputPath = Files.createTempDirectory("dfd-benchmark");
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(outputPath)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+    
+    @Benchmark
+    public void writeReport() throws IOException {
+        OutputGenerator generator = new OutputGenerator(result, outputPath, format);
+        generator.setParallelism(1);
+        generator.generate();
+    }
+}
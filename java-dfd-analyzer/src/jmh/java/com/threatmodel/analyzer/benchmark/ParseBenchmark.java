@@ -0,0 +1,79 @@
+package com.threatmodel.analyzer.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.threatmodel.analyzer.core.MethodBodies;
+import com.threatmodel.analyzer.core.SourcePrefilter;
+
+/**
+ * Measures parsing a single source file, with the configuration of the analysis workers,
+ * without comments and token lists and for its declarations only, and
+ * scanning it with the prefilter that decides how it is parsed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    
+    /**
+     * Number of endpoints of the parsed controller
+     */
+    @Param({"10", "100", "1000"})
+    public int methods;
+    
+    private String source;
+    private byte[] content;
+    private JavaParser workerParser;
+    private JavaParser lightParser;
+    
+    @Setup
+    public void setUp() {
+        source = SyntheticSources.controller(
+                SyntheticModule.create(0, 1, SyntheticProjectGenerator.DEFAULT_SEED), methods);
+        content = source.getBytes(StandardCharsets.UTF_8);
+        workerParser = new JavaParser();
+        lightParser = new JavaParser(new ParserConfiguration()
+                .setAttributeComments(false)
+                .setStoreTokens(false));
+    }
+    
+    @Benchmark
+    public ParseResult<CompilationUnit> parse() {
+        return workerParser.parse(source);
+    }
+    
+    @Benchmark
+    public ParseResult<CompilationUnit> parseWithoutCommentsAndTokens() {
+        return lightParser.parse(source);
+    }
+    
+    @Benchmark
+    public ParseResult<CompilationUnit> parseDeclarationsOnly() {
+        return workerParser.parse(MethodBodies.strip(source).getDeclarations());
+    }
+    
+    @Benchmark
+    public SourcePrefilter.Route prefilter() {
+        return SourcePrefilter.scan(content);
+    }
+}
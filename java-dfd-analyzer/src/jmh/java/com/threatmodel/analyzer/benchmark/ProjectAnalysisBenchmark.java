@@ -0,0 +1,73 @@
+package com.threatmodel.analyzer.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.threatmodel.analyzer.core.AnalyzerOptions;
+import com.threatmodel.analyzer.core.ProjectAnalyzer;
+import com.threatmodel.analyzer.model.AnalysisResult;
+
+/**
+ * Measures a complete cold analysis of a generated project, from discovery to flow detection
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProjectAnalysisBenchmark {
+    
+    /**
+     * Number of Java files of the generated project
+     */
+    @Param({"1000"})
+    public int files;
+    
+    /**
+     * Number of worker threads of the analyzer
+     */
+    @Param({"1", "4"})
+    public int threads;
+    
+    private Path projectRoot;
+    
+    @Setup
+    public void setUp() throws IOException {
+        projectRoot = Files.createTempDirectory("synthetic-project");
+        SyntheticProjectGenerator.generate(projectRoot, files, SyntheticProjectGenerator.DEFAULT_SEED);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(projectRoot)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    @Benchmark
+    public AnalysisResult analyze() throws IOException {
+        AnalyzerOptions options = new AnalyzerOptions();
+        options.setParallelism(threads);
+        try (ProjectAnalyzer analyzer = new ProjectAnalyzer(projectRoot, options)) {
+            return analyzer.analyze();
+        }
+    }
+}
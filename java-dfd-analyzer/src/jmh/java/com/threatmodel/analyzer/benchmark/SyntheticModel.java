@@ -0,0 +1,192 @@
+package com.threatmodel.analyzer.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.threatmodel.analyzer.model.AnalysisResult;
+import com.threatmodel.analyzer.model.DataFlow;
+import com.threatmodel.analyzer.model.DataStore;
+import com.threatmodel.analyzer.model.DataStructure;
+import com.threatmodel.analyzer.model.ExternalEntity;
+import com.threatmodel.analyzer.model.Process;
+import com.threatmodel.analyzer.utils.DataFlowDetector;
+
+/**
+ * Synthetic component graph shaped like a layered Spring application, used as input of the
+ * flow detection and output benchmarks.
+ *
+ * The model is split into modules of {@value #PROCESSES_PER_MODULE} processes: a controller
+ * exchanging a DTO with a web client, a service mapping the DTO to an entity, a repository
+ * storing the entity and a client calling a remote service. Services also consume the DTOs of
+ * a few other modules, picked with a seeded random generator, so the same size always yields
+ * the same graph.
+ */
+public class SyntheticModel {
+    
+    /**
+     * Number of processes in each module
+     */
+    public static final int PROCESSES_PER_MODULE = 10;
+    
+    // Number of other modules whose DTOs the services of a module consume
+    private static final int CROSS_MODULE_LINKS = 2;
+    
+    private final String projectName;
+    private final Map<String, DataStructure> dataStructures = new LinkedHashMap<>();
+    private final Map<String, Process> processes = new LinkedHashMap<>();
+    private final Map<String, ExternalEntity> externalEntities = new LinkedHashMap<>();
+    private final Map<String, DataStore> dataStores = new LinkedHashMap<>();
+    
+    private SyntheticModel(String projectName) {
+        this.projectName = projectName;
+    }
+    
+    /**
+     * Creates a model
+     *
+     * @param processCount The approximate number of processes, rounded up to whole modules
+     * @param seed The seed of the random generator linking the modules
+     * @return The model
+     */
+    public static SyntheticModel create(int processCount, long seed) {
+        SyntheticModel model = new SyntheticModel("synthetic-" + processCount);
+        int modules = Math.max(1, (processCount + PROCESSES_PER_MODULE - 1) / PROCESSES_PER_MODULE);
+        
+        for (int module = 0; module < modules; module++) {
+            model.addModule(module);
+        }
+        
+        Random random = new Random(seed);
+        for (int module = 0; module < modules && modules > 1; module++) {
+            for (int link = 0; link < CROSS_MODULE_LINKS; link++) {
+                int other = random.nextInt(modules);
+                if (other != module) {
+                    model.processes.get(serviceType(module) + ".sync" + link)
+                            .addInputDataStructureId(dtoType(other));
+                }
+            }
+        }
+        
+        return model;
+    }
+    
+    public Map<String, DataStructure> getDataStructures() {
+        return dataStructures;
+    }
+    
+    public Map<String, Process> getProcesses() {
+        return processes;
+    }
+    
+    public Map<String, ExternalEntity> getExternalEntities() {
+        return externalEntities;
+    }
+    
+    public Map<String, DataStore> getDataStores() {
+        return dataStores;
+    }
+    
+    /**
+     * Creates a detector for the flows between the components of the model
+     */
+    public DataFlowDetector createDetector(int parallelism) {
+        return new DataFlowDetector(dataStructures, processes, externalEntities, dataStores, parallelism);
+    }
+    
+    /**
+     * Creates an analysis result holding the components of the model and the given flows
+     */
+    public AnalysisResult toResult(List<DataFlow> dataFlows) {
+        AnalysisResult result = new AnalysisResult();
+        result.setProjectName(projectName);
+        result.setProjectDescription("Analysis of " + projectName);
+        dataStructures.values().forEach(result::addDataStructure);
+        processes.values().forEach(result::addProcess);
+        externalEntities.values().forEach(result::addExternalEntity);
+        dataStores.values().forEach(result::addDataStore);
+        dataFlows.forEach(result::addDataFlow);
+        return result;
+    }
+    
+    private void addModule(int module) {
+        String dto = dtoType(module);
+        String entity = entityType(module);
+        addDataStructure(dto, DataStructure.DataStructureType.DTO);
+        addDataStructure(entity, DataStructure.DataStructureType.ENTITY);
+        
+        // Controller methods exchanging the DTO with the web client
+        String controller = typeName(module, "Controller");
+        addProcess(controller + ".get", null, dto);
+        addProcess(controller + ".create", dto, dto);
+        addProcess(controller + ".update", dto, dto);
+        
+        // Service methods mapping the DTO to the entity and back
+        String service = serviceType(module);
+        addProcess(service + ".save", dto, entity);
+        addProcess(service + ".find", entity, dto);
+        for (int link = 0; link < CROSS_MODULE_LINKS; link++) {
+            addProcess(service + ".sync" + link, null, dto);
+        }
+        
+        // Repository methods writing and reading the entity
+        String repository = typeName(module, "Repository");
+        addProcess(repository + ".save", entity, entity);
+        addProcess(repository + ".findById", null, entity);
+        
+        // Client method calling a remote service
+        String client = typeName(module, "Client");
+        addProcess(client + ".send", dto, dto);
+        
+        ExternalEntity webClient = new ExternalEntity("WebClient-" + simpleName(controller));
+        webClient.setType(ExternalEntity.ExternalEntityType.USER);
+        webClient.addProtocol("HTTP/HTTPS");
+        externalEntities.put(webClient.getName(), webClient);
+        
+        ExternalEntity remoteService = new ExternalEntity("Service-" + simpleName(client));
+        remoteService.setType(ExternalEntity.ExternalEntityType.SERVICE);
+        remoteService.addProtocol("HTTP/HTTPS");
+        externalEntities.put(remoteService.getName(), remoteService);
+        
+        DataStore dataStore = new DataStore(repository, simpleName(repository));
+        dataStore.setType(DataStore.DataStoreType.DATABASE);
+        dataStores.put(dataStore.getId(), dataStore);
+    }
+    
+    private void addDataStructure(String qualifiedName, DataStructure.DataStructureType type) {
+        DataStructure dataStructure = new DataStructure(simpleName(qualifiedName), qualifiedName);
+        dataStructure.setType(type);
+        dataStructures.put(qualifiedName, dataStructure);
+    }
+    
+    private void addProcess(String id, String input, String output) {
+        String name = id.substring(id.lastIndexOf('.', id.lastIndexOf('.') - 1) + 1);
+        Process process = new Process(id, name);
+        if (input != null) {
+            process.addInputDataStructureId(input);
+        }
+        process.addOutputDataStructureId(output);
+        processes.put(id, process);
+    }
+    
+    private static String dtoType(int module) {
+        return typeName(module, "DTO");
+    }
+    
+    private static String entityType(int module) {
+        return typeName(module, "Entity");
+    }
+    
+    private static String serviceType(int module) {
+        return typeName(module, "Service");
+    }
+    
+    private static String typeName(int module, String suffix) {
+        return "com.example.module" + module + ".Item" + module + suffix;
+    }
+    
+    private static String simpleName(String qualifiedName) {
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,160 @@
+package com.threatmodel.analyzer.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A module of a synthetic project: the controller, service, repository, DTO, entity, clients
+ * and cache of one business domain, all in one package.
+ *
+ * Everything except the names is drawn from a random generator seeded with the project seed
+ * and the module number, so a module is the same whichever other modules are generated and
+ * in whichever order.
+ */
+public class SyntheticModule {
+    
+    private static final List<String> DOMAINS = Arrays.asList(
+            "Order", "Customer", "Payment", "Invoice", "Shipment", "Account", "Product", "Review",
+            "Ticket", "Booking", "Inventory", "Subscription", "Profile", "Claim", "Policy", "Transfer");
+    
+    // Field names of the data structures. The sensitive ones are flagged by the extractor.
+    private static final List<String> FIELD_NAMES = Arrays.asList(
+            "name", "email", "status", "description", "amount", "currency", "createdAt", "updatedAt",
+            "reference", "quantity", "country", "phoneNumber", "address", "comment", "priority");
+    private static final List<String> SENSITIVE_FIELD_NAMES = Arrays.asList(
+            "password", "apiToken", "ssn", "creditCardNumber", "secretKey", "authCode");
+    
+    private static final int MIN_FIELDS = 3;
+    private static final int MAX_FIELDS = 10;
+    private static final int MIN_OPERATIONS = 2;
+    private static final int MAX_OPERATIONS = 8;
+    private static final int MAX_PEERS = 3;
+    
+    private final int number;
+    private final List<String> fields;
+    private final List<String> sensitiveFields;
+    private final int operations;
+    private final List<SyntheticModule> peers;
+    private final boolean documented;
+    
+    private SyntheticModule(int number, List<String> fields, List<String> sensitiveFields, int operations,
+            List<SyntheticModule> peers, boolean documented) {
+        this.number = number;
+        this.fields = fields;
+        this.sensitiveFields = sensitiveFields;
+        this.operations = operations;
+        this.peers = peers;
+        this.documented = documented;
+    }
+    
+    /**
+     * Creates a module
+     *
+     * @param number The number of the module in the project
+     * @param moduleCount The number of modules in the project, from which the peers are picked
+     * @param seed The seed of the project
+     * @return The module
+     */
+    public static SyntheticModule create(int number, int moduleCount, long seed) {
+        Random random = new Random(seed * 0x9E3779B97F4A7C15L + number);
+        
+        List<String> fields = pick(FIELD_NAMES, MIN_FIELDS + random.nextInt(MAX_FIELDS - MIN_FIELDS + 1), random);
+        List<String> sensitiveFields = pick(SENSITIVE_FIELD_NAMES, 1 + random.nextInt(2), random);
+        int operations = MIN_OPERATIONS + random.nextInt(MAX_OPERATIONS - MIN_OPERATIONS + 1);
+        
+        // Other modules whose DTOs the service consumes
+        List<SyntheticModule> peers = new ArrayList<>();
+        int peerCount = moduleCount > 1 ? random.nextInt(MAX_PEERS + 1) : 0;
+        for (int i = 0; i < peerCount; i++) {
+            int peer = random.nextInt(moduleCount);
+            if (peer != number && peers.stream().noneMatch(p -> p.number == peer)) {
+                peers.add(named(peer));
+            }
+        }
+        
+        return new SyntheticModule(number, fields, sensitiveFields, operations, peers, random.nextInt(4) != 0);
+    }
+    
+    /**
+     * Creates a module that is only referred to by name
+     */
+    private static SyntheticModule named(int number) {
+        return new SyntheticModule(number, Collections.emptyList(), Collections.emptyList(), 0,
+                Collections.emptyList(), false);
+    }
+    
+    private static List<String> pick(List<String> names, int count, Random random) {
+        List<String> shuffled = new ArrayList<>(names);
+        Collections.shuffle(shuffled, random);
+        return new ArrayList<>(shuffled.subList(0, Math.min(count, shuffled.size())));
+    }
+    
+    public int getNumber() {
+        return number;
+    }
+    
+    /**
+     * Gets the package of the module, e.g. {@code com.synthetic.order.m16}
+     */
+    public String getPackageName() {
+        return "com.synthetic." + getDomain().toLowerCase() + ".m" + number;
+    }
+    
+    /**
+     * Gets the prefix of the type names of the module, e.g. {@code Order16}
+     */
+    public String getBaseName() {
+        return getDomain() + number;
+    }
+    
+    /**
+     * Gets the qualified name of a type of the module
+     *
+     * @param suffix The suffix of the type name, e.g. {@code DTO}
+     */
+    public String qualify(String suffix) {
+        return getPackageName() + "." + getBaseName() + suffix;
+    }
+    
+    private String getDomain() {
+        return DOMAINS.get(number % DOMAINS.size());
+    }
+    
+    /**
+     * Gets the names of the non-sensitive fields of the DTO and the entity
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+    
+    /**
+     * Gets the names of the fields that look like credentials or personal data
+     */
+    public List<String> getSensitiveFields() {
+        return sensitiveFields;
+    }
+    
+    /**
+     * Gets the number of business operations of the service, each exposed by the controller
+     */
+    public int getOperations() {
+        return operations;
+    }
+    
+    /**
+     * Gets the other modules whose DTOs the service consumes
+     */
+    public List<SyntheticModule> getPeers() {
+        return peers;
+    }
+    
+    /**
+     * Checks if the types and methods of the module have Javadoc comments
+     */
+    public boolean isDocumented() {
+        return documented;
+    }
+}
@@ -0,0 +1,131 @@
+package com.threatmodel.analyzer.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Generates a synthetic Spring-style project of a given number of source files, used to
+ * measure the analyzer at scale.
+ *
+ * The project is made of modules of {@value #FILES_PER_MODULE} files (see {@link SyntheticSources.Kind}).
+ * Modules are generated independently from the seed, so the same seed and size always yield
+ * the same files, and a larger project contains the modules of a smaller one apart from the
+ * cross-module references. Modules are written in parallel and nothing is kept in memory,
+ * so projects of a million files can be generated. The project is only generated into a new or
+ * empty directory, so that it never mixes with the files of an earlier project.
+ */
+@Command(name = "synthetic-project",
+         mixinStandardHelpOptions = true,
+         description = "Generates a synthetic Spring-style Java project for benchmarks and scaling experiments")
+public class SyntheticProjectGenerator implements Callable<Integer> {
+    
+    /**
+     * Number of source files of a complete module
+     */
+    public static final int FILES_PER_MODULE = SyntheticSources.Kind.values().length;
+    
+    /**
+     * Seed used when none is given, shared by all benchmarks
+     */
+    public static final long DEFAULT_SEED = 42;
+    
+    @Parameters(index = "0", description = "Root directory of the generated project")
+    private Path projectRoot;
+    
+    @Option(names = {"-n", "--files"}, description = "Number of Java files to generate (default: ${DEFAULT-VALUE})")
+    private int files = 1000;
+    
+    @Option(names = {"-s", "--seed"}, description = "Seed of the generated content (default: ${DEFAULT-VALUE})")
+    private long seed = DEFAULT_SEED;
+    
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new SyntheticProjectGenerator()).execute(args));
+    }
+    
+    @Override
+    public Integer call() throws IOException {
+        long start = System.nanoTime();
+        try {
+            generate(projectRoot, files, seed);
+        } catch (DirectoryNotEmptyException e) {
+            System.err.println("Not generating into " + projectRoot + ": the directory is not empty");
+            return 1;
+        }
+        System.out.printf("Generated %d Java files in %s in %d ms%n",
+                files, projectRoot, (System.nanoTime() - start) / 1_000_000);
+        return 0;
+    }
+    
+    /**
+     * Generates a project
+     *
+     * @param projectRoot The root directory of the project, created if needed
+     * @param files The number of Java files to generate
+     * @param seed The seed of the generated content
+     * @throws DirectoryNotEmptyException If the root directory already has content
+     */
+    public static void generate(Path projectRoot, int files, long seed) throws IOException {
+        if (Files.isDirectory(projectRoot)) {
+            try (Stream<Path> entries = Files.list(projectRoot)) {
+                if (entries.findAny().isPresent()) {
+                    throw new DirectoryNotEmptyException(projectRoot.toString());
+                }
+            }
+        }
+        
+        Path sourceRoot = projectRoot.resolve("src/main/java");
+        Files.createDirectories(sourceRoot);
+        writePom(projectRoot, files);
+        
+        int modules = (files + FILES_PER_MODULE - 1) / FILES_PER_MODULE;
+        try {
+            IntStream.range(0, modules).parallel().forEach(number -> {
+                int moduleFiles = Math.min(FILES_PER_MODULE, files - number * FILES_PER_MODULE);
+                writeModule(sourceRoot, SyntheticModule.create(number, modules, seed), moduleFiles);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Writes the first files of a module, in the order of {@link SyntheticSources.Kind}
+     */
+    private static void writeModule(Path sourceRoot, SyntheticModule module, int moduleFiles) {
+        try {
+            Path packageDirectory = sourceRoot.resolve(module.getPackageName().replace('.', '/'));
+            Files.createDirectories(packageDirectory);
+            
+            SyntheticSources.Kind[] kinds = SyntheticSources.Kind.values();
+            for (int i = 0; i < moduleFiles; i++) {
+                Path file = packageDirectory.resolve(module.getBaseName() + kinds[i].getSuffix() + ".java");
+                Files.write(file, SyntheticSources.generate(module, kinds[i]).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static void writePom(Path projectRoot, int files) throws IOException {
+        String pom = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" +
+                "    <modelVersion>4.0.0</modelVersion>\n" +
+                "    <groupId>com.synthetic</groupId>\n" +
+                "    <artifactId>synthetic-" + files + "</artifactId>\n" +
+                "    <version>1.0</version>\n" +
+                "    <description>Synthetic Spring application generated for benchmarks</description>\n" +
+                "</project>\n";
+        Files.write(projectRoot.resolve("pom.xml"), pom.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,394 @@
+package com.threatmodel.analyzer.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the sources of the Spring-style classes of a synthetic module. The classes follow
+ * the patterns the analyzer looks for: REST controllers with mapped endpoints, services,
+ * JPA repositories, DTOs and entities with sensitive-looking fields, Feign and Kafka clients
+ * and a cache backed by a data source.
+ */
+public final class SyntheticSources {
+    
+    /**
+     * The kinds of source files of a module, in the order they are generated
+     */
+    public enum Kind {
+        DTO("DTO"),
+        ENTITY("Entity"),
+        REPOSITORY("Repository"),
+        SERVICE("Service"),
+        CONTROLLER("Controller"),
+        FEIGN_CLIENT("FeignClient"),
+        KAFKA_CLIENT("KafkaClient"),
+        CACHE_STORE("CacheStore");
+        
+        private final String suffix;
+        
+        Kind(String suffix) {
+            this.suffix = suffix;
+        }
+        
+        /**
+         * Gets the suffix of the type name, e.g. {@code Controller}
+         */
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+    
+    private final SyntheticModule module;
+    private final String base;
+    private final StringBuilder source = new StringBuilder(4096);
+    
+    private SyntheticSources(SyntheticModule module) {
+        this.module = module;
+        this.base = module.getBaseName();
+    }
+    
+    /**
+     * Generates the source of a type of a module
+     *
+     * @param module The module
+     * @param kind The kind of type
+     * @return The source of the type
+     */
+    public static String generate(SyntheticModule module, Kind kind) {
+        SyntheticSources sources = new SyntheticSources(module);
+        switch (kind) {
+            case DTO:
+                sources.dto();
+                break;
+            case ENTITY:
+                sources.entity();
+                break;
+            case REPOSITORY:
+                sources.repository();
+                break;
+            case SERVICE:
+                sources.service();
+                break;
+            case CONTROLLER:
+                sources.controller(module.getOperations());
+                break;
+            case FEIGN_CLIENT:
+                sources.feignClient();
+                break;
+            case KAFKA_CLIENT:
+                sources.kafkaClient();
+                break;
+            default:
+                sources.cacheStore();
+                break;
+        }
+        return sources.source.toString();
+    }
+    
+    /**
+     * Generates a REST controller with a given number of endpoints, regardless of the number
+     * of operations of the module
+     */
+    public static String controller(SyntheticModule module, int endpoints) {
+        SyntheticSources sources = new SyntheticSources(module);
+        sources.controller(endpoints);
+        return sources.source.toString();
+    }
+    
+    private void dto() {
+        header("java.io.Serializable");
+        javadoc("Data transferred to and from the clients of the " + base + " API");
+        line("public class " + base + "DTO implements Serializable {");
+        line("    private Long id;");
+        fieldDeclarations();
+        line("");
+        line("    public " + base + "DTO() {");
+        line("    }");
+        line("");
+        line("    public " + base + "DTO(Long id, String name) {");
+        line("        this.id = id;");
+        line("    }");
+        accessors("id", "Long");
+        line("}");
+    }
+    
+    private void entity() {
+        header("javax.persistence.Entity", "javax.persistence.Id", "javax.persistence.Table",
+                "javax.persistence.Column");
+        javadoc("Persistent state of a " + base);
+        line("@Entity");
+        line("@Table(name = \"" + base.toLowerCase() + "\")");
+        line("public class " + base + "Entity {");
+        line("    @Id");
+        line("    private Long id;");
+        fieldDeclarations();
+        accessors("id", "Long");
+        for (String field : module.getFields()) {
+            accessors(field, "String");
+        }
+        line("}");
+    }
+    
+    private void repository() {
+        header("java.util.List", "java.util.Optional", "org.springframework.data.jpa.repository.JpaRepository",
+                "org.springframework.stereotype.Repository");
+        javadoc("Stores the " + base + " entities");
+        line("@Repository");
+        line("public interface " + base + "Repository extends JpaRepository<" + base + "Entity, Long> {");
+        line("");
+        methodJavadoc("Finds an entity by its reference");
+        line("    Optional<" + base + "Entity> findByReference(String reference);");
+        line("");
+        methodJavadoc("Finds the entities with a status");
+        line("    List<" + base + "Entity> findAllByStatus(String status);");
+        line("");
+        line("    " + base + "Entity save(" + base + "Entity entity);");
+        line("");
+        line("    void deleteByReference(String reference);");
+        line("}");
+    }
+    
+    private void service() {
+        List<String> imports = new ArrayList<>();
+        imports.add("java.util.List");
+        imports.add("java.util.Optional");
+        imports.add("java.util.stream.Collectors");
+        imports.add("org.springframework.stereotype.Service");
+        imports.add("org.springframework.transaction.annotation.Transactional");
+        for (SyntheticModule peer : module.getPeers()) {
+            imports.add(peer.qualify("DTO"));
+        }
+        header(imports.toArray(new String[0]));
+        javadoc("Business logic of the " + base + " domain");
+        line("@Service");
+        line("public class " + base + "Service {");
+        line("    private final " + base + "Repository repository;");
+        line("    private final " + base + "FeignClient remoteClient;");
+        line("    private final " + base + "KafkaClient eventClient;");
+        line("    private final " + base + "CacheStore cache;");
+        line("");
+        line("    public " + base + "Service(" + base + "Repository repository, " + base + "FeignClient remoteClient,");
+        line("            " + base + "KafkaClient eventClient, " + base + "CacheStore cache) {");
+        line("        this.repository = repository;");
+        line("        this.remoteClient = remoteClient;");
+        line("        this.eventClient = eventClient;");
+        line("        this.cache = cache;");
+        line("    }");
+        line("");
+        methodJavadoc("Saves a " + base + " and publishes the change");
+        line("    @Transactional");
+        line("    public " + base + "Entity save" + base + "(" + base + "DTO request) {");
+        line("        " + base + "Entity entity = toEntity(request);");
+        line("        " + base + "Entity saved = repository.save(entity);");
+        line("        cache.put(saved.getId(), saved);");
+        line("        eventClient.publish(request);");
+        line("        return saved;");
+        line("    }");
+        line("");
+        methodJavadoc("Finds a " + base + " by its reference");
+        line("    public " + base + "DTO find" + base + "(String reference) {");
+        line("        return repository.findByReference(reference)");
+        line("                .map(this::toDto)");
+        line("                .orElseGet(() -> remoteClient.fetch(reference));");
+        line("    }");
+        line("");
+        line("    public List<" + base + "DTO> findAll(String status) {");
+        line("        return repository.findAllByStatus(status).stream()");
+        line("                .map(this::toDto)");
+        line("                .collect(Collectors.toList());");
+        line("    }");
+        for (int operation = 0; operation < module.getOperations(); operation++) {
+            line("");
+            methodJavadoc("Runs operation " + operation + " on a " + base);
+            line("    public " + base + "DTO process" + operation + "(" + base + "DTO request) {");
+            line("        Optional<" + base + "Entity> existing = repository.findByReference(request.getId().toString());");
+            line("        if (!existing.isPresent()) {");
+            line("            return request;");
+            line("        }");
+            line("        " + base + "Entity entity = existing.get();");
+            line("        return toDto(repository.save(entity));");
+            line("    }");
+        }
+        for (SyntheticModule peer : module.getPeers()) {
+            String peerDto = peer.getBaseName() + "DTO";
+            line("");
+            methodJavadoc("Updates the " + base + " referenced by a " + peer.getBaseName());
+            line("    public " + base + "DTO updateFrom" + peer.getBaseName() + "(" + peerDto + " event) {");
+            line("        " + base + "DTO dto = new " + base + "DTO(event.getId(), \"" + peer.getBaseName() + "\");");
+            line("        save" + base + "(dto);");
+            line("        return dto;");
+            line("    }");
+        }
+        line("");
+        line("    private " + base + "Entity toEntity(" + base + "DTO dto) {");
+        line("        " + base + "Entity entity = new " + base + "Entity();");
+        line("        entity.setId(dto.getId());");
+        line("        return entity;");
+        line("    }");
+        line("");
+        line("    private " + base + "DTO toDto(" + base + "Entity entity) {");
+        line("        return new " + base + "DTO(entity.getId(), entity.toString());");
+        line("    }");
+        line("}");
+    }
+    
+    private void controller(int endpoints) {
+        header("java.util.List", "org.springframework.http.ResponseEntity",
+                "org.springframework.web.bind.annotation.*");
+        javadoc("REST API of the " + base + " domain");
+        line("@RestController");
+        line("@RequestMapping(\"/api/" + base.toLowerCase() + "\")");
+        line("public class " + base + "Controller {");
+        line("    private final " + base + "Service service;");
+        line("");
+        line("    public " + base + "Controller(" + base + "Service service) {");
+        line("        this.service = service;");
+        line("    }");
+        line("");
+        methodJavadoc("Gets a " + base + " by its reference");
+        line("    @GetMapping(\"/{reference}\")");
+        line("    public ResponseEntity<" + base + "DTO> get(@PathVariable String reference) {");
+        line("        " + base + "DTO dto = service.find" + base + "(reference);");
+        line("        return dto == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(dto);");
+        line("    }");
+        line("");
+        line("    @GetMapping");
+        line("    public List<" + base + "DTO> list(@RequestParam(\"status\") String status) {");
+        line("        return service.findAll(status);");
+        line("    }");
+        line("");
+        methodJavadoc("Creates a " + base);
+        line("    @PostMapping");
+        line("    public " + base + "DTO create(@RequestBody " + base + "DTO request) {");
+        line("        if (request == null) {");
+        line("            throw new IllegalArgumentException(\"Missing request body\");");
+        line("        }");
+        line("        service.save" + base + "(request);");
+        line("        return request;");
+        line("    }");
+        for (int endpoint = 0; endpoint < endpoints; endpoint++) {
+            line("");
+            methodJavadoc("Runs operation " + endpoint + " on a " + base);
+            line("    @PutMapping(\"/operations/" + endpoint + "\")");
+            line("    public " + base + "DTO operation" + endpoint + "(@RequestBody " + base + "DTO request) {");
+            line("        return service.process" + (endpoint % Math.max(1, module.getOperations())) + "(request);");
+            line("    }");
+        }
+        line("}");
+    }
+    
+    private void feignClient() {
+        header("org.springframework.cloud.openfeign.FeignClient",
+                "org.springframework.web.bind.annotation.GetMapping",
+                "org.springframework.web.bind.annotation.PathVariable");
+        javadoc("Client of the remote " + base + " service");
+        line("@FeignClient(name = \"" + base.toLowerCase() + "-remote\", url = \"${remote." + base.toLowerCase() + ".url}\")");
+        line("public interface " + base + "FeignClient {");
+        line("");
+        line("    @GetMapping(\"/remote/" + base.toLowerCase() + "/{reference}\")");
+        line("    " + base + "DTO fetch(@PathVariable(\"reference\") String reference);");
+        line("}");
+    }
+    
+    private void kafkaClient() {
+        header("org.springframework.kafka.annotation.KafkaListener", "org.springframework.kafka.core.KafkaTemplate",
+                "org.springframework.stereotype.Component");
+        javadoc("Publishes and consumes the " + base + " events");
+        line("@Component");
+        line("public class " + base + "KafkaClient {");
+        line("    private static final String TOPIC = \"" + base.toLowerCase() + "-events\";");
+        line("");
+        line("    private final KafkaTemplate<String, " + base + "DTO> kafkaTemplate;");
+        line("");
+        line("    public " + base + "KafkaClient(KafkaTemplate<String, " + base + "DTO> kafkaTemplate) {");
+        line("        this.kafkaTemplate = kafkaTemplate;");
+        line("    }");
+        line("");
+        methodJavadoc("Publishes a change");
+        line("    public void publish(" + base + "DTO event) {");
+        line("        kafkaTemplate.send(TOPIC, event.getId().toString(), event);");
+        line("    }");
+        line("");
+        line("    @KafkaListener(topics = TOPIC)");
+        line("    public " + base + "DTO onEvent(" + base + "DTO event) {");
+        line("        return event;");
+        line("    }");
+        line("}");
+    }
+    
+    private void cacheStore() {
+        header("java.util.Map", "java.util.concurrent.ConcurrentHashMap", "javax.sql.DataSource",
+                "org.springframework.stereotype.Component");
+        javadoc("Caches the " + base + " entities in front of the database");
+        line("@Component");
+        line("public class " + base + "CacheStore {");
+        line("    private final DataSource dataSource;");
+        line("    private final Map<Long, " + base + "Entity> entries = new ConcurrentHashMap<>();");
+        line("");
+        line("    public " + base + "CacheStore(DataSource dataSource) {");
+        line("        this.dataSource = dataSource;");
+        line("    }");
+        line("");
+        line("    public void put(Long id, " + base + "Entity entity) {");
+        line("        entries.put(id, entity);");
+        line("    }");
+        line("");
+        line("    public " + base + "Entity get(Long id) {");
+        line("        return entries.get(id);");
+        line("    }");
+        line("}");
+    }
+    
+    private void header(String... imports) {
+        line("package " + module.getPackageName() + ";");
+        line("");
+        for (String importName : imports) {
+            line("import " + importName + ";");
+        }
+        line("");
+    }
+    
+    private void fieldDeclarations() {
+        for (String field : module.getFields()) {
+            if (module.isDocumented()) {
+                line("    /** The " + field + " of the " + base + " */");
+            }
+            line("    private String " + field + ";");
+        }
+        for (String field : module.getSensitiveFields()) {
+            line("    private String " + field + ";");
+        }
+    }
+    
+    private void accessors(String field, String type) {
+        String property = Character.toUpperCase(field.charAt(0)) + field.substring(1);
+        line("");
+        line("    public " + type + " get" + property + "() {");
+        line("        return " + field + ";");
+        line("    }");
+        line("");
+        line("    public void set" + property + "(" + type + " " + field + ") {");
+        line("        this." + field + " = " + field + ";");
+        line("    }");
+    }
+    
+    private void javadoc(String text) {
+        if (module.isDocumented()) {
+            line("/**");
+            line(" * " + text);
+            line(" */");
+        }
+    }
+    
+    private void methodJavadoc(String text) {
+        if (module.isDocumented()) {
+            line("    /**");
+            line("     * " + text);
+            line("     */");
+        }
+    }
+    
+    private void line(String text) {
+        source.append(text).append('\n');
+    }
+}
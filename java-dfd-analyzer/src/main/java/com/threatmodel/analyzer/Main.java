@@ -1,19 +1,30 @@
 package com.threatmodel.analyzer;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.threatmodel.analyzer.core.AnalysisMetrics;
+import com.threatmodel.analyzer.core.AnalyzerOptions;
 import com.threatmodel.analyzer.core.ProjectAnalyzer;
+import com.threatmodel.analyzer.core.ProjectWatcher;
+import com.threatmodel.analyzer.daemon.AnalysisDaemon;
+import com.threatmodel.analyzer.jfr.AnalysisRecording;
 import com.threatmodel.analyzer.model.AnalysisResult;
-import com.threatmodel.analyzer.output.DFDGenerator;
 import com.threatmodel.analyzer.output.OutputGenerator;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
 
 @Command(name = "java-dfd-analyzer", 
          mixinStandardHelpOptions = true, 
@@ -22,18 +33,107 @@ import picocli.CommandLine.Option;
 public class Main implements Callable<Integer> {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
 
-    @Option(names = {"-p", "--path"}, description = "Path to Java project root directory", required = true)
+    @Spec
+    private CommandSpec spec;
+
+    @Option(names = {"-p", "--path"}, description = "Path to Java project root directory (required unless --daemon)")
     private Path projectPath;
 
-    @Option(names = {"-o", "--output"}, description = "Output directory for generated files", required = true)
+    @Option(names = {"-o", "--output"}, description = "Output directory for generated files (required unless --daemon)")
     private Path outputPath;
 
-    @Option(names = {"-f", "--format"}, description = "Output format (json, csv, markdown, html)", defaultValue = "markdown")
-    private String outputFormat;
+    @Option(names = {"-f", "--format"}, split = ",", description = "Comma-separated output formats (json, ndjson, csv, markdown, html)", defaultValue = "markdown")
+    private List<String> outputFormats;
+
+    @Option(names = {"--pretty-json"}, description = "Indent JSON output instead of writing it compactly")
+    private boolean prettyJson;
 
     @Option(names = {"--generate-dfd"}, description = "Generate Data Flow Diagram", defaultValue = "true")
     private boolean generateDfd;
 
+    @Option(names = {"--aggregate-edges"}, description = "Draw parallel flows between the same two nodes as one labelled edge in the data flow diagrams")
+    private boolean aggregateEdges;
+
+    @Option(names = {"--dfd-levels"}, description = "Also generate leveled data flow diagrams: a context diagram (level 0) and one process per package or class (level 1)")
+    private boolean leveledDfd;
+
+    @Option(names = {"--dfd-group-by"}, description = "Grouping of methods on level 1 of the leveled diagrams: package or class (default: ${DEFAULT-VALUE})")
+    private String dfdGroupBy = "package";
+
+    @Option(names = {"--dfd-expand"}, split = ",", description = "Level-1 groups (package or class names, or 'all') to draw method by method in level-2 diagrams; implies --dfd-levels")
+    private List<String> dfdExpandedGroups = new ArrayList<>();
+
+    @Option(names = {"-t", "--threads"}, description = "Number of worker threads used to parse source files and write the output (default: ${DEFAULT-VALUE})")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    // Deprecated: the analysis no longer uses a type solver. Still accepted so that existing scripts keep working.
+    @Option(names = {"--type-solver-cache-size"}, hidden = true)
+    private Long typeSolverCacheSize;
+
+    @Option(names = {"--include"}, split = ",", description = "Globs of the source files to analyze, relative to the project root (default: all Java files)")
+    private List<String> includes = new ArrayList<>();
+
+    @Option(names = {"--exclude"}, split = ",", description = "Globs of files and directories to skip, relative to the project root")
+    private List<String> excludes = new ArrayList<>();
+
+    @Option(names = {"--no-gitignore"}, description = "Analyze files even if they are ignored by the project's .gitignore files")
+    private boolean noGitignore;
+
+    @Option(names = {"--no-default-excludes"}, description = "Also analyze hidden directories, node_modules and build output directories such as target/ and build/")
+    private boolean noDefaultExcludes;
+
+    @Option(names = {"--skip-tests"}, description = "Skip test sources such as src/test/java and *Test.java")
+    private boolean skipTests;
+
+    @Option(names = {"--compact-flows"}, description = "Store data flows in a compact columnar form that needs much less memory for very large projects")
+    private boolean compactFlows;
+
+    @Option(names = {"--max-file-size"}, description = "Size in bytes above which files are parsed without their method bodies, -1 for unlimited (default: ${DEFAULT-VALUE})")
+    private long maxFileSize = AnalyzerOptions.DEFAULT_MAX_FILE_SIZE;
+
+    @Option(names = {"--file-time-budget"}, description = "Milliseconds allowed for each attempt to parse one file; a file that runs out of time is parsed again without its method bodies, then skipped. -1 for unlimited (default: ${DEFAULT-VALUE})")
+    private long fileTimeBudget = AnalyzerOptions.DEFAULT_FILE_TIME_BUDGET;
+
+    @Option(names = {"--lean"}, description = "Parse only the declarations of each file, skipping method bodies and comments other than Javadoc, which is several times faster and needs less memory")
+    private boolean lean;
+
+    @Option(names = {"--no-prefilter"}, description = "Parse every file in full and run all extractors on it, instead of deciding from a scan of its bytes which work it needs")
+    private boolean noPrefilter;
+
+    @Option(names = {"--print-metrics"}, description = "Print the time taken by each phase, the parse throughput and the slowest files (always written to " + AnalysisMetrics.FILE_NAME + ")")
+    private boolean printMetrics;
+
+    @Option(names = {"--slowest-files"}, description = "Number of slowest files listed in the metrics (default: ${DEFAULT-VALUE})")
+    private int slowestFiles = AnalyzerOptions.DEFAULT_SLOWEST_FILE_COUNT;
+
+    @Option(names = {"--jfr"}, arity = "0..1", fallbackValue = "", paramLabel = "<file>",
+            description = "Record the run with Java Flight Recorder, including the analyzer's parse, extraction, flow detection and output events (default file: <output>/" + AnalysisRecording.FILE_NAME + ")")
+    private String jfrFile;
+
+    @Option(names = {"--cache"}, description = "Reuse extractions of unchanged files from previous runs")
+    private boolean cache;
+
+    @Option(names = {"--cache-dir"}, description = "Directory of the extraction cache (default: <output>/.dfd-cache); implies --cache")
+    private Path cacheDir;
+
+    @Option(names = {"--watch"}, description = "Keep running and regenerate the output whenever Java files change")
+    private boolean watch;
+
+    @Option(names = {"--watch-debounce"}, description = "Milliseconds without further changes before re-analyzing in watch mode (default: ${DEFAULT-VALUE})", defaultValue = "500")
+    private long watchDebounce;
+
+    @Option(names = {"--daemon"}, description = "Run as a resident analysis server that accepts jobs from AnalysisClient on a local port")
+    private boolean daemon;
+
+    @Option(names = {"--daemon-port"}, description = "Loopback port of the analysis daemon (default: ${DEFAULT-VALUE})")
+    private int daemonPort = AnalysisDaemon.DEFAULT_PORT;
+
+    @Option(names = {"--daemon-max-projects"}, description = "Number of projects whose analyzers the daemon keeps resident; the least recently analyzed one is released first (default: ${DEFAULT-VALUE})")
+    private int daemonMaxProjects = AnalysisDaemon.DEFAULT_MAX_PROJECTS;
+
+    @Option(names = {"--daemon-token-file"}, description = "File the daemon writes its request token to, readable by the user only (default: ~/.dfd-analyzer/daemon-<port>.token)")
+    private Path daemonTokenFile;
+
     public static void main(String[] args) {
         int exitCode = new CommandLine(new Main()).execute(args);
         System.exit(exitCode);
@@ -41,28 +141,154 @@ public class Main implements Callable<Integer> {
 
     @Override
     public Integer call() throws Exception {
+        if (typeSolverCacheSize != null) {
+            logger.warn("--type-solver-cache-size is deprecated and has no effect, as the analysis does not use a type solver");
+        }
+        if (daemon) {
+            return runDaemon();
+        }
+        if (projectPath == null || outputPath == null) {
+            throw new ParameterException(spec.commandLine(), "Missing required options: '--path', '--output'");
+        }
+        if (!dfdGroupBy.equalsIgnoreCase("package") && !dfdGroupBy.equalsIgnoreCase("class")) {
+            throw new ParameterException(spec.commandLine(), "Invalid value for option '--dfd-group-by': expected package or class");
+        }
+        
         try {
             logger.info("Starting analysis of Java project at: {}", projectPath);
             
             // Analyze the project
-            ProjectAnalyzer analyzer = new ProjectAnalyzer(projectPath);
-            AnalysisResult result = analyzer.analyze();
-            
-            // Generate output
-            OutputGenerator outputGenerator = new OutputGenerator(result, outputPath, outputFormat);
-            outputGenerator.generate();
-            
-            // Generate DFD if requested
-            if (generateDfd) {
-                DFDGenerator dfdGenerator = new DFDGenerator(result, outputPath);
-                dfdGenerator.generate();
+            AnalyzerOptions options = createOptions();
+            if (cacheDir != null) {
+                options.setCacheDirectory(cacheDir);
+            } else if (cache) {
+                options.setCacheDirectory(outputPath.resolve(".dfd-cache"));
             }
             
-            logger.info("Analysis completed successfully. Results saved to: {}", outputPath);
+            try (AnalysisRecording recording = startRecording();
+                 ProjectAnalyzer analyzer = new ProjectAnalyzer(projectPath, options)) {
+                AnalysisResult result = analyzer.analyze();
+                
+                generateOutput(result, analyzer.getMetrics());
+                dumpRecording(recording);
+                
+                logger.info("Analysis completed successfully. Results saved to: {}", outputPath);
+                
+                // Keep the analysis up to date until the process is stopped
+                if (watch) {
+                    List<Path> ignoredPaths = new ArrayList<>();
+                    ignoredPaths.add(outputPath);
+                    if (options.getCacheDirectory() != null) {
+                        ignoredPaths.add(options.getCacheDirectory());
+                    }
+                    ProjectWatcher watcher = new ProjectWatcher(analyzer, projectPath, watchDebounce, ignoredPaths);
+                    watcher.watch(updated -> {
+                        generateOutput(updated, analyzer.getMetrics());
+                        dumpRecording(recording);
+                        logger.info("Output updated at: {}", outputPath);
+                    });
+                }
+            }
             return 0;
         } catch (Exception e) {
             logger.error("Error during analysis", e);
             return 1;
         }
     }
+
+    /**
+     * Starts a flight recording of the run if one was requested
+     *
+     * @return The recording, or null if none was requested
+     */
+    private AnalysisRecording startRecording() throws IOException {
+        if (jfrFile == null) {
+            return null;
+        }
+        
+        Path file = jfrFile.isEmpty() ? outputPath.resolve(AnalysisRecording.FILE_NAME) : Path.of(jfrFile);
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        logger.info("Recording the analysis with Java Flight Recorder to: {}", file);
+        return AnalysisRecording.start(file);
+    }
+
+    /**
+     * Writes the events recorded so far, so that the recording file is complete while watch mode keeps running
+     */
+    private void dumpRecording(AnalysisRecording recording) throws IOException {
+        if (recording != null) {
+            recording.dump();
+            logger.info("Flight recording written to: {}", recording.getFile());
+        }
+    }
+
+    /**
+     * Creates the analyzer options shared by single runs and the daemon
+     */
+    private AnalyzerOptions createOptions() {
+        AnalyzerOptions options = new AnalyzerOptions();
+        options.setParallelism(threads);
+        options.setIncludes(includes);
+        options.setExcludes(excludes);
+        options.setRespectGitignore(!noGitignore);
+        options.setDefaultExcludes(!noDefaultExcludes);
+        options.setIncludeTestSources(!skipTests);
+        options.setCompactDataFlows(compactFlows);
+        options.setSlowestFileCount(slowestFiles);
+        options.setMaxFileSize(maxFileSize);
+        options.setFileTimeBudget(fileTimeBudget);
+        options.setLeanParsing(lean);
+        options.setPrefilter(!noPrefilter);
+        return options;
+    }
+
+    /**
+     * Serves analysis jobs until the daemon is asked to shut down
+     */
+    private int runDaemon() {
+        if (daemonMaxProjects < 1) {
+            throw new ParameterException(spec.commandLine(), "Invalid value for option '--daemon-max-projects': must be at least 1");
+        }
+        
+        try {
+            AnalyzerOptions options = createOptions();
+            options.setCacheDirectory(cacheDir);
+            
+            Path tokenFile = daemonTokenFile != null ? daemonTokenFile : AnalysisDaemon.defaultTokenFile(daemonPort);
+            new AnalysisDaemon(daemonPort, options, daemonMaxProjects, tokenFile).run();
+            return 0;
+        } catch (Exception e) {
+            logger.error("Error running analysis daemon", e);
+            return 1;
+        }
+    }
+
+    /**
+     * Writes the report and, if requested, the data flow diagrams for an analysis result,
+     * followed by the metrics of the run
+     */
+    private void generateOutput(AnalysisResult result, AnalysisMetrics metrics) throws IOException {
+        metrics.startPhase(AnalysisMetrics.OUTPUT);
+        
+        // Generate all requested formats, and the DFD if requested, from the one result
+        OutputGenerator outputGenerator = new OutputGenerator(result, outputPath, outputFormats);
+        outputGenerator.setPrettyPrint(prettyJson);
+        outputGenerator.setGenerateDfd(generateDfd);
+        outputGenerator.setAggregateEdges(aggregateEdges);
+        outputGenerator.setLeveledDfd(leveledDfd);
+        outputGenerator.setDfdGroupByClass(dfdGroupBy.equalsIgnoreCase("class"));
+        outputGenerator.setDfdExpandedGroups(dfdExpandedGroups);
+        outputGenerator.setParallelism(threads);
+        outputGenerator.generate();
+        metrics.endPhase();
+        
+        metrics.writeJson(outputPath.resolve(AnalysisMetrics.FILE_NAME));
+        if (printMetrics) {
+            logger.info(metrics.summary());
+        }
+    }
+
 }
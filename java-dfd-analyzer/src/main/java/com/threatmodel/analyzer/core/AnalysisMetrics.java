@@ -0,0 +1,574 @@
+package com.threatmodel.analyzer.core;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Timings and counters of one analysis run: wall and CPU time per phase, parse throughput,
+ * parse failures and the slowest files.
+ *
+ * Phases are consecutive intervals, and their CPU time is the CPU time of the whole process
+ * during the interval, so work done on worker and fork-join threads is included. Files are
+ * extracted as soon as they are discovered, so the discovery phase also covers the files
+ * parsed in the meantime; the per-file totals cover all parsed files. Files are recorded
+ * concurrently by the worker threads.
+ */
+public class AnalysisMetrics {
+    
+    /**
+     * Name of the metrics file written next to the results
+     */
+    public static final String FILE_NAME = "analysis-metrics.json";
+    
+    public static final String DISCOVERY = "discovery";
+    public static final String PARSING = "parsing";
+    public static final String TYPE_RESOLUTION = "typeResolution";
+    public static final String MERGE = "merge";
+    public static final String FLOW_DETECTION = "flowDetection";
+    public static final String OUTPUT = "output";
+    
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    
+    private final String projectName;
+    private final int threads;
+    private final int slowestFileCount;
+    private final List<Phase> phases = new ArrayList<>();
+    private Phase currentPhase;
+    
+    private final AtomicInteger filesDiscovered = new AtomicInteger();
+    private final AtomicInteger filesParsed = new AtomicInteger();
+    private final AtomicInteger filesCached = new AtomicInteger();
+    private final AtomicInteger parseFailures = new AtomicInteger();
+    private final AtomicInteger filesDeclarationsOnly = new AtomicInteger();
+    private final AtomicInteger filesWithoutEntities = new AtomicInteger();
+    private final AtomicLong bytesParsed = new AtomicLong();
+    private final AtomicLong fileWallNanos = new AtomicLong();
+    private final AtomicLong fileCpuNanos = new AtomicLong();
+    
+    // The slowest files so far, fastest first so that it can be evicted
+    private final PriorityQueue<FileTiming> slowestFiles =
+            new PriorityQueue<>(Comparator.comparingLong(FileTiming::getWallNanos));
+    
+    private final List<OverBudgetFile> overBudgetFiles = new ArrayList<>();
+    
+    /**
+     * Creates the metrics of a run
+     *
+     * @param projectName The name of the analyzed project
+     * @param threads The number of worker threads
+     * @param slowestFileCount The number of slowest files to keep
+     */
+    public AnalysisMetrics(String projectName, int threads, int slowestFileCount) {
+        this.projectName = projectName;
+        this.threads = threads;
+        this.slowestFileCount = Math.max(0, slowestFileCount);
+    }
+    
+    /**
+     * Ends the current phase, if any, and starts a new one
+     *
+     * @param name The name of the phase
+     */
+    public synchronized void startPhase(String name) {
+        long wallTime = System.nanoTime();
+        long cpuTime = processCpuTime();
+        if (currentPhase != null) {
+            currentPhase.end(wallTime, cpuTime);
+        }
+        currentPhase = new Phase(name, wallTime, cpuTime);
+        phases.add(currentPhase);
+    }
+    
+    /**
+     * Ends the current phase
+     */
+    public synchronized void endPhase() {
+        if (currentPhase != null) {
+            currentPhase.end(System.nanoTime(), processCpuTime());
+            currentPhase = null;
+        }
+    }
+    
+    /**
+     * Records the number of source files found by discovery
+     */
+    public void setFilesDiscovered(int count) {
+        filesDiscovered.set(count);
+    }
+    
+    /**
+     * Records a file whose extraction was served from the cache
+     */
+    public void recordCachedFile() {
+        filesCached.incrementAndGet();
+    }
+    
+    /**
+     * Starts timing the parsing and extraction of a file on the calling thread
+     *
+     * @param javaFile The file
+     * @param size The size of the file in bytes
+     * @return The timer, to be stopped on the same thread
+     */
+    public FileTimer startFile(Path javaFile, long size) {
+        return new FileTimer(javaFile, size);
+    }
+    
+    /**
+     * Records a file that could not be processed at all
+     */
+    public void recordFailure() {
+        parseFailures.incrementAndGet();
+    }
+    
+    /**
+     * Records the work the prefilter spared a file
+     *
+     * @param declarationsOnly Whether the file was parsed without its method bodies
+     * @param withoutEntities Whether the detection of external entities and data stores was skipped
+     */
+    public void recordPrefiltered(boolean declarationsOnly, boolean withoutEntities) {
+        if (declarationsOnly) {
+            filesDeclarationsOnly.incrementAndGet();
+        }
+        if (withoutEntities) {
+            filesWithoutEntities.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Records a file that was over its parse budget
+     *
+     * @param javaFile The file
+     * @param size The size of the file in bytes
+     * @param budget The budget the file was over, size or time
+     * @param skipped Whether the file was skipped, rather than parsed without its method bodies
+     */
+    public void recordOverBudget(Path javaFile, long size, String budget, boolean skipped) {
+        synchronized (overBudgetFiles) {
+            overBudgetFiles.add(new OverBudgetFile(javaFile.toString(), size, budget, skipped));
+        }
+    }
+    
+    private void recordFile(FileTiming timing) {
+        filesParsed.incrementAndGet();
+        bytesParsed.addAndGet(Math.max(0, timing.size));
+        fileWallNanos.addAndGet(timing.wallNanos);
+        fileCpuNanos.addAndGet(Math.max(0, timing.cpuNanos));
+        if (timing.failed) {
+            parseFailures.incrementAndGet();
+        }
+        
+        if (slowestFileCount > 0) {
+            synchronized (slowestFiles) {
+                if (slowestFiles.size() < slowestFileCount) {
+                    slowestFiles.add(timing);
+                } else if (slowestFiles.peek().wallNanos < timing.wallNanos) {
+                    slowestFiles.poll();
+                    slowestFiles.add(timing);
+                }
+            }
+        }
+    }
+    
+    public String getProjectName() {
+        return projectName;
+    }
+    
+    /**
+     * Gets the phases recorded so far, in order
+     */
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases);
+    }
+    
+    public int getFilesDiscovered() {
+        return filesDiscovered.get();
+    }
+    
+    public int getFilesParsed() {
+        return filesParsed.get();
+    }
+    
+    public int getFilesCached() {
+        return filesCached.get();
+    }
+    
+    /**
+     * Gets the number of files with syntax errors or that could not be processed
+     */
+    public int getParseFailures() {
+        return parseFailures.get();
+    }
+    
+    public long getBytesParsed() {
+        return bytesParsed.get();
+    }
+    
+    /**
+     * Gets the slowest files, slowest first
+     */
+    public List<FileTiming> getSlowestFiles() {
+        List<FileTiming> files;
+        synchronized (slowestFiles) {
+            files = new ArrayList<>(slowestFiles);
+        }
+        files.sort(Comparator.comparingLong(FileTiming::getWallNanos).reversed());
+        return files;
+    }
+    
+    /**
+     * Gets the files that were over their parse budget, in path order
+     */
+    public List<OverBudgetFile> getOverBudgetFiles() {
+        List<OverBudgetFile> files;
+        synchronized (overBudgetFiles) {
+            files = new ArrayList<>(overBudgetFiles);
+        }
+        files.sort(Comparator.comparing(OverBudgetFile::getPath));
+        return files;
+    }
+    
+    /**
+     * Gets the number of files parsed per second of the discovery and parsing phases
+     */
+    public double getFilesPerSecond() {
+        return perSecond(filesParsed.get(), parseWallNanos());
+    }
+    
+    /**
+     * Gets the number of bytes parsed per second of the discovery and parsing phases
+     */
+    public double getBytesPerSecond() {
+        return perSecond(bytesParsed.get(), parseWallNanos());
+    }
+    
+    private long parseWallNanos() {
+        long nanos = 0;
+        for (Phase phase : getPhases()) {
+            if (phase.name.equals(DISCOVERY) || phase.name.equals(PARSING)) {
+                nanos += phase.wallNanos;
+            }
+        }
+        return nanos;
+    }
+    
+    private static double perSecond(long count, long nanos) {
+        return nanos > 0 ? count * 1e9 / nanos : 0;
+    }
+    
+    /**
+     * Writes the metrics as JSON
+     *
+     * @param file The file to write
+     */
+    public void writeJson(Path file) throws IOException {
+        List<Phase> recordedPhases = getPhases();
+        long totalWallNanos = 0;
+        long totalCpuNanos = 0;
+        for (Phase phase : recordedPhases) {
+            totalWallNanos += phase.wallNanos;
+            totalCpuNanos += Math.max(0, phase.cpuNanos);
+        }
+        
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+             JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeStringField("projectName", projectName);
+            generator.writeStringField("analyzerVersion", ProjectAnalyzer.VERSION);
+            generator.writeNumberField("threads", threads);
+            generator.writeNumberField("wallMillis", millis(totalWallNanos));
+            generator.writeNumberField("cpuMillis", millis(totalCpuNanos));
+            
+            generator.writeArrayFieldStart("phases");
+            for (Phase phase : recordedPhases) {
+                generator.writeStartObject();
+                generator.writeStringField("name", phase.name);
+                generator.writeNumberField("wallMillis", millis(phase.wallNanos));
+                generator.writeNumberField("cpuMillis", millis(phase.cpuNanos));
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            
+            generator.writeObjectFieldStart("files");
+            generator.writeNumberField("discovered", filesDiscovered.get());
+            generator.writeNumberField("parsed", filesParsed.get());
+            generator.writeNumberField("cached", filesCached.get());
+            generator.writeNumberField("parseFailures", parseFailures.get());
+            generator.writeNumberField("overBudget", getOverBudgetFiles().size());
+            generator.writeNumberField("prefilteredDeclarationsOnly", filesDeclarationsOnly.get());
+            generator.writeNumberField("prefilteredWithoutEntities", filesWithoutEntities.get());
+            generator.writeNumberField("bytesParsed", bytesParsed.get());
+            generator.writeNumberField("parseWallMillis", millis(fileWallNanos.get()));
+            generator.writeNumberField("parseCpuMillis", millis(fileCpuNanos.get()));
+            generator.writeNumberField("filesPerSecond", round(getFilesPerSecond()));
+            generator.writeNumberField("bytesPerSecond", round(getBytesPerSecond()));
+            generator.writeEndObject();
+            
+            generator.writeArrayFieldStart("slowestFiles");
+            for (FileTiming timing : getSlowestFiles()) {
+                generator.writeStartObject();
+                generator.writeStringField("path", timing.path);
+                generator.writeNumberField("sizeBytes", timing.size);
+                generator.writeNumberField("wallMillis", millis(timing.wallNanos));
+                generator.writeNumberField("cpuMillis", millis(timing.cpuNanos));
+                generator.writeBooleanField("parseFailed", timing.failed);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            
+            generator.writeArrayFieldStart("overBudgetFiles");
+            for (OverBudgetFile overBudget : getOverBudgetFiles()) {
+                generator.writeStartObject();
+                generator.writeStringField("path", overBudget.path);
+                generator.writeNumberField("sizeBytes", overBudget.size);
+                generator.writeStringField("budget", overBudget.budget);
+                generator.writeStringField("outcome", overBudget.skipped ? "skipped" : "declarationsOnly");
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            
+            generator.writeEndObject();
+        }
+    }
+    
+    /**
+     * Formats a human-readable summary of the metrics
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder("Analysis metrics for ").append(projectName).append(':');
+        for (Phase phase : getPhases()) {
+            summary.append(String.format(Locale.ROOT, "%n  %-16s %10.1f ms wall %10.1f ms cpu",
+                    phase.name, millis(phase.wallNanos), millis(phase.cpuNanos)));
+        }
+        summary.append(String.format(Locale.ROOT, "%n  Parsed %d of %d files (%d cached, %d failed), %.1f files/s, %.1f KiB/s",
+                filesParsed.get(), filesDiscovered.get(), filesCached.get(), parseFailures.get(),
+                getFilesPerSecond(), getBytesPerSecond() / 1024));
+        if (filesDeclarationsOnly.get() > 0 || filesWithoutEntities.get() > 0) {
+            summary.append(String.format("%n  Prefilter: %d files parsed without method bodies, %d without entity detection",
+                    filesDeclarationsOnly.get(), filesWithoutEntities.get()));
+        }
+        List<FileTiming> files = getSlowestFiles();
+        if (!files.isEmpty()) {
+            summary.append(String.format("%n  Slowest files:"));
+            for (FileTiming timing : files) {
+                summary.append(String.format(Locale.ROOT, "%n  %10.1f ms %10d bytes  %s",
+                        millis(timing.wallNanos), timing.size, timing.path));
+            }
+        }
+        List<OverBudgetFile> overBudget = getOverBudgetFiles();
+        if (!overBudget.isEmpty()) {
+            summary.append(String.format("%n  Over the parse budget:"));
+            for (OverBudgetFile file : overBudget) {
+                summary.append(String.format(Locale.ROOT, "%n  %-6s %10d bytes  %s%s", file.budget, file.size,
+                        file.path, file.skipped ? " (skipped)" : " (declarations only)"));
+            }
+        }
+        return summary.toString();
+    }
+    
+    private static double millis(long nanos) {
+        return nanos < 0 ? -1 : Math.round(nanos / 1000.0) / 1000.0;
+    }
+    
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+    
+    /**
+     * Gets the CPU time used by all threads of the process, or -1 if it is not available
+     */
+    private static long processCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+    
+    /**
+     * Gets the CPU time used by the calling thread, or -1 if it is not available
+     */
+    static long threadCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+    
+    /**
+     * Gets the CPU time used by a thread, or -1 if it is not available or the thread has ended
+     */
+    static long threadCpuTime(long threadId) {
+        return THREADS.isThreadCpuTimeSupported() ? THREADS.getThreadCpuTime(threadId) : -1;
+    }
+    
+    /**
+     * A phase of the analysis
+     */
+    public static class Phase {
+        private final String name;
+        private final long startWallTime;
+        private final long startCpuTime;
+        private long wallNanos;
+        private long cpuNanos;
+        
+        Phase(String name, long startWallTime, long startCpuTime) {
+            this.name = name;
+            this.startWallTime = startWallTime;
+            this.startCpuTime = startCpuTime;
+        }
+        
+        void end(long wallTime, long cpuTime) {
+            wallNanos = wallTime - startWallTime;
+            cpuNanos = startCpuTime < 0 || cpuTime < 0 ? -1 : cpuTime - startCpuTime;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public long getWallNanos() {
+            return wallNanos;
+        }
+        
+        /**
+         * Gets the CPU time of the process during the phase, or -1 if it is not available
+         */
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+    }
+    
+    /**
+     * Measures the parsing and extraction of one file
+     */
+    public class FileTimer {
+        private final Path javaFile;
+        private final long size;
+        private final long startWallTime = System.nanoTime();
+        private final long startCpuTime = threadCpuTime();
+        private long otherThreadCpuNanos;
+        
+        private FileTimer(Path javaFile, long size) {
+            this.javaFile = javaFile;
+            this.size = size;
+        }
+        
+        /**
+         * Adds CPU time that another thread spent on the file while the timing thread waited for it,
+         * such as a parse thread
+         */
+        public void addCpuNanos(long nanos) {
+            otherThreadCpuNanos += nanos;
+        }
+        
+        /**
+         * Stops the timer and records the file
+         *
+         * @param parsed Whether the file was parsed without syntax errors
+         */
+        public void stop(boolean parsed) {
+            long cpuTime = threadCpuTime();
+            recordFile(new FileTiming(javaFile.toString(), size, System.nanoTime() - startWallTime,
+                    startCpuTime < 0 || cpuTime < 0 ? -1 : cpuTime - startCpuTime + otherThreadCpuNanos, !parsed));
+        }
+    }
+    
+    /**
+     * The time taken to parse and extract one file
+     */
+    public static class FileTiming {
+        private final String path;
+        private final long size;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final boolean failed;
+        
+        FileTiming(String path, long size, long wallNanos, long cpuNanos, boolean failed) {
+            this.path = path;
+            this.size = size;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.failed = failed;
+        }
+        
+        public String getPath() {
+            return path;
+        }
+        
+        public long getSize() {
+            return size;
+        }
+        
+        public long getWallNanos() {
+            return wallNanos;
+        }
+        
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+        
+        /**
+         * Checks if the file had syntax errors
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+    
+    /**
+     * A file that was over its parse budget
+     */
+    public static class OverBudgetFile {
+        private final String path;
+        private final long size;
+        private final String budget;
+        private final boolean skipped;
+        
+        OverBudgetFile(String path, long size, String budget, boolean skipped) {
+            this.path = path;
+            this.size = size;
+            this.budget = budget;
+            this.skipped = skipped;
+        }
+        
+        public String getPath() {
+            return path;
+        }
+        
+        public long getSize() {
+            return size;
+        }
+        
+        /**
+         * Gets the budget the file was over, size or time
+         */
+        public String getBudget() {
+            return budget;
+        }
+        
+        /**
+         * Checks if the file was skipped, rather than parsed without its method bodies
+         */
+        public boolean isSkipped() {
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.threatmodel.analyzer.core;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration options for a project analysis run
+ */
+public class AnalyzerOptions {
+    /**
+     * Default number of slowest files listed in the analysis metrics
+     */
+    public static final int DEFAULT_SLOWEST_FILE_COUNT = 10;
+
+    /**
+     * Default size in bytes above which files are parsed without their method bodies
+     */
+    public static final long DEFAULT_MAX_FILE_SIZE = 1024 * 1024;
+
+    /**
+     * Default time in milliseconds allowed for parsing a single file
+     */
+    public static final long DEFAULT_FILE_TIME_BUDGET = 30_000;
+
+    /**
+     * Parse budget that leaves the file size or parse time unbounded
+     */
+    public static final long UNLIMITED_BUDGET = -1;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private Path cacheDirectory;
+    private List<String> includes = new ArrayList<>();
+    private List<String> excludes = new ArrayList<>();
+    private boolean respectGitignore = true;
+    private boolean defaultExcludes = true;
+    private boolean includeTestSources = true;
+    private boolean compactDataFlows;
+    private int slowestFileCount = DEFAULT_SLOWEST_FILE_COUNT;
+    private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    private long fileTimeBudget = DEFAULT_FILE_TIME_BUDGET;
+    private boolean leanParsing;
+    private boolean prefilter = true;
+
+    /**
+     * Gets the number of worker threads used to parse and extract source files
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Gets the directory of the persistent extraction cache, or null if caching is disabled
+     */
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public void setCacheDirectory(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Gets the globs selecting the source files to analyze, relative to the project root.
+     * If empty, all Java files are analyzed.
+     */
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public void setIncludes(List<String> includes) {
+        this.includes = includes;
+    }
+
+    /**
+     * Gets the globs of files and directories to skip, relative to the project root
+     */
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public void setExcludes(List<String> excludes) {
+        this.excludes = excludes;
+    }
+
+    /**
+     * Checks if files ignored by the project's .gitignore files are skipped
+     */
+    public boolean isRespectGitignore() {
+        return respectGitignore;
+    }
+
+    public void setRespectGitignore(boolean respectGitignore) {
+        this.respectGitignore = respectGitignore;
+    }
+
+    /**
+     * Checks if hidden directories, dependency directories and build output directories
+     * outside of source directories are skipped
+     */
+    public boolean isDefaultExcludes() {
+        return defaultExcludes;
+    }
+
+    public void setDefaultExcludes(boolean defaultExcludes) {
+        this.defaultExcludes = defaultExcludes;
+    }
+
+    /**
+     * Checks if test sources are analyzed along with the main sources
+     */
+    public boolean isIncludeTestSources() {
+        return includeTestSources;
+    }
+
+    public void setIncludeTestSources(boolean includeTestSources) {
+        this.includeTestSources = includeTestSources;
+    }
+
+    /**
+     * Checks if the data flows of the result are stored in the compact columnar representation
+     */
+    public boolean isCompactDataFlows() {
+        return compactDataFlows;
+    }
+
+    public void setCompactDataFlows(boolean compactDataFlows) {
+        this.compactDataFlows = compactDataFlows;
+    }
+
+    /**
+     * Gets the number of slowest files listed in the analysis metrics
+     */
+    public int getSlowestFileCount() {
+        return slowestFileCount;
+    }
+
+    public void setSlowestFileCount(int slowestFileCount) {
+        this.slowestFileCount = Math.max(0, slowestFileCount);
+    }
+
+    /**
+     * Gets the size in bytes above which files are parsed without their method bodies,
+     * or {@link #UNLIMITED_BUDGET}
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize < 0 ? UNLIMITED_BUDGET : maxFileSize;
+    }
+
+    /**
+     * Gets the time in milliseconds allowed for each attempt to parse a single file, or
+     * {@link #UNLIMITED_BUDGET}. Files that run out of time are parsed again without their
+     * method bodies, and skipped if that runs out of time too.
+     */
+    public long getFileTimeBudget() {
+        return fileTimeBudget;
+    }
+
+    public void setFileTimeBudget(long fileTimeBudget) {
+        this.fileTimeBudget = fileTimeBudget < 0 ? UNLIMITED_BUDGET : fileTimeBudget;
+    }
+
+    /**
+     * Checks if files are parsed for their declarations only. Method bodies and comments other
+     * than Javadoc are removed before parsing; code that needs a method body parses it on
+     * request through {@link MethodBodies}.
+     */
+    public boolean isLeanParsing() {
+        return leanParsing;
+    }
+
+    public void setLeanParsing(boolean leanParsing) {
+        this.leanParsing = leanParsing;
+    }
+
+    /**
+     * Checks if each file is scanned before parsing to decide which extraction work it needs.
+     * Files whose method bodies declare no types are parsed for their declarations only, and
+     * files without any of the names that external entities and data stores are recognized by
+     * skip their detection. The results are the same as without the prefilter, except for files
+     * whose method bodies cannot be parsed.
+     */
+    public boolean isPrefilter() {
+        return prefilter;
+    }
+
+    public void setPrefilter(boolean prefilter) {
+        this.prefilter = prefilter;
+    }
+}
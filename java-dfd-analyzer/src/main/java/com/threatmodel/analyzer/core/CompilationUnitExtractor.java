@@ -0,0 +1,383 @@
+package com.threatmodel.analyzer.core;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import com.threatmodel.analyzer.jfr.ExtractionEvent;
+import com.threatmodel.analyzer.model.DataField;
+import com.threatmodel.analyzer.model.DataStore;
+import com.threatmodel.analyzer.model.DataStructure;
+import com.threatmodel.analyzer.model.Process;
+import com.threatmodel.analyzer.utils.AnnotationExtractor;
+import com.threatmodel.analyzer.utils.CommentExtractor;
+import com.threatmodel.analyzer.utils.ExternalEntityDetector;
+
+/**
+ * Extracts data structures, processes, external entities and data stores from a
+ * compilation unit in a single pass over its syntax tree
+ */
+public class CompilationUnitExtractor extends VoidVisitorAdapter<Void> {
+    
+    private final Path javaFile;
+    private final FileExtraction extraction;
+    private final ExternalEntityDetector entityDetector = new ExternalEntityDetector();
+    private final boolean detectEntities;
+    
+    // Qualified names of the classes enclosing the current position, innermost first
+    private final Deque<String> enclosingClasses = new ArrayDeque<>();
+    
+    private CompilationUnitExtractor(Path javaFile, boolean detectEntities) {
+        this.javaFile = javaFile;
+        this.extraction = new FileExtraction(javaFile.toString());
+        this.detectEntities = detectEntities;
+    }
+    
+    /**
+     * Extracts all components from a compilation unit
+     *
+     * @param cu The compilation unit to analyze
+     * @param javaFile The source file being analyzed
+     * @return The components found in the file
+     */
+    public static FileExtraction extract(CompilationUnit cu, Path javaFile) {
+        return extract(cu, javaFile, true);
+    }
+    
+    /**
+     * Extracts components from a compilation unit, optionally skipping the detection of external
+     * entities and data stores for files the {@link SourcePrefilter} ruled out
+     *
+     * @param cu The compilation unit to analyze
+     * @param javaFile The source file being analyzed
+     * @param detectEntities Whether to look for external entities and data stores
+     * @return The components found in the file
+     */
+    public static FileExtraction extract(CompilationUnit cu, Path javaFile, boolean detectEntities) {
+        ExtractionEvent event = new ExtractionEvent();
+        event.begin();
+        CompilationUnitExtractor extractor = new CompilationUnitExtractor(javaFile, detectEntities);
+        
+        // Record the names in scope, used to resolve the types in method signatures
+        cu.getPackageDeclaration().ifPresent(pkg -> extractor.extraction.setPackageName(pkg.getNameAsString()));
+        cu.getImports().stream()
+                .filter(importDeclaration -> !importDeclaration.isStatic())
+                .forEach(importDeclaration -> {
+                    if (importDeclaration.isAsterisk()) {
+                        extractor.extraction.addWildcardImport(importDeclaration.getNameAsString());
+                    } else {
+                        extractor.extraction.addImport(importDeclaration.getNameAsString());
+                    }
+                });
+        
+        cu.accept(extractor, null);
+        
+        // Add the external entities and API endpoints found along the way
+        extractor.entityDetector.getExternalEntities().forEach(extractor.extraction::addExternalEntity);
+        
+        event.end();
+        if (event.shouldCommit()) {
+            // Nodes are only counted while a recording is interested, as it takes another pass
+            event.path = javaFile.toString();
+            event.nodes = cu.stream().count();
+            event.dataStructures = extractor.extraction.getDataStructures().size();
+            event.processes = extractor.extraction.getProcesses().size();
+            event.externalEntities = extractor.extraction.getExternalEntities().size();
+            event.dataStores = extractor.extraction.getDataStores().size();
+            event.commit();
+        }
+        
+        return extractor.extraction;
+    }
+    
+    @Override
+    public void visit(ClassOrInterfaceDeclaration cls, Void arg) {
+        String className = cls.getNameAsString();
+        Optional<String> fullyQualifiedName = cls.getFullyQualifiedName();
+        String qualifiedName = fullyQualifiedName.orElse(className);
+        
+        // Extract data structures (classes, interfaces)
+        extractDataStructure(cls, className, qualifiedName, fullyQualifiedName);
+        
+        if (detectEntities) {
+            // Extract data stores
+            extractDataStore(cls, className, qualifiedName);
+            
+            // Extract external entities and API endpoints
+            entityDetector.enterClass(cls);
+        }
+        
+        enclosingClasses.push(qualifiedName);
+        super.visit(cls, arg);
+        enclosingClasses.pop();
+        
+        if (detectEntities) {
+            entityDetector.exitClass(cls);
+        }
+    }
+    
+    @Override
+    public void visit(MethodDeclaration method, Void arg) {
+        // Extract processes (methods that transform data)
+        extractProcess(method);
+        
+        if (detectEntities) {
+            entityDetector.visitMethod(method);
+        }
+        
+        super.visit(method, arg);
+    }
+    
+    /**
+     * Extracts a data structure from a class or interface declaration
+     */
+    private void extractDataStructure(ClassOrInterfaceDeclaration cls, String className, String qualifiedName,
+            Optional<String> fullyQualifiedName) {
+        DataStructure dataStructure = new DataStructure(className, qualifiedName);
+        dataStructure.setSourceFilePath(javaFile.toString());
+        
+        // Extract structure description from Javadoc
+        cls.getJavadocComment().ifPresent(javadoc -> {
+            dataStructure.setDescription(CommentExtractor.extractDescription(javadoc));
+        });
+        
+        // Determine structure type based on naming, annotations, etc.
+        determineDataStructureType(dataStructure, cls, fullyQualifiedName);
+        
+        // Extract fields
+        cls.getFields().forEach(field -> {
+            field.getVariables().forEach(var -> {
+                String fieldName = var.getNameAsString();
+                String fieldType = field.getElementType().asString();
+                
+                DataField dataField = new DataField(fieldName, fieldType);
+                
+                // Extract field description from Javadoc
+                field.getJavadocComment().ifPresent(javadoc -> {
+                    dataField.setDescription(CommentExtractor.extractDescription(javadoc));
+                });
+                
+                // Extract annotations
+                AnnotationExtractor.extractAnnotations(field).forEach(dataField::addAnnotation);
+                
+                // Detect primitive or collection types
+                if (isPrimitiveType(fieldType)) {
+                    dataField.setPrimitive(true);
+                }
+                
+                if (isCollectionType(fieldType)) {
+                    dataField.setCollection(true);
+                }
+                
+                // Detect sensitive data based on name or annotations
+                if (isSensitiveField(dataField)) {
+                    dataField.setSensitive(true);
+                }
+                
+                dataStructure.addField(dataField);
+            });
+        });
+        
+        // Add to the file's data structures
+        extraction.addDataStructure(dataStructure);
+    }
+    
+    /**
+     * Extracts a process from a method declaration
+     */
+    private void extractProcess(MethodDeclaration method) {
+        String methodName = method.getNameAsString();
+        String parentClass = enclosingClasses.isEmpty() ? "Unknown" : enclosingClasses.peek();
+        
+        String processId = parentClass + "." + methodName;
+        String displayName = parentClass.substring(parentClass.lastIndexOf('.') + 1) + "." + methodName;
+        
+        Process process = new Process(processId, displayName);
+        process.setSourceFilePath(javaFile.toString());
+        
+        // Extract process description from Javadoc
+        method.getJavadocComment().ifPresent(javadoc -> {
+            process.setDescription(CommentExtractor.extractDescription(javadoc));
+        });
+        
+        // Record the declared input and output types
+        FileExtraction.ProcessSignature signature = new FileExtraction.ProcessSignature(process);
+        signature.setDeclaringType(enclosingClasses.peek());
+        method.getParameters().forEach(param -> signature.addParameterType(param.getType().asString()));
+        signature.setReturnType(method.getType().asString());
+        
+        // Add to the file's processes
+        extraction.addProcess(signature);
+    }
+    
+    /**
+     * Extracts a data store from a class or interface declaration, if it represents one
+     */
+    private void extractDataStore(ClassOrInterfaceDeclaration cls, String className, String qualifiedName) {
+        // Look for database connections, file I/O, and other data storage indicators
+        if (isDataStore(cls)) {
+            DataStore dataStore = new DataStore(qualifiedName, className);
+            dataStore.setDescription("Data store identified from: " + qualifiedName);
+            
+            // Determine the data store type
+            determineDataStoreType(dataStore, cls);
+            
+            // Add to the file's data stores
+            extraction.addDataStore(dataStore);
+        }
+    }
+    
+    /**
+     * Determines the type of a data structure based on naming, annotations, etc.
+     */
+    private void determineDataStructureType(DataStructure dataStructure, ClassOrInterfaceDeclaration cls,
+            Optional<String> fullyQualifiedName) {
+        String name = cls.getNameAsString();
+        
+        if (cls.isInterface()) {
+            dataStructure.setType(DataStructure.DataStructureType.INTERFACE);
+        } else if (name.endsWith("DTO") || name.endsWith("Request") || name.endsWith("Response")) {
+            dataStructure.setType(DataStructure.DataStructureType.DTO);
+        } else if (name.endsWith("Entity") || cls.getAnnotationByName("Entity").isPresent()) {
+            dataStructure.setType(DataStructure.DataStructureType.ENTITY);
+        } else {
+            dataStructure.setType(DataStructure.DataStructureType.CLASS);
+        }
+        
+        // Check if the class is from an external package
+        String packageName = fullyQualifiedName
+                .map(fqn -> fqn.substring(0, Math.max(0, fqn.lastIndexOf('.'))))
+                .orElse("");
+        
+        if (isExternalPackage(packageName)) {
+            dataStructure.setExternal(true);
+        }
+    }
+    
+    /**
+     * Checks if a class represents a data store
+     */
+    private boolean isDataStore(ClassOrInterfaceDeclaration cls) {
+        String className = cls.getNameAsString();
+        
+        // Check class name patterns
+        if (className.contains("Repository") || className.contains("DAO") ||
+                className.contains("Store") || className.contains("Cache")) {
+            return true;
+        }
+        
+        // Check for database-related annotations
+        if (cls.getAnnotationByName("Repository").isPresent() ||
+                cls.getAnnotationByName("Entity").isPresent()) {
+            return true;
+        }
+        
+        // Check fields for connection objects
+        return cls.getFields().stream()
+                .anyMatch(field -> {
+                    String fieldType = field.getElementType().asString();
+                    return fieldType.contains("Connection") ||
+                           fieldType.contains("DataSource") ||
+                           fieldType.contains("EntityManager");
+                });
+    }
+    
+    /**
+     * Determines the type of a data store
+     */
+    private void determineDataStoreType(DataStore dataStore, ClassOrInterfaceDeclaration cls) {
+        String className = cls.getNameAsString();
+        
+        if (className.contains("Database") || className.contains("Repository") ||
+                className.contains("DAO")) {
+            dataStore.setType(DataStore.DataStoreType.DATABASE);
+        } else if (className.contains("File") || className.contains("Storage")) {
+            dataStore.setType(DataStore.DataStoreType.FILE_SYSTEM);
+        } else if (className.contains("Cache")) {
+            dataStore.setType(DataStore.DataStoreType.CACHE);
+        } else {
+            dataStore.setType(DataStore.DataStoreType.OTHER);
+        }
+    }
+    
+    /**
+     * Checks if a field contains sensitive information based on name or annotations
+     */
+    private boolean isSensitiveField(DataField field) {
+        String name = field.getName().toLowerCase();
+        String[] sensitivePatterns = {
+            "password", "secret", "token", "key", "credential", "ssn",
+            "social", "credit", "auth", "private", "secure"
+        };
+        
+        for (String pattern : sensitivePatterns) {
+            if (name.contains(pattern)) {
+                return true;
+            }
+        }
+        
+        // Check annotations
+        return field.getAnnotations().containsKey("Sensitive") ||
+               field.getAnnotations().containsKey("Secret");
+    }
+    
+    /**
+     * Checks if a type is a primitive type
+     */
+    private boolean isPrimitiveType(String type) {
+        String[] primitives = {
+            "int", "byte", "short", "long", "float", "double", "boolean", "char",
+            "Integer", "Byte", "Short", "Long", "Float", "Double", "Boolean", "Character",
+            "String"
+        };
+        
+        for (String primitive : primitives) {
+            if (type.equals(primitive)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Checks if a type is a collection type
+     */
+    private boolean isCollectionType(String type) {
+        String[] collectionPatterns = {
+            "List", "Set", "Map", "Collection", "Array", "[]"
+        };
+        
+        for (String pattern : collectionPatterns) {
+            if (type.contains(pattern)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Checks if a package is considered external to the project
+     */
+    private boolean isExternalPackage(String packageName) {
+        // Common external package prefixes
+        String[] externalPrefixes = {
+            "java.", "javax.", "org.springframework", "com.google", "org.apache",
+            "io.netty", "org.hibernate", "com.fasterxml", "org.slf4j"
+        };
+        
+        for (String prefix : externalPrefixes) {
+            if (packageName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+}
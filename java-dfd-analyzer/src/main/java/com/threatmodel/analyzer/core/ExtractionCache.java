@@ -0,0 +1,227 @@
+package com.threatmodel.analyzer.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Persistent on-disk cache of per-file extractions.
+ *
+ * Entries are keyed by a hash of the analyzer version, the parse profile, the file path and the
+ * file content, so an entry is only reused when neither the source nor the extraction logic has changed.
+ * Each entry is stored as a separate JSON file; the cache is safe to use from several
+ * worker threads at once.
+ *
+ * A cache directory may be shared by several projects and parse profiles, as the daemon does and
+ * as CLI runs with the same --cache-dir do. Each project root, selection of source files and
+ * profile gets its own subdirectory, and pruning only ever removes entries from that subdirectory.
+ */
+public class ExtractionCache {
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionCache.class);
+    
+    /**
+     * Version of the cached record format. Increment whenever extraction changes in a way
+     * that makes existing entries stale.
+     */
+    private static final int CACHE_FORMAT_VERSION = 2;
+    
+    private static final String ENTRY_SUFFIX = ".json";
+    
+    private final Path cacheDirectory;
+    private final String profile;
+    private final ObjectMapper mapper;
+    
+    // The key of the current content of each file keyed since the last reset
+    private final Map<Path, String> fileKeys = new ConcurrentHashMap<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    
+    public ExtractionCache(Path cacheDirectory) throws IOException {
+        this(cacheDirectory, "full");
+    }
+    
+    /**
+     * Creates a cache whose entries are only shared with analyses using the same parse profile
+     *
+     * @param cacheDirectory The directory of the cache entries, used by this cache alone
+     * @param profile The name of the parse profile, such as full or lean
+     */
+    public ExtractionCache(Path cacheDirectory, String profile) throws IOException {
+        this.cacheDirectory = cacheDirectory;
+        this.profile = profile;
+        this.mapper = new ObjectMapper()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        
+        Files.createDirectories(cacheDirectory);
+    }
+    
+    /**
+     * Opens the cache of one project in a cache directory that may be shared with other projects
+     *
+     * @param cacheDirectory The shared cache directory
+     * @param projectRoot The root directory of the project
+     * @param sourceSelection The discovery settings that select the analyzed files. Runs selecting
+     *        different files use separate subdirectories, so that they do not prune each other's entries.
+     * @param profile The name of the parse profile, such as full or lean
+     * @return The cache, stored in a subdirectory of its own
+     */
+    public static ExtractionCache forProject(Path cacheDirectory, Path projectRoot, String sourceSelection,
+            String profile) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(projectRoot.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(("\n" + sourceSelection).getBytes(StandardCharsets.UTF_8));
+        String projectKey = hex(digest.digest()).substring(0, 16);
+        return new ExtractionCache(cacheDirectory.resolve(projectKey + "-" + profile), profile);
+    }
+    
+    /**
+     * Computes the cache key for a source file
+     *
+     * @param javaFile The source file
+     * @param content The raw content of the source file
+     * @return A hex-encoded content hash
+     */
+    public String key(Path javaFile, byte[] content) {
+        MessageDigest digest = newDigest();
+        digest.update((ProjectAnalyzer.VERSION + "/" + CACHE_FORMAT_VERSION + "/" + profile + "\n").getBytes(StandardCharsets.UTF_8));
+        digest.update((javaFile.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        digest.update(content);
+        
+        String key = hex(digest.digest());
+        fileKeys.put(javaFile, key);
+        return key;
+    }
+    
+    /**
+     * Loads a cached extraction
+     *
+     * @param key The cache key of the source file
+     * @return The cached extraction, or null if there is no usable entry
+     */
+    public FileExtraction load(String key) {
+        Path entry = entryPath(key);
+        if (Files.exists(entry)) {
+            try {
+                FileExtraction extraction = mapper.readValue(entry.toFile(), FileExtraction.class);
+                hits.incrementAndGet();
+                return extraction;
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable cache entry: {}", entry, e);
+            }
+        }
+        
+        misses.incrementAndGet();
+        return null;
+    }
+    
+    /**
+     * Stores an extraction in the cache
+     *
+     * @param key The cache key of the source file
+     * @param extraction The extraction to store
+     */
+    public void store(String key, FileExtraction extraction) {
+        Path entry = entryPath(key);
+        try {
+            // Write to a temporary file first so readers never see a partial entry
+            Path tempFile = Files.createTempFile(cacheDirectory, key, ".tmp");
+            mapper.writeValue(tempFile.toFile(), extraction);
+            try {
+                Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not write cache entry: {}", entry, e);
+        }
+    }
+    
+    /**
+     * Forgets the files keyed so far. Called at the start of a run that keys every file of the project again.
+     */
+    public void reset() {
+        fileKeys.clear();
+    }
+    
+    /**
+     * Removes the entries other than those of the current content of the given files, so the cache
+     * does not grow with every edit of a file. Files not keyed since the last reset keep no entry.
+     *
+     * @param liveFiles The files of the project as of the last run
+     */
+    public void prune(Collection<Path> liveFiles) {
+        fileKeys.keySet().retainAll(liveFiles);
+        Set<String> liveKeys = liveFiles.stream()
+                .map(fileKeys::get)
+                .filter(key -> key != null)
+                .collect(Collectors.toSet());
+        
+        try (Stream<Path> entries = Files.list(cacheDirectory)) {
+            entries.filter(p -> p.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                    .filter(p -> !liveKeys.contains(stripSuffix(p.getFileName().toString())))
+                    .forEach(p -> {
+                        try {
+                            Files.deleteIfExists(p);
+                        } catch (IOException e) {
+                            logger.warn("Could not remove stale cache entry: {}", p, e);
+                        }
+                    });
+        } catch (IOException e) {
+            logger.warn("Could not prune cache directory: {}", cacheDirectory, e);
+        }
+    }
+    
+    public int getHits() {
+        return hits.get();
+    }
+    
+    public int getMisses() {
+        return misses.get();
+    }
+    
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+    
+    private Path entryPath(String key) {
+        return cacheDirectory.resolve(key + ENTRY_SUFFIX);
+    }
+    
+    private static String stripSuffix(String fileName) {
+        return fileName.substring(0, fileName.length() - ENTRY_SUFFIX.length());
+    }
+    
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.threatmodel.analyzer.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.threatmodel.analyzer.model.DataStore;
+import com.threatmodel.analyzer.model.DataStructure;
+import com.threatmodel.analyzer.model.ExternalEntity;
+import com.threatmodel.analyzer.model.Process;
+
+/**
+ * Holds the components extracted from a single source file before they are merged
+ * into the project-wide collections
+ */
+public class FileExtraction {
+    private final String sourceFilePath;
+    private String packageName;
+    private final List<String> imports = new ArrayList<>();
+    private final List<String> wildcardImports = new ArrayList<>();
+    private final List<DataStructure> dataStructures = new ArrayList<>();
+    private final List<ProcessSignature> processes = new ArrayList<>();
+    private final List<ExternalEntity> externalEntities = new ArrayList<>();
+    private final List<DataStore> dataStores = new ArrayList<>();
+    private boolean partial;
+
+    @JsonCreator
+    public FileExtraction(@JsonProperty("sourceFilePath") String sourceFilePath) {
+        this.sourceFilePath = sourceFilePath;
+    }
+
+    public String getSourceFilePath() {
+        return sourceFilePath;
+    }
+
+    /**
+     * Checks if the extraction may be incomplete because the file was over its parse budget.
+     * Partial extractions are not cached.
+     */
+    @JsonIgnore
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
+    /**
+     * Gets the package declared by the file, or null for the default package
+     */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public void setPackageName(String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * Gets the fully qualified names of the types imported one by one
+     */
+    public List<String> getImports() {
+        return imports;
+    }
+
+    public void addImport(String qualifiedName) {
+        this.imports.add(qualifiedName);
+    }
+
+    /**
+     * Gets the packages and types whose members are imported on demand
+     */
+    public List<String> getWildcardImports() {
+        return wildcardImports;
+    }
+
+    public void addWildcardImport(String name) {
+        this.wildcardImports.add(name);
+    }
+
+    public List<DataStructure> getDataStructures() {
+        return dataStructures;
+    }
+
+    public void addDataStructure(DataStructure dataStructure) {
+        this.dataStructures.add(dataStructure);
+    }
+
+    public List<ProcessSignature> getProcesses() {
+        return processes;
+    }
+
+    public void addProcess(ProcessSignature process) {
+        this.processes.add(process);
+    }
+
+    public List<ExternalEntity> getExternalEntities() {
+        return externalEntities;
+    }
+
+    public void addExternalEntity(ExternalEntity externalEntity) {
+        this.externalEntities.add(externalEntity);
+    }
+
+    public List<DataStore> getDataStores() {
+        return dataStores;
+    }
+
+    public void addDataStore(DataStore dataStore) {
+        this.dataStores.add(dataStore);
+    }
+
+    /**
+     * A process together with the parameter and return types declared by its method.
+     * The types are resolved against the project's {@link TypeIndex} once all files are known.
+     */
+    public static class ProcessSignature {
+        private final Process process;
+        private String declaringType;
+        private final List<String> parameterTypes = new ArrayList<>();
+        private String returnType;
+
+        @JsonCreator
+        public ProcessSignature(@JsonProperty("process") Process process) {
+            this.process = process;
+        }
+
+        public Process getProcess() {
+            return process;
+        }
+
+        /**
+         * Gets the qualified name of the class declaring the method, or null if unknown
+         */
+        public String getDeclaringType() {
+            return declaringType;
+        }
+
+        public void setDeclaringType(String declaringType) {
+            this.declaringType = declaringType;
+        }
+
+        public List<String> getParameterTypes() {
+            return parameterTypes;
+        }
+
+        public void addParameterType(String parameterType) {
+            this.parameterTypes.add(parameterType);
+        }
+
+        public String getReturnType() {
+            return returnType;
+        }
+
+        public void setReturnType(String returnType) {
+            this.returnType = returnType;
+        }
+    }
+}
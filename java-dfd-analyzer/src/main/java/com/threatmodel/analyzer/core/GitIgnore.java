@@ -0,0 +1,110 @@
+package com.threatmodel.analyzer.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rules of a single .gitignore file.
+ *
+ * Supports the commonly used parts of the gitignore format: comments, negation with '!',
+ * directory-only patterns ending in '/', patterns anchored to the file's directory by a
+ * leading or embedded '/', and the glob syntax of {@link GlobPattern}.
+ */
+final class GitIgnore {
+    
+    static final String FILE_NAME = ".gitignore";
+    
+    private final Path directory;
+    private final List<Rule> rules;
+    
+    private GitIgnore(Path directory, List<Rule> rules) {
+        this.directory = directory;
+        this.rules = rules;
+    }
+    
+    /**
+     * Reads the .gitignore file of a directory
+     *
+     * @param directory The directory containing the file
+     * @return The parsed rules, or null if the directory has no rules
+     */
+    static GitIgnore load(Path directory) throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        
+        List<Rule> rules = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            Rule rule = Rule.parse(line);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return rules.isEmpty() ? null : new GitIgnore(directory, rules);
+    }
+    
+    /**
+     * Checks a path against the rules. The last matching rule wins.
+     *
+     * @param path The path to check, below the directory of the .gitignore file
+     * @param isDirectory Whether the path is a directory
+     * @return True if the path is ignored, false if it is explicitly re-included,
+     *         or null if no rule matches
+     */
+    Boolean isIgnored(Path path, boolean isDirectory) {
+        String relativePath = directory.relativize(path).toString().replace('\\', '/');
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            Rule rule = rules.get(i);
+            if ((!rule.directoryOnly || isDirectory) && rule.pattern.matches(relativePath)) {
+                return !rule.negated;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * A single pattern line
+     */
+    private static class Rule {
+        final GlobPattern pattern;
+        final boolean negated;
+        final boolean directoryOnly;
+        
+        Rule(GlobPattern pattern, boolean negated, boolean directoryOnly) {
+            this.pattern = pattern;
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+        }
+        
+        static Rule parse(String line) {
+            String pattern = line.endsWith("\\ ") ? line : line.stripTrailing();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                return null;
+            }
+            
+            boolean negated = pattern.startsWith("!");
+            if (negated) {
+                pattern = pattern.substring(1);
+            }
+            
+            boolean directoryOnly = pattern.endsWith("/");
+            if (directoryOnly) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            
+            // Patterns without a separator match at any depth; others are relative to the file
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            } else if (!pattern.contains("/")) {
+                pattern = "**/" + pattern;
+            }
+            
+            return pattern.isEmpty() ? null : new Rule(new GlobPattern(pattern), negated, directoryOnly);
+        }
+    }
+}
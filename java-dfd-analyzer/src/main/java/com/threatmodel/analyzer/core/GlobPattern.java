@@ -0,0 +1,83 @@
+package com.threatmodel.analyzer.core;
+
+import java.util.regex.Pattern;
+
+/**
+ * A glob pattern matched against relative paths with '/' separators.
+ *
+ * {@code *} matches within a path segment, {@code ?} matches a single character of a segment,
+ * {@code [...]} matches a character class and {@code **} matches across segments; a leading
+ * or embedded {@code **}{@code /} also matches no directories at all.
+ */
+final class GlobPattern {
+    
+    private final String glob;
+    private final Pattern pattern;
+    
+    GlobPattern(String glob) {
+        this.glob = glob;
+        this.pattern = Pattern.compile(toRegex(glob));
+    }
+    
+    /**
+     * Checks if a relative path matches the pattern
+     */
+    boolean matches(String relativePath) {
+        return pattern.matcher(relativePath).matches();
+    }
+    
+    @Override
+    public String toString() {
+        return glob;
+    }
+    
+    /**
+     * Translates a glob into an equivalent regular expression
+     */
+    private static String toRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() * 2);
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    boolean segmentStart = i == 0 || glob.charAt(i - 1) == '/';
+                    if (segmentStart && i + 2 < glob.length() && glob.charAt(i + 2) == '/') {
+                        // "**/" matches zero or more directories
+                        regex.append("(?:.*/)?");
+                        i += 3;
+                    } else {
+                        regex.append(".*");
+                        i += 2;
+                    }
+                } else {
+                    regex.append("[^/]*");
+                    i++;
+                }
+            } else if (c == '?') {
+                regex.append("[^/]");
+                i++;
+            } else if (c == '[') {
+                int end = glob.indexOf(']', i + 2);
+                if (end < 0) {
+                    regex.append("\\[");
+                    i++;
+                } else {
+                    String characterClass = glob.substring(i + 1, end).replace("\\", "\\\\");
+                    if (characterClass.startsWith("!")) {
+                        characterClass = "^" + characterClass.substring(1);
+                    }
+                    regex.append('[').append(characterClass).append(']');
+                    i = end + 1;
+                }
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                regex.append(Pattern.quote(String.valueOf(glob.charAt(i + 1))));
+                i += 2;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+                i++;
+            }
+        }
+        return regex.toString();
+    }
+}
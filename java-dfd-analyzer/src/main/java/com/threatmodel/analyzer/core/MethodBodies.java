@@ -0,0 +1,210 @@
+package com.threatmodel.analyzer.core;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.stmt.BlockStmt;
+
+/**
+ * The method and constructor bodies removed from a source file that was parsed for its declarations only.
+ *
+ * The declarations are parsed with empty bodies in place of the removed ones. Code that needs the
+ * statements of a method, such as a detector looking at the calls it makes, asks for them through
+ * {@link #getBody(CallableDeclaration)}, which parses the removed body on first use and puts it into
+ * the syntax tree. The parsed body has the positions it has in the source file.
+ *
+ * Like the syntax tree it is attached to, an instance is not thread-safe.
+ */
+public final class MethodBodies {
+    
+    private static final DataKey<MethodBodies> KEY = new DataKey<MethodBodies>() {
+    };
+    
+    private static final String CONSTRUCTOR_HEADER = "X()";
+    
+    private final String source;
+    private String declarations;
+    private JavaParser javaParser;
+    
+    // Removed bodies in source order: their offset in the declarations and their range in the source
+    private int[] declarationOffsets = new int[16];
+    private int[] sourceStarts = new int[16];
+    private int[] sourceEnds = new int[16];
+    private int count;
+    
+    // Offsets of the line starts, computed on the first request for a body
+    private int[] declarationLines;
+    private int[] sourceLines;
+    
+    MethodBodies(String source) {
+        this.source = source;
+    }
+    
+    /**
+     * Removes the method and constructor bodies, and the comments other than Javadoc, from a source file
+     *
+     * @param source The Java source text
+     * @return The declarations of the source file, with the removed bodies
+     */
+    public static MethodBodies strip(String source) {
+        return MethodBodyStripper.strip(source);
+    }
+    
+    /**
+     * Gets the source text without method bodies, which is the text to parse
+     */
+    public String getDeclarations() {
+        return declarations;
+    }
+    
+    void setDeclarations(String declarations) {
+        this.declarations = declarations;
+    }
+    
+    void add(int declarationOffset, int sourceStart, int sourceEnd) {
+        if (count == declarationOffsets.length) {
+            declarationOffsets = Arrays.copyOf(declarationOffsets, count * 2);
+            sourceStarts = Arrays.copyOf(sourceStarts, count * 2);
+            sourceEnds = Arrays.copyOf(sourceEnds, count * 2);
+        }
+        declarationOffsets[count] = declarationOffset;
+        sourceStarts[count] = sourceStart;
+        sourceEnds[count] = sourceEnd;
+        count++;
+    }
+    
+    /**
+     * Gets the number of bodies removed from the source
+     */
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * Attaches the removed bodies to the compilation unit parsed from the declarations
+     *
+     * @param cu The compilation unit parsed from {@link #getDeclarations()}
+     * @param javaParser The parser used to parse the bodies on request
+     */
+    public void attach(CompilationUnit cu, JavaParser javaParser) {
+        this.javaParser = javaParser;
+        cu.setData(KEY, this);
+    }
+    
+    /**
+     * Gets the body of a method or constructor, parsing it first if it was removed before the
+     * compilation unit was parsed
+     *
+     * @param callable The method or constructor
+     * @return The body, or empty for abstract methods and bodies that cannot be parsed
+     */
+    public static Optional<BlockStmt> getBody(CallableDeclaration<?> callable) {
+        Optional<BlockStmt> body = callable instanceof MethodDeclaration
+                ? ((MethodDeclaration) callable).getBody()
+                : Optional.of(((ConstructorDeclaration) callable).getBody());
+        Optional<CompilationUnit> cu = callable.findCompilationUnit();
+        if (!body.isPresent() || !body.get().getBegin().isPresent()
+                || !cu.isPresent() || !cu.get().containsData(KEY)) {
+            return body;
+        }
+        
+        MethodBodies bodies = cu.get().getData(KEY);
+        int index = bodies.find(body.get().getBegin().get());
+        if (index < 0) {
+            return body;
+        }
+        
+        Optional<BlockStmt> parsed = bodies.parse(index);
+        parsed.ifPresent(block -> {
+            if (callable instanceof MethodDeclaration) {
+                ((MethodDeclaration) callable).setBody(block);
+            } else {
+                ((ConstructorDeclaration) callable).setBody(block);
+            }
+        });
+        return parsed;
+    }
+    
+    /**
+     * Finds the removed body that starts at a position of the declarations, or -1 if none
+     * does or it was already parsed
+     */
+    private int find(Position position) {
+        if (declarationLines == null) {
+            declarationLines = lineStarts(declarations);
+        }
+        if (position.line < 1 || position.line > declarationLines.length) {
+            return -1;
+        }
+        
+        int offset = declarationLines[position.line - 1] + position.column - 1;
+        int index = Arrays.binarySearch(declarationOffsets, 0, count, offset);
+        return index >= 0 && sourceEnds[index] >= 0 ? index : -1;
+    }
+    
+    /**
+     * Parses a removed body, padded so that it keeps its position in the source file. The body is
+     * parsed as that of a constructor, which is the only kind of body that may start with an
+     * explicit constructor invocation.
+     */
+    private Optional<BlockStmt> parse(int index) {
+        if (sourceLines == null) {
+            sourceLines = lineStarts(source);
+        }
+        int start = sourceStarts[index];
+        int line = Arrays.binarySearch(sourceLines, start);
+        if (line < 0) {
+            line = -line - 2;
+        }
+        
+        // A body is preceded by at least the parameter list, so the constructor header fits in front of it
+        StringBuilder constructor = new StringBuilder(line + sourceEnds[index] - sourceLines[line]);
+        constructor.append(CONSTRUCTOR_HEADER);
+        for (int i = 0; i < line; i++) {
+            constructor.append('\n');
+        }
+        int column = line > 0 ? 0 : CONSTRUCTOR_HEADER.length();
+        for (int i = sourceLines[line] + column; i < start; i++) {
+            constructor.append(' ');
+        }
+        constructor.append(source, start, sourceEnds[index]);
+        sourceEnds[index] = -1;
+        
+        ParseResult<BodyDeclaration<?>> result = javaParser.parseBodyDeclaration(constructor.toString());
+        if (!result.isSuccessful() || !result.getResult().isPresent()
+                || !result.getResult().get().isConstructorDeclaration()) {
+            return Optional.empty();
+        }
+        return Optional.of(result.getResult().get().asConstructorDeclaration().getBody());
+    }
+    
+    /**
+     * Finds the offsets at which the lines of a text start; lines end with \n, \r or \r\n
+     */
+    private static int[] lineStarts(String text) {
+        int[] starts = new int[64];
+        int lines = 1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                i++;
+            } else if (c != '\r' && c != '\n') {
+                continue;
+            }
+            if (lines == starts.length) {
+                starts = Arrays.copyOf(starts, lines * 2);
+            }
+            starts[lines++] = i + 1;
+        }
+        return Arrays.copyOf(starts, lines);
+    }
+}
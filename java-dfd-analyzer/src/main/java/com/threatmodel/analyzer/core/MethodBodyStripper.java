@@ -0,0 +1,382 @@
+package com.threatmodel.analyzer.core;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Removes the bodies of methods and constructors, and unless asked to keep them all comments but
+ * Javadoc, from Java source text, keeping the declarations.
+ *
+ * This is a lexical pass: it tracks comments, string, text block and character literals, braces
+ * and parentheses, but does not parse the source. A brace at the top level of a type body opens
+ * a method or constructor body if it follows a parameter list, and neither a type keyword, a
+ * field initializer nor an annotation element default. In the constant list of an enum, a brace
+ * opens the class body of a constant, whose methods are treated like those of any type. The
+ * content of such a body is dropped except for its line breaks, so the declarations keep their
+ * line numbers, and its location is recorded so that it can be parsed later on request. Block
+ * comments are blanked out, keeping the columns of the code after them. All other braces are
+ * copied as they are, so malformed sources come out no worse than they went in.
+ */
+final class MethodBodyStripper {
+    
+    private final String source;
+    private final StringBuilder out;
+    private final MethodBodies bodies;
+    private final boolean keepComments;
+    private int pos;
+    
+    // The open braces, and the state of the declaration each one was opened in
+    private final Deque<Brace> braces = new ArrayDeque<>();
+    
+    // State of the declaration being read at the current brace level
+    private int parenDepth;
+    private boolean sawParen;
+    private boolean sawTypeKeyword;
+    private boolean sawEnumKeyword;
+    private boolean sawInitializer;
+    
+    private MethodBodyStripper(String source, boolean keepComments) {
+        this.source = source;
+        this.keepComments = keepComments;
+        this.out = new StringBuilder(source.length());
+        this.bodies = new MethodBodies(source);
+    }
+    
+    /**
+     * Removes the method and constructor bodies and the comments other than Javadoc from a source file
+     *
+     * @param source The Java source text
+     * @return The declarations of the source file, with the locations of the removed bodies
+     */
+    static MethodBodies strip(String source) {
+        return strip(source, false);
+    }
+    
+    /**
+     * Removes the method and constructor bodies from a source file, optionally keeping all comments
+     * outside of them. Comments other than Javadoc take part in the attribution of comments to
+     * declarations, so only with all comments kept is the syntax tree the same as that of a full parse
+     * without its method bodies.
+     *
+     * @param source The Java source text
+     * @param keepComments Whether to keep the comments other than Javadoc
+     * @return The declarations of the source file, with the locations of the removed bodies
+     */
+    static MethodBodies strip(String source, boolean keepComments) {
+        MethodBodyStripper stripper = new MethodBodyStripper(source, keepComments);
+        stripper.run();
+        stripper.bodies.setDeclarations(stripper.out.toString());
+        return stripper.bodies;
+    }
+    
+    private void run() {
+        while (pos < source.length()) {
+            char c = source.charAt(pos);
+            if (c == '/' && next(1) == '/') {
+                if (keepComments) {
+                    copy(lineCommentEnd());
+                } else {
+                    pos = lineCommentEnd();
+                }
+            } else if (c == '/' && next(1) == '*') {
+                int end = blockCommentEnd();
+                if (keepComments || (source.startsWith("/**", pos) && !source.startsWith("/**/", pos))) {
+                    copy(end);
+                } else {
+                    blank(end);
+                }
+            } else if (c == '"' || c == '\'') {
+                copy(literalEnd());
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int end = identifierEnd();
+                checkTypeKeyword(source.substring(pos, end), end);
+                copy(end);
+            } else {
+                punctuation(c);
+            }
+        }
+    }
+    
+    private void punctuation(char c) {
+        switch (c) {
+            case '(':
+                parenDepth++;
+                sawParen = true;
+                break;
+            case ')':
+                parenDepth = Math.max(0, parenDepth - 1);
+                break;
+            case '=':
+                // Assignments but not comparisons; annotation values are inside parentheses
+                if (parenDepth == 0 && next(1) != '=' && previous() != '=' && previous() != '!'
+                        && previous() != '<' && previous() != '>') {
+                    sawInitializer = true;
+                }
+                break;
+            case ';':
+                if (parenDepth == 0) {
+                    resetDeclaration();
+                    if (!braces.isEmpty()) {
+                        // The first semicolon of an enum body ends its constants
+                        braces.peek().enumConstants = false;
+                    }
+                }
+                break;
+            case '{':
+                if (inEnumConstants()) {
+                    braces.push(Brace.enumConstantBody());
+                    resetDeclaration();
+                    break;
+                }
+                if (isMethodBody()) {
+                    skipBody();
+                    resetDeclaration();
+                    return;
+                }
+                braces.push(new Brace(this));
+                resetDeclaration();
+                break;
+            case '}':
+                Brace brace = braces.poll();
+                if (brace != null && brace.inExpression()) {
+                    // A lambda or anonymous class body; the enclosing declaration continues
+                    brace.restore(this);
+                } else {
+                    resetDeclaration();
+                }
+                break;
+            default:
+                break;
+        }
+        out.append(c);
+        pos++;
+    }
+    
+    /**
+     * Checks if a brace opens a method or constructor body
+     */
+    private boolean isMethodBody() {
+        boolean inTypeBody = braces.isEmpty() || braces.peek().typeBody;
+        return inTypeBody && parenDepth == 0 && sawParen && !sawTypeKeyword && !sawInitializer;
+    }
+    
+    /**
+     * Checks if the current position is in the constant list of an enum, outside the arguments of a constant
+     */
+    private boolean inEnumConstants() {
+        return !braces.isEmpty() && braces.peek().enumConstants && parenDepth == 0;
+    }
+    
+    /**
+     * Records type declarations and annotation element defaults. {@code record} is only a keyword
+     * when a type name follows it, class literals such as {@code Foo.class} do not declare a type,
+     * and {@code default} after a parameter list starts the default value of an annotation element,
+     * where it is not a method modifier.
+     */
+    private void checkTypeKeyword(String word, int end) {
+        if (parenDepth > 0 || previous() == '.') {
+            return;
+        }
+        switch (word) {
+            case "class":
+            case "interface":
+                sawTypeKeyword = true;
+                break;
+            case "enum":
+                sawTypeKeyword = true;
+                sawEnumKeyword = true;
+                break;
+            case "default":
+                if (sawParen) {
+                    sawInitializer = true;
+                }
+                break;
+            case "record":
+                int next = end;
+                while (next < source.length() && Character.isWhitespace(source.charAt(next))) {
+                    next++;
+                }
+                if (next > end && next < source.length() && Character.isJavaIdentifierStart(source.charAt(next))) {
+                    sawTypeKeyword = true;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Replaces a body by an empty block that keeps the line breaks of the body
+     */
+    private void skipBody() {
+        int declarationsOffset = out.length();
+        int start = pos;
+        out.append('{');
+        pos++;
+        int depth = 1;
+        while (pos < source.length()) {
+            char c = source.charAt(pos);
+            int end;
+            if (c == '/' && next(1) == '/') {
+                end = lineCommentEnd();
+            } else if (c == '/' && next(1) == '*') {
+                end = blockCommentEnd();
+            } else if (c == '"' || c == '\'') {
+                end = literalEnd();
+            } else {
+                end = pos + 1;
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    bodies.add(declarationsOffset, start, pos + 1);
+                    out.append('}');
+                    pos++;
+                    return;
+                }
+            }
+            keepLineBreaks(end);
+        }
+    }
+    
+    private void keepLineBreaks(int end) {
+        for (; pos < end; pos++) {
+            char c = source.charAt(pos);
+            if (c == '\n' || c == '\r') {
+                out.append(c);
+            }
+        }
+    }
+    
+    /**
+     * Replaces the source up to a position by spaces, keeping its line breaks
+     */
+    private void blank(int end) {
+        for (; pos < end; pos++) {
+            char c = source.charAt(pos);
+            out.append(c == '\n' || c == '\r' ? c : ' ');
+        }
+    }
+    
+    private void copy(int end) {
+        out.append(source, pos, end);
+        pos = end;
+    }
+    
+    private void resetDeclaration() {
+        parenDepth = 0;
+        sawParen = false;
+        sawTypeKeyword = false;
+        sawEnumKeyword = false;
+        sawInitializer = false;
+    }
+    
+    private char next(int offset) {
+        int index = pos + offset;
+        return index < source.length() ? source.charAt(index) : 0;
+    }
+    
+    private char previous() {
+        return pos > 0 ? source.charAt(pos - 1) : 0;
+    }
+    
+    private int lineCommentEnd() {
+        int end = source.indexOf('\n', pos);
+        return end < 0 ? source.length() : end;
+    }
+    
+    private int blockCommentEnd() {
+        int end = source.indexOf("*/", pos + 2);
+        return end < 0 ? source.length() : end + 2;
+    }
+    
+    private int identifierEnd() {
+        int end = pos + 1;
+        while (end < source.length() && Character.isJavaIdentifierPart(source.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+    
+    /**
+     * Finds the end of the string, text block or character literal at the current position
+     */
+    private int literalEnd() {
+        char quote = source.charAt(pos);
+        if (quote == '"' && source.startsWith("\"\"\"", pos)) {
+            int end = pos + 3;
+            while (end < source.length()) {
+                if (source.charAt(end) == '\\') {
+                    end += 2;
+                } else if (source.startsWith("\"\"\"", end)) {
+                    return end + 3;
+                } else {
+                    end++;
+                }
+            }
+            return source.length();
+        }
+        
+        int end = pos + 1;
+        while (end < source.length()) {
+            char c = source.charAt(end);
+            if (c == '\\') {
+                end += 2;
+            } else if (c == quote) {
+                return end + 1;
+            } else if (c == '\n') {
+                // Unterminated literal; resume at the line break
+                return end;
+            } else {
+                end++;
+            }
+        }
+        return source.length();
+    }
+    
+    /**
+     * An open brace, with the state of the declaration it was opened in
+     */
+    private static class Brace {
+        private final boolean typeBody;
+        private final int parenDepth;
+        private final boolean sawParen;
+        private final boolean sawInitializer;
+        
+        // Set for the body of an enum until the semicolon that ends its constants
+        private boolean enumConstants;
+        
+        Brace(MethodBodyStripper stripper) {
+            this(stripper.sawTypeKeyword && stripper.parenDepth == 0, stripper.parenDepth,
+                    stripper.sawParen, stripper.sawInitializer);
+            this.enumConstants = typeBody && stripper.sawEnumKeyword;
+        }
+        
+        private Brace(boolean typeBody, int parenDepth, boolean sawParen, boolean sawInitializer) {
+            this.typeBody = typeBody;
+            this.parenDepth = parenDepth;
+            this.sawParen = sawParen;
+            this.sawInitializer = sawInitializer;
+        }
+        
+        /**
+         * Creates the brace of the class body of an enum constant
+         */
+        static Brace enumConstantBody() {
+            return new Brace(true, 0, false, false);
+        }
+        
+        /**
+         * Checks if the brace was opened inside an expression, such as a lambda body
+         */
+        boolean inExpression() {
+            return !typeBody && (parenDepth > 0 || sawInitializer);
+        }
+        
+        void restore(MethodBodyStripper stripper) {
+            stripper.parenDepth = parenDepth;
+            stripper.sawParen = sawParen;
+            stripper.sawTypeKeyword = false;
+            stripper.sawInitializer = sawInitializer;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.threatmodel.analyzer.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+
+/**
+ * Size and time budget for parsing a single source file.
+ *
+ * Files larger than the size budget are parsed with their method bodies removed, which keeps
+ * the declarations that the extraction needs. Other files are parsed in full; if the parse runs
+ * out of time, it is abandoned and the file is parsed again without its method bodies. If even
+ * that runs out of time, the file is skipped. With lean parsing, every file is parsed without
+ * its method bodies from the start. So are the files whose bodies the {@link SourcePrefilter}
+ * found nothing to extract from, but those keep their comments. The removed bodies are attached
+ * to the syntax tree as {@link MethodBodies}, so they can still be parsed on request.
+ *
+ * JavaParser cannot be interrupted, so a parse with a time budget runs on a separate parse
+ * thread while the calling worker waits for it until the deadline. At the deadline the worker
+ * gives up on the parse and moves on, so each parse attempt, including the attribution of
+ * comments, takes the worker at most the budget; a file may take two attempts. The
+ * abandoned parse cannot be stopped: it keeps its thread busy until the parser next asks for
+ * input, which then fails, or until it completes. Its result is discarded, and so is the
+ * parser of its thread. The CPU time a parse thread spends on a file, up to the point where the
+ * worker gets its result or gives up on it, is returned with the outcome of the parse.
+ *
+ * Each parse thread keeps a parser for as long as it is asked to parse with the same
+ * {@link ParserConfiguration} instance, so callers should share one configuration between the
+ * parsers of their worker threads.
+ */
+class ParseBudget {
+    
+    // Threads that run parses with a time budget, created as needed and ended after a minute without work
+    private static final AtomicInteger parseThreadCount = new AtomicInteger();
+    private static final ExecutorService PARSE_THREADS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "analyzer-parse-" + parseThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ThreadLocal<JavaParser> parseThreadParsers = new ThreadLocal<>();
+    
+    private final long maxFileSize;
+    private final long timeBudgetNanos;
+    private final boolean leanParsing;
+    
+    /**
+     * Creates a budget
+     *
+     * @param maxFileSize The size in bytes above which files are parsed without method bodies, or -1 for no limit
+     * @param timeBudgetMillis The time allowed for each parse, or -1 for no limit
+     * @param leanParsing Whether every file is parsed without its method bodies
+     */
+    ParseBudget(long maxFileSize, long timeBudgetMillis, boolean leanParsing) {
+        this.maxFileSize = maxFileSize;
+        this.timeBudgetNanos = timeBudgetMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        this.leanParsing = leanParsing;
+    }
+    
+    /**
+     * Parses a source file within the budget
+     *
+     * @param javaParser The parser to use
+     * @param source The source text
+     * @param size The size of the source file in bytes
+     * @param needsMethodBodies Whether the extraction needs the method bodies of the file
+     * @return The outcome of the parse
+     */
+    Parse parse(JavaParser javaParser, String source, long size, boolean needsMethodBodies) {
+        OverBudget reason = null;
+        long parseThreadCpuNanos = 0;
+        if (!leanParsing && !needsMethodBodies) {
+            // Keep the comments, so that the syntax tree is that of a full parse without method bodies
+            return parseDeclarations(javaParser, MethodBodyStripper.strip(source, true), null, 0);
+        } else if (!leanParsing) {
+            if (maxFileSize >= 0 && size > maxFileSize) {
+                reason = OverBudget.SIZE;
+            } else {
+                Attempt attempt = parseWithDeadline(javaParser, source);
+                if (attempt.result != null) {
+                    return new Parse(attempt.result, null, false, attempt.cpuNanos);
+                }
+                reason = OverBudget.TIME;
+                parseThreadCpuNanos = attempt.cpuNanos;
+            }
+        }
+        
+        return parseDeclarations(javaParser, MethodBodyStripper.strip(source), reason, parseThreadCpuNanos);
+    }
+    
+    /**
+     * Parses the declarations only, keeping the bodies for code that asks for them
+     *
+     * @param reason The reason the file is over its budget, or null if it is not
+     * @param parseThreadCpuNanos The CPU time parse threads spent on earlier attempts
+     */
+    private Parse parseDeclarations(JavaParser javaParser, MethodBodies bodies, OverBudget reason,
+            long parseThreadCpuNanos) {
+        Attempt attempt = parseWithDeadline(javaParser, bodies.getDeclarations());
+        parseThreadCpuNanos += attempt.cpuNanos;
+        if (attempt.result == null) {
+            return new Parse(null, reason != null ? reason : OverBudget.TIME, true, parseThreadCpuNanos);
+        }
+        attempt.result.getResult().ifPresent(cu -> bodies.attach(cu, javaParser));
+        return new Parse(attempt.result, reason, true, parseThreadCpuNanos);
+    }
+    
+    /**
+     * Parses a source text, on the calling thread if there is no time budget and on a parse thread otherwise
+     *
+     * @return The attempt, whose result is null if the parse ran out of time
+     */
+    private Attempt parseWithDeadline(JavaParser javaParser, String source) {
+        if (timeBudgetNanos < 0) {
+            return new Attempt(javaParser.parse(source), 0);
+        }
+        
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        ParseTask task = new ParseTask(javaParser.getParserConfiguration(),
+                new DeadlineReader(new StringReader(source), deadline));
+        Future<ParseResult<CompilationUnit>> parse = PARSE_THREADS.submit(task);
+        try {
+            ParseResult<CompilationUnit> result = parse.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            return new Attempt(task.reader.expired ? null : result, task.getCpuNanos());
+        } catch (TimeoutException e) {
+            task.reader.expire();
+            return new Attempt(null, task.getCpuNanos());
+        } catch (InterruptedException e) {
+            task.reader.expire();
+            Thread.currentThread().interrupt();
+            return new Attempt(null, task.getCpuNanos());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ParseTimeoutException) {
+                // Normally reported as a parse problem, but the parser may also pass it on
+                return new Attempt(null, task.getCpuNanos());
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+    
+    /**
+     * A parse run on a parse thread with that thread's parser, which is discarded if the parse was abandoned
+     */
+    private static class ParseTask implements Callable<ParseResult<CompilationUnit>> {
+        private final ParserConfiguration configuration;
+        private final DeadlineReader reader;
+        
+        // The parse thread and its CPU time when the parse started, and the CPU time of the finished parse
+        private volatile long threadId = -1;
+        private volatile long startCpuTime = -1;
+        private volatile long cpuNanos = -1;
+        private volatile boolean finished;
+        
+        ParseTask(ParserConfiguration configuration, DeadlineReader reader) {
+            this.configuration = configuration;
+            this.reader = reader;
+        }
+        
+        @Override
+        public ParseResult<CompilationUnit> call() {
+            startCpuTime = AnalysisMetrics.threadCpuTime();
+            threadId = Thread.currentThread().getId();
+            
+            JavaParser javaParser = parseThreadParsers.get();
+            if (javaParser == null || javaParser.getParserConfiguration() != configuration) {
+                javaParser = new JavaParser(configuration);
+                parseThreadParsers.set(javaParser);
+            }
+            
+            try {
+                return javaParser.parse(reader);
+            } finally {
+                if (reader.expired) {
+                    parseThreadParsers.remove();
+                }
+                cpuNanos = elapsed(startCpuTime, AnalysisMetrics.threadCpuTime());
+                finished = true;
+            }
+        }
+        
+        /**
+         * Gets the CPU time of the parse so far, or 0 if it is not available. A parse that
+         * has not finished is measured on its thread, which is still running it.
+         */
+        long getCpuNanos() {
+            if (!finished && threadId >= 0) {
+                long running = elapsed(startCpuTime, AnalysisMetrics.threadCpuTime(threadId));
+                if (!finished) {
+                    return running;
+                }
+            }
+            return finished ? cpuNanos : 0;
+        }
+        
+        private static long elapsed(long startCpuTime, long cpuTime) {
+            return startCpuTime < 0 || cpuTime < 0 ? 0 : cpuTime - startCpuTime;
+        }
+    }
+    
+    /**
+     * One attempt to parse a source text
+     */
+    private static class Attempt {
+        // The result, or null if the parse ran out of time
+        private final ParseResult<CompilationUnit> result;
+        
+        // The CPU time a parse thread spent on the attempt, or 0 if it ran on the calling thread
+        private final long cpuNanos;
+        
+        Attempt(ParseResult<CompilationUnit> result, long cpuNanos) {
+            this.result = result;
+            this.cpuNanos = cpuNanos;
+        }
+    }
+    
+    /**
+     * The reason a file was over its budget
+     */
+    enum OverBudget {
+        SIZE("size"),
+        TIME("time");
+        
+        private final String label;
+        
+        OverBudget(String label) {
+            this.label = label;
+        }
+        
+        String getLabel() {
+            return label;
+        }
+    }
+    
+    /**
+     * The outcome of parsing a file within its budget
+     */
+    static class Parse {
+        private final ParseResult<CompilationUnit> result;
+        private final OverBudget overBudget;
+        private final boolean declarationsOnly;
+        private final long parseThreadCpuNanos;
+        
+        Parse(ParseResult<CompilationUnit> result, OverBudget overBudget, boolean declarationsOnly,
+                long parseThreadCpuNanos) {
+            this.result = result;
+            this.overBudget = overBudget;
+            this.declarationsOnly = declarationsOnly;
+            this.parseThreadCpuNanos = parseThreadCpuNanos;
+        }
+        
+        /**
+         * Gets the parse result, or null if the file was skipped because even its
+         * declarations could not be parsed in time
+         */
+        ParseResult<CompilationUnit> getResult() {
+            return result;
+        }
+        
+        /**
+         * Gets the reason the file was over its budget, or null if it was parsed in full
+         */
+        OverBudget getOverBudget() {
+            return overBudget;
+        }
+        
+        /**
+         * Checks if the method bodies of the file were removed before parsing it
+         */
+        boolean isDeclarationsOnly() {
+            return declarationsOnly;
+        }
+        
+        /**
+         * Gets the CPU time that parse threads, rather than the calling thread, spent on the file
+         */
+        long getParseThreadCpuNanos() {
+            return parseThreadCpuNanos;
+        }
+    }
+    
+    /**
+     * Reader that fails once its deadline has passed or its parse was abandoned
+     */
+    private static class DeadlineReader extends Reader {
+        private final Reader reader;
+        private final long deadline;
+        private volatile boolean expired;
+        
+        DeadlineReader(Reader reader, long deadline) {
+            this.reader = reader;
+            this.deadline = deadline;
+        }
+        
+        /**
+         * Fails the next read, as the parse was abandoned
+         */
+        void expire() {
+            expired = true;
+        }
+        
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (expired || System.nanoTime() - deadline > 0) {
+                expired = true;
+                throw new ParseTimeoutException();
+            }
+            return reader.read(buffer, offset, length);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+    
+    /**
+     * Thrown into the parser to abandon a parse that ran out of time
+     */
+    private static class ParseTimeoutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        ParseTimeoutException() {
+            super("Parse time budget exceeded", null, false, false);
+        }
+    }
+}
@@ -1,68 +1,112 @@
 package com.threatmodel.analyzer.core;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.FieldDeclaration;
-import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.comments.JavadocComment;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
-import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import com.threatmodel.analyzer.jfr.FileParseEvent;
 import com.threatmodel.analyzer.model.AnalysisResult;
-import com.threatmodel.analyzer.model.DataField;
 import com.threatmodel.analyzer.model.DataFlow;
 import com.threatmodel.analyzer.model.DataStore;
 import com.threatmodel.analyzer.model.DataStructure;
 import com.threatmodel.analyzer.model.ExternalEntity;
 import com.threatmodel.analyzer.model.Process;
-import com.threatmodel.analyzer.utils.AnnotationExtractor;
-import com.threatmodel.analyzer.utils.CommentExtractor;
 import com.threatmodel.analyzer.utils.DataFlowDetector;
-import com.threatmodel.analyzer.utils.ExternalEntityDetector;
 
 /**
- * Main analyzer class for processing Java projects and extracting threat modeling information
+ * Main analyzer class for processing Java projects and extracting threat modeling information.
+ * 
+ * An analyzer keeps its worker threads, their parsers and the extractions of the last run
+ * between runs, so it can be reused to analyze the same project again cheaply. Close it
+ * to release the worker threads.
  */
-public class ProjectAnalyzer {
+public class ProjectAnalyzer implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(ProjectAnalyzer.class);
     
+    /**
+     * Version of the analyzer, recorded with cached extractions
+     */
+    public static final String VERSION = "1.0";
+    
     private final Path projectPath;
-    private final JavaParser javaParser;
+    private final AnalyzerOptions options;
+    private final SourceDiscovery sourceDiscovery;
+    private final ParseBudget parseBudget;
     private final Map<String, DataStructure> dataStructures = new HashMap<>();
     private final Map<String, Process> processes = new HashMap<>();
     private final Map<String, ExternalEntity> externalEntities = new HashMap<>();
     private final Map<String, DataStore> dataStores = new HashMap<>();
-    private final List<DataFlow> dataFlows = new ArrayList<>();
+    
+    // Extractions of the last run in file order, kept for incremental re-analysis
+    private final Map<Path, FileExtraction> fileExtractions = new LinkedHashMap<>();
+    private final Map<Path, FileStamp> fileStamps = new ConcurrentHashMap<>();
+    private ExtractionCache extractionCache;
+    
+    // Timings and counters of the last run
+    private volatile AnalysisMetrics metrics;
+    
+    // Worker threads and their parsers are kept between runs so that repeated analyses start warm.
+    // Parsers are not thread-safe, so every worker thread gets its own instance; it holds no
+    // project state, so a thread shared by several analyzers uses the same one for all of them.
+    // The parsers share their configuration, which lets the parse threads of the parse budget
+    // keep their own parsers whichever worker they parse for.
+    private static final ParserConfiguration PARSER_CONFIGURATION = new ParserConfiguration();
+    private static final ThreadLocal<JavaParser> workerParsers =
+            ThreadLocal.withInitial(() -> new JavaParser(PARSER_CONFIGURATION));
+    private ExecutorService executor;
+    private final boolean ownsExecutor;
+    
+    // Guards the executor. The analyzer itself is not used as the lock,
+    // as callers may hold its monitor while discovery threads submit files.
+    private final Object workerLock = new Object();
     
     public ProjectAnalyzer(Path projectPath) {
+        this(projectPath, new AnalyzerOptions());
+    }
+    
+    public ProjectAnalyzer(Path projectPath, AnalyzerOptions options) {
+        this(projectPath, options, null);
+    }
+    
+    /**
+     * Creates an analyzer that extracts files on the given pool of worker threads, which
+     * may be shared with other analyzers and is not shut down when the analyzer is closed
+     *
+     * @param workers Pool created with {@link #createWorkerPool(int)}, or null to create one on first use
+     */
+    public ProjectAnalyzer(Path projectPath, AnalyzerOptions options, ExecutorService workers) {
         this.projectPath = projectPath;
-        
-        // Configure JavaParser with a symbol solver for better type resolution
-        CombinedTypeSolver typeSolver = new CombinedTypeSolver();
-        typeSolver.add(new ReflectionTypeSolver());
-        typeSolver.add(new JavaParserTypeSolver(projectPath.toFile()));
-        
-        JavaSymbolSolver symbolSolver = new JavaSymbolSolver(typeSolver);
-        this.javaParser = new JavaParser();
-        this.javaParser.getParserConfiguration().setSymbolResolver(symbolSolver);
+        this.options = options;
+        this.executor = workers;
+        this.ownsExecutor = workers == null;
+        this.sourceDiscovery = new SourceDiscovery(projectPath, options);
+        this.parseBudget = new ParseBudget(options.getMaxFileSize(), options.getFileTimeBudget(),
+                options.isLeanParsing());
     }
     
     /**
@@ -71,24 +115,154 @@ public class ProjectAnalyzer {
     public AnalysisResult analyze() throws IOException {
         logger.info("Starting project analysis at: {}", projectPath);
         
-        // Find all Java files in the project
-        List<Path> javaFiles = findJavaFiles(projectPath);
+        // Discard the state of any previous run
+        fileExtractions.clear();
+        if (extractionCache != null) {
+            extractionCache.reset();
+        }
+        
+        return analyzeFiles(javaFile -> true);
+    }
+    
+    /**
+     * Re-analyzes the project after some of its files changed. Only the changed files and files
+     * not seen before are extracted again; all other files reuse their previous extraction.
+     * 
+     * @param changedFiles Files that were created, modified or deleted since the last analysis
+     * @return The updated analysis results
+     */
+    public AnalysisResult reanalyze(Set<Path> changedFiles) throws IOException {
+        logger.info("Re-analyzing {} changed files at: {}", changedFiles.size(), projectPath);
+        
+        return analyzeFiles(changedFiles::contains);
+    }
+    
+    /**
+     * Re-analyzes the project, extracting again only the files whose size or modification
+     * time changed since the last run. This suits long-running processes that are not
+     * notified of individual changes.
+     * 
+     * @return The updated analysis results
+     */
+    public AnalysisResult update() throws IOException {
+        if (fileExtractions.isEmpty()) {
+            return analyze();
+        }
+        
+        logger.info("Updating analysis of project at: {}", projectPath);
+        return analyzeFiles(javaFile -> !FileStamp.of(javaFile).equals(fileStamps.get(javaFile)));
+    }
+    
+    /**
+     * Gets the source discovery of the project, whose rules also decide which changes to watch
+     */
+    SourceDiscovery getSourceDiscovery() {
+        return sourceDiscovery;
+    }
+    
+    /**
+     * Gets the timings and counters of the last run, or null if the project was not analyzed yet.
+     * Callers may record further phases, such as writing the output, before reporting them.
+     */
+    public AnalysisMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Shuts down the worker threads, unless they were passed in by the creator of the analyzer
+     */
+    @Override
+    public void close() {
+        synchronized (workerLock) {
+            if (ownsExecutor && executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+    
+    /**
+     * Extracts the files selected by the predicate, merges all extractions in file order
+     * and detects the data flows between the merged components
+     */
+    private AnalysisResult analyzeFiles(Predicate<Path> needsExtraction) throws IOException {
+        AnalysisMetrics runMetrics = new AnalysisMetrics(projectPath.getFileName().toString(),
+                options.getParallelism(), options.getSlowestFileCount());
+        metrics = runMetrics;
+        runMetrics.startPhase(AnalysisMetrics.DISCOVERY);
+        
+        if (extractionCache == null && options.getCacheDirectory() != null) {
+            extractionCache = ExtractionCache.forProject(options.getCacheDirectory(), projectPath, sourceSelection(),
+                    cacheProfile());
+        }
+        int cacheHits = extractionCache != null ? extractionCache.getHits() : 0;
+        int cacheMisses = extractionCache != null ? extractionCache.getMisses() : 0;
+        
+        // Find all Java files in the project, extracting each one as soon as it is found
+        List<Path> javaFiles = Collections.synchronizedList(new ArrayList<>());
+        Map<Path, Future<FileExtraction>> pending = new ConcurrentHashMap<>();
+        sourceDiscovery.discover(sourceFile -> {
+            Path javaFile = sourceFile.getPath();
+            javaFiles.add(javaFile);
+            if (!fileExtractions.containsKey(javaFile) || needsExtraction.test(javaFile)) {
+                pending.put(javaFile, submitExtraction(javaFile, runMetrics));
+            }
+        });
+        javaFiles.sort(SourceDiscovery.SOURCE_ORDER);
         logger.info("Found {} Java files to analyze", javaFiles.size());
+        runMetrics.setFilesDiscovered(javaFiles.size());
+        
+        // Process the Java files
+        runMetrics.startPhase(AnalysisMetrics.PARSING);
+        Map<Path, FileExtraction> extracted = collectExtractions(pending);
+        
+        if (extractionCache != null) {
+            logger.info("Reused {} cached extractions, extracted {} files", 
+                    extractionCache.getHits() - cacheHits, extractionCache.getMisses() - cacheMisses);
+        }
         
-        // Process each Java file
+        // Keep the extractions in file order, dropping files that no longer exist
+        Map<Path, FileExtraction> previous = new HashMap<>(fileExtractions);
+        fileExtractions.clear();
         for (Path javaFile : javaFiles) {
-            try {
-                processJavaFile(javaFile);
-            } catch (Exception e) {
-                logger.error("Error processing file: {}", javaFile, e);
-            }
+            fileExtractions.put(javaFile, extracted.containsKey(javaFile) ? extracted.get(javaFile) : previous.get(javaFile));
         }
+        fileStamps.keySet().retainAll(fileExtractions.keySet());
+        
+        // Drop the entries of deleted files and of earlier contents of the files, after every run
+        // so that long-lived analyzers do not accumulate them
+        if (extractionCache != null) {
+            extractionCache.prune(fileExtractions.keySet());
+        }
+        
+        dataStructures.clear();
+        processes.clear();
+        externalEntities.clear();
+        dataStores.clear();
         
-        // Detect data flows between components
-        detectDataFlows();
+        // Phase 1: index the data structures declared in all files
+        runMetrics.startPhase(AnalysisMetrics.TYPE_RESOLUTION);
+        fileExtractions.values().forEach(this::mergeDataStructures);
+        TypeIndex typeIndex = new TypeIndex(dataStructures.keySet());
+        
+        // Phase 2: resolve the process signatures of all files against the index
+        resolveProcessSignatures(typeIndex);
+        
+        // Merge the remaining components in file order
+        runMetrics.startPhase(AnalysisMetrics.MERGE);
+        fileExtractions.values().forEach(this::mergeExtraction);
         
         // Create the analysis result
         AnalysisResult result = new AnalysisResult();
+        if (options.isCompactDataFlows()) {
+            result.useCompactDataFlows();
+        }
+        
+        // Detect data flows between components, directly into the result
+        runMetrics.startPhase(AnalysisMetrics.FLOW_DETECTION);
+        List<DataFlow> dataFlows = result.getDataFlows();
+        detectDataFlows(dataFlows);
+        
         result.setProjectName(projectPath.getFileName().toString());
         result.setProjectDescription("Analysis of " + projectPath.getFileName().toString());
         
@@ -97,8 +271,8 @@ public class ProjectAnalyzer {
         processes.values().forEach(result::addProcess);
         externalEntities.values().forEach(result::addExternalEntity);
         dataStores.values().forEach(result::addDataStore);
-        dataFlows.forEach(result::addDataFlow);
         
+        runMetrics.endPhase();
         logger.info("Analysis completed: {} data structures, {} processes, {} external entities, {} data stores, {} data flows",
                 dataStructures.size(), processes.size(), externalEntities.size(), dataStores.size(), dataFlows.size());
         
@@ -106,341 +280,323 @@ public class ProjectAnalyzer {
     }
     
     /**
-     * Recursively finds all Java files in the given directory
+     * Describes the discovery settings that decide which files of the project are analyzed
      */
-    private List<Path> findJavaFiles(Path directory) throws IOException {
-        try (Stream<Path> walk = Files.walk(directory)) {
-            return walk
-                    .filter(Files::isRegularFile)
-                    .filter(p -> p.toString().endsWith(".java"))
-                    .collect(Collectors.toList());
+    private String sourceSelection() {
+        return "includes=" + options.getIncludes()
+                + " excludes=" + options.getExcludes()
+                + " tests=" + options.isIncludeTestSources()
+                + " gitignore=" + options.isRespectGitignore()
+                + " defaultExcludes=" + options.isDefaultExcludes();
+    }
+    
+    /**
+     * Gets the name of the parse settings that extractions depend on, which is part of their cache key.
+     * Prefiltered files are parsed without their method bodies, which may parse where a full parse fails.
+     */
+    private String cacheProfile() {
+        if (options.isLeanParsing()) {
+            return "lean";
         }
+        return options.isPrefilter() ? "prefiltered" : "full";
     }
     
     /**
-     * Processes a single Java file
+     * Submits a file for extraction on the pool of worker threads
      */
-    private void processJavaFile(Path javaFile) throws IOException {
-        logger.debug("Processing file: {}", javaFile);
-        
-        // Parse the Java file
-        Optional<CompilationUnit> result = javaParser.parse(javaFile).getResult();
-        if (result.isPresent()) {
-            CompilationUnit cu = result.get();
-            
-            // Extract data structures (classes, interfaces)
-            extractDataStructures(cu, javaFile);
-            
-            // Extract processes (methods that transform data)
-            extractProcesses(cu, javaFile);
-            
-            // Extract external entities and API endpoints
-            extractExternalEntities(cu, javaFile);
-            
-            // Extract data stores
-            extractDataStores(cu, javaFile);
+    private Future<FileExtraction> submitExtraction(Path javaFile, AnalysisMetrics runMetrics) {
+        fileStamps.put(javaFile, FileStamp.of(javaFile));
+        return executor().submit(() -> extractFile(workerParsers.get(), javaFile, runMetrics));
+    }
+    
+    /**
+     * Gets the pool of worker threads, creating it on first use
+     */
+    private ExecutorService executor() {
+        synchronized (workerLock) {
+            if (executor == null) {
+                logger.info("Processing files with {} worker threads", options.getParallelism());
+                executor = createWorkerPool(options.getParallelism());
+            }
+            return executor;
         }
     }
     
     /**
-     * Extracts data structures from a compilation unit
+     * Creates a pool of daemon worker threads that can be shared by several analyzers
      */
-    private void extractDataStructures(CompilationUnit cu, Path javaFile) {
-        cu.findAll(ClassOrInterfaceDeclaration.class).forEach(cls -> {
-            String className = cls.getNameAsString();
-            String qualifiedName = cls.getFullyQualifiedName().orElse(className);
-            
-            DataStructure dataStructure = new DataStructure(className, qualifiedName);
-            dataStructure.setSourceFilePath(javaFile.toString());
-            
-            // Extract structure description from Javadoc
-            cls.getJavadocComment().ifPresent(javadoc -> {
-                dataStructure.setDescription(CommentExtractor.extractDescription(javadoc));
-            });
-            
-            // Determine structure type based on naming, annotations, etc.
-            determineDataStructureType(dataStructure, cls);
-            
-            // Extract fields
-            cls.getFields().forEach(field -> {
-                field.getVariables().forEach(var -> {
-                    String fieldName = var.getNameAsString();
-                    String fieldType = field.getElementType().asString();
-                    
-                    DataField dataField = new DataField(fieldName, fieldType);
-                    
-                    // Extract field description from Javadoc
-                    field.getJavadocComment().ifPresent(javadoc -> {
-                        dataField.setDescription(CommentExtractor.extractDescription(javadoc));
-                    });
-                    
-                    // Extract annotations
-                    AnnotationExtractor.extractAnnotations(field).forEach(dataField::addAnnotation);
-                    
-                    // Detect primitive or collection types
-                    if (isPrimitiveType(fieldType)) {
-                        dataField.setPrimitive(true);
-                    }
-                    
-                    if (isCollectionType(fieldType)) {
-                        dataField.setCollection(true);
-                    }
-                    
-                    // Detect sensitive data based on name or annotations
-                    if (isSensitiveField(dataField)) {
-                        dataField.setSensitive(true);
-                    }
-                    
-                    dataStructure.addField(dataField);
-                });
-            });
-            
-            // Add to the collection of data structures
-            dataStructures.put(qualifiedName, dataStructure);
-        });
+    public static ExecutorService createWorkerPool(int threads) {
+        return Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
     }
     
     /**
-     * Extracts processes (methods) from a compilation unit
+     * Waits for the submitted extractions to finish
      */
-    private void extractProcesses(CompilationUnit cu, Path javaFile) {
-        cu.findAll(MethodDeclaration.class).forEach(method -> {
-            String methodName = method.getNameAsString();
-            String parentClass = method.findAncestor(ClassOrInterfaceDeclaration.class)
-                    .map(cls -> cls.getFullyQualifiedName().orElse(cls.getNameAsString()))
-                    .orElse("Unknown");
-            
-            String processId = parentClass + "." + methodName;
-            String displayName = parentClass.substring(parentClass.lastIndexOf('.') + 1) + "." + methodName;
-            
-            Process process = new Process(processId, displayName);
-            process.setSourceFilePath(javaFile.toString());
-            
-            // Extract process description from Javadoc
-            method.getJavadocComment().ifPresent(javadoc -> {
-                process.setDescription(CommentExtractor.extractDescription(javadoc));
-            });
-            
-            // Extract input and output data structures
-            extractProcessDataFlow(process, method);
-            
-            // Add to the collection of processes
-            processes.put(processId, process);
-        });
+    private Map<Path, FileExtraction> collectExtractions(Map<Path, Future<FileExtraction>> pending) throws IOException {
+        Map<Path, FileExtraction> extracted = new HashMap<>();
+        for (Map.Entry<Path, Future<FileExtraction>> entry : pending.entrySet()) {
+            extracted.put(entry.getKey(), await(entry.getValue()));
+        }
+        return extracted;
     }
     
     /**
-     * Extracts external entities from a compilation unit
+     * Waits for a task on the worker threads to finish
      */
-    private void extractExternalEntities(CompilationUnit cu, Path javaFile) {
-        // Use the helper class to find external entities
-        ExternalEntityDetector detector = new ExternalEntityDetector();
-        List<ExternalEntity> entities = detector.detectExternalEntities(cu, javaFile);
-        
-        // Add to the collection of external entities
-        for (ExternalEntity entity : entities) {
-            externalEntities.put(entity.getName(), entity);
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing files", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error processing files", e.getCause());
         }
     }
     
     /**
-     * Extracts data stores from a compilation unit
+     * Parses and extracts a single Java file, returning null if the file could not be processed.
+     * Files whose content has not changed since a previous run are served from the extraction cache.
      */
-    private void extractDataStores(CompilationUnit cu, Path javaFile) {
-        // Look for database connections, file I/O, and other data storage indicators
-        cu.findAll(ClassOrInterfaceDeclaration.class).forEach(cls -> {
-            if (isDataStore(cls)) {
-                String className = cls.getNameAsString();
-                String qualifiedName = cls.getFullyQualifiedName().orElse(className);
-                
-                DataStore dataStore = new DataStore(qualifiedName, className);
-                dataStore.setDescription("Data store identified from: " + qualifiedName);
-                
-                // Determine the data store type
-                determineDataStoreType(dataStore, cls);
+    private FileExtraction extractFile(JavaParser javaParser, Path javaFile, AnalysisMetrics runMetrics) {
+        try {
+            byte[] content = Files.readAllBytes(javaFile);
+            if (extractionCache == null) {
+                return processJavaFile(javaParser, javaFile, content, runMetrics);
+            }
+            
+            String cacheKey = extractionCache.key(javaFile, content);
+            FileExtraction extraction = extractionCache.load(cacheKey);
+            if (extraction == null) {
+                extraction = processJavaFile(javaParser, javaFile, content, runMetrics);
                 
-                // Add to the collection of data stores
-                dataStores.put(qualifiedName, dataStore);
+                // Extractions cut short by the parse budget depend on the budget and the load of
+                // the machine, so they are extracted again next time
+                if (!extraction.isPartial()) {
+                    extractionCache.store(cacheKey, extraction);
+                }
+            } else {
+                runMetrics.recordCachedFile();
             }
-        });
+            return extraction;
+        } catch (Exception e) {
+            logger.error("Error processing file: {}", javaFile, e);
+            runMetrics.recordFailure();
+            return null;
+        }
     }
     
     /**
-     * Detects data flows between components
+     * Processes a single Java file within its parse budget. Only the extraction records are returned;
+     * the syntax tree becomes unreachable as soon as this method returns. Files that cannot be parsed
+     * yield an empty extraction so the outcome can be cached like any other.
      */
-    private void detectDataFlows() {
-        // Use the helper class to detect data flows
-        DataFlowDetector detector = new DataFlowDetector(
-                dataStructures, processes, externalEntities, dataStores);
+    private FileExtraction processJavaFile(JavaParser javaParser, Path javaFile, byte[] content,
+            AnalysisMetrics runMetrics) {
+        logger.debug("Processing file: {}", javaFile);
+        AnalysisMetrics.FileTimer timer = runMetrics.startFile(javaFile, content.length);
         
-        List<DataFlow> flows = detector.detectDataFlows();
-        dataFlows.addAll(flows);
+        // Decide from the raw bytes which parts of the extraction the file needs
+        boolean needsMethodBodies = true;
+        boolean detectEntities = true;
+        if (options.isPrefilter()) {
+            SourcePrefilter.Route route = SourcePrefilter.scan(content);
+            needsMethodBodies = route.needsMethodBodies();
+            detectEntities = route.mayDeclareEntities();
+            runMetrics.recordPrefiltered(!needsMethodBodies && !options.isLeanParsing(), !detectEntities);
+        }
+        
+        // Parse the Java file
+        FileParseEvent parseEvent = new FileParseEvent();
+        parseEvent.begin();
+        ParseBudget.Parse parse = parseBudget.parse(javaParser, new String(content, StandardCharsets.UTF_8),
+                content.length, needsMethodBodies);
+        timer.addCpuNanos(parse.getParseThreadCpuNanos());
+        commitParseEvent(parseEvent, javaFile, content.length, parse);
+        
+        ParseResult<CompilationUnit> parseResult = parse.getResult();
+        if (parse.getOverBudget() != null) {
+            if (parseResult != null) {
+                logger.warn("Parsed only the declarations of {}, which is over the parse {} budget",
+                        javaFile, parse.getOverBudget().getLabel());
+            } else {
+                logger.warn("Skipped {}, which is over the parse {} budget even without its method bodies",
+                        javaFile, parse.getOverBudget().getLabel());
+            }
+            runMetrics.recordOverBudget(javaFile, content.length, parse.getOverBudget().getLabel(), parseResult == null);
+        }
+        
+        Optional<CompilationUnit> result = parseResult != null ? parseResult.getResult() : Optional.empty();
+        if (!result.isPresent()) {
+            timer.stop(false);
+            FileExtraction extraction = new FileExtraction(javaFile.toString());
+            extraction.setPartial(parse.getOverBudget() != null);
+            return extraction;
+        }
+        
+        // Extract data structures, processes, external entities and data stores in one pass
+        FileExtraction extraction = CompilationUnitExtractor.extract(result.get(), javaFile, detectEntities);
+        extraction.setPartial(parse.getOverBudget() != null);
+        timer.stop(parseResult.isSuccessful());
+        return extraction;
     }
     
     /**
-     * Determines the type of a data structure based on naming, annotations, etc.
+     * Ends a file parse event and commits it if a flight recording is interested in it
      */
-    private void determineDataStructureType(DataStructure dataStructure, ClassOrInterfaceDeclaration cls) {
-        String name = cls.getNameAsString();
-        
-        if (cls.isInterface()) {
-            dataStructure.setType(DataStructure.DataStructureType.INTERFACE);
-        } else if (name.endsWith("DTO") || name.endsWith("Request") || name.endsWith("Response")) {
-            dataStructure.setType(DataStructure.DataStructureType.DTO);
-        } else if (name.endsWith("Entity") || cls.getAnnotationByName("Entity").isPresent()) {
-            dataStructure.setType(DataStructure.DataStructureType.ENTITY);
-        } else {
-            dataStructure.setType(DataStructure.DataStructureType.CLASS);
+    private static void commitParseEvent(FileParseEvent event, Path javaFile, long size, ParseBudget.Parse parse) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = javaFile.toString();
+            event.size = size;
+            event.successful = parse.getResult() != null && parse.getResult().isSuccessful();
+            event.problems = parse.getResult() != null ? parse.getResult().getProblems().size() : 0;
+            event.overBudget = parse.getOverBudget() != null ? parse.getOverBudget().getLabel() : null;
+            event.declarationsOnly = parse.isDeclarationsOnly();
+            event.commit();
+        }
+    }
+    
+    /**
+     * Merges the data structures extracted from one file into the project-wide collection
+     */
+    private void mergeDataStructures(FileExtraction extraction) {
+        if (extraction == null) {
+            return;
         }
         
-        // Check if the class is from an external package
-        String packageName = cls.getFullyQualifiedName()
-                .map(fqn -> fqn.substring(0, Math.max(0, fqn.lastIndexOf('.'))))
-                .orElse("");
-        
-        if (isExternalPackage(packageName)) {
-            dataStructure.setExternal(true);
+        for (DataStructure dataStructure : extraction.getDataStructures()) {
+            dataStructures.put(dataStructure.getFullyQualifiedName(), dataStructure);
         }
     }
     
     /**
-     * Extracts the input and output data structures for a process
+     * Resolves the input and output data structures of all processes on the worker threads,
+     * one task per file
      */
-    private void extractProcessDataFlow(Process process, MethodDeclaration method) {
-        // Extract input parameters
-        method.getParameters().forEach(param -> {
-            String paramType = param.getType().asString();
-            if (dataStructures.containsKey(paramType)) {
-                process.addInputDataStructureId(paramType);
+    private void resolveProcessSignatures(TypeIndex typeIndex) throws IOException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (FileExtraction extraction : fileExtractions.values()) {
+            if (extraction != null && !extraction.getProcesses().isEmpty()) {
+                futures.add(executor().submit(() -> extraction.getProcesses()
+                        .forEach(signature -> extractProcessDataFlow(signature, extraction, typeIndex))));
             }
-        });
+        }
         
-        // Extract return type
-        String returnType = method.getType().asString();
-        if (!returnType.equals("void") && dataStructures.containsKey(returnType)) {
-            process.addOutputDataStructureId(returnType);
+        for (Future<?> future : futures) {
+            await(future);
         }
     }
     
     /**
-     * Checks if a class represents a data store
+     * Merges the processes, external entities and data stores extracted from one file
+     * into the project-wide collections
      */
-    private boolean isDataStore(ClassOrInterfaceDeclaration cls) {
-        String className = cls.getNameAsString();
+    private void mergeExtraction(FileExtraction extraction) {
+        if (extraction == null) {
+            return;
+        }
         
-        // Check class name patterns
-        if (className.contains("Repository") || className.contains("DAO") || 
-                className.contains("Store") || className.contains("Cache")) {
-            return true;
+        for (FileExtraction.ProcessSignature signature : extraction.getProcesses()) {
+            Process process = signature.getProcess();
+            processes.put(process.getId(), process);
         }
         
-        // Check for database-related annotations
-        if (cls.getAnnotationByName("Repository").isPresent() || 
-                cls.getAnnotationByName("Entity").isPresent()) {
-            return true;
+        for (ExternalEntity entity : extraction.getExternalEntities()) {
+            externalEntities.put(entity.getName(), entity);
         }
         
-        // Check fields for connection objects
-        return cls.getFields().stream()
-                .anyMatch(field -> {
-                    String fieldType = field.getElementType().asString();
-                    return fieldType.contains("Connection") || 
-                           fieldType.contains("DataSource") ||
-                           fieldType.contains("EntityManager");
-                });
+        for (DataStore dataStore : extraction.getDataStores()) {
+            // Stored data structures are assigned again during flow detection
+            dataStore.getDataStructureIds().clear();
+            dataStores.put(dataStore.getId(), dataStore);
+        }
     }
     
     /**
-     * Determines the type of a data store
+     * Detects data flows between components
      */
-    private void determineDataStoreType(DataStore dataStore, ClassOrInterfaceDeclaration cls) {
-        String className = cls.getNameAsString();
-        
-        if (className.contains("Database") || className.contains("Repository") || 
-                className.contains("DAO")) {
-            dataStore.setType(DataStore.DataStoreType.DATABASE);
-        } else if (className.contains("File") || className.contains("Storage")) {
-            dataStore.setType(DataStore.DataStoreType.FILE_SYSTEM);
-        } else if (className.contains("Cache")) {
-            dataStore.setType(DataStore.DataStoreType.CACHE);
-        } else {
-            dataStore.setType(DataStore.DataStoreType.OTHER);
-        }
+    private void detectDataFlows(List<DataFlow> target) {
+        // Use the helper class to detect data flows
+        DataFlowDetector detector = new DataFlowDetector(
+                dataStructures, processes, externalEntities, dataStores, options.getParallelism());
+        
+        detector.detectDataFlows(target);
     }
     
     /**
-     * Checks if a field contains sensitive information based on name or annotations
+     * Extracts the input and output data structures for a process
      */
-    private boolean isSensitiveField(DataField field) {
-        String name = field.getName().toLowerCase();
-        String[] sensitivePatterns = { 
-            "password", "secret", "token", "key", "credential", "ssn", 
-            "social", "credit", "auth", "private", "secure" 
-        };
-        
-        for (String pattern : sensitivePatterns) {
-            if (name.contains(pattern)) {
-                return true;
-            }
-        }
+    private void extractProcessDataFlow(FileExtraction.ProcessSignature signature, FileExtraction extraction,
+            TypeIndex typeIndex) {
+        Process process = signature.getProcess();
+        String declaringType = signature.getDeclaringType();
         
-        // Check annotations
-        return field.getAnnotations().containsKey("Sensitive") ||
-               field.getAnnotations().containsKey("Secret");
+        // Reset links derived during a previous resolution of the same extraction
+        process.getInputDataStructureIds().clear();
+        process.getOutputDataStructureIds().clear();
+        
+        // Extract input parameters
+        signature.getParameterTypes().forEach(paramType -> {
+            typeIndex.resolveAll(paramType, extraction, declaringType).forEach(process::addInputDataStructureId);
+        });
+        
+        // Extract return type
+        String returnType = signature.getReturnType();
+        if (!returnType.equals("void")) {
+            typeIndex.resolveAll(returnType, extraction, declaringType).forEach(process::addOutputDataStructureId);
+        }
     }
     
     /**
-     * Checks if a type is a primitive type
+     * Creates the daemon worker threads of the analyzers
      */
-    private boolean isPrimitiveType(String type) {
-        String[] primitives = {
-            "int", "byte", "short", "long", "float", "double", "boolean", "char",
-            "Integer", "Byte", "Short", "Long", "Float", "Double", "Boolean", "Character",
-            "String"
-        };
-        
-        for (String primitive : primitives) {
-            if (type.equals(primitive)) {
-                return true;
-            }
-        }
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger threadCount = new AtomicInteger();
         
-        return false;
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "analyzer-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
     
     /**
-     * Checks if a type is a collection type
+     * Size and modification time of a file, used to notice changes between runs
      */
-    private boolean isCollectionType(String type) {
-        String[] collectionPatterns = {
-            "List", "Set", "Map", "Collection", "Array", "[]"
-        };
-        
-        for (String pattern : collectionPatterns) {
-            if (type.contains(pattern)) {
-                return true;
+    private static class FileStamp {
+        private static final FileStamp MISSING = new FileStamp(-1, -1);
+        
+        private final long size;
+        private final long lastModified;
+        
+        private FileStamp(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+        
+        static FileStamp of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileStamp(attributes.size(), attributes.lastModifiedTime().toMillis());
+            } catch (IOException e) {
+                return MISSING;
             }
         }
         
-        return false;
-    }
-    
-    /**
-     * Checks if a package is considered external to the project
-     */
-    private boolean isExternalPackage(String packageName) {
-        // Common external package prefixes
-        String[] externalPrefixes = {
-            "java.", "javax.", "org.springframework", "com.google", "org.apache",
-            "io.netty", "org.hibernate", "com.fasterxml", "org.slf4j"
-        };
-        
-        for (String prefix : externalPrefixes) {
-            if (packageName.startsWith(prefix)) {
-                return true;
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileStamp)) {
+                return false;
             }
+            FileStamp other = (FileStamp) o;
+            return this != MISSING && size == other.size && lastModified == other.lastModified;
         }
         
-        return false;
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(lastModified);
+        }
     }
 }
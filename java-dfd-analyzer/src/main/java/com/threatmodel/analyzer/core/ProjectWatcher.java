@@ -0,0 +1,193 @@
+package com.threatmodel.analyzer.core;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.threatmodel.analyzer.model.AnalysisResult;
+
+/**
+ * Watches a project tree for changes to Java files and incrementally re-analyzes it.
+ * 
+ * Changes are collected until no further event arrives within the debounce window, so a
+ * burst of saves (or a branch switch) results in a single re-analysis.
+ * 
+ * Only the directories that source discovery walks into are watched, and only changes to the
+ * files it would report trigger a re-analysis, so build output, dependency directories and the
+ * analyzer's own output and cache do not cause re-analysis.
+ */
+public class ProjectWatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ProjectWatcher.class);
+    
+    /**
+     * Receives the result of each re-analysis
+     */
+    @FunctionalInterface
+    public interface ResultHandler {
+        void handle(AnalysisResult result) throws IOException;
+    }
+    
+    private final ProjectAnalyzer analyzer;
+    private final Path projectPath;
+    private final long debounceMillis;
+    private final List<Path> ignoredPaths;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    
+    public ProjectWatcher(ProjectAnalyzer analyzer, Path projectPath, long debounceMillis) {
+        this(analyzer, projectPath, debounceMillis, Collections.emptyList());
+    }
+    
+    /**
+     * Creates a watcher that also ignores the given directories, such as the output directory
+     * and the extraction cache when they are inside the project
+     */
+    public ProjectWatcher(ProjectAnalyzer analyzer, Path projectPath, long debounceMillis, Collection<Path> ignoredPaths) {
+        this.analyzer = analyzer;
+        this.projectPath = projectPath;
+        this.debounceMillis = debounceMillis;
+        // Only directories strictly inside the project are ignored, never the project itself
+        Path projectRoot = projectPath.toAbsolutePath().normalize();
+        this.ignoredPaths = ignoredPaths.stream()
+                .map(path -> path.toAbsolutePath().normalize())
+                .filter(path -> path.startsWith(projectRoot) && !path.equals(projectRoot))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Watches the project until the thread is interrupted, passing every new analysis
+     * result to the handler
+     */
+    public void watch(ResultHandler handler) throws IOException {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            registerAll(watchService, projectPath);
+            logger.info("Watching {} for changes", projectPath);
+            
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changedFiles = new HashSet<>();
+                
+                // Block until the first change, then collect changes until the tree is quiet
+                WatchKey key = watchService.take();
+                boolean overflow = false;
+                while (key != null) {
+                    try {
+                        overflow |= collectChanges(watchService, key, changedFiles);
+                    } catch (IOException e) {
+                        // A directory may be deleted again before it is registered
+                        logger.warn("Could not track changes below {}, re-analyzing the whole project",
+                                watchedDirectories.get(key), e);
+                        overflow = true;
+                    }
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+                
+                try {
+                    if (overflow) {
+                        logger.info("Too many changes to track individually, re-analyzing the whole project");
+                        handler.handle(analyzer.analyze());
+                    } else if (!changedFiles.isEmpty()) {
+                        handler.handle(analyzer.reanalyze(changedFiles));
+                    }
+                } catch (IOException e) {
+                    // The output directory may be briefly unwritable; the next change tries again
+                    logger.error("Could not update the analysis of {}, still watching for changes", projectPath, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Stopped watching {}", projectPath);
+        }
+    }
+    
+    /**
+     * Records the Java files affected by the events of a watch key
+     * 
+     * @return true if events were lost and the changes cannot be tracked individually
+     */
+    private boolean collectChanges(WatchService watchService, WatchKey key, Set<Path> changedFiles) throws IOException {
+        Path directory = watchedDirectories.get(key);
+        boolean overflow = false;
+        
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            
+            if (directory == null) {
+                continue;
+            }
+            
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // Watch new directories and pick up any files created in them before registration
+                for (Path created : registerAll(watchService, path)) {
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(created, "*.java")) {
+                        for (Path file : files) {
+                            if (isSourceFile(file)) {
+                                changedFiles.add(file);
+                            }
+                        }
+                    }
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && watchedDirectories.containsValue(path)) {
+                // Files below a deleted directory disappear from the next analysis
+                changedFiles.add(path);
+            } else if (isSourceFile(path)) {
+                logger.debug("Detected {} of {}", event.kind().name(), path);
+                changedFiles.add(path);
+            }
+        }
+        
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+        return overflow;
+    }
+    
+    /**
+     * Registers a directory and the subdirectories that source discovery walks into with the watch service
+     *
+     * @return The registered directories
+     */
+    private List<Path> registerAll(WatchService watchService, Path start) throws IOException {
+        List<Path> directories = analyzer.getSourceDiscovery().findDirectories(start).stream()
+                .filter(directory -> !isIgnoredPath(directory))
+                .collect(Collectors.toList());
+        for (Path directory : directories) {
+            WatchKey key = directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(key, directory);
+        }
+        return directories;
+    }
+    
+    private boolean isSourceFile(Path path) throws IOException {
+        return path.toString().endsWith(".java") && !isIgnoredPath(path)
+                && analyzer.getSourceDiscovery().isSourceFile(path);
+    }
+    
+    private boolean isIgnoredPath(Path path) {
+        Path absolutePath = path.toAbsolutePath().normalize();
+        return ignoredPaths.stream().anyMatch(absolutePath::startsWith);
+    }
+}
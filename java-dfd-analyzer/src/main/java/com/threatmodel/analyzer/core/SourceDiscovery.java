@@ -0,0 +1,390 @@
+package com.threatmodel.analyzer.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the Java source files of a project.
+ *
+ * Directories are walked in parallel and every file is handed to a consumer as soon as it
+ * is found, so extraction can start before the walk has finished. Files and directories are
+ * skipped according to the include and exclude globs of the {@link AnalyzerOptions}, the
+ * project's .gitignore files and a set of default excludes for build output, dependency
+ * and tool directories. Files below test source directories are classified as test sources.
+ */
+public class SourceDiscovery {
+    private static final Logger logger = LoggerFactory.getLogger(SourceDiscovery.class);
+    
+    /**
+     * Order in which discovered files are processed: a depth-first walk visiting the
+     * entries of each directory sorted by name. Unlike the order of a plain directory walk
+     * it does not depend on the file system.
+     */
+    public static final Comparator<Path> SOURCE_ORDER = SourceDiscovery::compareSourceOrder;
+    
+    // Build output directories, skipped unless they are below a source directory
+    private static final Set<String> BUILD_DIRECTORIES = Set.of("target", "build", "out");
+    
+    // Directories that never contain project sources
+    private static final Set<String> IGNORED_DIRECTORIES = Set.of("node_modules", "bower_components");
+    
+    // Directories below "src" that hold test sources
+    private static final Set<String> TEST_DIRECTORIES = Set.of("test", "tests", "testFixtures", "it", "integrationTest");
+    
+    private final Path projectPath;
+    private final AnalyzerOptions options;
+    private final List<GlobPattern> includes;
+    private final List<GlobPattern> excludes;
+    
+    public SourceDiscovery(Path projectPath, AnalyzerOptions options) {
+        this.projectPath = projectPath;
+        this.options = options;
+        this.includes = options.getIncludes().stream().map(GlobPattern::new).collect(Collectors.toList());
+        this.excludes = options.getExcludes().stream().map(GlobPattern::new).collect(Collectors.toList());
+    }
+    
+    /**
+     * Finds all source files, sorted in {@link #SOURCE_ORDER}
+     */
+    public List<SourceFile> discover() throws IOException {
+        List<SourceFile> sourceFiles = Collections.synchronizedList(new ArrayList<>());
+        discover(sourceFiles::add);
+        sourceFiles.sort(Comparator.comparing(SourceFile::getPath, SOURCE_ORDER));
+        return sourceFiles;
+    }
+    
+    /**
+     * Walks the project and passes every source file to the consumer as it is found.
+     * The consumer is called concurrently from several threads and in no particular order.
+     *
+     * @param consumer Receives the discovered files
+     */
+    public void discover(Consumer<SourceFile> consumer) throws IOException {
+        long start = System.currentTimeMillis();
+        AtomicInteger directoryCount = new AtomicInteger();
+        AtomicInteger fileCount = new AtomicInteger();
+        AtomicInteger testCount = new AtomicInteger();
+        
+        Consumer<SourceFile> counting = sourceFile -> {
+            fileCount.incrementAndGet();
+            if (sourceFile.isTestSource()) {
+                testCount.incrementAndGet();
+            }
+            consumer.accept(sourceFile);
+        };
+        
+        ForkJoinPool pool = new ForkJoinPool(options.getParallelism());
+        try {
+            pool.invoke(new DirectoryTask(projectPath, Collections.emptyList(), false, counting, directoryCount));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        
+        logger.info("Discovered {} Java files ({} test sources) in {} directories in {} ms",
+                fileCount.get(), testCount.get(), directoryCount.get(), System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * Finds a directory of the project and all the directories below it that discovery walks into,
+     * applying the same default excludes, exclude globs and .gitignore files. Used to decide which
+     * directories to watch for changes.
+     *
+     * @param start A directory of the project
+     * @return The directories, or an empty list if discovery skips the directory itself
+     */
+    public List<Path> findDirectories(Path start) throws IOException {
+        List<Path> directories = new ArrayList<>();
+        DirectoryScope scope = scopeOf(start);
+        if (scope != null) {
+            collectDirectories(start, scope, directories);
+        }
+        return directories;
+    }
+    
+    /**
+     * Checks if a path of the project is a source file that discovery would report, whether or not
+     * it currently exists. Used to decide which file changes to act on.
+     *
+     * @param file A file of the project
+     */
+    public boolean isSourceFile(Path file) throws IOException {
+        Path parent = file.getParent();
+        DirectoryScope scope = parent != null ? scopeOf(parent) : null;
+        if (scope == null) {
+            return false;
+        }
+        
+        String relativePath = relativize(file);
+        if (!isIncludedFile(file, relativePath) || isIgnored(scope.rules, file, false)) {
+            return false;
+        }
+        return options.isIncludeTestSources() || !isTestSource(projectPath.relativize(file));
+    }
+    
+    private void collectDirectories(Path directory, DirectoryScope scope, List<Path> directories) throws IOException {
+        directories.add(directory);
+        
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                entry -> Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS))) {
+            stream.forEach(children::add);
+        }
+        for (Path child : children) {
+            DirectoryScope childScope = scope.enter(child);
+            if (childScope != null) {
+                collectDirectories(child, childScope, directories);
+            }
+        }
+    }
+    
+    /**
+     * Computes the rules that apply within a directory of the project, walking down from the
+     * project root; null if discovery skips the directory or one of its ancestors
+     */
+    private DirectoryScope scopeOf(Path directory) throws IOException {
+        DirectoryScope scope = new DirectoryScope(Collections.emptyList(), false).load(projectPath);
+        Path relativePath = projectPath.relativize(directory);
+        Path current = projectPath;
+        for (int i = 0; i < relativePath.getNameCount() && scope != null; i++) {
+            if (relativePath.getName(i).toString().isEmpty()) {
+                continue;
+            }
+            current = current.resolve(relativePath.getName(i));
+            scope = scope.enter(current);
+        }
+        return scope;
+    }
+    
+    /**
+     * Checks if a directory is skipped together with everything below it
+     */
+    private boolean isExcludedDirectory(Path directory, String relativePath, boolean belowSourceDirectory) {
+        String name = directory.getFileName().toString();
+        
+        if (options.isDefaultExcludes()) {
+            if (name.startsWith(".") || IGNORED_DIRECTORIES.contains(name)) {
+                return true;
+            }
+            if (!belowSourceDirectory && BUILD_DIRECTORIES.contains(name)) {
+                return true;
+            }
+        }
+        
+        // A trailing separator lets patterns such as "generated/**" exclude the directory itself
+        String directoryPath = relativePath + "/";
+        return excludes.stream().anyMatch(p -> p.matches(relativePath) || p.matches(directoryPath));
+    }
+    
+    /**
+     * Checks if a file is a Java source file selected by the include and exclude globs
+     */
+    private boolean isIncludedFile(Path file, String relativePath) {
+        if (!file.getFileName().toString().endsWith(".java")) {
+            return false;
+        }
+        if (!includes.isEmpty() && includes.stream().noneMatch(p -> p.matches(relativePath))) {
+            return false;
+        }
+        return excludes.stream().noneMatch(p -> p.matches(relativePath));
+    }
+    
+    /**
+     * Checks a path against the .gitignore files of its ancestors, deepest file last
+     */
+    private static boolean isIgnored(List<GitIgnore> gitIgnores, Path path, boolean isDirectory) {
+        for (int i = gitIgnores.size() - 1; i >= 0; i--) {
+            Boolean ignored = gitIgnores.get(i).isIgnored(path, isDirectory);
+            if (ignored != null) {
+                return ignored;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Checks if a file is a test source based on its path
+     */
+    private static boolean isTestSource(Path relativePath) {
+        for (int i = 0; i + 1 < relativePath.getNameCount() - 1; i++) {
+            if (relativePath.getName(i).toString().equals("src") &&
+                    TEST_DIRECTORIES.contains(relativePath.getName(i + 1).toString())) {
+                return true;
+            }
+        }
+        
+        String fileName = relativePath.getFileName().toString();
+        return fileName.endsWith("Test.java") || fileName.endsWith("Tests.java") || fileName.endsWith("IT.java");
+    }
+    
+    /**
+     * Compares paths element by element, so that a directory's entries sort together
+     */
+    private static int compareSourceOrder(Path a, Path b) {
+        int count = Math.min(a.getNameCount(), b.getNameCount());
+        for (int i = 0; i < count; i++) {
+            int result = a.getName(i).toString().compareTo(b.getName(i).toString());
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(a.getNameCount(), b.getNameCount());
+    }
+    
+    private String relativize(Path path) {
+        return projectPath.relativize(path).toString().replace('\\', '/');
+    }
+    
+    /**
+     * Lists one directory, reporting its source files and forking a task for each subdirectory
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final Path directory;
+        private final List<GitIgnore> gitIgnores;
+        private final boolean belowSourceDirectory;
+        private final Consumer<SourceFile> consumer;
+        private final AtomicInteger directoryCount;
+        
+        DirectoryTask(Path directory, List<GitIgnore> gitIgnores, boolean belowSourceDirectory,
+                Consumer<SourceFile> consumer, AtomicInteger directoryCount) {
+            this.directory = directory;
+            this.gitIgnores = gitIgnores;
+            this.belowSourceDirectory = belowSourceDirectory;
+            this.consumer = consumer;
+            this.directoryCount = directoryCount;
+        }
+        
+        @Override
+        protected void compute() {
+            directoryCount.incrementAndGet();
+            
+            List<GitIgnore> rules = gitIgnores;
+            Path[] entries;
+            try {
+                if (options.isRespectGitignore()) {
+                    GitIgnore gitIgnore = GitIgnore.load(directory);
+                    if (gitIgnore != null) {
+                        rules = new ArrayList<>(gitIgnores);
+                        rules.add(gitIgnore);
+                    }
+                }
+                
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    List<Path> children = new ArrayList<>();
+                    stream.forEach(children::add);
+                    entries = children.toArray(new Path[0]);
+                }
+            } catch (IOException e) {
+                if (directory.equals(projectPath)) {
+                    throw new UncheckedIOException(e);
+                }
+                logger.warn("Could not list directory: {}", directory, e);
+                return;
+            }
+            Arrays.sort(entries, SOURCE_ORDER);
+            
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            for (Path entry : entries) {
+                String relativePath = relativize(entry);
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    if (isExcludedDirectory(entry, relativePath, belowSourceDirectory) || isIgnored(rules, entry, true)) {
+                        continue;
+                    }
+                    boolean sourceDirectory = belowSourceDirectory || entry.getFileName().toString().equals("src");
+                    subtasks.add(new DirectoryTask(entry, rules, sourceDirectory, consumer, directoryCount));
+                } else if (isIncludedFile(entry, relativePath) && !isIgnored(rules, entry, false)
+                        && Files.isRegularFile(entry)) {
+                    boolean testSource = isTestSource(projectPath.relativize(entry));
+                    if (!testSource || options.isIncludeTestSources()) {
+                        consumer.accept(new SourceFile(entry, testSource));
+                    }
+                }
+            }
+            
+            invokeAll(subtasks);
+        }
+    }
+    
+    /**
+     * The .gitignore rules that apply within a directory, and whether it is below a source directory
+     */
+    private class DirectoryScope {
+        private final List<GitIgnore> rules;
+        private final boolean belowSourceDirectory;
+        
+        DirectoryScope(List<GitIgnore> rules, boolean belowSourceDirectory) {
+            this.rules = rules;
+            this.belowSourceDirectory = belowSourceDirectory;
+        }
+        
+        /**
+         * Gets the scope of a subdirectory, or null if discovery skips it
+         */
+        DirectoryScope enter(Path directory) throws IOException {
+            if (isExcludedDirectory(directory, relativize(directory), belowSourceDirectory)
+                    || isIgnored(rules, directory, true)) {
+                return null;
+            }
+            boolean sourceDirectory = belowSourceDirectory || directory.getFileName().toString().equals("src");
+            return new DirectoryScope(rules, sourceDirectory).load(directory);
+        }
+        
+        /**
+         * Adds the rules of the directory's own .gitignore file
+         */
+        DirectoryScope load(Path directory) throws IOException {
+            GitIgnore gitIgnore = options.isRespectGitignore() ? GitIgnore.load(directory) : null;
+            if (gitIgnore == null) {
+                return this;
+            }
+            List<GitIgnore> directoryRules = new ArrayList<>(rules);
+            directoryRules.add(gitIgnore);
+            return new DirectoryScope(directoryRules, belowSourceDirectory);
+        }
+    }
+    
+    /**
+     * A discovered source file
+     */
+    public static class SourceFile {
+        private final Path path;
+        private final boolean testSource;
+        
+        public SourceFile(Path path, boolean testSource) {
+            this.path = path;
+            this.testSource = testSource;
+        }
+        
+        public Path getPath() {
+            return path;
+        }
+        
+        /**
+         * Checks if the file belongs to the project's tests rather than its main sources
+         */
+        public boolean isTestSource() {
+            return testSource;
+        }
+    }
+}
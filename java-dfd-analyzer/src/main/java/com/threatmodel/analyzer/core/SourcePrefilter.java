@@ -0,0 +1,355 @@
+package com.threatmodel.analyzer.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Lexical prefilter that decides, from the raw bytes of a source file, which extraction work the
+ * file needs before it is parsed.
+ *
+ * Two questions are answered in a single pass over the bytes, without decoding them:
+ * <ul>
+ *   <li>Whether the file may contain external entities or data stores. Their detectors match class,
+ *       annotation and field type names against a fixed set of words, and every such name is an
+ *       identifier of the file, so a file without any identifier containing one of the words
+ *       cannot match.</li>
+ *   <li>Whether the file may declare types inside method bodies: local classes, records, enums and
+ *       interfaces, anonymous classes and enum constants with a body. They are the only parts of a
+ *       method body the extraction reports, so a file without them yields the same extraction when
+ *       it is parsed without its method bodies.</li>
+ * </ul>
+ *
+ * Both answers err on the side of the full work: comments and literals are skipped, but anything
+ * that looks like a local or anonymous type counts as one, and a file with Unicode escapes outside
+ * its literals is not filtered at all. The markers are all ASCII, and the bytes of multi-byte
+ * UTF-8 characters are never ASCII, so the file is scanned as bytes.
+ */
+public final class SourcePrefilter {
+    
+    /**
+     * Words whose presence in a class, annotation or field type name makes the external entity
+     * detector or the data store detection match. EntityManager is covered by Entity.
+     */
+    private static final byte[][] MARKERS = ascii("Controller", "Repository", "DAO", "Store", "Cache",
+            "Entity", "Client", "Service", "Connection", "DataSource");
+    
+    private static final byte[] CLASS = ascii("class")[0];
+    private static final byte[] INTERFACE = ascii("interface")[0];
+    private static final byte[] ENUM = ascii("enum")[0];
+    private static final byte[] RECORD = ascii("record")[0];
+    private static final byte[] NEW = ascii("new")[0];
+    
+    // Kinds of open braces
+    private static final byte BLOCK = 0;
+    private static final byte TYPE_BODY = 1;
+    private static final byte ENUM_CONSTANTS = 2;
+    
+    private final byte[] source;
+    private int pos;
+    
+    // The kinds of the open braces, and the number of them that are not type bodies
+    private byte[] braces = new byte[16];
+    private int depth;
+    private int blockDepth;
+    
+    // State of the statement or declaration being read
+    private int parenDepth;
+    private long newAtParenDepth;
+    private boolean sawTypeKeyword;
+    private boolean sawEnumKeyword;
+    private byte lastSignificant;
+    
+    private boolean mayDeclareEntities;
+    private boolean typesInBodies;
+    
+    private SourcePrefilter(byte[] source) {
+        this.source = source;
+    }
+    
+    /**
+     * Scans the content of a source file
+     *
+     * @param source The source file encoded as UTF-8 or another ASCII-compatible encoding
+     * @return The extraction work the file needs
+     */
+    public static Route scan(byte[] source) {
+        SourcePrefilter prefilter = new SourcePrefilter(source);
+        prefilter.run();
+        return new Route(prefilter.mayDeclareEntities, prefilter.typesInBodies);
+    }
+    
+    private void run() {
+        while (pos < source.length && !(mayDeclareEntities && typesInBodies)) {
+            byte b = source[pos];
+            if (b == '/' && next(1) == '/') {
+                pos = lineCommentEnd();
+            } else if (b == '/' && next(1) == '*') {
+                pos = blockCommentEnd();
+            } else if (b == '"' || b == '\'') {
+                pos = literalEnd();
+                lastSignificant = b;
+            } else if (b == '\\') {
+                // A Unicode escape can spell any character, so the lexical view cannot be trusted
+                mayDeclareEntities = true;
+                typesInBodies = true;
+                pos++;
+            } else if (isIdentifierPart(b) && !isDigit(b)) {
+                identifier(identifierEnd());
+            } else if (isDigit(b)) {
+                // Numbers, including suffixes and hex digits, are not identifiers
+                pos = identifierEnd();
+                lastSignificant = '0';
+            } else {
+                punctuation(b);
+            }
+        }
+    }
+    
+    private void identifier(int end) {
+        boolean qualified = lastSignificant == '.';
+        if (!mayDeclareEntities && containsMarker(pos, end)) {
+            mayDeclareEntities = true;
+        }
+        if (!qualified && (is(CLASS, end) || is(INTERFACE, end) || is(ENUM, end)
+                || (is(RECORD, end) && identifierFollows(end)))) {
+            sawTypeKeyword = true;
+            sawEnumKeyword |= is(ENUM, end);
+            if (blockDepth > 0) {
+                typesInBodies = true;
+            }
+        } else if (!qualified && is(NEW, end)) {
+            newAtParenDepth |= parenBit();
+        }
+        lastSignificant = 'a';
+        pos = end;
+    }
+    
+    private void punctuation(byte b) {
+        switch (b) {
+            case '(':
+                parenDepth++;
+                break;
+            case ')':
+                newAtParenDepth &= ~parenBit();
+                parenDepth = Math.max(0, parenDepth - 1);
+                break;
+            case ';':
+                newAtParenDepth &= parenBit() - 1;
+                if (parenDepth == 0) {
+                    resetDeclaration();
+                    if (depth > 0 && braces[depth - 1] == ENUM_CONSTANTS) {
+                        braces[depth - 1] = TYPE_BODY;
+                    }
+                }
+                break;
+            case '{':
+                openBrace();
+                break;
+            case '}':
+                if (depth > 0 && braces[--depth] == BLOCK) {
+                    blockDepth--;
+                }
+                newAtParenDepth &= parenBit() - 1;
+                resetDeclaration();
+                break;
+            default:
+                if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f') {
+                    pos++;
+                    return;
+                }
+                break;
+        }
+        lastSignificant = b;
+        pos++;
+    }
+    
+    private void openBrace() {
+        byte kind;
+        if (sawTypeKeyword) {
+            kind = sawEnumKeyword ? ENUM_CONSTANTS : TYPE_BODY;
+        } else {
+            kind = BLOCK;
+            boolean anonymousClass = lastSignificant == ')' && (newAtParenDepth & parenBit()) != 0;
+            boolean enumConstantBody = depth > 0 && braces[depth - 1] == ENUM_CONSTANTS;
+            if ((blockDepth > 0 && anonymousClass) || enumConstantBody) {
+                typesInBodies = true;
+            }
+        }
+        
+        if (depth == braces.length) {
+            braces = Arrays.copyOf(braces, depth * 2);
+        }
+        braces[depth++] = kind;
+        if (kind == BLOCK) {
+            blockDepth++;
+        }
+        newAtParenDepth &= parenBit() - 1;
+        resetDeclaration();
+    }
+    
+    private void resetDeclaration() {
+        sawTypeKeyword = false;
+        sawEnumKeyword = false;
+    }
+    
+    /**
+     * The bit of the current parenthesis depth in {@link #newAtParenDepth}; deeper nesting shares the last bit
+     */
+    private long parenBit() {
+        return 1L << Math.min(parenDepth, 63);
+    }
+    
+    private boolean containsMarker(int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = source[i];
+            if (b != 'C' && b != 'R' && b != 'D' && b != 'S' && b != 'E') {
+                continue;
+            }
+            for (byte[] marker : MARKERS) {
+                if (marker[0] == b && i + marker.length <= end && matchesAt(marker, i)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private boolean is(byte[] keyword, int end) {
+        return end - pos == keyword.length && matchesAt(keyword, pos);
+    }
+    
+    private boolean matchesAt(byte[] word, int offset) {
+        for (int i = 0; i < word.length; i++) {
+            if (source[offset + i] != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Checks if an identifier follows after whitespace, which makes {@code record} a keyword
+     */
+    private boolean identifierFollows(int end) {
+        int next = end;
+        while (next < source.length && (source[next] == ' ' || source[next] == '\t'
+                || source[next] == '\n' || source[next] == '\r')) {
+            next++;
+        }
+        return next > end && next < source.length && isIdentifierPart(source[next]) && !isDigit(source[next]);
+    }
+    
+    private byte next(int offset) {
+        int index = pos + offset;
+        return index < source.length ? source[index] : 0;
+    }
+    
+    private int lineCommentEnd() {
+        int end = pos;
+        while (end < source.length && source[end] != '\n') {
+            end++;
+        }
+        return end;
+    }
+    
+    private int blockCommentEnd() {
+        for (int end = pos + 2; end + 1 < source.length; end++) {
+            if (source[end] == '*' && source[end + 1] == '/') {
+                return end + 2;
+            }
+        }
+        return source.length;
+    }
+    
+    private int identifierEnd() {
+        int end = pos + 1;
+        while (end < source.length && isIdentifierPart(source[end])) {
+            end++;
+        }
+        return end;
+    }
+    
+    /**
+     * Finds the end of the string, text block or character literal at the current position
+     */
+    private int literalEnd() {
+        byte quote = source[pos];
+        if (quote == '"' && next(1) == '"' && next(2) == '"') {
+            int end = pos + 3;
+            while (end < source.length) {
+                if (source[end] == '\\') {
+                    end += 2;
+                } else if (source[end] == '"' && end + 2 < source.length
+                        && source[end + 1] == '"' && source[end + 2] == '"') {
+                    return end + 3;
+                } else {
+                    end++;
+                }
+            }
+            return source.length;
+        }
+        
+        int end = pos + 1;
+        while (end < source.length) {
+            byte b = source[end];
+            if (b == '\\') {
+                end += 2;
+            } else if (b == quote) {
+                return end + 1;
+            } else if (b == '\n') {
+                // Unterminated literal; resume at the line break
+                return end;
+            } else {
+                end++;
+            }
+        }
+        return source.length;
+    }
+    
+    /**
+     * Checks if a byte may be part of an identifier. Bytes of multi-byte characters are taken
+     * to be letters, as most non-ASCII characters in Java sources are.
+     */
+    private static boolean isIdentifierPart(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || isDigit(b) || b == '_' || b == '$' || b < 0;
+    }
+    
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+    
+    private static byte[][] ascii(String... words) {
+        byte[][] bytes = new byte[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            bytes[i] = words[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return bytes;
+    }
+    
+    /**
+     * The extraction work a source file needs
+     */
+    public static class Route {
+        private final boolean mayDeclareEntities;
+        private final boolean typesInBodies;
+        
+        Route(boolean mayDeclareEntities, boolean typesInBodies) {
+            this.mayDeclareEntities = mayDeclareEntities;
+            this.typesInBodies = typesInBodies;
+        }
+        
+        /**
+         * Checks if the file may contain external entities or data stores, so their detectors need to run
+         */
+        public boolean mayDeclareEntities() {
+            return mayDeclareEntities;
+        }
+        
+        /**
+         * Checks if the method bodies of the file need to be parsed, as they may declare types
+         */
+        public boolean needsMethodBodies() {
+            return typesInBodies;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.threatmodel.analyzer.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Index of the types declared in the project, used to resolve the type names written in
+ * method signatures to the fully qualified names of data structures without the symbol solver.
+ *
+ * A name is resolved the way the compiler would resolve it among the indexed types: member
+ * types of the enclosing classes first, then single-type imports, then the declaring file's
+ * package and finally on-demand imports. Names whose first part is not the simple name of
+ * any indexed type are rejected with a single lookup.
+ */
+public class TypeIndex {
+    
+    private final Set<String> qualifiedNames;
+    private final Set<String> simpleNames = new HashSet<>();
+    
+    /**
+     * Creates an index of types
+     *
+     * @param qualifiedNames The fully qualified names of the types declared in the project
+     */
+    public TypeIndex(Collection<String> qualifiedNames) {
+        this.qualifiedNames = new HashSet<>(qualifiedNames);
+        for (String qualifiedName : qualifiedNames) {
+            simpleNames.add(qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1));
+        }
+    }
+    
+    /**
+     * Resolves all indexed types mentioned in a type, including type arguments and array
+     * element types, e.g. both types of {@code Map<String, List<UserDTO>>} if indexed
+     *
+     * @param type The type as written in the source
+     * @param file The file in which the type is written
+     * @param declaringType The qualified name of the class in which the type is written, or null
+     * @return The fully qualified names of the indexed types, in order of appearance
+     */
+    public List<String> resolveAll(String type, FileExtraction file, String declaringType) {
+        List<String> resolved = new ArrayList<>(1);
+        int start = -1;
+        for (int i = 0; i <= type.length(); i++) {
+            boolean namePart = i < type.length() &&
+                    (Character.isJavaIdentifierPart(type.charAt(i)) || type.charAt(i) == '.');
+            if (namePart && start < 0) {
+                start = i;
+            } else if (!namePart && start >= 0) {
+                // Skip annotations written on the type
+                if (start == 0 || type.charAt(start - 1) != '@') {
+                    String qualifiedName = resolve(type.substring(start, i), file, declaringType);
+                    if (qualifiedName != null && !resolved.contains(qualifiedName)) {
+                        resolved.add(qualifiedName);
+                    }
+                }
+                start = -1;
+            }
+        }
+        return resolved;
+    }
+    
+    /**
+     * Resolves a simple or qualified type name without type arguments
+     *
+     * @param name The type name as written in the source
+     * @param file The file in which the name is written
+     * @param declaringType The qualified name of the class in which the name is written, or null
+     * @return The fully qualified name of the indexed type, or null if the name does not refer to one
+     */
+    public String resolve(String name, FileExtraction file, String declaringType) {
+        int dot = name.indexOf('.');
+        if (dot >= 0 && qualifiedNames.contains(name)) {
+            return name;
+        }
+        
+        String first = dot < 0 ? name : name.substring(0, dot);
+        if (!simpleNames.contains(first)) {
+            return null;
+        }
+        String rest = dot < 0 ? "" : name.substring(dot);
+        String packageName = file.getPackageName() != null ? file.getPackageName() : "";
+        
+        // Member types of the enclosing classes, innermost first
+        for (String scope = declaringType; scope != null && scope.length() > packageName.length(); scope = outerName(scope)) {
+            String candidate = scope + "." + first + rest;
+            if (qualifiedNames.contains(candidate)) {
+                return candidate;
+            }
+        }
+        
+        // Single-type imports shadow the types of the package
+        for (String imported : file.getImports()) {
+            if (imported.endsWith("." + first)) {
+                String candidate = imported + rest;
+                return qualifiedNames.contains(candidate) ? candidate : null;
+            }
+        }
+        
+        String candidate = packageName.isEmpty() ? first + rest : packageName + "." + first + rest;
+        if (qualifiedNames.contains(candidate)) {
+            return candidate;
+        }
+        
+        for (String imported : file.getWildcardImports()) {
+            candidate = imported + "." + first + rest;
+            if (qualifiedNames.contains(candidate)) {
+                return candidate;
+            }
+        }
+        
+        return null;
+    }
+    
+    private static String outerName(String qualifiedName) {
+        int dot = qualifiedName.lastIndexOf('.');
+        return dot < 0 ? null : qualifiedName.substring(0, dot);
+    }
+}
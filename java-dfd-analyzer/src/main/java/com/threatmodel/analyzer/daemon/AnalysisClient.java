@@ -0,0 +1,121 @@
+package com.threatmodel.analyzer.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * Command-line client that submits a job to a running {@link AnalysisDaemon}.
+ *
+ * The request carries the token the daemon wrote to its token file. The client exits with 0
+ * if the daemon reports success, 1 if the job failed or the daemon could not be reached,
+ * and 2 for invalid options.
+ */
+@Command(name = "java-dfd-analyzer-client",
+         mixinStandardHelpOptions = true,
+         version = "Java DFD Analyzer 1.0",
+         description = "Submits an analysis job to a running java-dfd-analyzer daemon")
+public class AnalysisClient implements Callable<Integer> {
+
+    @Spec
+    private CommandSpec spec;
+
+    @Option(names = {"-p", "--path"}, description = "Path to Java project root directory (required unless --shutdown)")
+    private Path projectPath;
+
+    @Option(names = {"-o", "--output"}, description = "Output directory for generated files (required unless --shutdown)")
+    private Path outputPath;
+
+    @Option(names = {"-f", "--format"}, description = "Comma-separated output formats (json, ndjson, csv, markdown, html)", defaultValue = "markdown")
+    private String format;
+
+    @Option(names = {"--generate-dfd"}, description = "Generate Data Flow Diagram", defaultValue = "true", arity = "1")
+    private boolean generateDfd;
+
+    @Option(names = {"--shutdown"}, description = "Ask the daemon to stop")
+    private boolean shutdown;
+
+    @Option(names = {"--port"}, description = "Loopback port of the analysis daemon (default: ${DEFAULT-VALUE})")
+    private int port = AnalysisDaemon.DEFAULT_PORT;
+
+    @Option(names = {"--token-file"}, description = "File the daemon wrote its request token to (default: ~/.dfd-analyzer/daemon-<port>.token)")
+    private Path tokenFile;
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    public static void main(String[] args) {
+        int exitCode = new CommandLine(new AnalysisClient()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        AnalysisRequest request = new AnalysisRequest();
+        if (shutdown) {
+            request.setCommand(AnalysisRequest.SHUTDOWN);
+        } else {
+            if (projectPath == null || outputPath == null) {
+                throw new ParameterException(spec.commandLine(), "Missing required options: '--path', '--output'");
+            }
+            request.setPath(projectPath.toAbsolutePath().toString());
+            request.setOutput(outputPath.toAbsolutePath().toString());
+            request.setFormat(format);
+            request.setGenerateDfd(generateDfd);
+        }
+
+        Path tokenPath = tokenFile != null ? tokenFile : AnalysisDaemon.defaultTokenFile(port);
+        try {
+            request.setToken(Files.readString(tokenPath, StandardCharsets.US_ASCII).trim());
+        } catch (NoSuchFileException e) {
+            System.err.println("No daemon token at " + tokenPath + "; is the daemon running on port " + port + "?");
+            return 1;
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            writer.write(mapper.writeValueAsString(request));
+            writer.write('\n');
+            writer.flush();
+
+            String line = reader.readLine();
+            if (line == null) {
+                System.err.println("The analysis daemon closed the connection without a response");
+                return 1;
+            }
+            AnalysisResponse response = mapper.readValue(line, AnalysisResponse.class);
+            if (response.isSuccess()) {
+                System.out.println(response.getMessage());
+                if (!shutdown) {
+                    System.out.println("Completed in " + response.getElapsedMillis() + " ms");
+                }
+                return 0;
+            }
+            System.err.println(response.getMessage());
+            return 1;
+        } catch (IOException e) {
+            System.err.println("Could not reach the analysis daemon on port " + port + ": " + e.getMessage());
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.threatmodel.analyzer.daemon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.threatmodel.analyzer.core.AnalysisMetrics;
+import com.threatmodel.analyzer.core.AnalyzerOptions;
+import com.threatmodel.analyzer.core.ProjectAnalyzer;
+import com.threatmodel.analyzer.model.AnalysisResult;
+import com.threatmodel.analyzer.output.OutputGenerator;
+
+/**
+ * Long-running analysis server.
+ * 
+ * The daemon listens on a loopback port and accepts one JSON request per connection
+ * (see {@link AnalysisRequest}). It keeps a {@link ProjectAnalyzer} resident for each of the
+ * most recently analyzed projects, so repeated jobs reuse JIT-warmed code, the worker parsers
+ * and the extractions of unchanged files instead of paying for JVM startup and a full parse
+ * every time. All analyzers share one pool of worker threads.
+ * 
+ * Any local process can connect to the port, so every request must carry the token the daemon
+ * generates when it starts. The token is written to a file that only the user can read.
+ */
+public class AnalysisDaemon {
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisDaemon.class);
+    
+    /**
+     * Port the daemon listens on unless configured otherwise
+     */
+    public static final int DEFAULT_PORT = 7341;
+    
+    /**
+     * Number of projects whose analyzers stay resident unless configured otherwise
+     */
+    public static final int DEFAULT_MAX_PROJECTS = 4;
+    
+    private final int port;
+    private final AnalyzerOptions options;
+    private final int maxProjects;
+    private final Path tokenFile;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    
+    // Resident analyzers in order of last use, guarded by their own monitor
+    private final Map<Path, ProjectAnalyzer> analyzers = new LinkedHashMap<>(16, 0.75f, true);
+    private ExecutorService workers;
+    private byte[] token;
+    private volatile boolean running = true;
+    private ServerSocket serverSocket;
+    
+    public AnalysisDaemon(int port, AnalyzerOptions options) {
+        this(port, options, DEFAULT_MAX_PROJECTS, defaultTokenFile(port));
+    }
+    
+    /**
+     * @param maxProjects Number of projects whose analyzers stay resident; the least recently
+     *                    analyzed project is evicted when another one is added
+     * @param tokenFile File the request token is written to
+     */
+    public AnalysisDaemon(int port, AnalyzerOptions options, int maxProjects, Path tokenFile) {
+        if (maxProjects < 1) {
+            throw new IllegalArgumentException("At least one project must stay resident");
+        }
+        this.port = port;
+        this.options = options;
+        this.maxProjects = maxProjects;
+        this.tokenFile = tokenFile;
+    }
+    
+    /**
+     * Gets the file the daemon on a port writes its token to unless configured otherwise
+     */
+    public static Path defaultTokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".dfd-analyzer", "daemon-" + port + ".token");
+    }
+    
+    /**
+     * Serves requests until a shutdown request is received
+     */
+    public void run() throws IOException {
+        ExecutorService connections = Executors.newCachedThreadPool();
+        workers = ProjectAnalyzer.createWorkerPool(options.getParallelism());
+        try (ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            serverSocket = socket;
+            writeToken();
+            logger.info("Analysis daemon listening on {}:{}", socket.getInetAddress().getHostAddress(), socket.getLocalPort());
+            logger.info("Request token written to: {}", tokenFile);
+            
+            while (running) {
+                Socket client;
+                try {
+                    client = socket.accept();
+                } catch (SocketException e) {
+                    // The server socket was closed by a shutdown request
+                    break;
+                }
+                connections.execute(() -> handleConnection(client));
+            }
+        } finally {
+            connections.shutdownNow();
+            synchronized (analyzers) {
+                analyzers.values().forEach(ProjectAnalyzer::close);
+                analyzers.clear();
+            }
+            workers.shutdownNow();
+            if (token != null) {
+                Files.deleteIfExists(tokenFile);
+            }
+            logger.info("Analysis daemon stopped");
+        }
+    }
+    
+    /**
+     * Generates the token of this start and writes it to the token file, which is created
+     * readable and writable by its owner only
+     */
+    private void writeToken() throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+        
+        Path directory = tokenFile.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        // Replace the file rather than truncating it, so a file created with wider permissions is not reused
+        Files.deleteIfExists(tokenFile);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(tokenFile);
+            File file = tokenFile.toFile();
+            if (!(file.setReadable(false, false) && file.setReadable(true, true)
+                    && file.setWritable(false, false) && file.setWritable(true, true))) {
+                throw new IOException("Could not restrict the permissions of the token file " + tokenFile);
+            }
+        }
+        Files.write(tokenFile, encoded.getBytes(StandardCharsets.US_ASCII));
+        token = encoded.getBytes(StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Reads a request from a connection, executes it and writes the response
+     */
+    private void handleConnection(Socket client) {
+        try (Socket socket = client;
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null || line.isBlank()) {
+                return;
+            }
+            
+            AnalysisResponse response = handleRequest(line);
+            writer.write(mapper.writeValueAsString(response));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            logger.warn("Error handling daemon connection", e);
+        }
+    }
+    
+    /**
+     * Executes a single request
+     */
+    private AnalysisResponse handleRequest(String line) {
+        long start = System.currentTimeMillis();
+        try {
+            AnalysisRequest request = mapper.readValue(line, AnalysisRequest.class);
+            if (!hasValidToken(request)) {
+                logger.warn("Rejected a request without a valid token");
+                return new AnalysisResponse(false, "Missing or invalid token; it is written to " + tokenFile, 0);
+            }
+            
+            if (AnalysisRequest.SHUTDOWN.equals(request.getCommand())) {
+                shutdown();
+                return new AnalysisResponse(true, "Daemon shutting down", 0);
+            }
+            if (!AnalysisRequest.ANALYZE.equals(request.getCommand())) {
+                return new AnalysisResponse(false, "Unknown command: " + request.getCommand(), 0);
+            }
+            if (request.getPath() == null || request.getOutput() == null) {
+                return new AnalysisResponse(false, "Both path and output are required", 0);
+            }
+            
+            AnalysisResult result = analyze(request);
+            return new AnalysisResponse(true, result.getSummary(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Error during analysis", e);
+            return new AnalysisResponse(false, String.valueOf(e.getMessage()), System.currentTimeMillis() - start);
+        }
+    }
+    
+    /**
+     * Checks the request token against the token of this start, in time independent of where they differ
+     */
+    private boolean hasValidToken(AnalysisRequest request) {
+        return request.getToken() != null
+                && MessageDigest.isEqual(token, request.getToken().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Analyzes a project with its resident analyzer and writes the requested output
+     */
+    private AnalysisResult analyze(AnalysisRequest request) throws IOException {
+        Path projectPath = Paths.get(request.getPath()).toAbsolutePath().normalize();
+        Path outputPath = Paths.get(request.getOutput()).toAbsolutePath().normalize();
+        logger.info("Starting analysis of Java project at: {}", projectPath);
+        
+        ProjectAnalyzer analyzer = residentAnalyzer(projectPath);
+        
+        // Jobs for the same project run one at a time; the analyzer keeps per-project state
+        synchronized (analyzer) {
+            AnalysisResult result = analyzer.update();
+            AnalysisMetrics metrics = analyzer.getMetrics();
+            
+            // Generate all requested formats, and the DFD if requested, from the one result
+            metrics.startPhase(AnalysisMetrics.OUTPUT);
+            OutputGenerator outputGenerator = new OutputGenerator(result, outputPath,
+                    Arrays.asList(request.getFormat().split(",")));
+            outputGenerator.setGenerateDfd(request.isGenerateDfd());
+            outputGenerator.setParallelism(options.getParallelism());
+            outputGenerator.generate();
+            metrics.endPhase();
+            metrics.writeJson(outputPath.resolve(AnalysisMetrics.FILE_NAME));
+            
+            logger.info("Analysis completed successfully. Results saved to: {}", outputPath);
+            return result;
+        }
+    }
+    
+    /**
+     * Gets the resident analyzer of a project, creating it if needed. Creating one evicts the
+     * least recently used analyzer when the limit is reached; a job still running on the evicted
+     * analyzer completes, but its state is not kept.
+     */
+    private ProjectAnalyzer residentAnalyzer(Path projectPath) {
+        Path evictedPath = null;
+        ProjectAnalyzer evicted = null;
+        ProjectAnalyzer analyzer;
+        synchronized (analyzers) {
+            analyzer = analyzers.get(projectPath);
+            if (analyzer == null) {
+                analyzer = new ProjectAnalyzer(projectPath, options, workers);
+                analyzers.put(projectPath, analyzer);
+                if (analyzers.size() > maxProjects) {
+                    Iterator<Map.Entry<Path, ProjectAnalyzer>> eldest = analyzers.entrySet().iterator();
+                    Map.Entry<Path, ProjectAnalyzer> entry = eldest.next();
+                    evictedPath = entry.getKey();
+                    evicted = entry.getValue();
+                    eldest.remove();
+                }
+            }
+        }
+        
+        if (evicted != null) {
+            logger.info("Releasing the analyzer of {} to keep at most {} projects resident", evictedPath, maxProjects);
+            evicted.close();
+        }
+        return analyzer;
+    }
+    
+    /**
+     * Stops accepting requests
+     */
+    private void shutdown() throws IOException {
+        running = false;
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.threatmodel.analyzer.daemon;
+
+/**
+ * A job submitted to the analysis daemon, sent as a single line of JSON
+ */
+public class AnalysisRequest {
+    public static final String ANALYZE = "analyze";
+    public static final String SHUTDOWN = "shutdown";
+
+    private String command = ANALYZE;
+    private String token;
+    private String path;
+    private String output;
+    private String format = "markdown";
+    private boolean generateDfd = true;
+
+    public String getCommand() {
+        return command;
+    }
+
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Gets the token the daemon wrote to its token file when it started
+     */
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    /**
+     * Gets the comma-separated output formats
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public boolean isGenerateDfd() {
+        return generateDfd;
+    }
+
+    public void setGenerateDfd(boolean generateDfd) {
+        this.generateDfd = generateDfd;
+    }
+}
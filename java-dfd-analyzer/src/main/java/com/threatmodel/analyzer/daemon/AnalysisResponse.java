@@ -0,0 +1,43 @@
+package com.threatmodel.analyzer.daemon;
+
+/**
+ * The daemon's reply to a request, sent as a single line of JSON
+ */
+public class AnalysisResponse {
+    private boolean success;
+    private String message;
+    private long elapsedMillis;
+
+    public AnalysisResponse() {
+    }
+
+    public AnalysisResponse(boolean success, String message, long elapsedMillis) {
+        this.success = success;
+        this.message = message;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+}
@@ -0,0 +1,78 @@
+package com.threatmodel.analyzer.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Flight recording scoped to an analysis run.
+ *
+ * The recording uses the JDK "profile" settings, so method samples and allocations can be
+ * attributed to the file parse, extraction, flow detection and output events of the analyzer.
+ */
+public class AnalysisRecording implements AutoCloseable {
+    
+    /**
+     * Name of the recording file written next to the results by default
+     */
+    public static final String FILE_NAME = "analysis.jfr";
+    
+    private static final String SETTINGS = "profile";
+    
+    private final Recording recording;
+    private final Path file;
+    
+    private AnalysisRecording(Recording recording, Path file) {
+        this.recording = recording;
+        this.file = file;
+    }
+    
+    /**
+     * Starts a recording
+     *
+     * @param file The file the recording is written to
+     * @return The running recording
+     */
+    public static AnalysisRecording start(Path file) throws IOException {
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration(SETTINGS));
+        } catch (ParseException e) {
+            throw new IOException("Invalid JFR settings: " + SETTINGS, e);
+        }
+        recording.setName("java-dfd-analyzer");
+        recording.enable(FileParseEvent.class);
+        recording.enable(ExtractionEvent.class);
+        recording.enable(DataFlowPhaseEvent.class);
+        recording.enable(OutputWriteEvent.class);
+        recording.start();
+        return new AnalysisRecording(recording, file);
+    }
+    
+    public Path getFile() {
+        return file;
+    }
+    
+    /**
+     * Writes the events recorded so far to the recording file, keeping the recording running
+     */
+    public void dump() throws IOException {
+        recording.dump(file);
+    }
+    
+    /**
+     * Stops the recording and writes it to the recording file
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            recording.close();
+        }
+    }
+}
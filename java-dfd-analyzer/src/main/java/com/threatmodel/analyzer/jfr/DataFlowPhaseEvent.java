@@ -0,0 +1,30 @@
+package com.threatmodel.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one phase of the data flow detection
+ */
+@Name("com.threatmodel.analyzer.DataFlowPhase")
+@Label("Data Flow Phase")
+@Category({"DFD Analyzer", "Flow Detection"})
+@Description("One phase of the data flow detection, such as the flows from processes to data stores")
+@StackTrace(false)
+public class DataFlowPhaseEvent extends Event {
+    
+    @Label("Phase")
+    public String phase;
+    
+    @Label("Items")
+    @Description("Number of processes, external entities or data stores examined")
+    public int items;
+    
+    @Label("Flows")
+    @Description("Number of flows detected, before duplicates are merged")
+    public int flows;
+}
@@ -0,0 +1,38 @@
+package com.threatmodel.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for the extraction of the components of one compilation unit
+ */
+@Name("com.threatmodel.analyzer.Extraction")
+@Label("Extraction")
+@Category({"DFD Analyzer", "Parsing"})
+@Description("Extraction of data structures, processes, external entities and data stores from one compilation unit")
+@StackTrace(false)
+public class ExtractionEvent extends Event {
+    
+    @Label("Path")
+    public String path;
+    
+    @Label("Nodes")
+    @Description("Number of nodes in the syntax tree")
+    public long nodes;
+    
+    @Label("Data Structures")
+    public int dataStructures;
+    
+    @Label("Processes")
+    public int processes;
+    
+    @Label("External Entities")
+    public int externalEntities;
+    
+    @Label("Data Stores")
+    public int dataStores;
+}
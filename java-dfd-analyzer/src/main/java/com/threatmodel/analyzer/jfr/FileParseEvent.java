@@ -0,0 +1,43 @@
+package com.threatmodel.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for the parsing of one source file
+ */
+@Name("com.threatmodel.analyzer.FileParse")
+@Label("File Parse")
+@Category({"DFD Analyzer", "Parsing"})
+@Description("Parsing of one Java source file into a syntax tree")
+@StackTrace(false)
+public class FileParseEvent extends Event {
+    
+    @Label("Path")
+    public String path;
+    
+    @Label("Size")
+    @DataAmount
+    public long size;
+    
+    @Label("Successful")
+    @Description("Whether the file was parsed without syntax errors")
+    public boolean successful;
+    
+    @Label("Problems")
+    @Description("Number of syntax errors reported by the parser")
+    public int problems;
+    
+    @Label("Over Budget")
+    @Description("Budget the file was over, size or time, if any")
+    public String overBudget;
+    
+    @Label("Declarations Only")
+    @Description("Whether the method bodies were removed before parsing")
+    public boolean declarationsOnly;
+}
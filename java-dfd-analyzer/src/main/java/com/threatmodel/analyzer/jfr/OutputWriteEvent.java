@@ -0,0 +1,36 @@
+package com.threatmodel.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for the writing of one output file, or one part of a report file
+ */
+@Name("com.threatmodel.analyzer.OutputWrite")
+@Label("Output Write")
+@Category({"DFD Analyzer", "Output"})
+@Description("Writing of one output file, or of one section of a report into its part file")
+@StackTrace(false)
+public class OutputWriteEvent extends Event {
+    
+    @Label("Output")
+    @Description("Name of the output file")
+    public String output;
+    
+    @Label("Path")
+    @Description("File written, which is a temporary part file for the sections of a multi-section report")
+    public String path;
+    
+    @Label("Elements")
+    @Description("Number of result elements written, if known")
+    public long elements;
+    
+    @Label("Size")
+    @DataAmount
+    public long size;
+}
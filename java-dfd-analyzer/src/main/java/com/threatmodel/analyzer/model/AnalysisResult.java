@@ -36,6 +36,19 @@ public class AnalysisResult {
         this.dataFlows.add(dataFlow);
     }
 
+    /**
+     * Switches the data flows to the compact columnar representation of
+     * {@link CompactDataFlowList}, which needs far less memory for large graphs.
+     * Flows that were already added are kept.
+     */
+    public void useCompactDataFlows() {
+        if (!(dataFlows instanceof CompactDataFlowList)) {
+            CompactDataFlowList compactDataFlows = new CompactDataFlowList();
+            compactDataFlows.addAll(dataFlows);
+            this.dataFlows = compactDataFlows;
+        }
+    }
+
     public List<ExternalEntity> getExternalEntities() {
         return externalEntities;
     }
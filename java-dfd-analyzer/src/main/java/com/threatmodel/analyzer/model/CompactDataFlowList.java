@@ -0,0 +1,228 @@
+package com.threatmodel.analyzer.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import com.threatmodel.analyzer.model.DataFlow.DataFlowType;
+
+/**
+ * A list of data flows stored in columns of primitive arrays.
+ *
+ * Every string is stored once in a shared string table and flows refer to it by index,
+ * so the IDs of processes, entities, stores and data structures that appear in many flows
+ * cost four bytes per use. Descriptions, which are mostly unique but built from the same
+ * names, are stored as sequences of table indexes of their space-separated words. Derived
+ * flow IDs are not stored; flows read from the list compute them when they are first requested.
+ * Metadata and IDs that are not derived are kept in sparse side tables.
+ *
+ * {@link #get(int)} returns a new {@link DataFlow} built from the columns. Changes to that
+ * object are not written back. Flows can only be appended, so the description words of a
+ * flow are never replaced and need not be reclaimed.
+ */
+public class CompactDataFlowList extends AbstractList<DataFlow> implements RandomAccess {
+    private static final DataFlowType[] TYPES = DataFlowType.values();
+    private static final int NULL = -1;
+
+    // Shared string table
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    // One entry per flow in each column
+    private int size;
+    private int[] sources = new int[16];
+    private int[] destinations = new int[16];
+    private int[] dataStructures = new int[16];
+    private int[] descriptionStarts = new int[16];
+    private int[] descriptionLengths = new int[16];
+    private int[] protocols = new int[16];
+    private int[] multiplicities = new int[16];
+    private byte[] types = new byte[16];
+    private final BitSet external = new BitSet();
+
+    // Words of all descriptions, referenced by start and length
+    private int[] descriptionWords = new int[64];
+    private int descriptionWordCount;
+
+    // Sparse columns for the rare flows that have them
+    private final Map<Integer, String> customIds = new HashMap<>();
+    private final Map<Integer, Map<String, Object>> metadata = new HashMap<>();
+
+    @Override
+    public DataFlow get(int index) {
+        checkIndex(index);
+
+        DataFlowType type = TYPES[types[index]];
+        String sourceId = string(sources[index]);
+        String destinationId = string(destinations[index]);
+        String dataStructureId = string(dataStructures[index]);
+        String customId = customIds.get(index);
+
+        DataFlow flow;
+        if (customId != null) {
+            flow = new DataFlow(customId, sourceId, destinationId, dataStructureId);
+            flow.setType(type);
+        } else {
+            flow = DataFlow.withDerivedId(sourceId, destinationId, dataStructureId, type);
+        }
+        flow.setDescription(description(index));
+        flow.setProtocol(string(protocols[index]));
+        flow.setExternal(external.get(index));
+        flow.setMultiplicity(multiplicities[index]);
+        Map<String, Object> flowMetadata = metadata.get(index);
+        if (flowMetadata != null) {
+            flowMetadata.forEach(flow::addMetadata);
+        }
+        return flow;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(int index, DataFlow flow) {
+        if (index != size) {
+            throw new UnsupportedOperationException("Flows can only be appended");
+        }
+        ensureCapacity(size + 1);
+        size++;
+        write(index, flow);
+        modCount++;
+    }
+
+    @Override
+    public DataFlow set(int index, DataFlow flow) {
+        throw new UnsupportedOperationException("Flows cannot be replaced");
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        external.clear();
+        customIds.clear();
+        metadata.clear();
+        descriptionWordCount = 0;
+        stringIndex.clear();
+        strings.clear();
+        modCount++;
+    }
+
+    /**
+     * Gets the number of distinct strings referenced by the flows
+     */
+    public int getStringCount() {
+        return strings.size();
+    }
+
+    /**
+     * Stores a flow's fields in the columns at a new index
+     */
+    private void write(int index, DataFlow flow) {
+        DataFlowType type = flow.getType() != null ? flow.getType() : DataFlowType.OTHER;
+        sources[index] = intern(flow.getSourceId());
+        destinations[index] = intern(flow.getDestinationId());
+        dataStructures[index] = intern(flow.getDataStructureId());
+        writeDescription(index, flow.getDescription());
+        protocols[index] = intern(flow.getProtocol());
+        multiplicities[index] = flow.getMultiplicity();
+        types[index] = (byte) type.ordinal();
+        external.set(index, flow.isExternal());
+
+        // Only IDs that differ from the derived one need to be stored. Flows created with a
+        // derived ID are known to have one; others are compared with it.
+        if (!flow.isIdDerived() && !DataFlow.computeId(flow.getSourceId(), flow.getDestinationId(),
+                flow.getDataStructureId(), type).equals(flow.getId())) {
+            customIds.put(index, flow.getId());
+        }
+
+        if (!flow.getMetadata().isEmpty()) {
+            metadata.put(index, new HashMap<>(flow.getMetadata()));
+        }
+    }
+
+    /**
+     * Stores a description as the string table indexes of its words
+     */
+    private void writeDescription(int index, String description) {
+        if (description == null) {
+            descriptionLengths[index] = NULL;
+            return;
+        }
+
+        int start = descriptionWordCount;
+        int wordStart = 0;
+        for (int i = 0; i <= description.length(); i++) {
+            if (i == description.length() || description.charAt(i) == ' ') {
+                if (descriptionWordCount == descriptionWords.length) {
+                    descriptionWords = Arrays.copyOf(descriptionWords, descriptionWords.length * 2);
+                }
+                descriptionWords[descriptionWordCount++] = intern(description.substring(wordStart, i));
+                wordStart = i + 1;
+            }
+        }
+        descriptionStarts[index] = start;
+        descriptionLengths[index] = descriptionWordCount - start;
+    }
+
+    private String description(int index) {
+        int length = descriptionLengths[index];
+        if (length == NULL) {
+            return null;
+        }
+
+        int start = descriptionStarts[index];
+        StringBuilder description = new StringBuilder();
+        for (int i = start; i < start + length; i++) {
+            if (i > start) {
+                description.append(' ');
+            }
+            description.append(strings.get(descriptionWords[i]));
+        }
+        return description.toString();
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        Integer existing = stringIndex.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        strings.add(value);
+        stringIndex.put(value, strings.size() - 1);
+        return strings.size() - 1;
+    }
+
+    private String string(int index) {
+        return index == NULL ? null : strings.get(index);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= sources.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, sources.length + (sources.length >> 1));
+        sources = Arrays.copyOf(sources, newCapacity);
+        destinations = Arrays.copyOf(destinations, newCapacity);
+        dataStructures = Arrays.copyOf(dataStructures, newCapacity);
+        descriptionStarts = Arrays.copyOf(descriptionStarts, newCapacity);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, newCapacity);
+        protocols = Arrays.copyOf(protocols, newCapacity);
+        multiplicities = Arrays.copyOf(multiplicities, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+    }
+}
@@ -3,6 +3,9 @@ package com.threatmodel.analyzer.model;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * Represents a field within a data structure
  */
@@ -15,7 +18,8 @@ public class DataField {
     private boolean isCollection;
     private boolean isSensitive;
     
-    public DataField(String name, String type) {
+    @JsonCreator
+    public DataField(@JsonProperty("name") String name, @JsonProperty("type") String type) {
         this.name = name;
         this.type = type;
         this.isPrimitive = false;
@@ -3,6 +3,9 @@ package com.threatmodel.analyzer.model;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * Represents a data flow between components in the system
  */
@@ -15,8 +18,12 @@ public class DataFlow {
     private String protocol;
     private boolean isExternal;
     private DataFlowType type;
+    private int multiplicity = 1;
     private Map<String, Object> metadata = new HashMap<>();
     
+    // Set if the ID is derived from the identifying fields, in which case it is computed on first use
+    private boolean idDerived;
+    
     public enum DataFlowType {
         INPUT,
         OUTPUT,
@@ -28,7 +35,9 @@ public class DataFlow {
         OTHER
     }
     
-    public DataFlow(String id, String sourceId, String destinationId, String dataStructureId) {
+    @JsonCreator
+    public DataFlow(@JsonProperty("id") String id, @JsonProperty("sourceId") String sourceId,
+            @JsonProperty("destinationId") String destinationId, @JsonProperty("dataStructureId") String dataStructureId) {
         this.id = id;
         this.sourceId = sourceId;
         this.destinationId = destinationId;
@@ -36,12 +45,44 @@ public class DataFlow {
         this.type = DataFlowType.OTHER;
     }
 
+    /**
+     * Creates a flow whose ID is derived from its source, destination, data structure and type
+     * with {@link #computeId}. The ID is computed when it is first requested, and again after
+     * one of these fields changes.
+     */
+    public static DataFlow withDerivedId(String sourceId, String destinationId, String dataStructureId, DataFlowType type) {
+        DataFlow flow = new DataFlow(null, sourceId, destinationId, dataStructureId);
+        flow.type = type;
+        flow.idDerived = true;
+        return flow;
+    }
+
     public String getId() {
+        if (id == null && idDerived) {
+            id = computeId(sourceId, destinationId, dataStructureId, type);
+        }
         return id;
     }
 
     public void setId(String id) {
         this.id = id;
+        this.idDerived = false;
+    }
+
+    /**
+     * Checks if the ID is derived from the identifying fields rather than set explicitly
+     */
+    boolean isIdDerived() {
+        return idDerived;
+    }
+
+    /**
+     * Discards a derived ID after an identifying field changed
+     */
+    private void identifyingFieldChanged() {
+        if (idDerived) {
+            id = null;
+        }
     }
 
     public String getSourceId() {
@@ -50,6 +91,7 @@ public class DataFlow {
 
     public void setSourceId(String sourceId) {
         this.sourceId = sourceId;
+        identifyingFieldChanged();
     }
 
     public String getDestinationId() {
@@ -58,6 +100,7 @@ public class DataFlow {
 
     public void setDestinationId(String destinationId) {
         this.destinationId = destinationId;
+        identifyingFieldChanged();
     }
 
     public String getDataStructureId() {
@@ -66,6 +109,7 @@ public class DataFlow {
 
     public void setDataStructureId(String dataStructureId) {
         this.dataStructureId = dataStructureId;
+        identifyingFieldChanged();
     }
 
     public String getDescription() {
@@ -98,6 +142,19 @@ public class DataFlow {
 
     public void setType(DataFlowType type) {
         this.type = type;
+        identifyingFieldChanged();
+    }
+
+    /**
+     * Gets the number of times this flow was detected. Flows with the same source,
+     * destination, data structure and type are merged into one.
+     */
+    public int getMultiplicity() {
+        return multiplicity;
+    }
+
+    public void setMultiplicity(int multiplicity) {
+        this.multiplicity = multiplicity;
     }
 
     public Map<String, Object> getMetadata() {
@@ -107,4 +164,32 @@ public class DataFlow {
     public void addMetadata(String key, Object value) {
         this.metadata.put(key, value);
     }
+
+    /**
+     * Computes the ID of a flow from the fields that identify it, so that the same flow
+     * gets the same ID in every run
+     *
+     * @return An ID of the form "flow-" followed by 16 hex digits
+     */
+    public static String computeId(String sourceId, String destinationId, String dataStructureId, DataFlowType type) {
+        // 64-bit FNV-1a over the fields, separated by a character that cannot occur in them
+        long hash = 0xcbf29ce484222325L;
+        for (String field : new String[] { sourceId, destinationId, dataStructureId, type.name() }) {
+            if (field != null) {
+                for (int i = 0; i < field.length(); i++) {
+                    hash = (hash ^ field.charAt(i)) * 0x100000001b3L;
+                }
+            }
+            hash = (hash ^ 0xFFFF) * 0x100000001b3L;
+        }
+        
+        // Final avalanche so that similar fields give unrelated IDs
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        
+        return String.format("flow-%016x", hash);
+    }
 }
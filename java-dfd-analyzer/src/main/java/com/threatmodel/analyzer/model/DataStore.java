@@ -5,6 +5,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * Represents a data store in the system (database, file, cache, etc.)
  */
@@ -25,7 +28,8 @@ public class DataStore {
         OTHER
     }
     
-    public DataStore(String id, String name) {
+    @JsonCreator
+    public DataStore(@JsonProperty("id") String id, @JsonProperty("name") String name) {
         this.id = id;
         this.name = name;
         this.type = DataStoreType.OTHER;
@@ -5,6 +5,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * Represents a data structure in the Java project (like a class or interface with data)
  */
@@ -28,7 +31,8 @@ public class DataStructure {
         OTHER
     }
     
-    public DataStructure(String name, String fullyQualifiedName) {
+    @JsonCreator
+    public DataStructure(@JsonProperty("name") String name, @JsonProperty("fullyQualifiedName") String fullyQualifiedName) {
         this.name = name;
         this.fullyQualifiedName = fullyQualifiedName;
         this.type = DataStructureType.OTHER;
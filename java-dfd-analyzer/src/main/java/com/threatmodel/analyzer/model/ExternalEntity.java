@@ -5,6 +5,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * Represents an external entity that interacts with the system
  */
@@ -23,7 +26,8 @@ public class ExternalEntity {
         OTHER
     }
     
-    public ExternalEntity(String name) {
+    @JsonCreator
+    public ExternalEntity(@JsonProperty("name") String name) {
         this.name = name;
         this.type = ExternalEntityType.OTHER;
     }
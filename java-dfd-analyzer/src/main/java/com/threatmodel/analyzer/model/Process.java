@@ -5,6 +5,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * Represents a process or functionality in the system
  */
@@ -17,7 +20,8 @@ public class Process {
     private List<String> outputDataStructureIds = new ArrayList<>();
     private Map<String, Object> metadata = new HashMap<>();
     
-    public Process(String id, String name) {
+    @JsonCreator
+    public Process(@JsonProperty("id") String id, @JsonProperty("name") String name) {
         this.id = id;
         this.name = name;
     }
@@ -0,0 +1,116 @@
+package com.threatmodel.analyzer.output;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import com.threatmodel.analyzer.model.AnalysisResult;
+import com.threatmodel.analyzer.model.DataField;
+import com.threatmodel.analyzer.model.DataFlow;
+import com.threatmodel.analyzer.model.DataStore;
+import com.threatmodel.analyzer.model.DataStructure;
+import com.threatmodel.analyzer.model.ExternalEntity;
+import com.threatmodel.analyzer.model.Process;
+
+/**
+ * CSV tables of an analysis result, one file per kind of component
+ */
+class CsvReport extends TextReport {
+    
+    CsvReport(AnalysisResult result) {
+        super(result);
+    }
+    
+    @Override
+    List<ReportFile> createFiles(Path outputPath) {
+        return Arrays.asList(
+                table(outputPath.resolve("data-structures.csv"), result.getDataStructures(),
+                        "Name,Type,Description,External,Source File,Fields\n", this::writeDataStructure),
+                table(outputPath.resolve("data-flows.csv"), result.getDataFlows(),
+                        "Source,Destination,Data Structure,Type,Protocol,External,Description\n", this::writeDataFlow),
+                table(outputPath.resolve("external-entities.csv"), result.getExternalEntities(),
+                        "Name,Type,Description,Protocols\n", this::writeExternalEntity),
+                table(outputPath.resolve("processes.csv"), result.getProcesses(),
+                        "ID,Name,Description,Source File,Input Data Structures,Output Data Structures\n", this::writeProcess),
+                table(outputPath.resolve("data-stores.csv"), result.getDataStores(),
+                        "ID,Name,Type,Description,Data Structures\n", this::writeDataStore));
+    }
+    
+    /**
+     * Describes a table file with a header line and one row per element
+     */
+    private static <T> ReportFile table(Path file, List<T> rows, String header, ReportSection.Entry<T> row) {
+        return new ReportFile(file).add(rows, ReportSection.of(out -> out.append(header), row, out -> { }));
+    }
+    
+    private void writeDataStructure(ReportWriter out, DataStructure structure) throws IOException {
+        out.append(escapeCsv(structure.getName())).append(",");
+        out.append(escapeCsv(structure.getType().toString())).append(",");
+        out.append(escapeCsv(structure.getDescription())).append(",");
+        out.append(structure.isExternal()).append(",");
+        out.append(escapeCsv(structure.getSourceFilePath())).append(",");
+        
+        StringBuilder fields = new StringBuilder();
+        for (DataField field : structure.getFields()) {
+            if (fields.length() > 0) {
+                fields.append("; ");
+            }
+            fields.append(field.getName()).append(": ").append(field.getType());
+            if (field.isSensitive()) {
+                fields.append(" [SENSITIVE]");
+            }
+        }
+        out.append(escapeCsv(fields.toString())).append("\n");
+    }
+    
+    private void writeDataFlow(ReportWriter out, DataFlow flow) throws IOException {
+        out.append(escapeCsv(flow.getSourceId())).append(",");
+        out.append(escapeCsv(flow.getDestinationId())).append(",");
+        out.append(escapeCsv(flow.getDataStructureId())).append(",");
+        out.append(escapeCsv(flow.getType().toString())).append(",");
+        out.append(escapeCsv(flow.getProtocol())).append(",");
+        out.append(flow.isExternal()).append(",");
+        out.append(escapeCsv(flow.getDescription())).append("\n");
+    }
+    
+    private void writeExternalEntity(ReportWriter out, ExternalEntity entity) throws IOException {
+        out.append(escapeCsv(entity.getName())).append(",");
+        out.append(escapeCsv(entity.getType().toString())).append(",");
+        out.append(escapeCsv(entity.getDescription())).append(",");
+        out.append(escapeCsv(String.join("; ", entity.getProtocols()))).append("\n");
+    }
+    
+    private void writeProcess(ReportWriter out, Process process) throws IOException {
+        out.append(escapeCsv(process.getId())).append(",");
+        out.append(escapeCsv(process.getName())).append(",");
+        out.append(escapeCsv(process.getDescription())).append(",");
+        out.append(escapeCsv(process.getSourceFilePath())).append(",");
+        out.append(escapeCsv(String.join("; ", process.getInputDataStructureIds()))).append(",");
+        out.append(escapeCsv(String.join("; ", process.getOutputDataStructureIds()))).append("\n");
+    }
+    
+    private void writeDataStore(ReportWriter out, DataStore store) throws IOException {
+        out.append(escapeCsv(store.getId())).append(",");
+        out.append(escapeCsv(store.getName())).append(",");
+        out.append(escapeCsv(store.getType().toString())).append(",");
+        out.append(escapeCsv(store.getDescription())).append(",");
+        out.append(escapeCsv(String.join("; ", store.getDataStructureIds()))).append("\n");
+    }
+    
+    /**
+     * Escapes a string for CSV output
+     */
+    private static String escapeCsv(String s) {
+        if (s == null) {
+            return "";
+        }
+        
+        // If the string contains a comma, a double quote, or a newline, wrap it in quotes and escape any quotes
+        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+        
+        return s;
+    }
+}
@@ -3,18 +3,29 @@ package com.threatmodel.analyzer.output;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.threatmodel.analyzer.model.AnalysisResult;
 import com.threatmodel.analyzer.model.DataFlow;
+import com.threatmodel.analyzer.model.DataFlow.DataFlowType;
 import com.threatmodel.analyzer.model.DataStore;
-import com.threatmodel.analyzer.model.DataStructure;
 import com.threatmodel.analyzer.model.ExternalEntity;
 import com.threatmodel.analyzer.model.Process;
+import com.threatmodel.analyzer.output.DiagramIndex.Edge;
+import com.threatmodel.analyzer.output.DiagramIndex.Label;
+import com.threatmodel.analyzer.output.DiagramIndex.Node;
+import com.threatmodel.analyzer.output.DiagramIndex.NodeKind;
 
 /**
  * Class for generating Data Flow Diagrams (DFDs) from analysis results
@@ -22,12 +33,64 @@ import com.threatmodel.analyzer.model.Process;
 public class DFDGenerator {
     private static final Logger logger = LoggerFactory.getLogger(DFDGenerator.class);
     
+    /**
+     * Maximum number of distinct labels listed on an aggregated edge
+     */
+    private static final int MAX_EDGE_LABELS = 5;
+    
+    private static final LabelSyntax DOT_LABEL = new LabelSyntax("\\n", "(", ")");
+    private static final LabelSyntax MERMAID_LABEL = new LabelSyntax("<br>", "", "");
+    
     private final AnalysisResult result;
     private final Path outputPath;
+    private final DiagramIndex index;
+    private boolean aggregateEdges;
+    private boolean leveled;
+    private LeveledDiagrams.Grouping grouping = LeveledDiagrams.Grouping.PACKAGE;
+    private Set<String> expandedGroups = Collections.emptySet();
+    
+    // Aggregated edges and leveled diagrams, shared by the DOT and Mermaid renderers
+    private Collection<Edge> edges;
+    private LeveledDiagrams levels;
     
     public DFDGenerator(AnalysisResult result, Path outputPath) {
         this.result = result;
         this.outputPath = outputPath;
+        this.index = new DiagramIndex(result);
+    }
+    
+    /**
+     * Sets whether parallel flows between the same two nodes are drawn as one edge listing
+     * their data structures, instead of one edge per flow
+     */
+    public void setAggregateEdges(boolean aggregateEdges) {
+        this.aggregateEdges = aggregateEdges;
+    }
+    
+    /**
+     * Sets whether leveled diagrams are generated along with the full diagram: a context
+     * diagram (level 0) and a diagram with one process per group of methods (level 1)
+     */
+    public void setLeveled(boolean leveled) {
+        this.leveled = leveled;
+    }
+    
+    /**
+     * Sets whether the methods are grouped by package or by class on level 1
+     */
+    public void setGroupByClass(boolean groupByClass) {
+        this.grouping = groupByClass ? LeveledDiagrams.Grouping.CLASS : LeveledDiagrams.Grouping.PACKAGE;
+    }
+    
+    /**
+     * Sets the level-1 groups whose methods are drawn in a level-2 diagram of their own,
+     * or "all" for every group. Expanding a group enables the leveled diagrams.
+     */
+    public void setExpandedGroups(Collection<String> expandedGroups) {
+        this.expandedGroups = new HashSet<>(expandedGroups);
+        if (!expandedGroups.isEmpty()) {
+            this.leveled = true;
+        }
     }
     
     /**
@@ -39,94 +102,221 @@ public class DFDGenerator {
             Files.createDirectories(outputPath);
         }
         
-        // Generate DOT file for GraphViz
-        generateDotFile();
-        
-        // Generate Mermaid diagram
-        generateMermaidDiagram();
+        for (OutputTask task : createTasks()) {
+            task.run();
+        }
         
         logger.info("DFD files generated at: {}", outputPath);
     }
     
     /**
-     * Generates a DOT file for GraphViz
+     * Creates one task per diagram file, so the files can be written concurrently
      */
-    private void generateDotFile() throws IOException {
-        Path dotFile = outputPath.resolve("data-flow-diagram.dot");
-        
-        StringBuilder dot = new StringBuilder();
-        dot.append("digraph \"").append(result.getProjectName()).append("\" {\n");
-        dot.append("  rankdir=LR;\n");
-        dot.append("  node [shape=box, style=\"rounded,filled\", fontname=\"Arial\"];\n");
-        dot.append("  edge [fontname=\"Arial\"];\n\n");
+    List<OutputTask> createTasks() {
+        List<OutputTask> tasks = new ArrayList<>();
         
-        // Generate nodes for external entities
-        dot.append("  /* External Entities */\n");
-        for (ExternalEntity entity : result.getExternalEntities()) {
-            String entityId = sanitizeId(entity.getName());
-            dot.append("  ").append(entityId)
-               .append(" [label=\"").append(entity.getName()).append("\", ")
-               .append("shape=rectangle, fillcolor=lightblue];\n");
-        }
-        dot.append("\n");
+        // Generate DOT file for GraphViz
+        tasks.add(this::generateDotFile);
         
-        // Generate nodes for processes
-        dot.append("  /* Processes */\n");
-        for (Process process : result.getProcesses()) {
-            String processId = sanitizeId(process.getId());
-            dot.append("  ").append(processId)
-               .append(" [label=\"").append(process.getName()).append("\", ")
-               .append("shape=ellipse, fillcolor=lightgreen];\n");
-        }
-        dot.append("\n");
+        // Generate Mermaid diagram
+        tasks.add(this::generateMermaidDiagram);
         
-        // Generate nodes for data stores
-        dot.append("  /* Data Stores */\n");
-        for (DataStore store : result.getDataStores()) {
-            String storeId = sanitizeId(store.getId());
-            dot.append("  ").append(storeId)
-               .append(" [label=\"").append(store.getName()).append("\", ")
-               .append("shape=cylinder, fillcolor=lightyellow];\n");
+        if (leveled) {
+            tasks.add(() -> writeLevel(leveledDiagrams().getContext(), "dfd-level-0"));
+            tasks.add(() -> writeLevel(leveledDiagrams().getLevel1(), "dfd-level-1"));
+            
+            // Level-2 diagrams of the requested groups
+            Set<String> groups = new TreeSet<>(expandedGroups);
+            if (groups.remove(LeveledDiagrams.ALL_GROUPS)) {
+                for (Process process : result.getProcesses()) {
+                    groups.add(LeveledDiagrams.groupOf(process.getId(), grouping));
+                }
+            }
+            for (String group : groups) {
+                tasks.add(() -> {
+                    LeveledDiagrams.Level level = leveledDiagrams().getLevel2().get(group);
+                    if (level != null) {
+                        writeLevel(level, "dfd-level-2-" + DiagramIndex.sanitizeId(group));
+                    } else {
+                        logger.warn("No methods found in group to expand: {}", group);
+                    }
+                });
+            }
         }
-        dot.append("\n");
-        
-        // Generate edges for data flows
-        dot.append("  /* Data Flows */\n");
-        Map<String, Integer> edgeCounts = new HashMap<>();
+        return tasks;
+    }
+    
+    /**
+     * Generates a DOT file for GraphViz
+     */
+    void generateDotFile() throws IOException {
+        Path dotFile = outputPath.resolve("data-flow-diagram.dot");
         
-        for (DataFlow flow : result.getDataFlows()) {
-            String sourceId = sanitizeId(flow.getSourceId());
-            String destId = sanitizeId(flow.getDestinationId());
+        try (ReportWriter dot = new ReportWriter(dotFile)) {
+            writeDotHeader(dot, result.getProjectName());
             
-            // Create a unique key for this edge
-            String edgeKey = sourceId + "->" + destId;
-            int edgeCount = edgeCounts.getOrDefault(edgeKey, 0);
-            edgeCounts.put(edgeKey, edgeCount + 1);
+            // Generate nodes for external entities
+            dot.append("  /* External Entities */\n");
+            for (ExternalEntity entity : result.getExternalEntities()) {
+                writeDotNode(dot, index.node(entity.getName()), entity.getName(), NodeKind.EXTERNAL_ENTITY);
+            }
+            dot.append("\n");
             
-            // Find the data structure for the label
-            String dataStructureName = flow.getDataStructureId();
-            for (DataStructure ds : result.getDataStructures()) {
-                if (ds.getFullyQualifiedName().equals(flow.getDataStructureId())) {
-                    dataStructureName = ds.getName();
-                    break;
-                }
+            // Generate nodes for processes
+            dot.append("  /* Processes */\n");
+            for (Process process : result.getProcesses()) {
+                writeDotNode(dot, index.node(process.getId()), process.getName(), NodeKind.PROCESS);
             }
+            dot.append("\n");
             
-            // Create the edge
-            dot.append("  ").append(sourceId).append(" -> ").append(destId);
+            // Generate nodes for data stores
+            dot.append("  /* Data Stores */\n");
+            for (DataStore store : result.getDataStores()) {
+                writeDotNode(dot, index.node(store.getId()), store.getName(), NodeKind.DATA_STORE);
+            }
+            dot.append("\n");
             
-            StringBuilder labelBuilder = new StringBuilder();
-            labelBuilder.append(dataStructureName);
+            // Generate edges for data flows
+            dot.append("  /* Data Flows */\n");
+            if (aggregateEdges) {
+                for (Edge edge : aggregatedEdges()) {
+                    writeDotEdge(dot, edge.getSource(), edge.getDestination(), formatLabel(edge, DOT_LABEL), edge.getType(), 0);
+                }
+            } else {
+                Map<Long, Integer> edgeCounts = new HashMap<>();
+                for (DataFlow flow : result.getDataFlows()) {
+                    Node source = index.node(flow.getSourceId());
+                    Node destination = index.node(flow.getDestinationId());
+                    
+                    // Count the edges between the same nodes
+                    int edgeCount = edgeCounts.merge(DiagramIndex.edgeKey(source, destination), 1, Integer::sum) - 1;
+                    
+                    writeDotEdge(dot, source, destination, formatLabel(flowLabel(flow), DOT_LABEL), flow.getType(), edgeCount);
+                }
+            }
             
-            if (flow.getProtocol() != null && !flow.getProtocol().isEmpty()) {
-                labelBuilder.append("\\n(").append(flow.getProtocol()).append(")");
+            dot.append("}\n");
+        }
+        
+        logger.info("DOT file written to: {}", dotFile);
+    }
+    
+    /**
+     * Writes one level of the leveled diagrams as a DOT file and a Mermaid diagram
+     *
+     * @param level The diagram to write
+     * @param name The name of the files, without extension
+     */
+    private void writeLevel(LeveledDiagrams.Level level, String name) throws IOException {
+        Path dotFile = outputPath.resolve(name + ".dot");
+        try (ReportWriter dot = new ReportWriter(dotFile)) {
+            writeDotHeader(dot, level.getTitle());
+            writeLevelNodes(dot, level, "  /* ", " */\n", (kind, node, label) -> writeDotNode(dot, node, label, kind));
+            
+            dot.append("  /* Data Flows */\n");
+            for (Edge edge : level.getEdges()) {
+                writeDotEdge(dot, edge.getSource(), edge.getDestination(), formatLabel(edge, DOT_LABEL), edge.getType(), 0);
             }
+            dot.append("}\n");
+        }
+        
+        Path mermaidFile = outputPath.resolve(name + ".mmd");
+        try (ReportWriter mermaid = new ReportWriter(mermaidFile)) {
+            mermaid.append("flowchart LR\n");
+            writeLevelNodes(mermaid, level, "  %% ", "\n", (kind, node, label) -> writeMermaidNode(mermaid, node, label, kind));
             
-            // Add additional attributes
-            dot.append(" [label=\"").append(labelBuilder.toString()).append("\"");
+            mermaid.append("  %% Data Flows\n");
+            for (Edge edge : level.getEdges()) {
+                writeMermaidEdge(mermaid, edge.getSource(), edge.getDestination(), formatLabel(edge, MERMAID_LABEL), edge.getType());
+            }
+        }
+        
+        logger.info("Leveled DFD written to: {} and {}", dotFile, mermaidFile);
+    }
+    
+    /**
+     * Writes the nodes of a level in the commented sections used by the full diagram
+     */
+    private static void writeLevelNodes(ReportWriter out, LeveledDiagrams.Level level, String commentStart,
+            String commentEnd, NodeWriter nodeWriter) throws IOException {
+        String[] titles = {"External Entities", "Processes", "Data Stores"};
+        NodeKind[] kinds = {NodeKind.EXTERNAL_ENTITY, NodeKind.PROCESS, NodeKind.DATA_STORE};
+        for (int i = 0; i < kinds.length; i++) {
+            Map<Node, String> nodes = level.getNodes(kinds[i]);
+            if (nodes.isEmpty()) {
+                continue;
+            }
             
-            // Style based on flow type
-            switch (flow.getType()) {
+            out.append(commentStart).append(titles[i]).append(commentEnd);
+            for (Map.Entry<Node, String> node : nodes.entrySet()) {
+                nodeWriter.write(kinds[i], node.getKey(), node.getValue());
+            }
+            out.append("\n");
+        }
+    }
+    
+    /**
+     * Gets the leveled diagrams, aggregating the flows on first use
+     */
+    private synchronized LeveledDiagrams leveledDiagrams() {
+        if (levels == null) {
+            levels = new LeveledDiagrams(result, index, grouping, expandedGroups);
+        }
+        return levels;
+    }
+    
+    private static void writeDotHeader(ReportWriter dot, String title) throws IOException {
+        dot.append("digraph \"").append(title).append("\" {\n");
+        dot.append("  rankdir=LR;\n");
+        dot.append("  node [shape=box, style=\"rounded,filled\", fontname=\"Arial\"];\n");
+        dot.append("  edge [fontname=\"Arial\"];\n\n");
+    }
+    
+    private static void writeDotNode(ReportWriter dot, Node node, String label, NodeKind kind) throws IOException {
+        dot.append("  ").append(node.getId()).append(" [label=\"").append(label).append("\", ");
+        switch (kind) {
+            case EXTERNAL_ENTITY:
+                dot.append("shape=rectangle, fillcolor=lightblue];\n");
+                break;
+            case DATA_STORE:
+                dot.append("shape=cylinder, fillcolor=lightyellow];\n");
+                break;
+            case PROCESS:
+            default:
+                dot.append("shape=ellipse, fillcolor=lightgreen];\n");
+                break;
+        }
+    }
+    
+    private static void writeMermaidNode(ReportWriter mermaid, Node node, String label, NodeKind kind) throws IOException {
+        mermaid.append("  ").append(node.getId());
+        switch (kind) {
+            case EXTERNAL_ENTITY:
+                mermaid.append("[\"").append(label).append("\"]").append(" style fill:#d0e0ff,stroke:#0000ff\n");
+                break;
+            case DATA_STORE:
+                mermaid.append("[(\"").append(label).append("\")]").append(" style fill:#ffffd0,stroke:#aaaa00\n");
+                break;
+            case PROCESS:
+            default:
+                mermaid.append("((\"").append(label).append("\"))").append(" style fill:#d0ffd0,stroke:#00aa00\n");
+                break;
+        }
+    }
+    
+    /**
+     * Writes a DOT edge
+     *
+     * @param edgeCount The number of edges written before between the same nodes
+     */
+    private void writeDotEdge(ReportWriter dot, Node source, Node destination, String label, DataFlowType type,
+            int edgeCount) throws IOException {
+        dot.append("  ").append(source.getId()).append(" -> ").append(destination.getId());
+        dot.append(" [label=\"").append(label).append("\"");
+        
+        // Style based on flow type
+        if (type != null) {
+            switch (type) {
                 case INPUT:
                     dot.append(", color=blue");
                     break;
@@ -145,133 +335,162 @@ public class DFDGenerator {
                 default:
                     // Use default style
             }
-            
-            // If there are multiple edges between the same nodes, adjust the position
-            if (edgeCount > 0) {
-                dot.append(", pos=\"").append(edgeCount * 10).append(",0!\"");
-            }
-            
-            dot.append("];\n");
         }
         
-        dot.append("}\n");
-        
-        Files.writeString(dotFile, dot.toString());
+        // If there are multiple edges between the same nodes, adjust the position
+        if (edgeCount > 0) {
+            dot.append(", pos=\"").append(edgeCount * 10).append(",0!\"");
+        }
         
-        logger.info("DOT file written to: {}", dotFile);
+        dot.append("];\n");
     }
     
     /**
      * Generates a Mermaid diagram
      */
-    private void generateMermaidDiagram() throws IOException {
+    void generateMermaidDiagram() throws IOException {
         Path mermaidFile = outputPath.resolve("data-flow-diagram.mmd");
         
-        StringBuilder mermaid = new StringBuilder();
-        mermaid.append("flowchart LR\n");
-        
-        // Generate nodes for external entities
-        mermaid.append("  %% External Entities\n");
-        for (ExternalEntity entity : result.getExternalEntities()) {
-            String entityId = sanitizeId(entity.getName());
-            mermaid.append("  ").append(entityId)
-                  .append("[\"").append(entity.getName()).append("\"]")
-                  .append(" style fill:#d0e0ff,stroke:#0000ff\n");
-        }
-        mermaid.append("\n");
-        
-        // Generate nodes for processes
-        mermaid.append("  %% Processes\n");
-        for (Process process : result.getProcesses()) {
-            String processId = sanitizeId(process.getId());
-            mermaid.append("  ").append(processId)
-                  .append("((\"").append(process.getName()).append("\"))")
-                  .append(" style fill:#d0ffd0,stroke:#00aa00\n");
-        }
-        mermaid.append("\n");
-        
-        // Generate nodes for data stores
-        mermaid.append("  %% Data Stores\n");
-        for (DataStore store : result.getDataStores()) {
-            String storeId = sanitizeId(store.getId());
-            mermaid.append("  ").append(storeId)
-                  .append("[(\"").append(store.getName()).append("\")]")
-                  .append(" style fill:#ffffd0,stroke:#aaaa00\n");
-        }
-        mermaid.append("\n");
-        
-        // Generate edges for data flows
-        mermaid.append("  %% Data Flows\n");
-        Map<String, Integer> edgeCounts = new HashMap<>();
-        
-        for (DataFlow flow : result.getDataFlows()) {
-            String sourceId = sanitizeId(flow.getSourceId());
-            String destId = sanitizeId(flow.getDestinationId());
+        try (ReportWriter mermaid = new ReportWriter(mermaidFile)) {
+            mermaid.append("flowchart LR\n");
             
-            // Create a unique key for this edge
-            String edgeKey = sourceId + "->" + destId;
-            int edgeCount = edgeCounts.getOrDefault(edgeKey, 0);
-            edgeCounts.put(edgeKey, edgeCount + 1);
-            
-            // Find the data structure for the label
-            String dataStructureName = flow.getDataStructureId();
-            for (DataStructure ds : result.getDataStructures()) {
-                if (ds.getFullyQualifiedName().equals(flow.getDataStructureId())) {
-                    dataStructureName = ds.getName();
-                    break;
-                }
+            // Generate nodes for external entities
+            mermaid.append("  %% External Entities\n");
+            for (ExternalEntity entity : result.getExternalEntities()) {
+                writeMermaidNode(mermaid, index.node(entity.getName()), entity.getName(), NodeKind.EXTERNAL_ENTITY);
             }
+            mermaid.append("\n");
             
-            // Create the edge
-            mermaid.append("  ").append(sourceId).append(" --> ");
-            
-            // Add label
-            mermaid.append("|").append(dataStructureName);
-            if (flow.getProtocol() != null && !flow.getProtocol().isEmpty()) {
-                mermaid.append("<br>").append(flow.getProtocol());
+            // Generate nodes for processes
+            mermaid.append("  %% Processes\n");
+            for (Process process : result.getProcesses()) {
+                writeMermaidNode(mermaid, index.node(process.getId()), process.getName(), NodeKind.PROCESS);
             }
-            mermaid.append("| ");
+            mermaid.append("\n");
             
-            // Add destination
-            mermaid.append(destId);
+            // Generate nodes for data stores
+            mermaid.append("  %% Data Stores\n");
+            for (DataStore store : result.getDataStores()) {
+                writeMermaidNode(mermaid, index.node(store.getId()), store.getName(), NodeKind.DATA_STORE);
+            }
+            mermaid.append("\n");
             
-            // Style based on flow type
-            switch (flow.getType()) {
-                case INPUT:
-                    mermaid.append(" style color:#0000ff\n");
-                    break;
-                case OUTPUT:
-                    mermaid.append(" style color:#00aa00\n");
-                    break;
-                case DATABASE_READ:
-                    mermaid.append(" style color:#aa00aa,stroke-dasharray:5 5\n");
-                    break;
-                case DATABASE_WRITE:
-                    mermaid.append(" style color:#aa0000,stroke-dasharray:5 5\n");
-                    break;
-                case API_CALL:
-                    mermaid.append(" style color:#ff8800\n");
-                    break;
-                default:
-                    mermaid.append("\n");
-                    break;
+            // Generate edges for data flows
+            mermaid.append("  %% Data Flows\n");
+            if (aggregateEdges) {
+                for (Edge edge : aggregatedEdges()) {
+                    writeMermaidEdge(mermaid, edge.getSource(), edge.getDestination(), formatLabel(edge, MERMAID_LABEL), edge.getType());
+                }
+            } else {
+                for (DataFlow flow : result.getDataFlows()) {
+                    writeMermaidEdge(mermaid, index.node(flow.getSourceId()), index.node(flow.getDestinationId()),
+                            formatLabel(flowLabel(flow), MERMAID_LABEL), flow.getType());
+                }
             }
         }
         
-        Files.writeString(mermaidFile, mermaid.toString());
-        
         logger.info("Mermaid diagram written to: {}", mermaidFile);
     }
     
     /**
-     * Sanitizes an ID for use in GraphViz and Mermaid diagrams
+     * Writes a Mermaid edge
      */
-    private String sanitizeId(String id) {
-        if (id == null) {
-            return "unknown";
+    private void writeMermaidEdge(ReportWriter mermaid, Node source, Node destination, String label, DataFlowType type)
+            throws IOException {
+        mermaid.append("  ").append(source.getId()).append(" --> ");
+        mermaid.append("|").append(label).append("| ");
+        mermaid.append(destination.getId());
+        
+        // Style based on flow type
+        if (type == null) {
+            mermaid.append("\n");
+            return;
+        }
+        switch (type) {
+            case INPUT:
+                mermaid.append(" style color:#0000ff\n");
+                break;
+            case OUTPUT:
+                mermaid.append(" style color:#00aa00\n");
+                break;
+            case DATABASE_READ:
+                mermaid.append(" style color:#aa00aa,stroke-dasharray:5 5\n");
+                break;
+            case DATABASE_WRITE:
+                mermaid.append(" style color:#aa0000,stroke-dasharray:5 5\n");
+                break;
+            case API_CALL:
+                mermaid.append(" style color:#ff8800\n");
+                break;
+            default:
+                mermaid.append("\n");
+                break;
+        }
+    }
+    
+    /**
+     * Gets the edges of the aggregated diagram, merging the flows on first use
+     */
+    private synchronized Collection<Edge> aggregatedEdges() {
+        if (edges == null) {
+            edges = index.aggregate(result.getDataFlows());
         }
+        return edges;
+    }
+    
+    private Label flowLabel(DataFlow flow) {
+        return new Label(index.structureName(flow.getDataStructureId()), flow.getProtocol());
+    }
+    
+    /**
+     * Formats the label of a single flow: the data structure and, on the next line, the protocol
+     */
+    private static String formatLabel(Label label, LabelSyntax syntax) {
+        if (label.getProtocol() == null) {
+            return label.getName();
+        }
+        return label.getName() + syntax.lineBreak + syntax.protocolPrefix + label.getProtocol() + syntax.protocolSuffix;
+    }
+    
+    /**
+     * Formats the label of an aggregated edge: the labels of its distinct flows, one per line,
+     * followed by the number of flows if there are several
+     */
+    private static String formatLabel(Edge edge, LabelSyntax syntax) {
+        List<Label> labels = edge.getLabels();
+        StringBuilder label = new StringBuilder();
+        for (int i = 0; i < labels.size() && i < MAX_EDGE_LABELS; i++) {
+            if (i > 0) {
+                label.append(syntax.lineBreak);
+            }
+            label.append(formatLabel(labels.get(i), syntax));
+        }
+        if (labels.size() > MAX_EDGE_LABELS) {
+            label.append(syntax.lineBreak).append("+").append(labels.size() - MAX_EDGE_LABELS).append(" more");
+        }
+        if (edge.getFlowCount() > 1) {
+            label.append(syntax.lineBreak).append("[").append(edge.getFlowCount()).append(" flows]");
+        }
+        return label.toString();
+    }
+    
+    /**
+     * How a diagram language breaks label lines and marks the protocol of a flow
+     */
+    private static class LabelSyntax {
+        private final String lineBreak;
+        private final String protocolPrefix;
+        private final String protocolSuffix;
         
-        // Replace special characters with underscores
-        return id.replaceAll("[^a-zA-Z0-9_]", "_");
+        LabelSyntax(String lineBreak, String protocolPrefix, String protocolSuffix) {
+            this.lineBreak = lineBreak;
+            this.protocolPrefix = protocolPrefix;
+            this.protocolSuffix = protocolSuffix;
+        }
+    }
+    
+    @FunctionalInterface
+    private interface NodeWriter {
+        void write(NodeKind kind, Node node, String label) throws IOException;
     }
 }
@@ -0,0 +1,242 @@
+package com.threatmodel.analyzer.output;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.threatmodel.analyzer.model.AnalysisResult;
+import com.threatmodel.analyzer.model.DataFlow;
+import com.threatmodel.analyzer.model.DataFlow.DataFlowType;
+import com.threatmodel.analyzer.model.DataStore;
+import com.threatmodel.analyzer.model.DataStructure;
+import com.threatmodel.analyzer.model.ExternalEntity;
+import com.threatmodel.analyzer.model.Process;
+
+/**
+ * Lookup tables for rendering the data flow diagrams of an analysis result.
+ *
+ * Diagram node IDs are computed once per distinct component ID rather than once per flow, and
+ * data structure labels are looked up by fully qualified name. Each distinct node ID is also
+ * numbered, so edges between two nodes can be counted without building string keys.
+ * The index is safe to use from several renderers at once.
+ */
+class DiagramIndex {
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private final Map<String, Integer> nodeNumbers = new ConcurrentHashMap<>();
+    private final AtomicInteger nextNodeNumber = new AtomicInteger();
+    private final Map<String, String> structureNames = new HashMap<>();
+    
+    DiagramIndex(AnalysisResult result) {
+        for (ExternalEntity entity : result.getExternalEntities()) {
+            node(entity.getName());
+        }
+        for (Process process : result.getProcesses()) {
+            node(process.getId());
+        }
+        for (DataStore store : result.getDataStores()) {
+            node(store.getId());
+        }
+        
+        // The first structure with a name wins, as with a search in list order
+        for (DataStructure structure : result.getDataStructures()) {
+            structureNames.putIfAbsent(structure.getFullyQualifiedName(), structure.getName());
+        }
+    }
+    
+    /**
+     * Gets the diagram node of a component ID
+     */
+    Node node(String id) {
+        // A missing ID is drawn as the "unknown" node
+        return nodes.computeIfAbsent(id != null ? id : "unknown", key -> {
+            String nodeId = sanitizeId(key);
+            return new Node(nodeId, nodeNumbers.computeIfAbsent(nodeId, n -> nextNodeNumber.getAndIncrement()));
+        });
+    }
+    
+    /**
+     * Gets the simple name of a data structure, or the given name if it is not a known structure
+     */
+    String structureName(String fullyQualifiedName) {
+        String name = structureNames.get(fullyQualifiedName);
+        return name != null ? name : fullyQualifiedName;
+    }
+    
+    /**
+     * Gets a key identifying the edge between two nodes
+     */
+    static long edgeKey(Node source, Node destination) {
+        return ((long) source.number << 32) | (destination.number & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Merges parallel flows, those between the same pair of nodes, into one edge each
+     *
+     * @param flows The flows to merge
+     * @return The edges in order of their first flow
+     */
+    Collection<Edge> aggregate(List<DataFlow> flows) {
+        Map<Long, Edge> edges = new LinkedHashMap<>();
+        for (DataFlow flow : flows) {
+            Node source = node(flow.getSourceId());
+            Node destination = node(flow.getDestinationId());
+            edges.computeIfAbsent(edgeKey(source, destination), key -> new Edge(source, destination))
+                    .add(new Label(structureName(flow.getDataStructureId()), flow.getProtocol()), flow.getType());
+        }
+        return edges.values();
+    }
+    
+    /**
+     * Sanitizes an ID for use in GraphViz and Mermaid diagrams, replacing every character
+     * other than ASCII letters, digits and underscores with an underscore
+     */
+    static String sanitizeId(String id) {
+        if (id == null) {
+            return "unknown";
+        }
+        
+        char[] chars = null;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+            if (!valid) {
+                if (chars == null) {
+                    chars = id.toCharArray();
+                }
+                chars[i] = '_';
+            }
+        }
+        return chars != null ? new String(chars) : id;
+    }
+    
+    /**
+     * The kinds of nodes drawn in the diagrams
+     */
+    enum NodeKind {
+        EXTERNAL_ENTITY,
+        PROCESS,
+        DATA_STORE
+    }
+    
+    /**
+     * A node of the diagram
+     */
+    static class Node {
+        private final String id;
+        private final int number;
+        
+        Node(String id, int number) {
+            this.id = id;
+            this.number = number;
+        }
+        
+        /**
+         * Gets the sanitized ID used in the diagram source
+         */
+        String getId() {
+            return id;
+        }
+    }
+    
+    /**
+     * The label of a flow: the name of the data structure and the protocol, if any
+     */
+    static class Label {
+        private final String name;
+        private final String protocol;
+        
+        Label(String name, String protocol) {
+            this.name = name;
+            this.protocol = protocol;
+        }
+        
+        String getName() {
+            return name;
+        }
+        
+        /**
+         * Gets the protocol, or null if the flow has none
+         */
+        String getProtocol() {
+            return protocol != null && !protocol.isEmpty() ? protocol : null;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Label)) {
+                return false;
+            }
+            Label other = (Label) o;
+            return Objects.equals(name, other.name) && Objects.equals(getProtocol(), other.getProtocol());
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, getProtocol());
+        }
+    }
+    
+    /**
+     * The flows between one pair of nodes, merged into a single edge
+     */
+    static class Edge {
+        private final Node source;
+        private final Node destination;
+        private final Set<Label> labels = new LinkedHashSet<>();
+        private DataFlowType type;
+        private boolean mixedTypes;
+        private int flowCount;
+        
+        Edge(Node source, Node destination) {
+            this.source = source;
+            this.destination = destination;
+        }
+        
+        void add(Label label, DataFlowType flowType) {
+            labels.add(label);
+            if (flowCount == 0) {
+                type = flowType;
+            } else if (type != flowType) {
+                mixedTypes = true;
+            }
+            flowCount++;
+        }
+        
+        Node getSource() {
+            return source;
+        }
+        
+        Node getDestination() {
+            return destination;
+        }
+        
+        /**
+         * Gets the distinct labels of the merged flows, in order of their first flow
+         */
+        List<Label> getLabels() {
+            return new ArrayList<>(labels);
+        }
+        
+        /**
+         * Gets the type shared by all merged flows, or null if their types differ
+         */
+        DataFlowType getType() {
+            return mixedTypes ? null : type;
+        }
+        
+        int getFlowCount() {
+            return flowCount;
+        }
+    }
+}
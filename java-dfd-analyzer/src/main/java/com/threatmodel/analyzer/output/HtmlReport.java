@@ -0,0 +1,203 @@
+package com.threatmodel.analyzer.output;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+import com.threatmodel.analyzer.model.AnalysisResult;
+import com.threatmodel.analyzer.model.DataField;
+import com.threatmodel.analyzer.model.DataFlow;
+import com.threatmodel.analyzer.model.DataStore;
+import com.threatmodel.analyzer.model.DataStructure;
+import com.threatmodel.analyzer.model.ExternalEntity;
+import com.threatmodel.analyzer.model.Process;
+
+/**
+ * HTML report of an analysis result, written to analysis-result.html
+ */
+class HtmlReport extends TextReport {
+    
+    HtmlReport(AnalysisResult result) {
+        super(result);
+    }
+    
+    @Override
+    List<ReportFile> createFiles(Path outputPath) {
+        return Collections.singletonList(new ReportFile(outputPath.resolve("analysis-result.html"))
+                .add(this::writeHeader)
+                .add(result.getDataStructures(), ReportSection.of(
+                        html -> beginTable(html, "Data Structures",
+                                "<th>Name</th><th>Type</th><th>Description</th><th>Fields</th>"),
+                        this::writeDataStructure,
+                        HtmlReport::endTable))
+                .add(result.getExternalEntities(), ReportSection.of(
+                        html -> beginTable(html, "External Entities",
+                                "<th>Name</th><th>Type</th><th>Description</th><th>Protocols</th>"),
+                        this::writeExternalEntity,
+                        HtmlReport::endTable))
+                .add(result.getProcesses(), ReportSection.of(
+                        html -> beginTable(html, "Processes",
+                                "<th>Name</th><th>Description</th><th>Inputs</th><th>Outputs</th>"),
+                        this::writeProcess,
+                        HtmlReport::endTable))
+                .add(result.getDataStores(), ReportSection.of(
+                        html -> beginTable(html, "Data Stores",
+                                "<th>Name</th><th>Type</th><th>Description</th><th>Data Structures</th>"),
+                        this::writeDataStore,
+                        HtmlReport::endTable))
+                .add(result.getDataFlows(), ReportSection.of(
+                        html -> beginTable(html, "Data Flows",
+                                "<th>Source</th><th>Destination</th><th>Data Structure</th><th>Type</th><th>Protocol</th><th>Description</th>"),
+                        this::writeDataFlow,
+                        HtmlReport::endTable))
+                .add(html -> {
+                    html.append("</body>\n");
+                    html.append("</html>\n");
+                }));
+    }
+    
+    /**
+     * Writes the head of the document, the title and the summary
+     */
+    private void writeHeader(ReportWriter html) throws IOException {
+        html.append("<!DOCTYPE html>\n");
+        html.append("<html lang=\"en\">\n");
+        html.append("<head>\n");
+        html.append("    <meta charset=\"UTF-8\">\n");
+        html.append("    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n");
+        html.append("    <title>Data Flow Analysis - ").append(result.getProjectName()).append("</title>\n");
+        html.append("    <style>\n");
+        html.append("        body { font-family: Arial, sans-serif; margin: 20px; }\n");
+        html.append("        h1 { color: #2c3e50; }\n");
+        html.append("        h2 { color: #3498db; margin-top: 30px; }\n");
+        html.append("        table { border-collapse: collapse; width: 100%; margin-bottom: 20px; }\n");
+        html.append("        th, td { border: 1px solid #ddd; padding: 8px; text-align: left; }\n");
+        html.append("        th { background-color: #f2f2f2; }\n");
+        html.append("        tr:nth-child(even) { background-color: #f9f9f9; }\n");
+        html.append("        .sensitive { color: red; font-weight: bold; }\n");
+        html.append("        .external { color: orange; }\n");
+        html.append("    </style>\n");
+        html.append("</head>\n");
+        html.append("<body>\n");
+        
+        // Header
+        html.append("    <h1>Data Flow Analysis - ").append(result.getProjectName()).append("</h1>\n");
+        html.append("    <p>Generated on: ").append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append("</p>\n");
+        html.append("    <p>").append(result.getProjectDescription()).append("</p>\n");
+        
+        // Summary
+        html.append("    <h2>Summary</h2>\n");
+        html.append("    <ul>\n");
+        html.append("        <li>Data Structures: ").append(result.getDataStructures().size()).append("</li>\n");
+        html.append("        <li>Processes: ").append(result.getProcesses().size()).append("</li>\n");
+        html.append("        <li>External Entities: ").append(result.getExternalEntities().size()).append("</li>\n");
+        html.append("        <li>Data Stores: ").append(result.getDataStores().size()).append("</li>\n");
+        html.append("        <li>Data Flows: ").append(result.getDataFlows().size()).append("</li>\n");
+        html.append("    </ul>\n");
+    }
+    
+    private void writeDataStructure(ReportWriter html, DataStructure structure) throws IOException {
+        html.append("        <tr>\n");
+        if (structure.isExternal()) {
+            html.append("            <td class=\"external\">").append(structure.getName()).append(" [EXTERNAL]</td>\n");
+        } else {
+            html.append("            <td>").append(structure.getName()).append("</td>\n");
+        }
+        html.append("            <td>").append(structure.getType()).append("</td>\n");
+        html.append("            <td>").append(structure.getDescription() != null ? structure.getDescription() : "").append("</td>\n");
+        
+        html.append("            <td><ul>\n");
+        for (DataField field : structure.getFields()) {
+            if (field.isSensitive()) {
+                html.append("                <li class=\"sensitive\">");
+            } else {
+                html.append("                <li>");
+            }
+            html.append(field.getName()).append(": ").append(field.getType());
+            if (field.getDescription() != null && !field.getDescription().isEmpty()) {
+                html.append(" - ").append(field.getDescription());
+            }
+            html.append("</li>\n");
+        }
+        html.append("            </ul></td>\n");
+        
+        html.append("        </tr>\n");
+    }
+    
+    private void writeExternalEntity(ReportWriter html, ExternalEntity entity) throws IOException {
+        html.append("        <tr>\n");
+        html.append("            <td>").append(entity.getName()).append("</td>\n");
+        html.append("            <td>").append(entity.getType()).append("</td>\n");
+        html.append("            <td>").append(entity.getDescription() != null ? entity.getDescription() : "").append("</td>\n");
+        
+        html.append("            <td><ul>\n");
+        for (String protocol : entity.getProtocols()) {
+            html.append("                <li>").append(protocol).append("</li>\n");
+        }
+        html.append("            </ul></td>\n");
+        
+        html.append("        </tr>\n");
+    }
+    
+    private void writeProcess(ReportWriter html, Process process) throws IOException {
+        html.append("        <tr>\n");
+        html.append("            <td>").append(process.getName()).append("</td>\n");
+        html.append("            <td>").append(process.getDescription() != null ? process.getDescription() : "").append("</td>\n");
+        
+        html.append("            <td><ul>\n");
+        for (String inputId : process.getInputDataStructureIds()) {
+            html.append("                <li>").append(inputId).append("</li>\n");
+        }
+        html.append("            </ul></td>\n");
+        
+        html.append("            <td><ul>\n");
+        for (String outputId : process.getOutputDataStructureIds()) {
+            html.append("                <li>").append(outputId).append("</li>\n");
+        }
+        html.append("            </ul></td>\n");
+        
+        html.append("        </tr>\n");
+    }
+    
+    private void writeDataStore(ReportWriter html, DataStore store) throws IOException {
+        html.append("        <tr>\n");
+        html.append("            <td>").append(store.getName()).append("</td>\n");
+        html.append("            <td>").append(store.getType()).append("</td>\n");
+        html.append("            <td>").append(store.getDescription() != null ? store.getDescription() : "").append("</td>\n");
+        
+        html.append("            <td><ul>\n");
+        for (String structureId : store.getDataStructureIds()) {
+            html.append("                <li>").append(structureId).append("</li>\n");
+        }
+        html.append("            </ul></td>\n");
+        
+        html.append("        </tr>\n");
+    }
+    
+    private void writeDataFlow(ReportWriter html, DataFlow flow) throws IOException {
+        html.append("        <tr>\n");
+        html.append("            <td>").append(flow.getSourceId()).append("</td>\n");
+        html.append("            <td>").append(flow.getDestinationId()).append("</td>\n");
+        html.append("            <td>").append(flow.getDataStructureId()).append("</td>\n");
+        html.append("            <td>").append(flow.getType()).append("</td>\n");
+        html.append("            <td>").append(flow.getProtocol() != null ? flow.getProtocol() : "").append("</td>\n");
+        html.append("            <td>").append(flow.getDescription() != null ? flow.getDescription() : "").append("</td>\n");
+        html.append("        </tr>\n");
+    }
+    
+    /**
+     * Writes the heading of a section and opens its table
+     */
+    private static void beginTable(ReportWriter html, String title, String headerCells) throws IOException {
+        html.append("    <h2>").append(title).append("</h2>\n");
+        html.append("    <table>\n");
+        html.append("        <tr>").append(headerCells).append("</tr>\n");
+    }
+    
+    private static void endTable(ReportWriter html) throws IOException {
+        html.append("    </table>\n");
+    }
+}
@@ -0,0 +1,140 @@
+package com.threatmodel.analyzer.output;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.threatmodel.analyzer.model.AnalysisResult;
+
+/**
+ * Streams an analysis result to a JSON or NDJSON file.
+ *
+ * Only one element of the result is serialized at a time, so writing does not build a
+ * second copy of the result in memory. Each section is flushed to the file as soon as it
+ * is complete, which lets consumers start reading before the whole file is written.
+ */
+public class JsonResultWriter {
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    /**
+     * Shared mapper used to serialize the individual elements. The generator is flushed once
+     * per section rather than after every element.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    
+    private final AnalysisResult result;
+    private final boolean prettyPrint;
+    
+    /**
+     * Creates a writer for an analysis result
+     *
+     * @param result The analysis result to write
+     * @param prettyPrint Whether JSON output is indented; NDJSON output is always compact
+     */
+    public JsonResultWriter(AnalysisResult result, boolean prettyPrint) {
+        this.result = result;
+        this.prettyPrint = prettyPrint;
+    }
+    
+    /**
+     * Writes the result as a single JSON document with the same properties as the
+     * data binding of {@link AnalysisResult}
+     *
+     * @param file The file to write
+     */
+    public void writeJson(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+             JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            if (prettyPrint) {
+                generator.useDefaultPrettyPrinter();
+            }
+            
+            generator.writeStartObject();
+            writeArray(generator, "dataStructures", result.getDataStructures());
+            writeArray(generator, "dataFlows", result.getDataFlows());
+            writeArray(generator, "externalEntities", result.getExternalEntities());
+            writeArray(generator, "processes", result.getProcesses());
+            writeArray(generator, "dataStores", result.getDataStores());
+            
+            generator.writeStringField("projectName", result.getProjectName());
+            generator.writeStringField("projectDescription", result.getProjectDescription());
+            generator.writeFieldName("projectMetadata");
+            MAPPER.writeValue(generator, result.getProjectMetadata());
+            generator.writeStringField("summary", result.getSummary());
+            generator.writeEndObject();
+        }
+    }
+    
+    /**
+     * Writes the result as newline-delimited JSON. The first line describes the project,
+     * followed by one line per data structure, data flow, external entity, process and
+     * data store, and a final line with the summary. Each line has a {@code kind} property
+     * naming the record type.
+     *
+     * @param file The file to write
+     */
+    public void writeNdjson(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+             JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            
+            generator.writeStartObject();
+            generator.writeStringField("kind", "project");
+            generator.writeStringField("projectName", result.getProjectName());
+            generator.writeStringField("projectDescription", result.getProjectDescription());
+            generator.writeFieldName("projectMetadata");
+            MAPPER.writeValue(generator, result.getProjectMetadata());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.flush();
+            
+            writeRecords(generator, "dataStructure", result.getDataStructures());
+            writeRecords(generator, "dataFlow", result.getDataFlows());
+            writeRecords(generator, "externalEntity", result.getExternalEntities());
+            writeRecords(generator, "process", result.getProcesses());
+            writeRecords(generator, "dataStore", result.getDataStores());
+            
+            generator.writeStartObject();
+            generator.writeStringField("kind", "summary");
+            generator.writeStringField("summary", result.getSummary());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+    
+    /**
+     * Writes a collection of the result as an array property and flushes it to the file
+     */
+    private static void writeArray(JsonGenerator generator, String name, List<?> elements) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (Object element : elements) {
+            MAPPER.writeValue(generator, element);
+        }
+        generator.writeEndArray();
+        generator.flush();
+    }
+    
+    /**
+     * Writes a collection of the result as one NDJSON record per element and flushes it to the file
+     */
+    private static void writeRecords(JsonGenerator generator, String kind, List<?> elements) throws IOException {
+        for (Object element : elements) {
+            generator.writeStartObject();
+            generator.writeStringField("kind", kind);
+            generator.writeFieldName("record");
+            MAPPER.writeValue(generator, element);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+}
@@ -0,0 +1,271 @@
+package com.threatmodel.analyzer.output;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.threatmodel.analyzer.model.AnalysisResult;
+import com.threatmodel.analyzer.model.DataFlow;
+import com.threatmodel.analyzer.model.DataStore;
+import com.threatmodel.analyzer.model.ExternalEntity;
+import com.threatmodel.analyzer.model.Process;
+import com.threatmodel.analyzer.output.DiagramIndex.Edge;
+import com.threatmodel.analyzer.output.DiagramIndex.Label;
+import com.threatmodel.analyzer.output.DiagramIndex.Node;
+import com.threatmodel.analyzer.output.DiagramIndex.NodeKind;
+
+/**
+ * Leveled data flow diagrams of an analysis result.
+ *
+ * Level 0 is the context diagram, with the whole project as a single process connected to
+ * the external entities. Level 1 replaces the project by one process per package or class,
+ * alongside the external entities and data stores. A level-2 diagram is only built for the
+ * groups requested, and shows the individual methods of one group together with the level-1
+ * nodes they exchange data with. The edges of all levels are aggregated in a single pass over
+ * the data flows.
+ */
+class LeveledDiagrams {
+    
+    /**
+     * How processes are grouped on level 1
+     */
+    enum Grouping {
+        PACKAGE,
+        CLASS
+    }
+    
+    /**
+     * Group name that expands every group on level 2
+     */
+    static final String ALL_GROUPS = "all";
+    
+    private final DiagramIndex index;
+    private final Grouping grouping;
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+    private final Level context;
+    private final Level level1;
+    private final Map<String, Level> level2 = new LinkedHashMap<>();
+    private final Node system;
+    
+    LeveledDiagrams(AnalysisResult result, DiagramIndex index, Grouping grouping, Set<String> expandedGroups) {
+        this.index = index;
+        this.grouping = grouping;
+        this.context = new Level(result.getProjectName() + " - Context");
+        this.level1 = new Level(result.getProjectName() + " - Level 1");
+        
+        // The context diagram shows the project as one process and all external entities
+        system = index.node("project " + result.getProjectName());
+        context.addNode(system, result.getProjectName(), NodeKind.PROCESS);
+        
+        for (ExternalEntity entity : result.getExternalEntities()) {
+            Endpoint endpoint = new Endpoint(index.node(entity.getName()), entity.getName(), NodeKind.EXTERNAL_ENTITY, null);
+            endpoints.putIfAbsent(entity.getName(), endpoint);
+            context.addNode(endpoint.node, endpoint.label, endpoint.kind);
+            level1.addNode(endpoint.node, endpoint.label, endpoint.kind);
+        }
+        for (DataStore store : result.getDataStores()) {
+            Endpoint endpoint = new Endpoint(index.node(store.getId()), store.getName(), NodeKind.DATA_STORE, null);
+            endpoints.putIfAbsent(store.getId(), endpoint);
+            level1.addNode(endpoint.node, endpoint.label, endpoint.kind);
+        }
+        for (Process process : result.getProcesses()) {
+            Endpoint endpoint = endpoints.computeIfAbsent(process.getId(), id -> processEndpoint(id, process.getName()));
+            level1.addNode(groupNode(endpoint.group), endpoint.group, NodeKind.PROCESS);
+            
+            if (expandedGroups.contains(ALL_GROUPS) || expandedGroups.contains(endpoint.group)) {
+                level2.computeIfAbsent(endpoint.group, group -> new Level(result.getProjectName() + " - " + group))
+                        .addNode(endpoint.node, endpoint.label, NodeKind.PROCESS);
+            }
+        }
+        
+        for (DataFlow flow : result.getDataFlows()) {
+            addFlow(flow);
+        }
+    }
+    
+    Level getContext() {
+        return context;
+    }
+    
+    Level getLevel1() {
+        return level1;
+    }
+    
+    /**
+     * Gets the level-2 diagrams by group name, for the groups that were requested and exist
+     */
+    Map<String, Level> getLevel2() {
+        return level2;
+    }
+    
+    /**
+     * Adds a flow to the edges of every level it appears on
+     */
+    private void addFlow(DataFlow flow) {
+        Endpoint source = endpoint(flow.getSourceId());
+        Endpoint destination = endpoint(flow.getDestinationId());
+        Label label = new Label(index.structureName(flow.getDataStructureId()), flow.getProtocol());
+        
+        // Level 0: everything but the external entities is part of the project
+        Node contextSource = source.kind == NodeKind.EXTERNAL_ENTITY ? source.node : system;
+        Node contextDestination = destination.kind == NodeKind.EXTERNAL_ENTITY ? destination.node : system;
+        if (contextSource != contextDestination) {
+            context.addEdge(contextSource, contextDestination, label, flow);
+        }
+        
+        // Level 1: flows within a group are hidden
+        Node groupSource = level1Node(source);
+        Node groupDestination = level1Node(destination);
+        if (groupSource != groupDestination) {
+            level1.addEdge(groupSource, groupDestination, label, flow);
+        }
+        
+        // Level 2: the methods of the expanded group, connected to the level-1 nodes around it
+        Level sourceLevel = source.group != null ? level2.get(source.group) : null;
+        Level destinationLevel = destination.group != null ? level2.get(destination.group) : null;
+        if (sourceLevel != null) {
+            sourceLevel.addEdge(source.node, expandedNode(sourceLevel, destination), label, flow);
+        }
+        if (destinationLevel != null && destinationLevel != sourceLevel) {
+            destinationLevel.addEdge(expandedNode(destinationLevel, source), destination.node, label, flow);
+        }
+    }
+    
+    /**
+     * Gets the node of an endpoint on level 1
+     */
+    private Node level1Node(Endpoint endpoint) {
+        if (endpoint.group == null) {
+            return endpoint.node;
+        }
+        Node node = groupNode(endpoint.group);
+        level1.addNode(node, endpoint.group, NodeKind.PROCESS);
+        return node;
+    }
+    
+    /**
+     * Gets the node of an endpoint on the level-2 diagram of a group, adding it to the diagram
+     */
+    private Node expandedNode(Level level, Endpoint endpoint) {
+        if (endpoint.group != null && level2.get(endpoint.group) == level) {
+            level.addNode(endpoint.node, endpoint.label, NodeKind.PROCESS);
+            return endpoint.node;
+        }
+        
+        Node node = level1Node(endpoint);
+        level.addNode(node, endpoint.group != null ? endpoint.group : endpoint.label, endpoint.kind);
+        return node;
+    }
+    
+    /**
+     * Gets the endpoint of a component ID. IDs that are not external entities or data stores
+     * are methods.
+     */
+    private Endpoint endpoint(String id) {
+        String key = id != null ? id : "unknown";
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            endpoint = processEndpoint(key, key);
+            endpoints.put(key, endpoint);
+        }
+        return endpoint;
+    }
+    
+    private Endpoint processEndpoint(String id, String label) {
+        return new Endpoint(index.node(id), label, NodeKind.PROCESS, groupOf(id, grouping));
+    }
+    
+    private Node groupNode(String group) {
+        return index.node("group " + group);
+    }
+    
+    /**
+     * Gets the group of a method from its ID, the qualified name of its class followed by
+     * the method name
+     */
+    static String groupOf(String processId, Grouping grouping) {
+        int methodStart = processId.lastIndexOf('.');
+        String className = methodStart > 0 ? processId.substring(0, methodStart) : processId;
+        if (grouping == Grouping.CLASS) {
+            return className;
+        }
+        
+        // The package ends before the first name starting with an upper case letter,
+        // so nested classes stay in the package of their outer class
+        int start = 0;
+        while (start < className.length()) {
+            if (Character.isUpperCase(className.charAt(start))) {
+                return start > 0 ? className.substring(0, start - 1) : "(default package)";
+            }
+            int next = className.indexOf('.', start);
+            if (next < 0) {
+                break;
+            }
+            start = next + 1;
+        }
+        int packageEnd = className.lastIndexOf('.');
+        return packageEnd > 0 ? className.substring(0, packageEnd) : "(default package)";
+    }
+    
+    /**
+     * A component as it appears at the ends of data flows
+     */
+    private static class Endpoint {
+        private final Node node;
+        private final String label;
+        private final NodeKind kind;
+        
+        // The level-1 group of a method, or null for external entities and data stores
+        private final String group;
+        
+        Endpoint(Node node, String label, NodeKind kind, String group) {
+            this.node = node;
+            this.label = label;
+            this.kind = kind;
+            this.group = group;
+        }
+    }
+    
+    /**
+     * One diagram: its nodes by kind in order of appearance, and its aggregated edges
+     */
+    static class Level {
+        private final String title;
+        private final Map<NodeKind, Map<Node, String>> nodes = new EnumMap<>(NodeKind.class);
+        private final Map<Long, Edge> edges = new LinkedHashMap<>();
+        
+        Level(String title) {
+            this.title = title;
+            for (NodeKind kind : NodeKind.values()) {
+                nodes.put(kind, new LinkedHashMap<>());
+            }
+        }
+        
+        String getTitle() {
+            return title;
+        }
+        
+        /**
+         * Gets the labels of the nodes of a kind
+         */
+        Map<Node, String> getNodes(NodeKind kind) {
+            return nodes.get(kind);
+        }
+        
+        Collection<Edge> getEdges() {
+            return edges.values();
+        }
+        
+        private void addNode(Node node, String label, NodeKind kind) {
+            nodes.get(kind).putIfAbsent(node, label);
+        }
+        
+        private void addEdge(Node source, Node destination, Label label, DataFlow flow) {
+            edges.computeIfAbsent(DiagramIndex.edgeKey(source, destination), key -> new Edge(source, destination))
+                    .add(label, flow.getType());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.threatmodel.analyzer.output;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+import com.threatmodel.analyzer.model.AnalysisResult;
+import com.threatmodel.analyzer.model.DataField;
+import com.threatmodel.analyzer.model.DataFlow;
+import com.threatmodel.analyzer.model.DataStore;
+import com.threatmodel.analyzer.model.DataStructure;
+import com.threatmodel.analyzer.model.ExternalEntity;
+import com.threatmodel.analyzer.model.Process;
+
+/**
+ * Markdown report of an analysis result, written to analysis-result.md
+ */
+class MarkdownReport extends TextReport {
+    
+    MarkdownReport(AnalysisResult result) {
+        super(result);
+    }
+    
+    @Override
+    List<ReportFile> createFiles(Path outputPath) {
+        return Collections.singletonList(new ReportFile(outputPath.resolve("analysis-result.md"))
+                .add(this::writeHeader)
+                .add(result.getDataStructures(), ReportSection.of(
+                        md -> md.append("## Data Structures\n\n"),
+                        this::writeDataStructure,
+                        md -> { }))
+                .add(result.getExternalEntities(), ReportSection.of(
+                        this::beginExternalEntities,
+                        this::writeExternalEntity,
+                        md -> endTable(md, result.getExternalEntities())))
+                .add(result.getProcesses(), ReportSection.of(
+                        md -> md.append("## Processes\n\n"),
+                        this::writeProcess,
+                        md -> { }))
+                .add(result.getDataStores(), ReportSection.of(
+                        this::beginDataStores,
+                        this::writeDataStore,
+                        md -> { }))
+                .add(result.getDataFlows(), ReportSection.of(
+                        this::beginDataFlows,
+                        this::writeDataFlow,
+                        md -> endTable(md, result.getDataFlows()))));
+    }
+    
+    /**
+     * Writes the title and summary
+     */
+    private void writeHeader(ReportWriter md) throws IOException {
+        md.append("# Data Flow Analysis - ").append(result.getProjectName()).append("\n\n");
+        md.append("Generated on: ").append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append("\n\n");
+        md.append(result.getProjectDescription()).append("\n\n");
+        
+        // Summary
+        md.append("## Summary\n\n");
+        md.append("- Data Structures: ").append(result.getDataStructures().size()).append("\n");
+        md.append("- Processes: ").append(result.getProcesses().size()).append("\n");
+        md.append("- External Entities: ").append(result.getExternalEntities().size()).append("\n");
+        md.append("- Data Stores: ").append(result.getDataStores().size()).append("\n");
+        md.append("- Data Flows: ").append(result.getDataFlows().size()).append("\n\n");
+    }
+    
+    private void writeDataStructure(ReportWriter md, DataStructure structure) throws IOException {
+        if (structure.isExternal()) {
+            md.append("### ").append(structure.getName()).append(" [EXTERNAL]\n\n");
+        } else {
+            md.append("### ").append(structure.getName()).append("\n\n");
+        }
+        
+        md.append("- **Type**: ").append(structure.getType()).append("\n");
+        if (structure.getDescription() != null && !structure.getDescription().isEmpty()) {
+            md.append("- **Description**: ").append(structure.getDescription()).append("\n");
+        }
+        md.append("- **Source File**: ").append(structure.getSourceFilePath()).append("\n\n");
+        
+        md.append("#### Fields\n\n");
+        if (structure.getFields().isEmpty()) {
+            md.append("*No fields found*\n\n");
+        } else {
+            md.append("| Field | Type | Description |\n");
+            md.append("|-------|------|-------------|\n");
+            
+            for (DataField field : structure.getFields()) {
+                md.append("| ");
+                if (field.isSensitive()) {
+                    md.append("**").append(field.getName()).append("** [SENSITIVE]");
+                } else {
+                    md.append(field.getName());
+                }
+                md.append(" | ").append(field.getType());
+                if (field.isCollection()) {
+                    md.append(" [Collection]");
+                }
+                md.append(" | ");
+                if (field.getDescription() != null && !field.getDescription().isEmpty()) {
+                    md.append(field.getDescription());
+                }
+                md.append(" |\n");
+            }
+            md.append("\n");
+        }
+    }
+    
+    private void beginExternalEntities(ReportWriter md) throws IOException {
+        md.append("## External Entities\n\n");
+        
+        if (result.getExternalEntities().isEmpty()) {
+            md.append("*No external entities found*\n\n");
+        } else {
+            md.append("| Name | Type | Description | Protocols |\n");
+            md.append("|------|------|-------------|------------|\n");
+        }
+    }
+    
+    private void writeExternalEntity(ReportWriter md, ExternalEntity entity) throws IOException {
+        md.append("| ").append(entity.getName());
+        md.append(" | ").append(entity.getType());
+        md.append(" | ");
+        if (entity.getDescription() != null && !entity.getDescription().isEmpty()) {
+            md.append(entity.getDescription());
+        }
+        md.append(" | ");
+        if (!entity.getProtocols().isEmpty()) {
+            md.append(String.join(", ", entity.getProtocols()));
+        }
+        md.append(" |\n");
+    }
+    
+    private void writeProcess(ReportWriter md, Process process) throws IOException {
+        md.append("### ").append(process.getName()).append("\n\n");
+        
+        if (process.getDescription() != null && !process.getDescription().isEmpty()) {
+            md.append("- **Description**: ").append(process.getDescription()).append("\n");
+        }
+        md.append("- **Source File**: ").append(process.getSourceFilePath()).append("\n\n");
+        
+        md.append("#### Inputs\n\n");
+        if (process.getInputDataStructureIds().isEmpty()) {
+            md.append("*No input data structures found*\n\n");
+        } else {
+            for (String inputId : process.getInputDataStructureIds()) {
+                md.append("- ").append(inputId).append("\n");
+            }
+            md.append("\n");
+        }
+        
+        md.append("#### Outputs\n\n");
+        if (process.getOutputDataStructureIds().isEmpty()) {
+            md.append("*No output data structures found*\n\n");
+        } else {
+            for (String outputId : process.getOutputDataStructureIds()) {
+                md.append("- ").append(outputId).append("\n");
+            }
+            md.append("\n");
+        }
+    }
+    
+    private void beginDataStores(ReportWriter md) throws IOException {
+        md.append("## Data Stores\n\n");
+        
+        if (result.getDataStores().isEmpty()) {
+            md.append("*No data stores found*\n\n");
+        }
+    }
+    
+    private void writeDataStore(ReportWriter md, DataStore store) throws IOException {
+        md.append("### ").append(store.getName()).append("\n\n");
+        
+        md.append("- **Type**: ").append(store.getType()).append("\n");
+        if (store.getDescription() != null && !store.getDescription().isEmpty()) {
+            md.append("- **Description**: ").append(store.getDescription()).append("\n");
+        }
+        md.append("\n");
+        
+        md.append("#### Stored Data Structures\n\n");
+        if (store.getDataStructureIds().isEmpty()) {
+            md.append("*No data structures found*\n\n");
+        } else {
+            for (String structureId : store.getDataStructureIds()) {
+                md.append("- ").append(structureId).append("\n");
+            }
+            md.append("\n");
+        }
+    }
+    
+    private void beginDataFlows(ReportWriter md) throws IOException {
+        md.append("## Data Flows\n\n");
+        
+        if (result.getDataFlows().isEmpty()) {
+            md.append("*No data flows found*\n\n");
+        } else {
+            md.append("| Source | Destination | Data Structure | Type | Protocol | Description |\n");
+            md.append("|--------|-------------|----------------|------|----------|-------------|\n");
+        }
+    }
+    
+    private void writeDataFlow(ReportWriter md, DataFlow flow) throws IOException {
+        md.append("| ").append(flow.getSourceId());
+        md.append(" | ").append(flow.getDestinationId());
+        md.append(" | ").append(flow.getDataStructureId());
+        md.append(" | ").append(flow.getType());
+        md.append(" | ");
+        if (flow.getProtocol() != null && !flow.getProtocol().isEmpty()) {
+            md.append(flow.getProtocol());
+        }
+        md.append(" | ");
+        if (flow.getDescription() != null && !flow.getDescription().isEmpty()) {
+            md.append(flow.getDescription());
+        }
+        md.append(" |\n");
+    }
+    
+    /**
+     * Ends a table with a blank line, if the table was started
+     */
+    private static void endTable(ReportWriter md, List<?> rows) throws IOException {
+        if (!rows.isEmpty()) {
+            md.append("\n");
+        }
+    }
+}
@@ -1,35 +1,123 @@
 package com.threatmodel.analyzer.output;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.threatmodel.analyzer.jfr.OutputWriteEvent;
 import com.threatmodel.analyzer.model.AnalysisResult;
 
 /**
- * Class for generating output files from analysis results
+ * Class for generating output files from analysis results.
+ *
+ * Any number of formats, and optionally the data flow diagrams, are written from a single
+ * analysis result. The text formats describe their files as sections; the sections of all
+ * requested formats that list the same collection are fed from one pass over it, and the
+ * passes over the different collections, the JSON writers and the diagrams run concurrently.
  */
 public class OutputGenerator {
     private static final Logger logger = LoggerFactory.getLogger(OutputGenerator.class);
     
     private final AnalysisResult result;
     private final Path outputPath;
-    private final String format;
+    private final Set<String> formats = new LinkedHashSet<>();
+    private boolean prettyPrint;
+    private boolean generateDfd;
+    private boolean aggregateEdges;
+    private boolean leveledDfd;
+    private boolean dfdGroupByClass;
+    private List<String> dfdExpandedGroups = Collections.emptyList();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    
+    // Runs the independent parts of the output while generate() is in progress
+    private ForkJoinPool pool;
     
     public OutputGenerator(AnalysisResult result, Path outputPath, String format) {
+        this(result, outputPath, Collections.singletonList(format));
+    }
+    
+    /**
+     * Creates a generator for several output formats
+     *
+     * @param result The analysis result to write
+     * @param outputPath The output directory
+     * @param formats The formats to generate (json, ndjson, csv, html, markdown); unknown formats
+     *                fall back to markdown
+     */
+    public OutputGenerator(AnalysisResult result, Path outputPath, List<String> formats) {
         this.result = result;
         this.outputPath = outputPath;
-        this.format = format.toLowerCase();
+        for (String format : formats) {
+            this.formats.add(normalizeFormat(format));
+        }
+    }
+    
+    /**
+     * Sets whether JSON output is indented. JSON output is compact by default.
+     */
+    public void setPrettyPrint(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+    
+    /**
+     * Sets whether the data flow diagrams are generated along with the requested formats
+     */
+    public void setGenerateDfd(boolean generateDfd) {
+        this.generateDfd = generateDfd;
+    }
+    
+    /**
+     * Sets whether parallel flows are drawn as one edge in the data flow diagrams
+     */
+    public void setAggregateEdges(boolean aggregateEdges) {
+        this.aggregateEdges = aggregateEdges;
+    }
+    
+    /**
+     * Sets whether leveled data flow diagrams (context and level 1) are generated along with the full diagram
+     */
+    public void setLeveledDfd(boolean leveledDfd) {
+        this.leveledDfd = leveledDfd;
+    }
+    
+    /**
+     * Sets whether methods are grouped by class instead of by package on level 1 of the leveled diagrams
+     */
+    public void setDfdGroupByClass(boolean dfdGroupByClass) {
+        this.dfdGroupByClass = dfdGroupByClass;
     }
     
     /**
-     * Generates output files in the specified format
+     * Sets the level-1 groups that get a level-2 diagram of their own, or "all"
+     */
+    public void setDfdExpandedGroups(List<String> dfdExpandedGroups) {
+        this.dfdExpandedGroups = dfdExpandedGroups;
+    }
+    
+    /**
+     * Sets the number of threads used to write independent files and report sections
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+    
+    /**
+     * Generates output files in the specified formats
      */
     public void generate() throws IOException {
         // Create output directory if it doesn't exist
@@ -37,24 +125,50 @@ public class OutputGenerator {
             Files.createDirectories(outputPath);
         }
         
-        // Generate appropriate format
-        switch (format) {
-            case "json":
-                generateJson();
-                break;
-            case "csv":
-                generateCsv();
-                break;
-            case "html":
-                generateHtml();
-                break;
-            case "markdown":
-            default:
-                generateMarkdown();
-                break;
+        List<OutputTask> tasks = new ArrayList<>();
+        List<ReportFile> reportFiles = new ArrayList<>();
+        for (String format : formats) {
+            switch (format) {
+                case "json":
+                    tasks.add(this::generateJson);
+                    break;
+                case "ndjson":
+                    tasks.add(this::generateNdjson);
+                    break;
+                case "csv":
+                    reportFiles.addAll(new CsvReport(result).createFiles(outputPath));
+                    break;
+                case "html":
+                    reportFiles.addAll(new HtmlReport(result).createFiles(outputPath));
+                    break;
+                case "markdown":
+                default:
+                    reportFiles.addAll(new MarkdownReport(result).createFiles(outputPath));
+                    break;
+            }
+        }
+        
+        if (generateDfd) {
+            DFDGenerator dfdGenerator = new DFDGenerator(result, outputPath);
+            dfdGenerator.setAggregateEdges(aggregateEdges);
+            dfdGenerator.setLeveled(leveledDfd);
+            dfdGenerator.setGroupByClass(dfdGroupByClass);
+            dfdGenerator.setExpandedGroups(dfdExpandedGroups);
+            tasks.addAll(dfdGenerator.createTasks());
+        }
+        
+        pool = new ForkJoinPool(parallelism);
+        try {
+            writeReports(reportFiles, tasks);
+        } finally {
+            pool.shutdown();
+            pool = null;
         }
         
-        logger.info("Output generated in {} format at: {}", format, outputPath);
+        logger.info("Output generated in {} format at: {}", String.join(", ", formats), outputPath);
+        if (generateDfd) {
+            logger.info("DFD files generated at: {}", outputPath);
+        }
     }
     
     /**
@@ -63,507 +177,220 @@ public class OutputGenerator {
     private void generateJson() throws IOException {
         Path jsonFile = outputPath.resolve("analysis-result.json");
         
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.writerWithDefaultPrettyPrinter().writeValue(jsonFile.toFile(), result);
+        OutputWriteEvent event = new OutputWriteEvent();
+        event.begin();
+        new JsonResultWriter(result, prettyPrint).writeJson(jsonFile);
+        commitWriteEvent(event, jsonFile);
         
         logger.info("JSON output written to: {}", jsonFile);
     }
     
     /**
-     * Generates CSV output
+     * Generates newline-delimited JSON output
      */
-    private void generateCsv() throws IOException {
-        Path dataStructuresFile = outputPath.resolve("data-structures.csv");
-        Path dataFlowsFile = outputPath.resolve("data-flows.csv");
-        Path externalEntitiesFile = outputPath.resolve("external-entities.csv");
-        Path processesFile = outputPath.resolve("processes.csv");
-        Path dataStoresFile = outputPath.resolve("data-stores.csv");
+    private void generateNdjson() throws IOException {
+        Path ndjsonFile = outputPath.resolve("analysis-result.ndjson");
         
-        // Generate CSV for data structures
-        StringBuilder sbStructures = new StringBuilder();
-        sbStructures.append("Name,Type,Description,External,Source File,Fields\n");
+        OutputWriteEvent event = new OutputWriteEvent();
+        event.begin();
+        new JsonResultWriter(result, false).writeNdjson(ndjsonFile);
+        commitWriteEvent(event, ndjsonFile);
         
-        for (com.threatmodel.analyzer.model.DataStructure structure : result.getDataStructures()) {
-            sbStructures.append(escapeCsv(structure.getName())).append(",");
-            sbStructures.append(escapeCsv(structure.getType().toString())).append(",");
-            sbStructures.append(escapeCsv(structure.getDescription())).append(",");
-            sbStructures.append(structure.isExternal()).append(",");
-            sbStructures.append(escapeCsv(structure.getSourceFilePath())).append(",");
-            
-            StringBuilder fields = new StringBuilder();
-            for (com.threatmodel.analyzer.model.DataField field : structure.getFields()) {
-                if (fields.length() > 0) {
-                    fields.append("; ");
-                }
-                fields.append(field.getName()).append(": ").append(field.getType());
-                if (field.isSensitive()) {
-                    fields.append(" [SENSITIVE]");
-                }
-            }
-            sbStructures.append(escapeCsv(fields.toString())).append("\n");
-        }
-        
-        Files.writeString(dataStructuresFile, sbStructures.toString());
-        
-        // Generate CSV for data flows
-        StringBuilder sbFlows = new StringBuilder();
-        sbFlows.append("Source,Destination,Data Structure,Type,Protocol,External,Description\n");
-        
-        for (com.threatmodel.analyzer.model.DataFlow flow : result.getDataFlows()) {
-            sbFlows.append(escapeCsv(flow.getSourceId())).append(",");
-            sbFlows.append(escapeCsv(flow.getDestinationId())).append(",");
-            sbFlows.append(escapeCsv(flow.getDataStructureId())).append(",");
-            sbFlows.append(escapeCsv(flow.getType().toString())).append(",");
-            sbFlows.append(escapeCsv(flow.getProtocol())).append(",");
-            sbFlows.append(flow.isExternal()).append(",");
-            sbFlows.append(escapeCsv(flow.getDescription())).append("\n");
+        logger.info("NDJSON output written to: {}", ndjsonFile);
+    }
+    
+    /**
+     * Ends the write event of a file holding the whole result and commits it if a flight
+     * recording is interested in it
+     */
+    private void commitWriteEvent(OutputWriteEvent event, Path file) throws IOException {
+        event.end();
+        if (event.shouldCommit()) {
+            event.output = file.getFileName().toString();
+            event.path = file.toString();
+            event.elements = (long) result.getDataStructures().size() + result.getDataFlows().size()
+                    + result.getExternalEntities().size() + result.getProcesses().size()
+                    + result.getDataStores().size();
+            event.size = Files.size(file);
+            event.commit();
         }
-        
-        Files.writeString(dataFlowsFile, sbFlows.toString());
-        
-        // Generate CSV for external entities
-        StringBuilder sbEntities = new StringBuilder();
-        sbEntities.append("Name,Type,Description,Protocols\n");
-        
-        for (com.threatmodel.analyzer.model.ExternalEntity entity : result.getExternalEntities()) {
-            sbEntities.append(escapeCsv(entity.getName())).append(",");
-            sbEntities.append(escapeCsv(entity.getType().toString())).append(",");
-            sbEntities.append(escapeCsv(entity.getDescription())).append(",");
-            
-            StringBuilder protocols = new StringBuilder();
-            for (String protocol : entity.getProtocols()) {
-                if (protocols.length() > 0) {
-                    protocols.append("; ");
+    }
+    
+    /**
+     * Writes the text report files together with the other output tasks.
+     *
+     * A file with a single section is written directly. The sections of a file with several
+     * sections are written into temporary part files next to it, which are concatenated in
+     * document order once all sections are complete. Sections listing the same collection are
+     * grouped into one task that passes over the collection once, so every element is
+     * retrieved a single time however many formats are requested.
+     *
+     * @param reportFiles The text report files to write
+     * @param otherTasks Output tasks that are independent of the text reports
+     */
+    private void writeReports(List<ReportFile> reportFiles, List<OutputTask> otherTasks) throws IOException {
+        Map<List<?>, List<Target<?>>> targetsByCollection = new IdentityHashMap<>();
+        List<List<?>> collections = new ArrayList<>();
+        Map<ReportFile, List<Path>> partFiles = new IdentityHashMap<>();
+        
+        try {
+            for (ReportFile reportFile : reportFiles) {
+                List<Path> parts = new ArrayList<>();
+                partFiles.put(reportFile, parts);
+                for (ReportFile.Part<?> part : reportFile.getParts()) {
+                    Path file = reportFile.getFile();
+                    if (reportFile.getParts().size() > 1) {
+                        file = Files.createTempFile(outputPath, "." + reportFile.getFile().getFileName(), ".part");
+                        parts.add(file);
+                    }
+                    
+                    List<Target<?>> targets = targetsByCollection.get(part.getElements());
+                    if (targets == null) {
+                        targets = new ArrayList<>();
+                        targetsByCollection.put(part.getElements(), targets);
+                        collections.add(part.getElements());
+                    }
+                    targets.add(new Target<>(part, file, reportFile.getFile().getFileName().toString()));
                 }
-                protocols.append(protocol);
             }
-            sbEntities.append(escapeCsv(protocols.toString())).append("\n");
-        }
-        
-        Files.writeString(externalEntitiesFile, sbEntities.toString());
-        
-        // Generate CSV for processes
-        StringBuilder sbProcesses = new StringBuilder();
-        sbProcesses.append("ID,Name,Description,Source File,Input Data Structures,Output Data Structures\n");
-        
-        for (com.threatmodel.analyzer.model.Process process : result.getProcesses()) {
-            sbProcesses.append(escapeCsv(process.getId())).append(",");
-            sbProcesses.append(escapeCsv(process.getName())).append(",");
-            sbProcesses.append(escapeCsv(process.getDescription())).append(",");
-            sbProcesses.append(escapeCsv(process.getSourceFilePath())).append(",");
             
-            StringBuilder inputs = new StringBuilder();
-            for (String inputId : process.getInputDataStructureIds()) {
-                if (inputs.length() > 0) {
-                    inputs.append("; ");
-                }
-                inputs.append(inputId);
+            List<OutputTask> tasks = new ArrayList<>();
+            for (List<?> collection : collections) {
+                tasks.add(() -> writeCollection(collection, targetsByCollection.get(collection)));
             }
-            sbProcesses.append(escapeCsv(inputs.toString())).append(",");
+            tasks.addAll(otherTasks);
+            runAll(tasks);
             
-            StringBuilder outputs = new StringBuilder();
-            for (String outputId : process.getOutputDataStructureIds()) {
-                if (outputs.length() > 0) {
-                    outputs.append("; ");
+            for (ReportFile reportFile : reportFiles) {
+                List<Path> parts = partFiles.get(reportFile);
+                if (!parts.isEmpty()) {
+                    concatenate(parts, reportFile.getFile());
                 }
-                outputs.append(outputId);
+                logger.info("Output written to: {}", reportFile.getFile());
             }
-            sbProcesses.append(escapeCsv(outputs.toString())).append("\n");
-        }
-        
-        Files.writeString(processesFile, sbProcesses.toString());
-        
-        // Generate CSV for data stores
-        StringBuilder sbStores = new StringBuilder();
-        sbStores.append("ID,Name,Type,Description,Data Structures\n");
-        
-        for (com.threatmodel.analyzer.model.DataStore store : result.getDataStores()) {
-            sbStores.append(escapeCsv(store.getId())).append(",");
-            sbStores.append(escapeCsv(store.getName())).append(",");
-            sbStores.append(escapeCsv(store.getType().toString())).append(",");
-            sbStores.append(escapeCsv(store.getDescription())).append(",");
-            
-            StringBuilder structures = new StringBuilder();
-            for (String structureId : store.getDataStructureIds()) {
-                if (structures.length() > 0) {
-                    structures.append("; ");
+        } finally {
+            for (List<Path> parts : partFiles.values()) {
+                for (Path part : parts) {
+                    Files.deleteIfExists(part);
                 }
-                structures.append(structureId);
             }
-            sbStores.append(escapeCsv(structures.toString())).append("\n");
         }
-        
-        Files.writeString(dataStoresFile, sbStores.toString());
-        
-        logger.info("CSV output written to: {}", outputPath);
     }
     
     /**
-     * Generates HTML output
+     * Passes over a collection once, writing every element to each section that lists it
      */
-    private void generateHtml() throws IOException {
-        Path htmlFile = outputPath.resolve("analysis-result.html");
-        
-        StringBuilder html = new StringBuilder();
-        html.append("<!DOCTYPE html>\n");
-        html.append("<html lang=\"en\">\n");
-        html.append("<head>\n");
-        html.append("    <meta charset=\"UTF-8\">\n");
-        html.append("    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n");
-        html.append("    <title>Data Flow Analysis - ").append(result.getProjectName()).append("</title>\n");
-        html.append("    <style>\n");
-        html.append("        body { font-family: Arial, sans-serif; margin: 20px; }\n");
-        html.append("        h1 { color: #2c3e50; }\n");
-        html.append("        h2 { color: #3498db; margin-top: 30px; }\n");
-        html.append("        table { border-collapse: collapse; width: 100%; margin-bottom: 20px; }\n");
-        html.append("        th, td { border: 1px solid #ddd; padding: 8px; text-align: left; }\n");
-        html.append("        th { background-color: #f2f2f2; }\n");
-        html.append("        tr:nth-child(even) { background-color: #f9f9f9; }\n");
-        html.append("        .sensitive { color: red; font-weight: bold; }\n");
-        html.append("        .external { color: orange; }\n");
-        html.append("    </style>\n");
-        html.append("</head>\n");
-        html.append("<body>\n");
-        
-        // Header
-        html.append("    <h1>Data Flow Analysis - ").append(result.getProjectName()).append("</h1>\n");
-        html.append("    <p>Generated on: ").append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append("</p>\n");
-        html.append("    <p>").append(result.getProjectDescription()).append("</p>\n");
-        
-        // Summary
-        html.append("    <h2>Summary</h2>\n");
-        html.append("    <ul>\n");
-        html.append("        <li>Data Structures: ").append(result.getDataStructures().size()).append("</li>\n");
-        html.append("        <li>Processes: ").append(result.getProcesses().size()).append("</li>\n");
-        html.append("        <li>External Entities: ").append(result.getExternalEntities().size()).append("</li>\n");
-        html.append("        <li>Data Stores: ").append(result.getDataStores().size()).append("</li>\n");
-        html.append("        <li>Data Flows: ").append(result.getDataFlows().size()).append("</li>\n");
-        html.append("    </ul>\n");
-        
-        // Data Structures
-        html.append("    <h2>Data Structures</h2>\n");
-        html.append("    <table>\n");
-        html.append("        <tr><th>Name</th><th>Type</th><th>Description</th><th>Fields</th></tr>\n");
-        
-        for (com.threatmodel.analyzer.model.DataStructure structure : result.getDataStructures()) {
-            html.append("        <tr>\n");
-            if (structure.isExternal()) {
-                html.append("            <td class=\"external\">").append(structure.getName()).append(" [EXTERNAL]</td>\n");
-            } else {
-                html.append("            <td>").append(structure.getName()).append("</td>\n");
+    @SuppressWarnings("unchecked")
+    private static void writeCollection(List<?> collection, List<Target<?>> targets) throws IOException {
+        List<ReportWriter> writers = new ArrayList<>();
+        try {
+            for (Target<?> target : targets) {
+                writers.add(new ReportWriter(target.file, target.output));
             }
-            html.append("            <td>").append(structure.getType()).append("</td>\n");
-            html.append("            <td>").append(structure.getDescription() != null ? structure.getDescription() : "").append("</td>\n");
             
-            html.append("            <td><ul>\n");
-            for (com.threatmodel.analyzer.model.DataField field : structure.getFields()) {
-                if (field.isSensitive()) {
-                    html.append("                <li class=\"sensitive\">");
-                } else {
-                    html.append("                <li>");
-                }
-                html.append(field.getName()).append(": ").append(field.getType());
-                if (field.getDescription() != null && !field.getDescription().isEmpty()) {
-                    html.append(" - ").append(field.getDescription());
+            for (int i = 0; i < targets.size(); i++) {
+                targets.get(i).part.getSection().begin(writers.get(i));
+            }
+            for (Object element : collection) {
+                for (int i = 0; i < targets.size(); i++) {
+                    ((ReportSection<Object>) targets.get(i).part.getSection()).write(writers.get(i), element);
                 }
-                html.append("</li>\n");
             }
-            html.append("            </ul></td>\n");
-            
-            html.append("        </tr>\n");
-        }
-        
-        html.append("    </table>\n");
-        
-        // External Entities
-        html.append("    <h2>External Entities</h2>\n");
-        html.append("    <table>\n");
-        html.append("        <tr><th>Name</th><th>Type</th><th>Description</th><th>Protocols</th></tr>\n");
-        
-        for (com.threatmodel.analyzer.model.ExternalEntity entity : result.getExternalEntities()) {
-            html.append("        <tr>\n");
-            html.append("            <td>").append(entity.getName()).append("</td>\n");
-            html.append("            <td>").append(entity.getType()).append("</td>\n");
-            html.append("            <td>").append(entity.getDescription() != null ? entity.getDescription() : "").append("</td>\n");
-            
-            html.append("            <td><ul>\n");
-            for (String protocol : entity.getProtocols()) {
-                html.append("                <li>").append(protocol).append("</li>\n");
+            for (int i = 0; i < targets.size(); i++) {
+                targets.get(i).part.getSection().end(writers.get(i));
+                writers.get(i).setElementCount(collection.size());
             }
-            html.append("            </ul></td>\n");
-            
-            html.append("        </tr>\n");
-        }
-        
-        html.append("    </table>\n");
-        
-        // Processes
-        html.append("    <h2>Processes</h2>\n");
-        html.append("    <table>\n");
-        html.append("        <tr><th>Name</th><th>Description</th><th>Inputs</th><th>Outputs</th></tr>\n");
-        
-        for (com.threatmodel.analyzer.model.Process process : result.getProcesses()) {
-            html.append("        <tr>\n");
-            html.append("            <td>").append(process.getName()).append("</td>\n");
-            html.append("            <td>").append(process.getDescription() != null ? process.getDescription() : "").append("</td>\n");
-            
-            html.append("            <td><ul>\n");
-            for (String inputId : process.getInputDataStructureIds()) {
-                html.append("                <li>").append(inputId).append("</li>\n");
-            }
-            html.append("            </ul></td>\n");
-            
-            html.append("            <td><ul>\n");
-            for (String outputId : process.getOutputDataStructureIds()) {
-                html.append("                <li>").append(outputId).append("</li>\n");
+        } finally {
+            IOException failure = null;
+            for (ReportWriter writer : writers) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
             }
-            html.append("            </ul></td>\n");
-            
-            html.append("        </tr>\n");
-        }
-        
-        html.append("    </table>\n");
-        
-        // Data Stores
-        html.append("    <h2>Data Stores</h2>\n");
-        html.append("    <table>\n");
-        html.append("        <tr><th>Name</th><th>Type</th><th>Description</th><th>Data Structures</th></tr>\n");
-        
-        for (com.threatmodel.analyzer.model.DataStore store : result.getDataStores()) {
-            html.append("        <tr>\n");
-            html.append("            <td>").append(store.getName()).append("</td>\n");
-            html.append("            <td>").append(store.getType()).append("</td>\n");
-            html.append("            <td>").append(store.getDescription() != null ? store.getDescription() : "").append("</td>\n");
-            
-            html.append("            <td><ul>\n");
-            for (String structureId : store.getDataStructureIds()) {
-                html.append("                <li>").append(structureId).append("</li>\n");
+            if (failure != null) {
+                throw failure;
             }
-            html.append("            </ul></td>\n");
-            
-            html.append("        </tr>\n");
-        }
-        
-        html.append("    </table>\n");
-        
-        // Data Flows
-        html.append("    <h2>Data Flows</h2>\n");
-        html.append("    <table>\n");
-        html.append("        <tr><th>Source</th><th>Destination</th><th>Data Structure</th><th>Type</th><th>Protocol</th><th>Description</th></tr>\n");
-        
-        for (com.threatmodel.analyzer.model.DataFlow flow : result.getDataFlows()) {
-            html.append("        <tr>\n");
-            html.append("            <td>").append(flow.getSourceId()).append("</td>\n");
-            html.append("            <td>").append(flow.getDestinationId()).append("</td>\n");
-            html.append("            <td>").append(flow.getDataStructureId()).append("</td>\n");
-            html.append("            <td>").append(flow.getType()).append("</td>\n");
-            html.append("            <td>").append(flow.getProtocol() != null ? flow.getProtocol() : "").append("</td>\n");
-            html.append("            <td>").append(flow.getDescription() != null ? flow.getDescription() : "").append("</td>\n");
-            html.append("        </tr>\n");
         }
-        
-        html.append("    </table>\n");
-        
-        html.append("</body>\n");
-        html.append("</html>\n");
-        
-        Files.writeString(htmlFile, html.toString());
-        
-        logger.info("HTML output written to: {}", htmlFile);
     }
     
     /**
-     * Generates Markdown output
+     * Concatenates part files into a file
      */
-    private void generateMarkdown() throws IOException {
-        Path markdownFile = outputPath.resolve("analysis-result.md");
-        
-        StringBuilder md = new StringBuilder();
-        md.append("# Data Flow Analysis - ").append(result.getProjectName()).append("\n\n");
-        md.append("Generated on: ").append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append("\n\n");
-        md.append(result.getProjectDescription()).append("\n\n");
-        
-        // Summary
-        md.append("## Summary\n\n");
-        md.append("- Data Structures: ").append(result.getDataStructures().size()).append("\n");
-        md.append("- Processes: ").append(result.getProcesses().size()).append("\n");
-        md.append("- External Entities: ").append(result.getExternalEntities().size()).append("\n");
-        md.append("- Data Stores: ").append(result.getDataStores().size()).append("\n");
-        md.append("- Data Flows: ").append(result.getDataFlows().size()).append("\n\n");
-        
-        // Data Structures
-        md.append("## Data Structures\n\n");
-        
-        for (com.threatmodel.analyzer.model.DataStructure structure : result.getDataStructures()) {
-            if (structure.isExternal()) {
-                md.append("### ").append(structure.getName()).append(" [EXTERNAL]\n\n");
-            } else {
-                md.append("### ").append(structure.getName()).append("\n\n");
-            }
-            
-            md.append("- **Type**: ").append(structure.getType()).append("\n");
-            if (structure.getDescription() != null && !structure.getDescription().isEmpty()) {
-                md.append("- **Description**: ").append(structure.getDescription()).append("\n");
-            }
-            md.append("- **Source File**: ").append(structure.getSourceFilePath()).append("\n\n");
-            
-            md.append("#### Fields\n\n");
-            if (structure.getFields().isEmpty()) {
-                md.append("*No fields found*\n\n");
-            } else {
-                md.append("| Field | Type | Description |\n");
-                md.append("|-------|------|-------------|\n");
-                
-                for (com.threatmodel.analyzer.model.DataField field : structure.getFields()) {
-                    md.append("| ");
-                    if (field.isSensitive()) {
-                        md.append("**").append(field.getName()).append("** [SENSITIVE]");
-                    } else {
-                        md.append(field.getName());
-                    }
-                    md.append(" | ").append(field.getType());
-                    if (field.isCollection()) {
-                        md.append(" [Collection]");
+    private static void concatenate(List<Path> parts, Path file) throws IOException {
+        try (FileChannel target = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Path part : parts) {
+                try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = source.size();
+                    while (position < size) {
+                        position += source.transferTo(position, size - position, target);
                     }
-                    md.append(" | ");
-                    if (field.getDescription() != null && !field.getDescription().isEmpty()) {
-                        md.append(field.getDescription());
-                    }
-                    md.append(" |\n");
-                }
-                md.append("\n");
-            }
-        }
-        
-        // External Entities
-        md.append("## External Entities\n\n");
-        
-        if (result.getExternalEntities().isEmpty()) {
-            md.append("*No external entities found*\n\n");
-        } else {
-            md.append("| Name | Type | Description | Protocols |\n");
-            md.append("|------|------|-------------|------------|\n");
-            
-            for (com.threatmodel.analyzer.model.ExternalEntity entity : result.getExternalEntities()) {
-                md.append("| ").append(entity.getName());
-                md.append(" | ").append(entity.getType());
-                md.append(" | ");
-                if (entity.getDescription() != null && !entity.getDescription().isEmpty()) {
-                    md.append(entity.getDescription());
-                }
-                md.append(" | ");
-                if (!entity.getProtocols().isEmpty()) {
-                    md.append(String.join(", ", entity.getProtocols()));
                 }
-                md.append(" |\n");
             }
-            md.append("\n");
         }
-        
-        // Processes
-        md.append("## Processes\n\n");
-        
-        for (com.threatmodel.analyzer.model.Process process : result.getProcesses()) {
-            md.append("### ").append(process.getName()).append("\n\n");
-            
-            if (process.getDescription() != null && !process.getDescription().isEmpty()) {
-                md.append("- **Description**: ").append(process.getDescription()).append("\n");
-            }
-            md.append("- **Source File**: ").append(process.getSourceFilePath()).append("\n\n");
-            
-            md.append("#### Inputs\n\n");
-            if (process.getInputDataStructureIds().isEmpty()) {
-                md.append("*No input data structures found*\n\n");
-            } else {
-                for (String inputId : process.getInputDataStructureIds()) {
-                    md.append("- ").append(inputId).append("\n");
-                }
-                md.append("\n");
-            }
-            
-            md.append("#### Outputs\n\n");
-            if (process.getOutputDataStructureIds().isEmpty()) {
-                md.append("*No output data structures found*\n\n");
-            } else {
-                for (String outputId : process.getOutputDataStructureIds()) {
-                    md.append("- ").append(outputId).append("\n");
-                }
-                md.append("\n");
-            }
+    }
+    
+    /**
+     * Runs independent output tasks on the pool and waits for all of them to complete
+     */
+    private void runAll(List<OutputTask> tasks) throws IOException {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (OutputTask task : tasks) {
+            futures.add(pool.submit(() -> {
+                task.run();
+                return null;
+            }));
         }
         
-        // Data Stores
-        md.append("## Data Stores\n\n");
-        
-        if (result.getDataStores().isEmpty()) {
-            md.append("*No data stores found*\n\n");
-        } else {
-            for (com.threatmodel.analyzer.model.DataStore store : result.getDataStores()) {
-                md.append("### ").append(store.getName()).append("\n\n");
-                
-                md.append("- **Type**: ").append(store.getType()).append("\n");
-                if (store.getDescription() != null && !store.getDescription().isEmpty()) {
-                    md.append("- **Description**: ").append(store.getDescription()).append("\n");
-                }
-                md.append("\n");
-                
-                md.append("#### Stored Data Structures\n\n");
-                if (store.getDataStructureIds().isEmpty()) {
-                    md.append("*No data structures found*\n\n");
-                } else {
-                    for (String structureId : store.getDataStructureIds()) {
-                        md.append("- ").append(structureId).append("\n");
-                    }
-                    md.append("\n");
-                }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
             }
-        }
-        
-        // Data Flows
-        md.append("## Data Flows\n\n");
-        
-        if (result.getDataFlows().isEmpty()) {
-            md.append("*No data flows found*\n\n");
-        } else {
-            md.append("| Source | Destination | Data Structure | Type | Protocol | Description |\n");
-            md.append("|--------|-------------|----------------|------|----------|-------------|\n");
-            
-            for (com.threatmodel.analyzer.model.DataFlow flow : result.getDataFlows()) {
-                md.append("| ").append(flow.getSourceId());
-                md.append(" | ").append(flow.getDestinationId());
-                md.append(" | ").append(flow.getDataStructureId());
-                md.append(" | ").append(flow.getType());
-                md.append(" | ");
-                if (flow.getProtocol() != null && !flow.getProtocol().isEmpty()) {
-                    md.append(flow.getProtocol());
-                }
-                md.append(" | ");
-                if (flow.getDescription() != null && !flow.getDescription().isEmpty()) {
-                    md.append(flow.getDescription());
-                }
-                md.append(" |\n");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing output", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
             }
-            md.append("\n");
+            throw new IOException("Error writing output", cause);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
         }
-        
-        Files.writeString(markdownFile, md.toString());
-        
-        logger.info("Markdown output written to: {}", markdownFile);
     }
     
     /**
-     * Escapes a string for CSV output
+     * Maps a format name to one of the supported formats
      */
-    private String escapeCsv(String s) {
-        if (s == null) {
-            return "";
+    private static String normalizeFormat(String format) {
+        String name = format.trim().toLowerCase();
+        switch (name) {
+            case "json":
+            case "ndjson":
+            case "csv":
+            case "html":
+                return name;
+            default:
+                return "markdown";
         }
-        
-        // If the string contains a comma, a double quote, or a newline, wrap it in quotes and escape any quotes
-        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
-            return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+    
+    /**
+     * A section of a report file together with the file it is written to
+     */
+    private static class Target<T> {
+        private final ReportFile.Part<T> part;
+        private final Path file;
+        private final String output;
+        
+        Target(ReportFile.Part<T> part, Path file, String output) {
+            this.part = part;
+            this.file = file;
+            this.output = output;
         }
-        
-        return s;
     }
 }
@@ -0,0 +1,11 @@
+package com.threatmodel.analyzer.output;
+
+import java.io.IOException;
+
+/**
+ * A part of the output that can be written independently of the other parts
+ */
+@FunctionalInterface
+interface OutputTask {
+    void run() throws IOException;
+}
@@ -0,0 +1,62 @@
+package com.threatmodel.analyzer.output;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A text output file made of sections in document order, each bound to the collection it lists
+ */
+class ReportFile {
+    private final Path file;
+    private final List<Part<?>> parts = new ArrayList<>();
+    
+    ReportFile(Path file) {
+        this.file = file;
+    }
+    
+    Path getFile() {
+        return file;
+    }
+    
+    List<Part<?>> getParts() {
+        return parts;
+    }
+    
+    /**
+     * Appends a section listing the elements of a collection
+     */
+    <T> ReportFile add(List<T> elements, ReportSection<T> section) {
+        parts.add(new Part<>(elements, section));
+        return this;
+    }
+    
+    /**
+     * Appends a section with fixed content
+     */
+    ReportFile add(ReportSection.Text text) {
+        return add(Collections.emptyList(), ReportSection.fixed(text));
+    }
+    
+    /**
+     * A section of the file together with the collection it lists
+     */
+    static class Part<T> {
+        private final List<T> elements;
+        private final ReportSection<T> section;
+        
+        Part(List<T> elements, ReportSection<T> section) {
+            this.elements = elements;
+            this.section = section;
+        }
+        
+        List<T> getElements() {
+            return elements;
+        }
+        
+        ReportSection<T> getSection() {
+            return section;
+        }
+    }
+}
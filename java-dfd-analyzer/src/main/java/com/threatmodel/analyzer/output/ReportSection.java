@@ -0,0 +1,75 @@
+package com.threatmodel.analyzer.output;
+
+import java.io.IOException;
+
+/**
+ * A part of a text report listing the elements of one collection of the analysis result.
+ *
+ * The section is written in three steps: its opening, one entry per element in collection
+ * order, and its closing. Splitting it this way lets the sections of several reports that
+ * list the same collection share a single pass over it.
+ *
+ * @param <T> The type of the listed elements
+ */
+interface ReportSection<T> {
+    
+    /**
+     * Writes the opening of the section, such as its heading and table header
+     */
+    void begin(ReportWriter out) throws IOException;
+    
+    /**
+     * Writes the entry of one element
+     */
+    void write(ReportWriter out, T element) throws IOException;
+    
+    /**
+     * Writes the closing of the section
+     */
+    void end(ReportWriter out) throws IOException;
+    
+    /**
+     * Creates a section from its three steps
+     */
+    static <T> ReportSection<T> of(Text begin, Entry<T> entry, Text end) {
+        return new ReportSection<T>() {
+            @Override
+            public void begin(ReportWriter out) throws IOException {
+                begin.write(out);
+            }
+            
+            @Override
+            public void write(ReportWriter out, T element) throws IOException {
+                entry.write(out, element);
+            }
+            
+            @Override
+            public void end(ReportWriter out) throws IOException {
+                end.write(out);
+            }
+        };
+    }
+    
+    /**
+     * Creates a section with fixed content that does not list any elements
+     */
+    static <T> ReportSection<T> fixed(Text text) {
+        return of(text, (out, element) -> { }, out -> { });
+    }
+    
+    /**
+     * Writes text that does not depend on a single element
+     */
+    @FunctionalInterface
+    interface Text {
+        void write(ReportWriter out) throws IOException;
+    }
+    
+    /**
+     * Writes the entry of one element
+     */
+    @FunctionalInterface
+    interface Entry<T> {
+        void write(ReportWriter out, T element) throws IOException;
+    }
+}
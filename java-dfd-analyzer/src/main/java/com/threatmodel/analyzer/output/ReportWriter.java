@@ -0,0 +1,73 @@
+package com.threatmodel.analyzer.output;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.threatmodel.analyzer.jfr.OutputWriteEvent;
+
+/**
+ * Buffered UTF-8 writer for text reports.
+ *
+ * Mirrors the chained {@code append} calls of a {@link StringBuilder}, but writes the text
+ * to the file as it is produced instead of holding the whole document in memory.
+ */
+class ReportWriter implements Closeable {
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private final Writer writer;
+    private final Path file;
+    private final OutputWriteEvent event = new OutputWriteEvent();
+    
+    ReportWriter(Path file) throws IOException {
+        this(file, file.getFileName().toString());
+    }
+    
+    /**
+     * Creates a writer for a file that holds part of an output file
+     *
+     * @param file The file to write
+     * @param output The name of the output file, reported in flight recordings
+     */
+    ReportWriter(Path file, String output) throws IOException {
+        event.begin();
+        event.output = output;
+        this.file = file;
+        this.writer = new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+    
+    /**
+     * Sets the number of result elements written, reported in flight recordings
+     */
+    void setElementCount(long elements) {
+        event.elements = elements;
+    }
+    
+    ReportWriter append(String text) throws IOException {
+        writer.write(text != null ? text : "null");
+        return this;
+    }
+    
+    ReportWriter append(Object value) throws IOException {
+        return append(String.valueOf(value));
+    }
+    
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = file.toString();
+            event.size = Files.size(file);
+            event.commit();
+        }
+    }
+}
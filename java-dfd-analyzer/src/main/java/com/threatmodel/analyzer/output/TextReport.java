@@ -0,0 +1,26 @@
+package com.threatmodel.analyzer.output;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import com.threatmodel.analyzer.model.AnalysisResult;
+
+/**
+ * Base class of the text output formats, which describe their files as sections so that
+ * {@link OutputGenerator} can write all requested formats in one pass over each collection
+ */
+abstract class TextReport {
+    protected final AnalysisResult result;
+    
+    protected TextReport(AnalysisResult result) {
+        this.result = result;
+    }
+    
+    /**
+     * Describes the files of the report
+     *
+     * @param outputPath The output directory
+     * @return The files to write, with their sections in document order
+     */
+    abstract List<ReportFile> createFiles(Path outputPath);
+}
@@ -1,10 +1,20 @@
 package com.threatmodel.analyzer.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
+import com.threatmodel.analyzer.jfr.DataFlowPhaseEvent;
 import com.threatmodel.analyzer.model.DataFlow;
 import com.threatmodel.analyzer.model.DataFlow.DataFlowType;
 import com.threatmodel.analyzer.model.DataStore;
@@ -17,294 +27,397 @@ import com.threatmodel.analyzer.model.Process;
  */
 public class DataFlowDetector {
     
+    // Verbs in a process ID suggesting that it writes to or reads from a data store
+    private static final List<String> WRITE_VERBS = Arrays.asList(
+            "save", "update", "create", "delete", "insert", "persist");
+    private static final List<String> READ_VERBS = Arrays.asList(
+            "get", "find", "read", "load", "retrieve", "search");
+    
     private final Map<String, DataStructure> dataStructures;
     private final Map<String, Process> processes;
     private final Map<String, ExternalEntity> externalEntities;
     private final Map<String, DataStore> dataStores;
+    private final int parallelism;
+    
+    // Built when detection starts, as process inputs are only known by then
+    private ProcessIndex processIndex;
     
     public DataFlowDetector(
             Map<String, DataStructure> dataStructures,
             Map<String, Process> processes,
             Map<String, ExternalEntity> externalEntities,
             Map<String, DataStore> dataStores) {
+        this(dataStructures, processes, externalEntities, dataStores, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public DataFlowDetector(
+            Map<String, DataStructure> dataStructures,
+            Map<String, Process> processes,
+            Map<String, ExternalEntity> externalEntities,
+            Map<String, DataStore> dataStores,
+            int parallelism) {
         this.dataStructures = dataStructures;
         this.processes = processes;
         this.externalEntities = externalEntities;
         this.dataStores = dataStores;
+        this.parallelism = Math.max(1, parallelism);
     }
     
     /**
-     * Detects data flows between components
+     * Detects data flows between components.
+     * 
+     * The phases run concurrently on a fork-join pool, and each phase is split into one task
+     * per process, entity or data store. Every task collects its flows in its own buffer and
+     * the buffers are concatenated in phase and item order, so the result is the same as that
+     * of a sequential run. Reads from a data store are derived from the data structures
+     * recorded by the writes to it, so that phase only starts once the writes are complete.
      * 
      * @return A list of detected data flows
      */
     public List<DataFlow> detectDataFlows() {
         List<DataFlow> flows = new ArrayList<>();
+        detectDataFlows(flows);
+        return flows;
+    }
+    
+    /**
+     * Detects data flows between components and appends them to a list, in the same order as
+     * {@link #detectDataFlows()}. The detected flow objects are released as they are appended,
+     * so a list with a more compact representation, such as a
+     * {@link com.threatmodel.analyzer.model.CompactDataFlowList}, lowers the peak memory use.
+     * 
+     * @param target The list the flows are appended to
+     */
+    public void detectDataFlows(List<DataFlow> target) {
+        processIndex = new ProcessIndex(processes.values());
         
-        // Detect flows from processes to processes
-        detectProcessToProcessFlows(flows);
-        
-        // Detect flows from external entities to processes
-        detectExternalToProcessFlows(flows);
-        
-        // Detect flows from processes to external entities
-        detectProcessToExternalFlows(flows);
-        
-        // Detect flows from processes to data stores
-        detectProcessToDataStoreFlows(flows);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // The phases in the order of their flows
+            List<ForkJoinTask<List<DataFlow>>> phases = new ArrayList<>();
+            
+            // Detect flows from processes to processes
+            phases.add(pool.submit(() ->
+                    detectEach("processToProcess", processIndex.getProcesses(), this::detectProcessToProcessFlows)));
+            
+            // Detect flows from external entities to processes
+            phases.add(pool.submit(() ->
+                    detectEach("externalToProcess", externalEntities.values(), this::detectExternalToProcessFlows)));
+            
+            // Detect flows from processes to external entities
+            phases.add(pool.submit(() ->
+                    detectEach("processToExternal", externalEntities.values(), this::detectProcessToExternalFlows)));
+            
+            // Detect flows from processes to data stores, then from data stores to processes
+            phases.add(pool.submit(() -> {
+                Set<Process> writers = processIndex.findByAnyName(WRITE_VERBS);
+                List<DataFlow> storeFlows = detectEach("processToDataStore", dataStores.values(),
+                        (dataStore, buffer) -> detectProcessToDataStoreFlows(dataStore, writers, buffer));
+                
+                Set<Process> readers = processIndex.findByAnyName(READ_VERBS);
+                storeFlows.addAll(detectEach("dataStoreToProcess", dataStores.values(),
+                        (dataStore, buffer) -> detectDataStoreToProcessFlows(dataStore, readers, buffer)));
+                return storeFlows;
+            }));
+            
+            // Merge the phases in order, dropping each phase's buffer once it is merged
+            Map<FlowKey, DataFlow> uniqueFlows = new LinkedHashMap<>();
+            for (Iterator<ForkJoinTask<List<DataFlow>>> phase = phases.iterator(); phase.hasNext(); ) {
+                mergeDuplicates(phase.next().join(), uniqueFlows);
+                phase.remove();
+            }
+            
+            // Move the merged flows to the target
+            for (Iterator<DataFlow> flow = uniqueFlows.values().iterator(); flow.hasNext(); ) {
+                target.add(flow.next());
+                flow.remove();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Creates a flow whose ID is derived from its source, destination, data structure and type
+     */
+    private static DataFlow createFlow(String sourceId, String destinationId, String dataStructureId, DataFlowType type) {
+        return DataFlow.withDerivedId(sourceId, destinationId, dataStructureId, type);
+    }
+    
+    /**
+     * Merges flows with the same source, destination, data structure and type into the first
+     * one detected, counting how often each flow was detected
+     */
+    private static void mergeDuplicates(List<DataFlow> flows, Map<FlowKey, DataFlow> uniqueFlows) {
+        for (DataFlow flow : flows) {
+            DataFlow existing = uniqueFlows.putIfAbsent(new FlowKey(flow), flow);
+            if (existing != null) {
+                existing.setMultiplicity(existing.getMultiplicity() + 1);
+            }
+        }
+    }
+    
+    /**
+     * Runs a detection phase for every item in parallel, keeping the flows in item order
+     *
+     * @param phase The name of the phase, reported in flight recordings
+     */
+    private static <T> List<DataFlow> detectEach(String phase, Collection<T> items,
+            BiConsumer<T, List<DataFlow>> detector) {
+        DataFlowPhaseEvent event = new DataFlowPhaseEvent();
+        event.begin();
         
-        // Detect flows from data stores to processes
-        detectDataStoreToProcessFlows(flows);
+        // Copy the items into a list so the stream has a defined encounter order
+        List<DataFlow> flows = new ArrayList<>(items).parallelStream()
+                .map(item -> {
+                    List<DataFlow> buffer = new ArrayList<>();
+                    detector.accept(item, buffer);
+                    return buffer;
+                })
+                .flatMap(List::stream)
+                .collect(Collectors.toCollection(ArrayList::new));
         
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.items = items.size();
+            event.flows = flows.size();
+            event.commit();
+        }
         return flows;
     }
     
     /**
-     * Detects data flows between processes
+     * Detects data flows from a process to the processes consuming its outputs
      */
-    private void detectProcessToProcessFlows(List<DataFlow> flows) {
-        for (Process sourceProcess : processes.values()) {
-            // Check output data structures of this process
-            for (String outputDataStructureId : sourceProcess.getOutputDataStructureIds()) {
-                // Find processes that take this data structure as input
-                for (Process destProcess : processes.values()) {
-                    if (!sourceProcess.getId().equals(destProcess.getId()) && 
-                            destProcess.getInputDataStructureIds().contains(outputDataStructureId)) {
-                        // Create a data flow between these processes
-                        DataFlow flow = new DataFlow(
-                                "flow-" + UUID.randomUUID().toString(),
-                                sourceProcess.getId(),
-                                destProcess.getId(),
-                                outputDataStructureId);
-                        
-                        flow.setType(DataFlowType.INTERNAL);
-                        flow.setDescription(sourceProcess.getName() + " -> " + destProcess.getName());
-                        
-                        flows.add(flow);
-                    }
+    private void detectProcessToProcessFlows(Process sourceProcess, List<DataFlow> flows) {
+        // Check output data structures of this process
+        for (String outputDataStructureId : sourceProcess.getOutputDataStructureIds()) {
+            // Find processes that take this data structure as input
+            for (Process destProcess : processIndex.getConsumers(outputDataStructureId)) {
+                if (!sourceProcess.getId().equals(destProcess.getId())) {
+                    // Create a data flow between these processes
+                    DataFlow flow = createFlow(
+                            sourceProcess.getId(),
+                            destProcess.getId(),
+                            outputDataStructureId,
+                            DataFlowType.INTERNAL);
+                    
+                    flow.setDescription(sourceProcess.getName() + " -> " + destProcess.getName());
+                    
+                    flows.add(flow);
                 }
             }
         }
     }
     
     /**
-     * Detects data flows from external entities to processes
+     * Detects data flows from an external entity to processes
      */
-    private void detectExternalToProcessFlows(List<DataFlow> flows) {
-        for (ExternalEntity entity : externalEntities.values()) {
-            // For REST endpoints, create flows to the matching process
-            if (entity.getType() == ExternalEntity.ExternalEntityType.USER && 
-                    entity.getName().startsWith("WebClient-")) {
-                
-                // Extract controller name from entity name
-                String controllerName = entity.getName().substring("WebClient-".length());
-                
-                // Find processes that correspond to methods in this controller
-                for (Process process : processes.values()) {
-                    if (process.getId().contains(controllerName)) {
-                        // For each input data structure, create a flow
-                        for (String inputDataStructureId : process.getInputDataStructureIds()) {
-                            DataFlow flow = new DataFlow(
-                                    "flow-" + UUID.randomUUID().toString(),
-                                    entity.getName(),
-                                    process.getId(),
-                                    inputDataStructureId);
-                            
-                            flow.setType(DataFlowType.INPUT);
-                            flow.setDescription("Web request from " + entity.getName() + " to " + process.getName());
-                            flow.setExternal(true);
-                            flow.setProtocol("HTTP/HTTPS");
-                            
-                            flows.add(flow);
-                        }
-                    }
+    private void detectExternalToProcessFlows(ExternalEntity entity, List<DataFlow> flows) {
+        // For REST endpoints, create flows to the matching process
+        if (entity.getType() == ExternalEntity.ExternalEntityType.USER && 
+                entity.getName().startsWith("WebClient-")) {
+            
+            // Extract controller name from entity name
+            String controllerName = entity.getName().substring("WebClient-".length());
+            
+            // Find processes that correspond to methods in this controller
+            for (Process process : processIndex.findByName(controllerName)) {
+                // For each input data structure, create a flow
+                for (String inputDataStructureId : process.getInputDataStructureIds()) {
+                    DataFlow flow = createFlow(
+                            entity.getName(),
+                            process.getId(),
+                            inputDataStructureId,
+                            DataFlowType.INPUT);
+                    
+                    flow.setDescription("Web request from " + entity.getName() + " to " + process.getName());
+                    flow.setExternal(true);
+                    flow.setProtocol("HTTP/HTTPS");
+                    
+                    flows.add(flow);
                 }
             }
+        }
+        
+        // For service clients, create flows to related processes
+        if (entity.getType() == ExternalEntity.ExternalEntityType.SERVICE && 
+                entity.getName().startsWith("Service-")) {
             
-            // For service clients, create flows to related processes
-            if (entity.getType() == ExternalEntity.ExternalEntityType.SERVICE && 
-                    entity.getName().startsWith("Service-")) {
-                
-                // Extract service name from entity name
-                String serviceName = entity.getName().substring("Service-".length());
-                
-                // Find processes that might call this service
-                for (Process process : processes.values()) {
-                    if (process.getId().contains(serviceName) || 
-                            process.getDescription() != null && process.getDescription().contains(serviceName)) {
-                        
-                        // Create a flow for each input to the process
-                        for (String inputDataStructureId : process.getInputDataStructureIds()) {
-                            DataFlow flow = new DataFlow(
-                                    "flow-" + UUID.randomUUID().toString(),
-                                    entity.getName(),
-                                    process.getId(),
-                                    inputDataStructureId);
-                            
-                            flow.setType(DataFlowType.API_CALL);
-                            flow.setDescription("Service call response from " + entity.getName() + " to " + process.getName());
-                            flow.setExternal(true);
-                            
-                            // Get the protocol from the entity
-                            if (!entity.getProtocols().isEmpty()) {
-                                flow.setProtocol(entity.getProtocols().get(0));
-                            }
-                            
-                            flows.add(flow);
-                        }
+            // Extract service name from entity name
+            String serviceName = entity.getName().substring("Service-".length());
+            
+            // Find processes that might call this service
+            for (Process process : processIndex.findByNameOrDescription(serviceName)) {
+                // Create a flow for each input to the process
+                for (String inputDataStructureId : process.getInputDataStructureIds()) {
+                    DataFlow flow = createFlow(
+                            entity.getName(),
+                            process.getId(),
+                            inputDataStructureId,
+                            DataFlowType.API_CALL);
+                    
+                    flow.setDescription("Service call response from " + entity.getName() + " to " + process.getName());
+                    flow.setExternal(true);
+                    
+                    // Get the protocol from the entity
+                    if (!entity.getProtocols().isEmpty()) {
+                        flow.setProtocol(entity.getProtocols().get(0));
                     }
+                    
+                    flows.add(flow);
                 }
             }
         }
     }
     
     /**
-     * Detects data flows from processes to external entities
+     * Detects data flows from processes to an external entity
      */
-    private void detectProcessToExternalFlows(List<DataFlow> flows) {
-        for (ExternalEntity entity : externalEntities.values()) {
-            // For REST endpoints, create flows from the matching process
-            if (entity.getType() == ExternalEntity.ExternalEntityType.USER && 
-                    entity.getName().startsWith("WebClient-")) {
-                
-                // Extract controller name from entity name
-                String controllerName = entity.getName().substring("WebClient-".length());
-                
-                // Find processes that correspond to methods in this controller
-                for (Process process : processes.values()) {
-                    if (process.getId().contains(controllerName)) {
-                        // For each output data structure, create a flow
-                        for (String outputDataStructureId : process.getOutputDataStructureIds()) {
-                            DataFlow flow = new DataFlow(
-                                    "flow-" + UUID.randomUUID().toString(),
-                                    process.getId(),
-                                    entity.getName(),
-                                    outputDataStructureId);
-                            
-                            flow.setType(DataFlowType.OUTPUT);
-                            flow.setDescription("Web response from " + process.getName() + " to " + entity.getName());
-                            flow.setExternal(true);
-                            flow.setProtocol("HTTP/HTTPS");
-                            
-                            flows.add(flow);
-                        }
-                    }
+    private void detectProcessToExternalFlows(ExternalEntity entity, List<DataFlow> flows) {
+        // For REST endpoints, create flows from the matching process
+        if (entity.getType() == ExternalEntity.ExternalEntityType.USER && 
+                entity.getName().startsWith("WebClient-")) {
+            
+            // Extract controller name from entity name
+            String controllerName = entity.getName().substring("WebClient-".length());
+            
+            // Find processes that correspond to methods in this controller
+            for (Process process : processIndex.findByName(controllerName)) {
+                // For each output data structure, create a flow
+                for (String outputDataStructureId : process.getOutputDataStructureIds()) {
+                    DataFlow flow = createFlow(
+                            process.getId(),
+                            entity.getName(),
+                            outputDataStructureId,
+                            DataFlowType.OUTPUT);
+                    
+                    flow.setDescription("Web response from " + process.getName() + " to " + entity.getName());
+                    flow.setExternal(true);
+                    flow.setProtocol("HTTP/HTTPS");
+                    
+                    flows.add(flow);
                 }
             }
+        }
+        
+        // For service clients, create flows from related processes
+        if (entity.getType() == ExternalEntity.ExternalEntityType.SERVICE && 
+                entity.getName().startsWith("Service-")) {
             
-            // For service clients, create flows from related processes
-            if (entity.getType() == ExternalEntity.ExternalEntityType.SERVICE && 
-                    entity.getName().startsWith("Service-")) {
-                
-                // Extract service name from entity name
-                String serviceName = entity.getName().substring("Service-".length());
-                
-                // Find processes that might call this service
-                for (Process process : processes.values()) {
-                    if (process.getId().contains(serviceName) || 
-                            process.getDescription() != null && process.getDescription().contains(serviceName)) {
-                        
-                        // Create a flow for each output from the process
-                        for (String outputDataStructureId : process.getOutputDataStructureIds()) {
-                            DataFlow flow = new DataFlow(
-                                    "flow-" + UUID.randomUUID().toString(),
-                                    process.getId(),
-                                    entity.getName(),
-                                    outputDataStructureId);
-                            
-                            flow.setType(DataFlowType.API_CALL);
-                            flow.setDescription("Service call request from " + process.getName() + " to " + entity.getName());
-                            flow.setExternal(true);
-                            
-                            // Get the protocol from the entity
-                            if (!entity.getProtocols().isEmpty()) {
-                                flow.setProtocol(entity.getProtocols().get(0));
-                            }
-                            
-                            flows.add(flow);
-                        }
+            // Extract service name from entity name
+            String serviceName = entity.getName().substring("Service-".length());
+            
+            // Find processes that might call this service
+            for (Process process : processIndex.findByNameOrDescription(serviceName)) {
+                // Create a flow for each output from the process
+                for (String outputDataStructureId : process.getOutputDataStructureIds()) {
+                    DataFlow flow = createFlow(
+                            process.getId(),
+                            entity.getName(),
+                            outputDataStructureId,
+                            DataFlowType.API_CALL);
+                    
+                    flow.setDescription("Service call request from " + process.getName() + " to " + entity.getName());
+                    flow.setExternal(true);
+                    
+                    // Get the protocol from the entity
+                    if (!entity.getProtocols().isEmpty()) {
+                        flow.setProtocol(entity.getProtocols().get(0));
                     }
+                    
+                    flows.add(flow);
                 }
             }
         }
     }
     
     /**
-     * Detects data flows from processes to data stores
+     * Detects data flows from processes to a data store. Each task only records data
+     * structures on its own store, so stores can be processed concurrently.
      */
-    private void detectProcessToDataStoreFlows(List<DataFlow> flows) {
-        for (DataStore dataStore : dataStores.values()) {
-            // Extract store name 
-            String storeName = dataStore.getName();
-            
-            // Find processes that might write to this data store
-            for (Process process : processes.values()) {
-                boolean mayWrite = process.getId().contains("save") || 
-                                   process.getId().contains("update") || 
-                                   process.getId().contains("create") || 
-                                   process.getId().contains("delete") || 
-                                   process.getId().contains("insert") || 
-                                   process.getId().contains("persist");
-                
-                if (mayWrite && (process.getId().contains(storeName) || 
-                        (process.getDescription() != null && process.getDescription().contains(storeName)))) {
+    private void detectProcessToDataStoreFlows(DataStore dataStore, Set<Process> writers, List<DataFlow> flows) {
+        // Extract store name 
+        String storeName = dataStore.getName();
+        
+        // Find processes that might write to this data store
+        for (Process process : processIndex.findByNameOrDescription(storeName)) {
+            if (writers.contains(process)) {
+                // Create a flow for each output from the process
+                for (String outputDataStructureId : process.getOutputDataStructureIds()) {
+                    DataFlow flow = createFlow(
+                            process.getId(),
+                            dataStore.getId(),
+                            outputDataStructureId,
+                            DataFlowType.DATABASE_WRITE);
                     
-                    // Create a flow for each output from the process
-                    for (String outputDataStructureId : process.getOutputDataStructureIds()) {
-                        DataFlow flow = new DataFlow(
-                                "flow-" + UUID.randomUUID().toString(),
-                                process.getId(),
-                                dataStore.getId(),
-                                outputDataStructureId);
-                        
-                        flow.setType(DataFlowType.DATABASE_WRITE);
-                        flow.setDescription("Data write from " + process.getName() + " to " + dataStore.getName());
-                        
-                        // Update the data store's data structures
-                        dataStore.addDataStructureId(outputDataStructureId);
-                        
-                        flows.add(flow);
-                    }
+                    flow.setDescription("Data write from " + process.getName() + " to " + dataStore.getName());
+                    
+                    // Update the data store's data structures
+                    dataStore.addDataStructureId(outputDataStructureId);
+                    
+                    flows.add(flow);
                 }
             }
         }
     }
     
     /**
-     * Detects data flows from data stores to processes
+     * Detects data flows from a data store to processes
      */
-    private void detectDataStoreToProcessFlows(List<DataFlow> flows) {
-        for (DataStore dataStore : dataStores.values()) {
-            // Extract store name 
-            String storeName = dataStore.getName();
-            
-            // Find processes that might read from this data store
-            for (Process process : processes.values()) {
-                boolean mayRead = process.getId().contains("get") || 
-                                  process.getId().contains("find") || 
-                                  process.getId().contains("read") || 
-                                  process.getId().contains("load") || 
-                                  process.getId().contains("retrieve") || 
-                                  process.getId().contains("search");
-                
-                if (mayRead && (process.getId().contains(storeName) || 
-                        (process.getDescription() != null && process.getDescription().contains(storeName)))) {
+    private void detectDataStoreToProcessFlows(DataStore dataStore, Set<Process> readers, List<DataFlow> flows) {
+        // Extract store name 
+        String storeName = dataStore.getName();
+        
+        // Find processes that might read from this data store
+        for (Process process : processIndex.findByNameOrDescription(storeName)) {
+            if (readers.contains(process)) {
+                // Create a flow for each data structure stored in the data store
+                for (String dataStructureId : dataStore.getDataStructureIds()) {
+                    DataFlow flow = createFlow(
+                            dataStore.getId(),
+                            process.getId(),
+                            dataStructureId,
+                            DataFlowType.DATABASE_READ);
                     
-                    // Create a flow for each data structure stored in the data store
-                    for (String dataStructureId : dataStore.getDataStructureIds()) {
-                        DataFlow flow = new DataFlow(
-                                "flow-" + UUID.randomUUID().toString(),
-                                dataStore.getId(),
-                                process.getId(),
-                                dataStructureId);
-                        
-                        flow.setType(DataFlowType.DATABASE_READ);
-                        flow.setDescription("Data read from " + dataStore.getName() + " to " + process.getName());
-                        
-                        flows.add(flow);
-                    }
+                    flow.setDescription("Data read from " + dataStore.getName() + " to " + process.getName());
+                    
+                    flows.add(flow);
                 }
             }
         }
     }
+    
+    /**
+     * The fields identifying a flow
+     */
+    private static final class FlowKey {
+        private final String sourceId;
+        private final String destinationId;
+        private final String dataStructureId;
+        private final DataFlowType type;
+        
+        FlowKey(DataFlow flow) {
+            this.sourceId = flow.getSourceId();
+            this.destinationId = flow.getDestinationId();
+            this.dataStructureId = flow.getDataStructureId();
+            this.type = flow.getType();
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FlowKey)) {
+                return false;
+            }
+            FlowKey other = (FlowKey) o;
+            return Objects.equals(sourceId, other.sourceId) && Objects.equals(destinationId, other.destinationId) &&
+                    Objects.equals(dataStructureId, other.dataStructureId) && type == other.type;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(sourceId, destinationId, dataStructureId, type);
+        }
+    }
 }
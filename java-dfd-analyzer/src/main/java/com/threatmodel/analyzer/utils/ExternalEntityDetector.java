@@ -1,10 +1,10 @@
 package com.threatmodel.analyzer.utils;
 
-import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.expr.AnnotationExpr;
 import com.github.javaparser.ast.body.MethodDeclaration;
@@ -12,134 +12,171 @@ import com.threatmodel.analyzer.model.ExternalEntity;
 import com.threatmodel.analyzer.model.ExternalEntity.ExternalEntityType;
 
 /**
- * Utility class for detecting external entities based on code patterns
+ * Utility class for detecting external entities based on code patterns.
+ *
+ * The detector is driven by a tree traversal: {@link #enterClass} and {@link #exitClass}
+ * are called around each class declaration and {@link #visitMethod} for every method,
+ * so it can share a single pass over the compilation unit with other extractors.
+ * An instance collects the entities of one compilation unit.
  */
 public class ExternalEntityDetector {
     
+    private final List<ExternalEntity> restControllers = new ArrayList<>();
+    private final List<ExternalEntity> databaseConnections = new ArrayList<>();
+    private final List<ExternalEntity> serviceClients = new ArrayList<>();
+    
+    // REST controllers enclosing the current position, innermost first
+    private final Deque<ControllerScope> controllerScopes = new ArrayDeque<>();
+    
     /**
-     * Detects external entities from a compilation unit
-     * 
-     * @param cu The compilation unit to analyze
-     * @param javaFile The source file being analyzed
-     * @return A list of detected external entities
+     * Gets the detected external entities: REST controllers, then database connections,
+     * then external service clients
      */
-    public static List<ExternalEntity> detectExternalEntities(CompilationUnit cu, Path javaFile) {
-        List<ExternalEntity> entities = new ArrayList<>();
-        
+    public List<ExternalEntity> getExternalEntities() {
+        List<ExternalEntity> entities = new ArrayList<>(
+                restControllers.size() + databaseConnections.size() + serviceClients.size());
+        entities.addAll(restControllers);
+        entities.addAll(databaseConnections);
+        entities.addAll(serviceClients);
+        return entities;
+    }
+    
+    /**
+     * Inspects a class declaration before its members are visited
+     */
+    public void enterClass(ClassOrInterfaceDeclaration cls) {
         // Look for REST controllers and API endpoints
-        detectRestControllers(cu, entities);
+        controllerScopes.push(detectRestController(cls));
         
         // Look for database connections
-        detectDatabaseConnections(cu, entities);
+        detectDatabaseConnection(cls);
         
         // Look for external service clients
-        detectServiceClients(cu, entities);
-        
-        return entities;
+        detectServiceClient(cls);
     }
     
     /**
-     * Detects REST controllers and API endpoints
+     * Leaves a class declaration after its members have been visited
      */
-    private static void detectRestControllers(CompilationUnit cu, List<ExternalEntity> entities) {
-        cu.findAll(ClassOrInterfaceDeclaration.class).forEach(cls -> {
-            // Check for Spring RestController/Controller annotations
-            boolean isRestController = cls.getAnnotations().stream()
-                    .anyMatch(a -> a.getNameAsString().contains("RestController") || 
-                                  a.getNameAsString().contains("Controller"));
+    public void exitClass(ClassOrInterfaceDeclaration cls) {
+        controllerScopes.pop();
+    }
+    
+    /**
+     * Inspects a method declaration, recording it as an endpoint of every enclosing REST controller
+     */
+    public void visitMethod(MethodDeclaration method) {
+        AnnotationExpr mapping = null;
+        for (ControllerScope scope : controllerScopes) {
+            if (scope == ControllerScope.NONE) {
+                continue;
+            }
             
-            if (isRestController) {
-                // Extract the base path from RequestMapping if available
-                String basePath = extractRequestMappingPath(cls);
-                String entityName = "WebClient-" + cls.getNameAsString();
-                
-                ExternalEntity entity = new ExternalEntity(entityName);
-                entity.setDescription("Web client accessing REST endpoints in " + cls.getNameAsString());
-                entity.setType(ExternalEntityType.USER);
-                entity.addProtocol("HTTP/HTTPS");
-                
-                if (basePath != null && !basePath.isEmpty()) {
-                    entity.addMetadata("basePath", basePath);
+            if (mapping == null) {
+                mapping = method.getAnnotations().stream()
+                        .filter(a -> a.getNameAsString().contains("Mapping"))
+                        .findFirst()
+                        .orElse(null);
+                if (mapping == null) {
+                    return;
                 }
-                
-                entities.add(entity);
-                
-                // Extract individual endpoints
-                cls.findAll(MethodDeclaration.class).forEach(method -> {
-                    method.getAnnotations().stream()
-                            .filter(a -> a.getNameAsString().contains("Mapping"))
-                            .findFirst()
-                            .ifPresent(mapping -> {
-                                String endpointPath = extractMappingPath(mapping);
-                                if (endpointPath != null && !endpointPath.isEmpty()) {
-                                    String fullPath = (basePath != null ? basePath : "") + endpointPath;
-                                    entity.addMetadata("endpoint-" + method.getNameAsString(), fullPath);
-                                }
-                            });
-                });
             }
-        });
+            
+            String endpointPath = extractMappingPath(mapping);
+            if (endpointPath != null && !endpointPath.isEmpty()) {
+                String fullPath = (scope.basePath != null ? scope.basePath : "") + endpointPath;
+                scope.entity.addMetadata("endpoint-" + method.getNameAsString(), fullPath);
+            }
+        }
+    }
+    
+    /**
+     * Detects REST controllers and API endpoints
+     */
+    private ControllerScope detectRestController(ClassOrInterfaceDeclaration cls) {
+        // Check for Spring RestController/Controller annotations
+        boolean isRestController = cls.getAnnotations().stream()
+                .anyMatch(a -> a.getNameAsString().contains("RestController") ||
+                              a.getNameAsString().contains("Controller"));
+        
+        if (!isRestController) {
+            return ControllerScope.NONE;
+        }
+        
+        // Extract the base path from RequestMapping if available
+        String basePath = extractRequestMappingPath(cls);
+        String entityName = "WebClient-" + cls.getNameAsString();
+        
+        ExternalEntity entity = new ExternalEntity(entityName);
+        entity.setDescription("Web client accessing REST endpoints in " + cls.getNameAsString());
+        entity.setType(ExternalEntityType.USER);
+        entity.addProtocol("HTTP/HTTPS");
+        
+        if (basePath != null && !basePath.isEmpty()) {
+            entity.addMetadata("basePath", basePath);
+        }
+        
+        restControllers.add(entity);
+        
+        // Individual endpoints are extracted as the controller's methods are visited
+        return new ControllerScope(entity, basePath);
     }
     
     /**
      * Detects database connections
      */
-    private static void detectDatabaseConnections(CompilationUnit cu, List<ExternalEntity> entities) {
-        cu.findAll(ClassOrInterfaceDeclaration.class).forEach(cls -> {
-            // Check for repository classes
-            boolean isRepository = cls.getAnnotations().stream()
-                    .anyMatch(a -> a.getNameAsString().contains("Repository")) ||
-                    cls.getNameAsString().contains("Repository") ||
-                    cls.getNameAsString().contains("DAO");
+    private void detectDatabaseConnection(ClassOrInterfaceDeclaration cls) {
+        // Check for repository classes
+        boolean isRepository = cls.getAnnotations().stream()
+                .anyMatch(a -> a.getNameAsString().contains("Repository")) ||
+                cls.getNameAsString().contains("Repository") ||
+                cls.getNameAsString().contains("DAO");
+        
+        if (isRepository) {
+            String entityName = "Database-" + cls.getNameAsString();
             
-            if (isRepository) {
-                String entityName = "Database-" + cls.getNameAsString();
-                
-                ExternalEntity entity = new ExternalEntity(entityName);
-                entity.setDescription("Database accessed by " + cls.getNameAsString());
-                entity.setType(ExternalEntityType.DATABASE);
-                entity.addProtocol("JDBC/SQL");
-                
-                entities.add(entity);
-            }
-        });
+            ExternalEntity entity = new ExternalEntity(entityName);
+            entity.setDescription("Database accessed by " + cls.getNameAsString());
+            entity.setType(ExternalEntityType.DATABASE);
+            entity.addProtocol("JDBC/SQL");
+            
+            databaseConnections.add(entity);
+        }
     }
     
     /**
      * Detects external service clients
      */
-    private static void detectServiceClients(CompilationUnit cu, List<ExternalEntity> entities) {
-        cu.findAll(ClassOrInterfaceDeclaration.class).forEach(cls -> {
-            // Check for service clients
-            boolean isServiceClient = cls.getAnnotations().stream()
-                    .anyMatch(a -> a.getNameAsString().contains("FeignClient") || 
-                                  a.getNameAsString().contains("Service")) ||
-                    cls.getNameAsString().contains("Client") ||
-                    cls.getNameAsString().contains("Service");
+    private void detectServiceClient(ClassOrInterfaceDeclaration cls) {
+        // Check for service clients
+        boolean isServiceClient = cls.getAnnotations().stream()
+                .anyMatch(a -> a.getNameAsString().contains("FeignClient") ||
+                              a.getNameAsString().contains("Service")) ||
+                cls.getNameAsString().contains("Client") ||
+                cls.getNameAsString().contains("Service");
+        
+        if (isServiceClient) {
+            String entityName = "Service-" + cls.getNameAsString();
             
-            if (isServiceClient) {
-                String entityName = "Service-" + cls.getNameAsString();
-                
-                ExternalEntity entity = new ExternalEntity(entityName);
-                entity.setDescription("External service accessed by " + cls.getNameAsString());
-                entity.setType(ExternalEntityType.SERVICE);
-                
-                // Try to determine the protocol
-                if (cls.getNameAsString().contains("Rest")) {
-                    entity.addProtocol("HTTP/HTTPS");
-                } else if (cls.getNameAsString().contains("Soap")) {
-                    entity.addProtocol("SOAP");
-                } else if (cls.getNameAsString().contains("Kafka")) {
-                    entity.addProtocol("Kafka");
-                } else if (cls.getNameAsString().contains("Jms")) {
-                    entity.addProtocol("JMS");
-                } else {
-                    entity.addProtocol("Unknown");
-                }
-                
-                entities.add(entity);
+            ExternalEntity entity = new ExternalEntity(entityName);
+            entity.setDescription("External service accessed by " + cls.getNameAsString());
+            entity.setType(ExternalEntityType.SERVICE);
+            
+            // Try to determine the protocol
+            if (cls.getNameAsString().contains("Rest")) {
+                entity.addProtocol("HTTP/HTTPS");
+            } else if (cls.getNameAsString().contains("Soap")) {
+                entity.addProtocol("SOAP");
+            } else if (cls.getNameAsString().contains("Kafka")) {
+                entity.addProtocol("Kafka");
+            } else if (cls.getNameAsString().contains("Jms")) {
+                entity.addProtocol("JMS");
+            } else {
+                entity.addProtocol("Unknown");
             }
-        });
+            
+            serviceClients.add(entity);
+        }
     }
     
     /**
@@ -168,4 +205,19 @@ public class ExternalEntityDetector {
         }
         return "";
     }
+    
+    /**
+     * A REST controller enclosing the current traversal position
+     */
+    private static class ControllerScope {
+        static final ControllerScope NONE = new ControllerScope(null, null);
+        
+        final ExternalEntity entity;
+        final String basePath;
+        
+        ControllerScope(ExternalEntity entity, String basePath) {
+            this.entity = entity;
+            this.basePath = basePath;
+        }
+    }
 }
@@ -0,0 +1,213 @@
+package com.threatmodel.analyzer.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.threatmodel.analyzer.model.Process;
+
+/**
+ * Lookup structures over the processes of a project, built once and shared by the
+ * data flow detection phases.
+ *
+ * Besides the consumers of each data structure, the index answers substring queries on
+ * process IDs and descriptions from a trigram index: the candidates for a query are the
+ * processes containing all of its trigrams, and only those are checked with
+ * {@link String#contains}. Results are exactly those of a scan over all processes.
+ *
+ * Lists returned by the index keep the order in which the processes were given, so that
+ * detection emits flows in the same order as a scan over all processes would.
+ * The index is immutable after construction and safe to query from several threads.
+ */
+public class ProcessIndex {
+    
+    private static final int GRAM_LENGTH = 3;
+    
+    private final List<Process> processes;
+    
+    // Processes taking each data structure as input
+    private final Map<String, List<Process>> consumers = new HashMap<>();
+    
+    // Ordinals of the processes whose ID or description contains each trigram, ascending
+    private final Map<Long, int[]> postings = new HashMap<>();
+    
+    // Results of repeated queries, e.g. the same controller name in the input and output phases
+    private final Map<String, List<Process>> nameMatches = new ConcurrentHashMap<>();
+    private final Map<String, List<Process>> nameOrDescriptionMatches = new ConcurrentHashMap<>();
+    
+    public ProcessIndex(Collection<Process> processes) {
+        this.processes = new ArrayList<>(processes);
+        
+        Map<Long, IntList> grams = new HashMap<>();
+        Set<Long> processGrams = new HashSet<>();
+        for (int ordinal = 0; ordinal < this.processes.size(); ordinal++) {
+            Process process = this.processes.get(ordinal);
+            
+            for (String inputDataStructureId : process.getInputDataStructureIds()) {
+                consumers.computeIfAbsent(inputDataStructureId, id -> new ArrayList<>()).add(process);
+            }
+            
+            processGrams.clear();
+            addGrams(process.getId(), processGrams);
+            addGrams(process.getDescription(), processGrams);
+            for (Long gram : processGrams) {
+                grams.computeIfAbsent(gram, g -> new IntList()).add(ordinal);
+            }
+        }
+        grams.forEach((gram, ordinals) -> postings.put(gram, ordinals.toArray()));
+    }
+    
+    /**
+     * Gets all indexed processes
+     */
+    public List<Process> getProcesses() {
+        return processes;
+    }
+    
+    /**
+     * Gets the processes that take a data structure as input
+     *
+     * @param dataStructureId The ID of the data structure
+     * @return The consuming processes, or an empty list if there are none
+     */
+    public List<Process> getConsumers(String dataStructureId) {
+        return consumers.getOrDefault(dataStructureId, Collections.emptyList());
+    }
+    
+    /**
+     * Finds the processes whose ID contains a name
+     */
+    public List<Process> findByName(String name) {
+        return nameMatches.computeIfAbsent(name, n -> find(n, false));
+    }
+    
+    /**
+     * Finds the processes whose ID or description contains a name
+     */
+    public List<Process> findByNameOrDescription(String name) {
+        return nameOrDescriptionMatches.computeIfAbsent(name, n -> find(n, true));
+    }
+    
+    /**
+     * Finds the processes whose ID contains any of the given names
+     */
+    public Set<Process> findByAnyName(Collection<String> names) {
+        Set<Process> matches = new LinkedHashSet<>();
+        for (String name : names) {
+            matches.addAll(findByName(name));
+        }
+        return matches;
+    }
+    
+    /**
+     * Finds matching processes, checking only the candidates that contain all trigrams of the text
+     */
+    private List<Process> find(String text, boolean includeDescriptions) {
+        List<Process> matches = new ArrayList<>();
+        
+        // Texts shorter than a trigram cannot be looked up
+        if (text.length() < GRAM_LENGTH) {
+            for (Process process : processes) {
+                if (matches(process, text, includeDescriptions)) {
+                    matches.add(process);
+                }
+            }
+            return matches;
+        }
+        
+        Set<Long> textGrams = new HashSet<>();
+        addGrams(text, textGrams);
+        List<int[]> lists = new ArrayList<>(textGrams.size());
+        for (Long gram : textGrams) {
+            int[] ordinals = postings.get(gram);
+            if (ordinals == null) {
+                return matches;
+            }
+            lists.add(ordinals);
+        }
+        
+        // Intersect starting from the rarest trigram
+        lists.sort(Comparator.comparingInt(ordinals -> ordinals.length));
+        int[] candidates = lists.get(0);
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            candidates = intersect(candidates, count, lists.get(i));
+            count = candidates.length;
+        }
+        
+        for (int i = 0; i < count; i++) {
+            Process process = processes.get(candidates[i]);
+            if (matches(process, text, includeDescriptions)) {
+                matches.add(process);
+            }
+        }
+        return matches;
+    }
+    
+    private static boolean matches(Process process, String text, boolean includeDescriptions) {
+        return process.getId().contains(text) ||
+                includeDescriptions && process.getDescription() != null && process.getDescription().contains(text);
+    }
+    
+    /**
+     * Intersects two ascending lists of ordinals
+     */
+    private static int[] intersect(int[] a, int aLength, int[] b) {
+        int[] result = new int[Math.min(aLength, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < aLength && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    /**
+     * Adds the trigrams of a text, each packed into a long
+     */
+    private static void addGrams(String text, Set<Long> grams) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+    }
+    
+    /**
+     * A growable list of ordinals
+     */
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
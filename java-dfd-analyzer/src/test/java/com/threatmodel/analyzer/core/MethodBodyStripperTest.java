@@ -0,0 +1,205 @@
+package com.threatmodel.analyzer.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ParserConfiguration.LanguageLevel;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.stmt.BlockStmt;
+
+/**
+ * Checks that parsing the stripped declarations, and the removed bodies on request, gives the
+ * same declarations and bodies as a full parse
+ */
+class MethodBodyStripperTest {
+
+    private final JavaParser javaParser = new JavaParser(
+            new ParserConfiguration().setLanguageLevel(LanguageLevel.JAVA_17));
+
+    @Test
+    void keepsTheClassBodiesOfEnumConstants() {
+        String source = String.join("\n",
+                "enum Operation {",
+                "    PLUS(\"+\") {",
+                "        int apply(int a, int b) { return a + b; }",
+                "    },",
+                "    NEGATE {",
+                "        int apply(int a, int b) { return -a; }",
+                "    };",
+                "    Operation() { this(\"\"); }",
+                "    Operation(String symbol) { }",
+                "    abstract int apply(int a, int b);",
+                "}");
+
+        assertSameAsFullParse(source, 4);
+    }
+
+    @Test
+    void keepsAnnotationElementDefaults() {
+        String source = String.join("\n",
+                "@interface Roles {",
+                "    String[] value() default { \"admin\", \"user\" };",
+                "    int[] levels() default {};",
+                "}",
+                "interface Named {",
+                "    default String name() { return \"x\"; }",
+                "}");
+
+        MethodBodies bodies = MethodBodyStripper.strip(source);
+        assertTrue(bodies.getDeclarations().contains("default { \"admin\", \"user\" }"));
+        assertSameAsFullParse(source, 1);
+    }
+
+    @Test
+    void skipsBracesInTextBlocks() {
+        String source = String.join("\n",
+                "class Templates {",
+                "    static final String OPEN = \"\"\"",
+                "        { \"a\": \"}\" \\\"\"\" }",
+                "        \"\"\";",
+                "    String render() {",
+                "        return \"\"\"",
+                "            }} class X {",
+                "            \"\"\";",
+                "    }",
+                "    void after() { render(); }",
+                "}");
+
+        assertSameAsFullParse(source, 2);
+    }
+
+    @Test
+    void skipsBracesInComments() {
+        String source = String.join("\n",
+                "class Commented {",
+                "    // }",
+                "    /* { */",
+                "    void first() {",
+                "        // }",
+                "        /* } */",
+                "        int x = '}';",
+                "    }",
+                "    /** Closes with } */",
+                "    void second() { /* { */ }",
+                "}");
+
+        assertSameAsFullParse(source, 2);
+    }
+
+    @Test
+    void keepsAnonymousClassesInFieldInitializers() {
+        String source = String.join("\n",
+                "class Holder {",
+                "    private final Runnable task = new Runnable() {",
+                "        @Override",
+                "        public void run() { work(); }",
+                "    };",
+                "    private final Object lock = new Object() { };",
+                "    void work() { task.run(); }",
+                "}");
+
+        MethodBodies bodies = MethodBodyStripper.strip(source);
+        assertTrue(bodies.getDeclarations().contains("public void run() { work(); }"));
+        assertSameAsFullParse(source, 1);
+    }
+
+    @Test
+    void handlesAnnotationValuesAndLambdas() {
+        String source = String.join("\n",
+                "class Handlers {",
+                "    @SuppressWarnings({ \"unchecked\", \"rawtypes\" })",
+                "    private final java.util.function.Supplier<String> supplier = () -> { return \"x\"; };",
+                "    @Deprecated(since = \"1\") @SuppressWarnings({ \"unused\" })",
+                "    void handle(@SuppressWarnings({ \"a\" }) Runnable r) {",
+                "        Runnable local = () -> { };",
+                "    }",
+                "    void after() { }",
+                "}");
+
+        MethodBodies bodies = MethodBodyStripper.strip(source);
+        assertTrue(bodies.getDeclarations().contains("() -> { return \"x\"; }"));
+        assertSameAsFullParse(source, 2);
+    }
+
+    @Test
+    void treatsRecordAsAnIdentifierUnlessATypeNameFollows() {
+        String source = String.join("\n",
+                "class Recorder {",
+                "    private int record = 0;",
+                "    void record(int record) { this.record = record; }",
+                "    record Point(int x, int y) {",
+                "        Point {",
+                "            check(x);",
+                "        }",
+                "        static void check(int value) { }",
+                "    }",
+                "}");
+
+        assertSameAsFullParse(source, 2);
+    }
+
+    @Test
+    void copiesUnicodeEscapesInLiterals() {
+        String source = String.join("\n",
+                "class Escapes {",
+                "    static final String OPEN = \"\\u007B\";",
+                "    char close() { return '\\u007D'; }",
+                "    void after() { }",
+                "}");
+
+        MethodBodies bodies = MethodBodyStripper.strip(source);
+        assertTrue(bodies.getDeclarations().contains("\"\\u007B\""));
+        assertSameAsFullParse(source, 2);
+    }
+
+    /**
+     * Parses a source in full and stripped, and checks that both give the same declarations and,
+     * once the removed bodies are requested, the same bodies
+     *
+     * @param removedBodies The number of bodies the stripper is expected to remove
+     */
+    private void assertSameAsFullParse(String source, int removedBodies) {
+        CompilationUnit full = parse(source);
+        MethodBodies bodies = MethodBodyStripper.strip(source, true);
+        CompilationUnit stripped = parse(bodies.getDeclarations());
+        bodies.attach(stripped, javaParser);
+
+        assertEquals(removedBodies, bodies.size());
+        assertEquals(typeNames(full), typeNames(stripped));
+        assertEquals(bodiesOf(full), bodiesOf(stripped));
+    }
+
+    private CompilationUnit parse(String source) {
+        ParseResult<CompilationUnit> result = javaParser.parse(source);
+        assertTrue(result.isSuccessful(), () -> result.getProblems() + " in\n" + source);
+        return result.getResult().get();
+    }
+
+    private static List<String> typeNames(CompilationUnit cu) {
+        return cu.findAll(TypeDeclaration.class).stream()
+                .map(type -> type.getNameAsString())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lists the signatures, positions and bodies of all methods and constructors
+     */
+    private static List<String> bodiesOf(CompilationUnit cu) {
+        return cu.findAll(CallableDeclaration.class).stream()
+                .map(callable -> callable.getDeclarationAsString() + " at " + callable.getBegin().get() + ": "
+                        + MethodBodies.getBody(callable).map(BlockStmt::toString).orElse("none")
+                        + MethodBodies.getBody(callable).flatMap(Node::getBegin).map(String::valueOf).orElse(""))
+                .collect(Collectors.toList());
+    }
+}
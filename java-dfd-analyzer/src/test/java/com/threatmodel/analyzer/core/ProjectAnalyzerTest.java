@@ -0,0 +1,153 @@
+package com.threatmodel.analyzer.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.threatmodel.analyzer.model.AnalysisResult;
+import com.threatmodel.analyzer.model.DataFlow;
+import com.threatmodel.analyzer.model.DataStore;
+import com.threatmodel.analyzer.model.DataStructure;
+import com.threatmodel.analyzer.model.ExternalEntity;
+import com.threatmodel.analyzer.model.Process;
+
+/**
+ * Checks that extracting files on several worker threads gives the same result as a sequential run
+ */
+class ProjectAnalyzerTest {
+
+    private static final int MODULES = 12;
+
+    @TempDir
+    Path projectDir;
+
+    @Test
+    void parallelExtractionMatchesASequentialRun() throws IOException {
+        for (int module = 0; module < MODULES; module++) {
+            writeModule(module);
+        }
+
+        List<String> sequential = describe(analyze(1));
+        List<String> parallel = describe(analyze(4));
+
+        assertFalse(sequential.isEmpty());
+        assertEquals(sequential, parallel);
+    }
+
+    private AnalysisResult analyze(int parallelism) throws IOException {
+        AnalyzerOptions options = new AnalyzerOptions();
+        options.setParallelism(parallelism);
+        try (ProjectAnalyzer analyzer = new ProjectAnalyzer(projectDir, options)) {
+            return analyzer.analyze();
+        }
+    }
+
+    /**
+     * Lists the components and flows of a result in order, with the properties the outputs show
+     */
+    private static List<String> describe(AnalysisResult result) {
+        List<String> lines = new ArrayList<>();
+        for (DataStructure dataStructure : result.getDataStructures()) {
+            lines.add("structure " + dataStructure.getFullyQualifiedName() + " " + dataStructure.getType()
+                    + " " + dataStructure.getFields().size());
+        }
+        for (Process process : result.getProcesses()) {
+            lines.add("process " + process.getId() + " " + process.getInputDataStructureIds()
+                    + " " + process.getOutputDataStructureIds() + " " + process.getSourceFilePath());
+        }
+        for (ExternalEntity externalEntity : result.getExternalEntities()) {
+            lines.add("entity " + externalEntity.getName() + " " + externalEntity.getType()
+                    + " " + externalEntity.getProtocols());
+        }
+        for (DataStore dataStore : result.getDataStores()) {
+            lines.add("store " + dataStore.getId() + " " + dataStore.getDataStructureIds());
+        }
+        for (DataFlow flow : result.getDataFlows()) {
+            lines.add("flow " + flow.getId() + " " + flow.getSourceId() + " -> " + flow.getDestinationId()
+                    + " " + flow.getDataStructureId() + " " + flow.getMultiplicity());
+        }
+        return lines;
+    }
+
+    /**
+     * Writes an entity, a DTO, a repository, a service and a controller. Every module also has a
+     * shared {@code Util} class with an overloaded method, so that merging depends on file order.
+     */
+    private void writeModule(int module) throws IOException {
+        String pkg = "com.example.m" + module;
+        String base = "Item" + module;
+        Path dir = projectDir.resolve("src/main/java/com/example/m" + module);
+        Files.createDirectories(dir);
+
+        write(dir.resolve(base + "Entity.java"), String.join("\n",
+                "package " + pkg + ";",
+                "import javax.persistence.Entity;",
+                "import javax.persistence.Id;",
+                "@Entity",
+                "public class " + base + "Entity {",
+                "    @Id",
+                "    private Long id;",
+                "    private String password;",
+                "    public Long getId() { return id; }",
+                "}"));
+        write(dir.resolve(base + "DTO.java"), String.join("\n",
+                "package " + pkg + ";",
+                "public class " + base + "DTO {",
+                "    private Long id;",
+                "    private String email;",
+                "}"));
+        write(dir.resolve(base + "Repository.java"), String.join("\n",
+                "package " + pkg + ";",
+                "import org.springframework.data.jpa.repository.JpaRepository;",
+                "import org.springframework.stereotype.Repository;",
+                "@Repository",
+                "public interface " + base + "Repository extends JpaRepository<" + base + "Entity, Long> {",
+                "    " + base + "Entity save(" + base + "Entity entity);",
+                "}"));
+        write(dir.resolve(base + "Service.java"), String.join("\n",
+                "package " + pkg + ";",
+                "import org.springframework.stereotype.Service;",
+                "@Service",
+                "public class " + base + "Service {",
+                "    private final " + base + "Repository repository;",
+                "    public " + base + "Service(" + base + "Repository repository) { this.repository = repository; }",
+                "    public " + base + "Entity save(" + base + "DTO request) {",
+                "        return repository.save(new " + base + "Entity());",
+                "    }",
+                "    public " + base + "DTO find(" + base + "Entity entity) { return new " + base + "DTO(); }",
+                "}"));
+        write(dir.resolve(base + "Controller.java"), String.join("\n",
+                "package " + pkg + ";",
+                "import org.springframework.web.bind.annotation.*;",
+                "@RestController",
+                "@RequestMapping(\"/api/items" + module + "\")",
+                "public class " + base + "Controller {",
+                "    private final " + base + "Service service;",
+                "    public " + base + "Controller(" + base + "Service service) { this.service = service; }",
+                "    @PostMapping",
+                "    public " + base + "DTO create(@RequestBody " + base + "DTO request) {",
+                "        service.save(request);",
+                "        return request;",
+                "    }",
+                "}"));
+        write(dir.resolve("Util.java"), String.join("\n",
+                "package " + pkg + ";",
+                "public class Util {",
+                "    public static " + base + "DTO convert(" + base + "Entity entity) { return null; }",
+                "    public static " + base + "Entity convert(" + base + "DTO dto) { return null; }",
+                "}"));
+    }
+
+    private static void write(Path file, String source) throws IOException {
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+    }
+}
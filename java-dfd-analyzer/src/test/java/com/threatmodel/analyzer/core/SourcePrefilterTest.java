@@ -0,0 +1,166 @@
+package com.threatmodel.analyzer.core;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the prefilter only spares files the work that cannot find anything in them
+ */
+class SourcePrefilterTest {
+
+    @Test
+    void needsMethodBodiesForEnumConstantBodies() {
+        assertTrue(needsMethodBodies(
+                "enum Operation {",
+                "    PLUS(1) { int apply(int a) { return a + 1; } },",
+                "    NONE;",
+                "}"));
+        assertTrue(needsMethodBodies(
+                "enum Operation {",
+                "    NEGATE { int apply(int a) { return -a; } }",
+                "}"));
+        assertFalse(needsMethodBodies(
+                "enum Level {",
+                "    LOW(1), HIGH(2);",
+                "    Level(int weight) { }",
+                "    int weight() { return switch (this) { case LOW -> 1; default -> 2; }; }",
+                "}"));
+    }
+
+    @Test
+    void ignoresTextBlocks() {
+        assertFalse(needsMethodBodies(
+                "class Templates {",
+                "    String render() {",
+                "        return \"\"\"",
+                "            class Local { \\\"\"\" new Object() { }",
+                "            \"\"\";",
+                "    }",
+                "}"));
+        assertFalse(mayDeclareEntities(
+                "class Templates {",
+                "    static final String TEXT = \"\"\"",
+                "        OrderService",
+                "        \"\"\";",
+                "}"));
+    }
+
+    @Test
+    void ignoresComments() {
+        assertFalse(needsMethodBodies(
+                "class Commented {",
+                "    void run() {",
+                "        // class Local { }",
+                "        /* new Object() { } */",
+                "        /** } enum E { A { } } */",
+                "    }",
+                "}"));
+        assertFalse(mayDeclareEntities(
+                "/** Calls the UserRepository */",
+                "class Commented { // CustomerController",
+                "}"));
+    }
+
+    @Test
+    void needsMethodBodiesOnlyForAnonymousClassesInMethods() {
+        assertFalse(needsMethodBodies(
+                "class Holder {",
+                "    private final Runnable task = new Runnable() {",
+                "        public void run() { }",
+                "    };",
+                "    void work() { task.run(); new Object(); }",
+                "}"));
+        assertTrue(needsMethodBodies(
+                "class Holder {",
+                "    void work() {",
+                "        Runnable task = new Runnable() { public void run() { } };",
+                "    }",
+                "}"));
+        assertTrue(needsMethodBodies(
+                "class Holder {",
+                "    void work(java.util.List<Runnable> tasks) {",
+                "        tasks.add(new Runnable() { public void run() { } });",
+                "    }",
+                "}"));
+    }
+
+    @Test
+    void treatsLambdasAndAnnotationValuesAsCode() {
+        assertFalse(needsMethodBodies(
+                "class Handlers {",
+                "    @SuppressWarnings({ \"unchecked\" })",
+                "    void handle() {",
+                "        Runnable r = () -> { System.out.println(\"{\"); };",
+                "        java.util.function.Function<String, Integer> f = s -> { return s.length(); };",
+                "    }",
+                "}"));
+        assertTrue(needsMethodBodies(
+                "class Handlers {",
+                "    void handle(java.util.concurrent.Executor executor) {",
+                "        executor.execute(() -> { class Task { } new Task(); });",
+                "    }",
+                "}"));
+    }
+
+    @Test
+    void treatsRecordAsAnIdentifierUnlessATypeNameFollows() {
+        assertFalse(needsMethodBodies(
+                "class Recorder {",
+                "    int record;",
+                "    void update(int value) {",
+                "        record = value;",
+                "        this.record = record + 1;",
+                "        record(record);",
+                "    }",
+                "    void record(int record) { }",
+                "}"));
+        assertTrue(needsMethodBodies(
+                "class Recorder {",
+                "    void update() {",
+                "        record Point(int x, int y) { }",
+                "    }",
+                "}"));
+    }
+
+    @Test
+    void doesNotFilterFilesWithUnicodeEscapesOutsideLiterals() {
+        // The escape spells "class", which would otherwise go unnoticed
+        SourcePrefilter.Route route = scan(
+                "class Escaped {",
+                "    void run() {",
+                "        \\u0063lass Local { }",
+                "    }",
+                "}");
+        assertTrue(route.needsMethodBodies());
+        assertTrue(route.mayDeclareEntities());
+
+        assertFalse(needsMethodBodies(
+                "class Escaped {",
+                "    String open() { return \"\\u007B\" + '\\u007D'; }",
+                "}"));
+    }
+
+    @Test
+    void findsEntityMarkersInIdentifiers() {
+        assertTrue(mayDeclareEntities("class OrderService { }"));
+        assertTrue(mayDeclareEntities("class Orders { private javax.sql.DataSource source; }"));
+        assertTrue(mayDeclareEntities("@Entity class Order { }"));
+        assertFalse(mayDeclareEntities("class Order { String name; }"));
+    }
+
+    private static boolean needsMethodBodies(String... lines) {
+        return scan(lines).needsMethodBodies();
+    }
+
+    private static boolean mayDeclareEntities(String... lines) {
+        return scan(lines).mayDeclareEntities();
+    }
+
+    private static SourcePrefilter.Route scan(String... lines) {
+        return SourcePrefilter.scan(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,120 @@
+package com.threatmodel.analyzer.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that type names resolve in the order the compiler uses: member types of the enclosing
+ * classes, then single-type imports, then the package of the file, then on-demand imports
+ */
+class TypeIndexTest {
+
+    private final TypeIndex index = new TypeIndex(Arrays.asList(
+            "com.app.web.UserController",
+            "com.app.web.UserController.Request",
+            "com.app.web.UserController.Request.Body",
+            "com.app.web.Request",
+            "com.app.web.UserDTO",
+            "com.app.api.Request",
+            "com.app.api.UserDTO",
+            "com.app.api.OrderDTO",
+            "com.app.model.OrderDTO",
+            "com.app.model.Status",
+            "com.app.model.List"));
+
+    @Test
+    void memberTypesOfEnclosingClassesComeFirst() {
+        FileExtraction file = file("com.app.web");
+        file.addImport("com.app.api.Request");
+
+        assertEquals("com.app.web.UserController.Request",
+                index.resolve("Request", file, "com.app.web.UserController"));
+        assertEquals("com.app.web.UserController.Request",
+                index.resolve("Request", file, "com.app.web.UserController.Request.Body"));
+        assertEquals("com.app.web.UserController.Request.Body",
+                index.resolve("Request.Body", file, "com.app.web.UserController"));
+    }
+
+    @Test
+    void singleTypeImportsShadowThePackage() {
+        FileExtraction file = file("com.app.web");
+        file.addImport("com.app.api.Request");
+        file.addImport("com.app.api.UserDTO");
+
+        assertEquals("com.app.api.Request", index.resolve("Request", file, "com.app.web.Other"));
+        assertEquals("com.app.api.UserDTO", index.resolve("UserDTO", file, null));
+    }
+
+    @Test
+    void singleTypeImportsOfOtherTypesShadowIndexedTypes() {
+        FileExtraction file = file("com.app.model");
+        file.addImport("java.util.List");
+
+        assertNull(index.resolve("List", file, "com.app.model.Status"));
+    }
+
+    @Test
+    void packageComesBeforeOnDemandImports() {
+        FileExtraction file = file("com.app.web");
+        file.addWildcardImport("com.app.api");
+
+        assertEquals("com.app.web.UserDTO", index.resolve("UserDTO", file, null));
+        assertEquals("com.app.api.OrderDTO", index.resolve("OrderDTO", file, null));
+    }
+
+    @Test
+    void onDemandImportsAreTriedInOrder() {
+        FileExtraction file = file("com.app.web");
+        file.addWildcardImport("com.app.model");
+        file.addWildcardImport("com.app.api");
+
+        assertEquals("com.app.model.OrderDTO", index.resolve("OrderDTO", file, null));
+        assertEquals("com.app.model.Status", index.resolve("Status", file, null));
+    }
+
+    @Test
+    void qualifiedNamesResolveToThemselves() {
+        FileExtraction file = file("com.app.web");
+        file.addImport("com.app.api.UserDTO");
+
+        assertEquals("com.app.web.UserDTO", index.resolve("com.app.web.UserDTO", file, null));
+    }
+
+    @Test
+    void unknownNamesAreRejected() {
+        FileExtraction file = file("com.app.web");
+        file.addWildcardImport("com.app.api");
+
+        assertNull(index.resolve("String", file, null));
+        assertNull(index.resolve("Missing", file, "com.app.web.UserController"));
+        assertNull(index.resolve("Status", file, null));
+    }
+
+    @Test
+    void resolvesTypeArgumentsAndArrayElements() {
+        FileExtraction file = file("com.app.web");
+        file.addImport("java.util.List");
+        file.addImport("com.app.api.UserDTO");
+        file.addWildcardImport("com.app.model");
+
+        assertEquals(Collections.singletonList("com.app.api.UserDTO"),
+                index.resolveAll("Map<String, List<UserDTO>>[]", file, null));
+        assertEquals(Arrays.asList("com.app.model.OrderDTO", "com.app.api.UserDTO"),
+                index.resolveAll("Map<OrderDTO[], Optional<UserDTO>>", file, null));
+        assertEquals(Collections.singletonList("com.app.api.UserDTO"),
+                index.resolveAll("Map<UserDTO, UserDTO>", file, null));
+        assertEquals(Collections.singletonList("com.app.model.Status"),
+                index.resolveAll("@Valid Status", file, null));
+    }
+
+    private static FileExtraction file(String packageName) {
+        FileExtraction file = new FileExtraction("Test.java");
+        file.setPackageName(packageName);
+        return file;
+    }
+}
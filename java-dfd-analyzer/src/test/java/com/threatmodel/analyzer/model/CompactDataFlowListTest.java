@@ -0,0 +1,138 @@
+package com.threatmodel.analyzer.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.threatmodel.analyzer.model.DataFlow.DataFlowType;
+
+/**
+ * Checks that flows read back from the columns equal the flows that were added
+ */
+class CompactDataFlowListTest {
+
+    private static final String[] DESCRIPTIONS = {
+            null, "", "Web request from WebClient-UserController to create", "  leading and trailing  ",
+            "double  spaces", "single", "café über", " " };
+
+    @Test
+    void getReturnsEveryFieldOfTheAddedFlows() {
+        List<DataFlow> flows = flows(200);
+        CompactDataFlowList list = new CompactDataFlowList();
+        list.addAll(flows);
+
+        assertEquals(flows.size(), list.size());
+        for (int i = 0; i < flows.size(); i++) {
+            assertFlowEquals(flows.get(i), list.get(i));
+        }
+    }
+
+    @Test
+    void derivedIdsAreRecomputedAndCustomIdsKept() {
+        CompactDataFlowList list = new CompactDataFlowList();
+        DataFlow derived = DataFlow.withDerivedId("a", "b", "c", DataFlowType.INPUT);
+        DataFlow custom = new DataFlow("flow-custom", "a", "b", "c");
+        custom.setType(DataFlowType.INPUT);
+        DataFlow explicitDerived = new DataFlow(DataFlow.computeId("a", "b", "c", DataFlowType.OUTPUT), "a", "b", "c");
+        explicitDerived.setType(DataFlowType.OUTPUT);
+        DataFlow changed = DataFlow.withDerivedId("a", "b", "c", DataFlowType.INPUT);
+        changed.getId();
+        changed.setDestinationId("d");
+        list.add(derived);
+        list.add(custom);
+        list.add(explicitDerived);
+        list.add(changed);
+
+        assertEquals(DataFlow.computeId("a", "b", "c", DataFlowType.INPUT), list.get(0).getId());
+        assertEquals("flow-custom", list.get(1).getId());
+        assertEquals(explicitDerived.getId(), list.get(2).getId());
+        assertEquals(DataFlow.computeId("a", "d", "c", DataFlowType.INPUT), list.get(3).getId());
+    }
+
+    @Test
+    void sharesStringsBetweenFlows() {
+        CompactDataFlowList list = new CompactDataFlowList();
+        list.addAll(flows(200));
+
+        // Component IDs, data structures, protocols and description words are each stored once
+        assertTrue(list.getStringCount() < 100, String.valueOf(list.getStringCount()));
+    }
+
+    @Test
+    void canBeReusedAfterClear() {
+        CompactDataFlowList list = new CompactDataFlowList();
+        list.addAll(flows(50));
+        list.clear();
+        assertEquals(0, list.size());
+        assertEquals(0, list.getStringCount());
+
+        List<DataFlow> flows = flows(30);
+        list.addAll(flows);
+        for (int i = 0; i < flows.size(); i++) {
+            assertFlowEquals(flows.get(i), list.get(i));
+        }
+    }
+
+    @Test
+    void onlyAppends() {
+        CompactDataFlowList list = new CompactDataFlowList();
+        list.addAll(flows(3));
+        DataFlow flow = DataFlow.withDerivedId("a", "b", "c", DataFlowType.INPUT);
+
+        assertThrows(UnsupportedOperationException.class, () -> list.set(0, flow));
+        assertThrows(UnsupportedOperationException.class, () -> list.add(1, flow));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(3));
+    }
+
+    /**
+     * Creates flows covering every type, derived and custom IDs, null and unusual descriptions,
+     * null protocols, both external states, multiplicities and metadata
+     */
+    private static List<DataFlow> flows(int count) {
+        DataFlowType[] types = DataFlowType.values();
+        List<DataFlow> flows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String source = "com.app.m" + i % 7 + ".Service.save";
+            String destination = i % 5 == 0 ? "store-" + i % 3 : "WebClient-Controller" + i % 4;
+            String dataStructure = i % 11 == 0 ? null : "com.app.Item" + i % 6 + "DTO";
+            DataFlowType type = types[i % types.length];
+
+            DataFlow flow;
+            if (i % 9 == 0) {
+                flow = new DataFlow("custom-" + i, source, destination, dataStructure);
+                flow.setType(type);
+            } else {
+                flow = DataFlow.withDerivedId(source, destination, dataStructure, type);
+            }
+            flow.setDescription(DESCRIPTIONS[i % DESCRIPTIONS.length]);
+            flow.setProtocol(i % 3 == 0 ? null : i % 3 == 1 ? "HTTP/HTTPS" : "Kafka");
+            flow.setExternal(i % 2 == 0);
+            flow.setMultiplicity(1 + i % 4);
+            if (i % 13 == 0) {
+                flow.addMetadata("line", i);
+                flow.addMetadata("file", "Service" + i + ".java");
+            }
+            flows.add(flow);
+        }
+        return flows;
+    }
+
+    private static void assertFlowEquals(DataFlow expected, DataFlow actual) {
+        String id = expected.getId();
+        assertEquals(expected.getId(), actual.getId(), id);
+        assertEquals(expected.getSourceId(), actual.getSourceId(), id);
+        assertEquals(expected.getDestinationId(), actual.getDestinationId(), id);
+        assertEquals(expected.getDataStructureId(), actual.getDataStructureId(), id);
+        assertEquals(expected.getType(), actual.getType(), id);
+        assertEquals(expected.getDescription(), actual.getDescription(), id);
+        assertEquals(expected.getProtocol(), actual.getProtocol(), id);
+        assertEquals(expected.isExternal(), actual.isExternal(), id);
+        assertEquals(expected.getMultiplicity(), actual.getMultiplicity(), id);
+        assertEquals(expected.getMetadata(), actual.getMetadata(), id);
+    }
+}
@@ -0,0 +1,76 @@
+package com.threatmodel.analyzer.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.threatmodel.analyzer.model.DataFlow.DataFlowType;
+
+/**
+ * Checks that flow IDs only depend on the fields identifying the flow
+ */
+class DataFlowTest {
+
+    @Test
+    void idsAreStableAcrossRuns() {
+        // Changing these values invalidates IDs stored by earlier runs, such as diffed reports
+        assertEquals("flow-0c3b3642833ce21a", DataFlow.computeId(
+                "com.app.UserController.create", "WebClient-UserController", "com.app.UserDTO", DataFlowType.OUTPUT));
+        assertEquals("flow-468cdeeff7b6d4d8", DataFlow.computeId(
+                "store-users", "com.app.UserService.find", "com.app.UserEntity", DataFlowType.DATABASE_READ));
+    }
+
+    @Test
+    void idsHaveAFixedFormat() {
+        String id = DataFlow.computeId("a", "b", null, DataFlowType.OTHER);
+
+        assertTrue(id.matches("flow-[0-9a-f]{16}"), id);
+    }
+
+    @Test
+    void everyIdentifyingFieldChangesTheId() {
+        String id = DataFlow.computeId("a", "b", "c", DataFlowType.INPUT);
+
+        assertNotEquals(id, DataFlow.computeId("x", "b", "c", DataFlowType.INPUT));
+        assertNotEquals(id, DataFlow.computeId("a", "x", "c", DataFlowType.INPUT));
+        assertNotEquals(id, DataFlow.computeId("a", "b", "x", DataFlowType.INPUT));
+        assertNotEquals(id, DataFlow.computeId("a", "b", "c", DataFlowType.OUTPUT));
+        assertNotEquals(id, DataFlow.computeId("b", "a", "c", DataFlowType.INPUT));
+    }
+
+    @Test
+    void fieldBoundariesChangeTheId() {
+        assertNotEquals(DataFlow.computeId("ab", "c", "d", DataFlowType.INPUT),
+                DataFlow.computeId("a", "bc", "d", DataFlowType.INPUT));
+    }
+
+    @Test
+    void derivedIdsFollowTheIdentifyingFields() {
+        DataFlow flow = DataFlow.withDerivedId("a", "b", "c", DataFlowType.INPUT);
+        assertEquals(DataFlow.computeId("a", "b", "c", DataFlowType.INPUT), flow.getId());
+
+        flow.setDescription("Web request");
+        flow.setProtocol("HTTP/HTTPS");
+        flow.setExternal(true);
+        flow.setMultiplicity(3);
+        assertEquals(DataFlow.computeId("a", "b", "c", DataFlowType.INPUT), flow.getId());
+
+        flow.setDestinationId("d");
+        assertEquals(DataFlow.computeId("a", "d", "c", DataFlowType.INPUT), flow.getId());
+        flow.setType(DataFlowType.API_CALL);
+        assertEquals(DataFlow.computeId("a", "d", "c", DataFlowType.API_CALL), flow.getId());
+    }
+
+    @Test
+    void explicitIdsAreKept() {
+        DataFlow flow = DataFlow.withDerivedId("a", "b", "c", DataFlowType.INPUT);
+        flow.setId("custom");
+        flow.setSourceId("x");
+
+        assertEquals("custom", flow.getId());
+        assertFalse(flow.isIdDerived());
+    }
+}
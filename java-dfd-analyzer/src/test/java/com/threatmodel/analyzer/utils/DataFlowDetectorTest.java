@@ -0,0 +1,204 @@
+package com.threatmodel.analyzer.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.threatmodel.analyzer.model.DataFlow;
+import com.threatmodel.analyzer.model.DataFlow.DataFlowType;
+import com.threatmodel.analyzer.model.DataStore;
+import com.threatmodel.analyzer.model.DataStructure;
+import com.threatmodel.analyzer.model.ExternalEntity;
+import com.threatmodel.analyzer.model.ExternalEntity.ExternalEntityType;
+import com.threatmodel.analyzer.model.Process;
+
+/**
+ * Checks the flows detected between the components of a small layered application
+ */
+class DataFlowDetectorTest {
+
+    private static final int MODULES = 40;
+
+    @Test
+    void parallelDetectionMatchesASingleThread() {
+        List<String> sequential = describe(new Model().detect(1));
+        List<String> parallel = describe(new Model().detect(4));
+
+        for (DataFlowType type : new DataFlowType[] { DataFlowType.INTERNAL, DataFlowType.INPUT,
+                DataFlowType.OUTPUT, DataFlowType.API_CALL, DataFlowType.DATABASE_WRITE, DataFlowType.DATABASE_READ }) {
+            assertTrue(sequential.stream().anyMatch(flow -> flow.contains(" " + type + " ")), type.name());
+        }
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void repeatedRunsGiveTheSameFlows() {
+        assertEquals(describe(new Model().detect(4)), describe(new Model().detect(4)));
+    }
+
+    @Test
+    void flowsComeInPhaseAndItemOrder() {
+        Model model = new Model();
+        List<String> processIds = new ArrayList<>(model.processes.keySet());
+        List<String> entityNames = new ArrayList<>(model.externalEntities.keySet());
+        List<String> storeIds = new ArrayList<>(model.dataStores.keySet());
+
+        int lastPhase = 0;
+        int lastItem = -1;
+        for (DataFlow flow : model.detect(4)) {
+            int phase;
+            int item;
+            switch (flow.getType()) {
+                case INTERNAL:
+                    phase = 0;
+                    item = processIds.indexOf(flow.getSourceId());
+                    break;
+                case INPUT:
+                    phase = 1;
+                    item = entityNames.indexOf(flow.getSourceId());
+                    break;
+                case OUTPUT:
+                    phase = 2;
+                    item = entityNames.indexOf(flow.getDestinationId());
+                    break;
+                case API_CALL:
+                    phase = model.processes.containsKey(flow.getDestinationId()) ? 1 : 2;
+                    item = entityNames.indexOf(phase == 1 ? flow.getSourceId() : flow.getDestinationId());
+                    break;
+                case DATABASE_WRITE:
+                    phase = 3;
+                    item = storeIds.indexOf(flow.getDestinationId());
+                    break;
+                default:
+                    phase = 4;
+                    item = storeIds.indexOf(flow.getSourceId());
+                    break;
+            }
+            assertTrue(phase > lastPhase || phase == lastPhase && item >= lastItem, flow.getId());
+            lastItem = phase == lastPhase ? item : -1;
+            lastPhase = phase;
+        }
+        assertEquals(4, lastPhase);
+    }
+
+    @Test
+    void mergesDuplicateFlowsIntoTheFirstOne() {
+        Model model = new Model();
+        List<DataFlow> single = model.detect(4);
+
+        // A second client of the same controller, e.g. registered by a caller under its own key
+        Model duplicated = new Model();
+        ExternalEntity client = Model.entity("WebClient-Item0Controller", ExternalEntityType.USER, null);
+        duplicated.externalEntities.put("mobile:WebClient-Item0Controller", client);
+        List<DataFlow> merged = duplicated.detect(4);
+
+        assertEquals(single.size(), merged.size());
+        int duplicates = 0;
+        for (int i = 0; i < single.size(); i++) {
+            DataFlow flow = merged.get(i);
+            assertEquals(single.get(i).getId(), flow.getId());
+            assertEquals(single.get(i).getDescription(), flow.getDescription());
+
+            boolean webClientFlow = flow.getType() == DataFlowType.INPUT || flow.getType() == DataFlowType.OUTPUT;
+            boolean duplicate = webClientFlow && (flow.getSourceId().equals(client.getName())
+                    || flow.getDestinationId().equals(client.getName()));
+            assertEquals(duplicate ? 2 : 1, flow.getMultiplicity(), flow.getId());
+            duplicates += duplicate ? 1 : 0;
+        }
+        assertEquals(4, duplicates);
+    }
+
+    @Test
+    void detectsEachFlowOnce() {
+        Set<String> keys = new HashSet<>();
+        for (DataFlow flow : new Model().detect(4)) {
+            assertTrue(keys.add(flow.getSourceId() + " " + flow.getDestinationId() + " "
+                    + flow.getDataStructureId() + " " + flow.getType()), flow.getId());
+            assertEquals(1, flow.getMultiplicity());
+        }
+    }
+
+    private static List<String> describe(List<DataFlow> flows) {
+        return flows.stream()
+                .map(flow -> flow.getId() + " " + flow.getSourceId() + " -> " + flow.getDestinationId()
+                        + " " + flow.getType() + " " + flow.getDataStructureId() + " x" + flow.getMultiplicity()
+                        + " " + flow.getProtocol() + " " + flow.isExternal() + " " + flow.getDescription())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Modules with a controller, a service, a repository, a remote client and a data store. The
+     * services also consume the DTOs of other modules, linking the modules to each other.
+     */
+    private static class Model {
+        final Map<String, DataStructure> dataStructures = new LinkedHashMap<>();
+        final Map<String, Process> processes = new LinkedHashMap<>();
+        final Map<String, ExternalEntity> externalEntities = new LinkedHashMap<>();
+        final Map<String, DataStore> dataStores = new LinkedHashMap<>();
+
+        Model() {
+            for (int module = 0; module < MODULES; module++) {
+                String base = "com.app.m" + module + ".Item" + module;
+                String dto = base + "DTO";
+                String entity = base + "Entity";
+                dataStructures.put(dto, new DataStructure("Item" + module + "DTO", dto));
+                dataStructures.put(entity, new DataStructure("Item" + module + "Entity", entity));
+
+                add(process(base + "Controller.create", dto, dto));
+                add(process(base + "Controller.get", "java.lang.String", dto));
+                Process save = process(base + "Service.saveItem", dto, entity);
+                save.addInputDataStructureId("com.app.m" + (module * 7 + 3) % MODULES + ".Item"
+                        + (module * 7 + 3) % MODULES + "DTO");
+                save.setDescription("Saves the item and notifies Item" + module + "Remote");
+                add(save);
+                add(process(base + "Service.findItem", entity, dto));
+                add(process(base + "Repository.save", entity, entity));
+                add(process(base + "Repository.findByReference", "java.lang.String", entity));
+
+                add(entity("WebClient-Item" + module + "Controller", ExternalEntityType.USER, null));
+                add(entity("Service-Item" + module + "Remote", ExternalEntityType.SERVICE, "HTTP"));
+
+                DataStore store = new DataStore("store-item" + module, "Item" + module + "Repository");
+                dataStores.put(store.getId(), store);
+            }
+        }
+
+        List<DataFlow> detect(int parallelism) {
+            return new DataFlowDetector(dataStructures, processes, externalEntities, dataStores, parallelism)
+                    .detectDataFlows();
+        }
+
+        void add(Process process) {
+            processes.put(process.getId(), process);
+        }
+
+        void add(ExternalEntity entity) {
+            externalEntities.put(entity.getName(), entity);
+        }
+
+        static Process process(String id, String input, String output) {
+            Process process = new Process(id, id.substring(id.lastIndexOf('.', id.lastIndexOf('.') - 1) + 1));
+            process.addInputDataStructureId(input);
+            process.addOutputDataStructureId(output);
+            return process;
+        }
+
+        static ExternalEntity entity(String name, ExternalEntityType type, String protocol) {
+            ExternalEntity entity = new ExternalEntity(name);
+            entity.setType(type);
+            if (protocol != null) {
+                entity.addProtocol(protocol);
+            }
+            return entity;
+        }
+    }
+}
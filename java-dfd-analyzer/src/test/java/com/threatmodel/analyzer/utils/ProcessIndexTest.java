@@ -0,0 +1,107 @@
+package com.threatmodel.analyzer.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.threatmodel.analyzer.model.Process;
+
+/**
+ * Checks the lookups of the process index against scans over all processes
+ */
+class ProcessIndexTest {
+
+    // Includes texts shorter than a trigram, repeated trigrams and texts found in descriptions only
+    private static final List<String> QUERIES = Arrays.asList(
+            "", "U", "Us", "DT", "DTO", "User", "UserService", "UserService.save", "service", "Service.s",
+            "aaa", "aaaa", "aaaaa", "payment", "Payment gateway", "calls the", "\u00e9t\u00e9", "missing", "e.");
+
+    @Test
+    void listsConsumersInProcessOrder() {
+        Process save = process("UserService.save", "UserDTO");
+        Process list = process("UserController.list");
+        Process update = process("UserService.update", "UserDTO", "OrderDTO");
+        Process cancel = process("OrderService.cancel", "OrderDTO");
+        ProcessIndex index = new ProcessIndex(Arrays.asList(save, list, update, cancel));
+
+        assertEquals(Arrays.asList(save, update), index.getConsumers("UserDTO"));
+        assertEquals(Arrays.asList(update, cancel), index.getConsumers("OrderDTO"));
+        assertTrue(index.getConsumers("AddressDTO").isEmpty());
+    }
+
+    @Test
+    void findsTheSameProcessesAsAScan() {
+        List<Process> processes = processes();
+        ProcessIndex index = new ProcessIndex(processes);
+
+        for (String query : QUERIES) {
+            assertEquals(scan(processes, query, false), index.findByName(query), query);
+            assertEquals(scan(processes, query, true), index.findByNameOrDescription(query), query);
+        }
+    }
+
+    @Test
+    void repeatedQueriesGiveTheSameResult() {
+        List<Process> processes = processes();
+        ProcessIndex index = new ProcessIndex(processes);
+
+        for (String query : QUERIES) {
+            List<Process> first = index.findByNameOrDescription(query);
+            assertEquals(first, index.findByNameOrDescription(query), query);
+            assertEquals(scan(processes, query, false), index.findByName(query), query);
+        }
+    }
+
+    @Test
+    void findsProcessesMatchingAnyName() {
+        List<Process> processes = processes();
+        ProcessIndex index = new ProcessIndex(processes);
+        List<String> names = Arrays.asList("Order", "Us", "aaaa", "missing", "UserService");
+
+        Set<Process> expected = new LinkedHashSet<>();
+        for (String name : names) {
+            expected.addAll(scan(processes, name, false));
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(index.findByAnyName(names)));
+    }
+
+    private static List<Process> processes() {
+        List<Process> processes = new ArrayList<>();
+        processes.add(process("com.app.UserService.save"));
+        processes.add(process("com.app.UserController.list"));
+        processes.add(process("com.app.OrderService.cancel"));
+        processes.add(process("com.app.PaymentClient.charge"));
+        processes.add(process("com.app.aaaa.Repeated.run"));
+        processes.add(process("com.app.aa.Short.run"));
+        processes.add(process("com.app.Caf\u00e9t\u00e9ria.open"));
+        processes.add(process("com.app.Us"));
+        processes.get(3).setDescription("Calls the payment gateway");
+        processes.get(2).setDescription("Cancels an order for the UserService");
+        processes.get(5).setDescription("aaaaa");
+        return processes;
+    }
+
+    private static List<Process> scan(List<Process> processes, String text, boolean includeDescriptions) {
+        return processes.stream()
+                .filter(process -> process.getId().contains(text)
+                        || includeDescriptions && process.getDescription() != null
+                                && process.getDescription().contains(text))
+                .collect(Collectors.toList());
+    }
+
+    private static Process process(String id, String... inputs) {
+        Process process = new Process(id, id.substring(id.indexOf('.') + 1));
+        for (String input : inputs) {
+            process.addInputDataStructureId(input);
+        }
+        return process;
+    }
+}